@@ -0,0 +1,157 @@
+package benchmark;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.javersion.util.MutableBTreeMap;
+import org.javersion.util.MutableTreeMap;
+import org.javersion.util.PersistentBTreeMap;
+import org.javersion.util.PersistentTreeMap;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares B+-tree sorted map to red-black PersistentTreeMap in lookups, range scans and updates.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BTreeMapBenchmark {
+
+    /**
+     * Number of ranges scanned by range benchmarks. Each range contains ~1% of the keys.
+     */
+    private static final int RANGES = 100;
+
+    @Param({"100", "10000", "100000"})
+    public int size;
+
+    private Integer[] keys;
+
+    private Integer[] sortedKeys;
+
+    private PersistentBTreeMap<Integer, Integer> btreeMap;
+
+    private PersistentTreeMap<Integer, Integer> treeMap;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        keys = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = random.nextInt();
+        }
+        sortedKeys = keys.clone();
+        Arrays.sort(sortedKeys);
+        btreeMap = assocBTreeMap();
+        treeMap = assocTreeMap();
+    }
+
+    @Benchmark
+    public void getBTreeMap(Blackhole blackhole) {
+        for (Integer key : keys) {
+            blackhole.consume(btreeMap.get(key));
+        }
+    }
+
+    @Benchmark
+    public void getTreeMap(Blackhole blackhole) {
+        for (Integer key : keys) {
+            blackhole.consume(treeMap.get(key));
+        }
+    }
+
+    @Benchmark
+    public void rangeBTreeMap(Blackhole blackhole) {
+        int rangeSize = Math.max(1, size / 100);
+        for (int i = 0; i < RANGES; i++) {
+            int from = (i * (size - rangeSize)) / RANGES;
+            for (Map.Entry<Integer, Integer> entry : btreeMap.range(sortedKeys[from], sortedKeys[from + rangeSize - 1])) {
+                blackhole.consume(entry.getValue());
+            }
+        }
+    }
+
+    @Benchmark
+    public void rangeTreeMap(Blackhole blackhole) {
+        int rangeSize = Math.max(1, size / 100);
+        for (int i = 0; i < RANGES; i++) {
+            int from = (i * (size - rangeSize)) / RANGES;
+            for (Map.Entry<Integer, Integer> entry : treeMap.range(sortedKeys[from], sortedKeys[from + rangeSize - 1])) {
+                blackhole.consume(entry.getValue());
+            }
+        }
+    }
+
+    @Benchmark
+    public PersistentBTreeMap<Integer, Integer> assocBTreeMap() {
+        PersistentBTreeMap<Integer, Integer> map = PersistentBTreeMap.empty();
+        for (Integer key : keys) {
+            map = map.assoc(key, key);
+        }
+        return map;
+    }
+
+    @Benchmark
+    public PersistentTreeMap<Integer, Integer> assocTreeMap() {
+        PersistentTreeMap<Integer, Integer> map = PersistentTreeMap.empty();
+        for (Integer key : keys) {
+            map = map.assoc(key, key);
+        }
+        return map;
+    }
+
+    @Benchmark
+    public MutableBTreeMap<Integer, Integer> putMutableBTreeMap() {
+        MutableBTreeMap<Integer, Integer> map = new MutableBTreeMap<>();
+        for (Integer key : keys) {
+            map.put(key, key);
+        }
+        return map;
+    }
+
+    @Benchmark
+    public MutableTreeMap<Integer, Integer> putMutableTreeMap() {
+        MutableTreeMap<Integer, Integer> map = new MutableTreeMap<>();
+        for (Integer key : keys) {
+            map.put(key, key);
+        }
+        return map;
+    }
+
+    @Benchmark
+    public PersistentBTreeMap<Integer, Integer> dissocBTreeMap() {
+        PersistentBTreeMap<Integer, Integer> map = btreeMap;
+        for (Integer key : keys) {
+            map = map.dissoc(key);
+        }
+        return map;
+    }
+
+    @Benchmark
+    public PersistentTreeMap<Integer, Integer> dissocTreeMap() {
+        PersistentTreeMap<Integer, Integer> map = treeMap;
+        for (Integer key : keys) {
+            map = map.dissoc(key);
+        }
+        return map;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(BTreeMapBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(opt).run();
+    }
+
+}
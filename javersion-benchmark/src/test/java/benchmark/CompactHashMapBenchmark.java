@@ -0,0 +1,152 @@
+package benchmark;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.javersion.util.MutableCompactHashMap;
+import org.javersion.util.MutableHashMap;
+import org.javersion.util.PersistentCompactHashMap;
+import org.javersion.util.PersistentHashMap;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares compact (CHAMP) hash map to hash trie. Run with GCProfiler (as in main): gc.alloc.rate.norm
+ * of the mutable build benchmarks approximates footprint of the map.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CompactHashMapBenchmark {
+
+    @Param({"100", "10000", "100000"})
+    public int size;
+
+    private Integer[] keys;
+
+    private PersistentCompactHashMap<Integer, Integer> compactMap;
+
+    private PersistentHashMap<Integer, Integer> hashMap;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        keys = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = random.nextInt();
+        }
+        compactMap = buildCompactMap().toPersistentMap();
+        hashMap = buildHashMap().toPersistentMap();
+    }
+
+    @Benchmark
+    public MutableCompactHashMap<Integer, Integer> buildCompactMap() {
+        MutableCompactHashMap<Integer, Integer> map = new MutableCompactHashMap<>();
+        for (Integer key : keys) {
+            map.put(key, key);
+        }
+        return map;
+    }
+
+    @Benchmark
+    public MutableHashMap<Integer, Integer> buildHashMap() {
+        MutableHashMap<Integer, Integer> map = new MutableHashMap<>();
+        for (Integer key : keys) {
+            map.put(key, key);
+        }
+        return map;
+    }
+
+    @Benchmark
+    public PersistentCompactHashMap<Integer, Integer> assocCompactMap() {
+        PersistentCompactHashMap<Integer, Integer> map = PersistentCompactHashMap.empty();
+        for (Integer key : keys) {
+            map = map.assoc(key, key);
+        }
+        return map;
+    }
+
+    @Benchmark
+    public PersistentHashMap<Integer, Integer> assocHashMap() {
+        PersistentHashMap<Integer, Integer> map = PersistentHashMap.empty();
+        for (Integer key : keys) {
+            map = map.assoc(key, key);
+        }
+        return map;
+    }
+
+    @Benchmark
+    public void getCompactMap(Blackhole blackhole) {
+        for (Integer key : keys) {
+            blackhole.consume(compactMap.get(key));
+        }
+    }
+
+    @Benchmark
+    public void getHashMap(Blackhole blackhole) {
+        for (Integer key : keys) {
+            blackhole.consume(hashMap.get(key));
+        }
+    }
+
+    @Benchmark
+    public void iterateCompactMap(Blackhole blackhole) {
+        for (Map.Entry<Integer, Integer> entry : compactMap) {
+            blackhole.consume(entry.getValue());
+        }
+    }
+
+    @Benchmark
+    public void iterateHashMap(Blackhole blackhole) {
+        for (Map.Entry<Integer, Integer> entry : hashMap) {
+            blackhole.consume(entry.getValue());
+        }
+    }
+
+    @Benchmark
+    public long parallelSumCompactMap() {
+        return compactMap.parallelStream().mapToLong(Map.Entry::getValue).sum();
+    }
+
+    @Benchmark
+    public long parallelSumHashMap() {
+        return hashMap.parallelStream().mapToLong(Map.Entry::getValue).sum();
+    }
+
+    @Benchmark
+    public PersistentCompactHashMap<Integer, Integer> dissocCompactMap() {
+        PersistentCompactHashMap<Integer, Integer> map = compactMap;
+        for (Integer key : keys) {
+            map = map.dissoc(key);
+        }
+        return map;
+    }
+
+    @Benchmark
+    public PersistentHashMap<Integer, Integer> dissocHashMap() {
+        PersistentHashMap<Integer, Integer> map = hashMap;
+        for (Integer key : keys) {
+            map = map.dissoc(key);
+        }
+        return map;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(CompactHashMapBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+
+        new Runner(opt).run();
+    }
+
+}
@@ -0,0 +1,112 @@
+package benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.javersion.util.MutableHashMap;
+import org.javersion.util.MutableLongMap;
+import org.javersion.util.PersistentHashMap;
+import org.javersion.util.PersistentLongMap;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares long keyed maps to hash maps of boxed Long keys. Run with GCProfiler (as in main): gc.alloc.rate.norm
+ * of the mutable build benchmarks approximates footprint of the map and that of lookups shows boxing.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LongMapBenchmark {
+
+    @Param({"100", "10000", "100000"})
+    public int size;
+
+    @Param({"true", "false"})
+    public boolean sequential;
+
+    private long[] keys;
+
+    private PersistentLongMap<Object> longMap;
+
+    private PersistentHashMap<Long, Object> hashMap;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = sequential ? i : random.nextLong();
+        }
+        longMap = buildLongMap().toPersistentMap();
+        hashMap = buildHashMap().toPersistentMap();
+    }
+
+    @Benchmark
+    public MutableLongMap<Object> buildLongMap() {
+        MutableLongMap<Object> map = new MutableLongMap<>();
+        for (long key : keys) {
+            map.put(key, Boolean.TRUE);
+        }
+        return map;
+    }
+
+    @Benchmark
+    public MutableHashMap<Long, Object> buildHashMap() {
+        MutableHashMap<Long, Object> map = new MutableHashMap<>();
+        for (long key : keys) {
+            map.put(key, Boolean.TRUE);
+        }
+        return map;
+    }
+
+    @Benchmark
+    public PersistentLongMap<Object> assocLongMap() {
+        PersistentLongMap<Object> map = PersistentLongMap.empty();
+        for (long key : keys) {
+            map = map.assoc(key, Boolean.TRUE);
+        }
+        return map;
+    }
+
+    @Benchmark
+    public PersistentHashMap<Long, Object> assocHashMap() {
+        PersistentHashMap<Long, Object> map = PersistentHashMap.empty();
+        for (long key : keys) {
+            map = map.assoc(key, Boolean.TRUE);
+        }
+        return map;
+    }
+
+    @Benchmark
+    public void getLongMap(Blackhole blackhole) {
+        for (long key : keys) {
+            blackhole.consume(longMap.get(key));
+        }
+    }
+
+    @Benchmark
+    public void getHashMap(Blackhole blackhole) {
+        for (long key : keys) {
+            blackhole.consume(hashMap.get(key));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(LongMapBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+
+        new Runner(opt).run();
+    }
+
+}
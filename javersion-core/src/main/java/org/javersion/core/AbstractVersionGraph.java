@@ -17,6 +17,7 @@ package org.javersion.core;
 
 import com.google.common.base.Function;
 import com.google.common.collect.*;
+import org.javersion.util.MutableVector;
 import org.javersion.util.PersistentMap;
 import org.javersion.util.PersistentSortedMap;
 import org.javersion.util.PersistentTreeMap;
@@ -215,7 +216,12 @@ public abstract class AbstractVersionGraph<K, V, M,
         if (isEmpty()) {
             return new OptimizedGraph<>(self(), emptyList(), emptyList());
         }
-        return new Optimizer().optimize(keep);
+        long start = System.nanoTime();
+        OptimizedGraph<K, V, M, This> optimizedGraph = new Optimizer().optimize(keep);
+        Metrics metrics = GraphMetrics.get();
+        metrics.time(GraphMetrics.OPTIMIZE, System.nanoTime() - start);
+        metrics.count(GraphMetrics.OPTIMIZE, optimizedGraph.getSquashedRevisions().size());
+        return optimizedGraph;
     }
 
     @SuppressWarnings("unchecked")
@@ -245,7 +251,7 @@ public abstract class AbstractVersionGraph<K, V, M,
          * Newest first list of kept nodes.
          */
         private final List<VersionNode<K, V, M>> keptNodes = new ArrayList<>(size);
-        private final List<Revision> squashedRevisions = new ArrayList<>(size);
+        private final MutableVector<Revision> squashedRevisions = new MutableVector<>();
         private final Revision tipRevision = getTip().revision;
 
         public OptimizedGraph<K, V, M, This> optimize(Predicate<VersionNode<K, V, M>> keepPredicate) {
@@ -261,10 +267,10 @@ public abstract class AbstractVersionGraph<K, V, M,
                 }
             }
             if (squashedRevisions.isEmpty()) {
-                return unmodifiableOptimizedGraph(
+                return new OptimizedGraph<>(
                         self(),
-                        Lists.transform(reverse(keptNodes), VersionNode::getRevision),
-                        squashedRevisions);
+                        unmodifiableList(Lists.transform(reverse(keptNodes), VersionNode::getRevision)),
+                        emptyList());
             }
             return toOptimizedGraph();
         }
@@ -300,18 +306,14 @@ public abstract class AbstractVersionGraph<K, V, M,
 
         private OptimizedGraph<K, V, M, This> toOptimizedGraph() {
             B builder = newEmptyBuilder();
-            List<Revision> keptRevisions = new ArrayList<>(keptNodes.size());
+            MutableVector<Revision> keptRevisions = new MutableVector<>();
             for (int i = keptNodes.size() - 1; i >= 0; i--) {
                 VersionNode<K, V, M> node = keptNodes.get(i);
                 keptRevisions.add(node.revision);
                 Version<K, V, M> version = optimizedVersion(node, getParentRevisions(node.revision));
                 builder.add(version);
             }
-            return unmodifiableOptimizedGraph(builder.build(), keptRevisions, squashedRevisions);
-        }
-
-        private OptimizedGraph<K, V, M, This> unmodifiableOptimizedGraph(This graph, List<Revision> keptRevisions, List<Revision> squashedRevisions) {
-            return new OptimizedGraph<>(graph, unmodifiableList(keptRevisions), unmodifiableList(squashedRevisions));
+            return new OptimizedGraph<>(builder.build(), keptRevisions.toPersistentVector().asList(), squashedRevisions.toPersistentVector().asList());
         }
 
 
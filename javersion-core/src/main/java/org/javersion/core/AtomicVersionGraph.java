@@ -0,0 +1,198 @@
+/*
+ * Copyright 2016 Samppa Saarela
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javersion.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.UnaryOperator;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.javersion.util.Check;
+
+/**
+ * Lock-free holder of an immutable version graph shared by multiple threads, e.g. request threads
+ * updating the same in-memory document.
+ * <p>
+ * {@link #update(UnaryOperator)} applies a function to the current graph and publishes the result with
+ * compare-and-set, retrying with randomized exponential backoff on contention. As graphs are persistent,
+ * failed attempts only waste the work of that attempt.
+ * <p>
+ * {@link #commit(Version)} combines versions committed concurrently into a single
+ * {@link VersionGraph#commit(Iterable)}: one of the committing threads commits all pending versions while
+ * others wait for the result.
+ */
+@ThreadSafe
+public final class AtomicVersionGraph<K, V, M, G extends AbstractVersionGraph<K, V, M, G, ?>> {
+
+    private static final int MAX_BACKOFF_NANOS = 1_000_000;
+
+    private static final int SPINS = 4;
+
+    public static <K, V, M, G extends AbstractVersionGraph<K, V, M, G, ?>> AtomicVersionGraph<K, V, M, G> of(G versionGraph) {
+        return new AtomicVersionGraph<>(versionGraph);
+    }
+
+    private final AtomicReference<G> versionGraph;
+
+    private final ConcurrentLinkedQueue<PendingCommit<K, V, M, G>> pendingCommits = new ConcurrentLinkedQueue<>();
+
+    private final AtomicBoolean committing = new AtomicBoolean(false);
+
+    public AtomicVersionGraph(G versionGraph) {
+        this.versionGraph = new AtomicReference<>(Check.notNull(versionGraph, "versionGraph"));
+    }
+
+    public G get() {
+        return versionGraph.get();
+    }
+
+    /**
+     * Replaces the current graph with the result of fn. Fn may be called multiple times under contention
+     * and should not have side effects.
+     *
+     * @return the new graph
+     */
+    public G update(UnaryOperator<G> fn) {
+        for (int attempt = 0; ; attempt++) {
+            G current = versionGraph.get();
+            G updated = fn.apply(current);
+            if (versionGraph.compareAndSet(current, updated)) {
+                if (attempt > 0) {
+                    GraphMetrics.get().count(GraphMetrics.UPDATE_RETRIES, attempt);
+                }
+                return updated;
+            }
+            backoff(attempt);
+        }
+    }
+
+    /**
+     * Commits version to the shared graph. Versions committed concurrently by other threads may be committed
+     * in the same batch. If committing the batch fails, versions are committed one by one so that an invalid
+     * version only fails its own commit.
+     *
+     * @return a graph containing the version
+     */
+    public G commit(Version<K, V, M> version) {
+        PendingCommit<K, V, M, G> pending = new PendingCommit<>(Check.notNull(version, "version"));
+        pendingCommits.add(pending);
+        for (int attempt = 0; !pending.done; attempt++) {
+            if (committing.compareAndSet(false, true)) {
+                try {
+                    commitPending();
+                } finally {
+                    committing.set(false);
+                }
+            } else {
+                backoff(attempt);
+            }
+        }
+        if (pending.error instanceof Error) {
+            throw (Error) pending.error;
+        } else if (pending.error != null) {
+            throw (RuntimeException) pending.error;
+        }
+        return pending.result;
+    }
+
+    private void commitPending() {
+        List<PendingCommit<K, V, M, G>> batch = new ArrayList<>();
+        List<Version<K, V, M>> versions = new ArrayList<>();
+        for (PendingCommit<K, V, M, G> pending; (pending = pendingCommits.poll()) != null; ) {
+            batch.add(pending);
+            versions.add(pending.version);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        GraphMetrics.get().count(GraphMetrics.COMMIT_BATCH, batch.size());
+        Throwable failure = null;
+        try {
+            G result = update(graph -> graph.commit(versions));
+            for (PendingCommit<K, V, M, G> pending : batch) {
+                pending.complete(result, null);
+            }
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                batch.get(0).complete(null, e);
+            } else {
+                for (PendingCommit<K, V, M, G> pending : batch) {
+                    commitSeparately(pending);
+                }
+            }
+        } catch (Throwable t) {
+            failure = t;
+            throw t;
+        } finally {
+            // Batch is already polled: no one else would complete these
+            for (PendingCommit<K, V, M, G> pending : batch) {
+                if (!pending.done) {
+                    pending.complete(null, failure != null ? failure : new IllegalStateException("commit aborted"));
+                }
+            }
+        }
+    }
+
+    private void commitSeparately(PendingCommit<K, V, M, G> pending) {
+        try {
+            pending.complete(update(graph -> graph.commit(pending.version)), null);
+        } catch (RuntimeException e) {
+            pending.complete(null, e);
+        }
+    }
+
+    private static void backoff(int attempt) {
+        if (attempt < SPINS) {
+            Thread.yield();
+        } else {
+            int maxNanos = Math.min(MAX_BACKOFF_NANOS, 1 << Math.min(attempt, 20));
+            LockSupport.parkNanos(ThreadLocalRandom.current().nextInt(maxNanos) + 1);
+        }
+    }
+
+    private static final class PendingCommit<K, V, M, G> {
+
+        final Version<K, V, M> version;
+
+        G result;
+
+        /**
+         * RuntimeException or Error
+         */
+        Throwable error;
+
+        /**
+         * Written after result and error so that they are visible to the waiting thread once done is.
+         */
+        volatile boolean done;
+
+        PendingCommit(Version<K, V, M> version) {
+            this.version = version;
+        }
+
+        void complete(G result, Throwable error) {
+            this.result = result;
+            this.error = error;
+            this.done = true;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2016 Samppa Saarela
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javersion.core;
+
+import org.javersion.util.Check;
+
+/**
+ * Global Metrics for version graph operations that are not bound to any store. No-op by default.
+ */
+public final class GraphMetrics {
+
+    /**
+     * Time and number of versions of building a version graph from versions, e.g. ObjectVersionGraph.init.
+     */
+    public static final String INIT = "graph.init";
+
+    /**
+     * Time and number of squashed versions of optimizing a version graph.
+     */
+    public static final String OPTIMIZE = "graph.optimize";
+
+    /**
+     * Number of failed compare-and-set attempts of a contended AtomicVersionGraph.update.
+     */
+    public static final String UPDATE_RETRIES = "graph.update.retries";
+
+    /**
+     * Number of versions committed together by AtomicVersionGraph.commit.
+     */
+    public static final String COMMIT_BATCH = "graph.commit.batch";
+
+    private static volatile Metrics metrics = Metrics.NOOP;
+
+    public static Metrics get() {
+        return metrics;
+    }
+
+    public static void set(Metrics metrics) {
+        GraphMetrics.metrics = Check.notNull(metrics, "metrics");
+    }
+
+    private GraphMetrics() {}
+}
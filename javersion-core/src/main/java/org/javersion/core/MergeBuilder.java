@@ -169,7 +169,7 @@ public class MergeBuilder<K, V, M> {
             }
         };
         mergedProperties.mergeAll(node.mergedProperties, merger);
-        mergedRevisions.addAllFrom(node.mergedRevisions);
+        mergedRevisions.union(node.mergedRevisions);
     }
 
     private boolean handleMergeConflict(K key, VersionProperty<V> prevValue, VersionProperty<V> nextValue) {
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2016 Samppa Saarela
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javersion.core;
+
+/**
+ * Instrumentation SPI for recording timings and counts of store and graph operations.
+ * Implementations should be thread safe and cheap as they are called on hot paths.
+ *
+ * @see GraphMetrics
+ */
+public interface Metrics {
+
+    Metrics NOOP = new Metrics() {
+        @Override
+        public void time(String name, long nanos) {}
+
+        @Override
+        public void count(String name, long value) {}
+    };
+
+    /**
+     * Records duration of an operation.
+     */
+    void time(String name, long nanos);
+
+    /**
+     * Records a sample of a count, e.g. number of rows read by a query.
+     */
+    void count(String name, long value);
+
+}
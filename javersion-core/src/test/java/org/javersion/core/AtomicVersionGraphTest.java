@@ -0,0 +1,126 @@
+/*
+ * Copyright 2016 Samppa Saarela
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javersion.core;
+
+import static java.util.Collections.synchronizedList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+public class AtomicVersionGraphTest {
+
+    private static final int THREADS = 8;
+
+    private static final int VERSIONS_PER_THREAD = 200;
+
+    @Test
+    public void update() {
+        AtomicVersionGraph<String, String, String, SimpleVersionGraph> graph = AtomicVersionGraph.of(SimpleVersionGraph.init());
+        SimpleVersion version = SimpleVersion.builder().changeset(ImmutableMap.of("key", "value")).build();
+
+        SimpleVersionGraph updated = graph.update(g -> g.commit(version));
+
+        assertThat(graph.get()).isSameAs(updated);
+        assertThat(updated.contains(version.revision)).isTrue();
+    }
+
+    @Test
+    public void concurrent_commits() throws Exception {
+        AtomicVersionGraph<String, String, String, SimpleVersionGraph> graph = AtomicVersionGraph.of(SimpleVersionGraph.init());
+        List<Revision> revisions = synchronizedList(new ArrayList<>());
+        runConcurrently(thread -> {
+            Revision parent = null;
+            for (int i = 0; i < VERSIONS_PER_THREAD; i++) {
+                SimpleVersion.Builder builder = SimpleVersion.builder()
+                        .changeset(ImmutableMap.of("thread" + thread, Integer.toString(i)));
+                if (parent != null) {
+                    builder.parents(parent);
+                }
+                SimpleVersion version = builder.build();
+                SimpleVersionGraph result = i % 2 == 0
+                        ? graph.commit(version)
+                        : graph.update(g -> g.commit(version));
+                assertThat(result.contains(version.revision)).isTrue();
+                revisions.add(version.revision);
+                parent = version.revision;
+            }
+        });
+        SimpleVersionGraph result = graph.get();
+        assertThat(result.size()).isEqualTo(THREADS * VERSIONS_PER_THREAD);
+        assertThat(result.containsAll(revisions)).isTrue();
+    }
+
+    @Test
+    public void invalid_version_fails_only_its_own_commit() throws Exception {
+        AtomicVersionGraph<String, String, String, SimpleVersionGraph> graph = AtomicVersionGraph.of(SimpleVersionGraph.init());
+        runConcurrently(thread -> {
+            for (int i = 0; i < VERSIONS_PER_THREAD; i++) {
+                SimpleVersion.Builder builder = SimpleVersion.builder();
+                boolean invalid = i % 10 == 0;
+                if (invalid) {
+                    builder.parents(new Revision());
+                }
+                SimpleVersion version = builder.build();
+                try {
+                    graph.commit(version);
+                    if (invalid) {
+                        fail("Expected VersionNotFoundException");
+                    }
+                } catch (VersionNotFoundException e) {
+                    assertThat(invalid).isTrue();
+                }
+            }
+        });
+        assertThat(graph.get().size()).isEqualTo(THREADS * VERSIONS_PER_THREAD * 9 / 10);
+    }
+
+    private interface ThreadTask {
+        void run(int thread) throws Exception;
+    }
+
+    private static void runConcurrently(ThreadTask task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                final int thread = i;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.run(thread);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -15,27 +15,33 @@
  */
 package org.javersion.store.jdbc;
 
+import static com.querydsl.core.types.Ops.IN;
+import static com.querydsl.core.types.dsl.Expressions.constant;
+import static com.querydsl.core.types.dsl.Expressions.predicate;
 import static org.javersion.store.jdbc.VersionStatus.ACTIVE;
 import static org.javersion.store.jdbc.VersionStatus.REDUNDANT;
 import static org.javersion.store.jdbc.VersionStatus.SQUASHED;
 
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.Predicate;
 
 import org.javersion.core.OptimizedGraph;
-import org.javersion.core.Persistent;
 import org.javersion.core.Revision;
 import org.javersion.core.VersionNode;
 import org.javersion.object.ObjectVersionGraph;
 import org.javersion.path.PropertyPath;
 
+import com.google.common.collect.Iterables;
 import com.querydsl.core.dml.StoreClause;
 import com.querydsl.core.group.Group;
 import com.querydsl.core.types.Path;
 import com.querydsl.sql.dml.SQLInsertClause;
+import com.querydsl.sql.dml.SQLUpdateClause;
 
 public abstract class AbstractUpdateBatch<Id, M,
                 V extends JVersion<Id>,
@@ -57,12 +63,29 @@ public abstract class AbstractUpdateBatch<Id, M,
 
     protected final SQLInsertClause propertyBatch;
 
+    protected final SQLUpdateClause squashParentBatch;
+
+    protected final SQLUpdateClause squashPropertyBatch;
+
+    protected final SQLInsertClause headPropertyBatch;
+
+    protected final SQLInsertClause checkpointBatch;
+
+    protected final SQLInsertClause valueIndexBatch;
+
+    protected final Map<String, String> blobs = new LinkedHashMap<>();
+
     public AbstractUpdateBatch(AbstractVersionStoreJdbc<Id, M, V, This, Options> store) {
         this.store = store;
         this.options = store.options;
         versionBatch = options.queryFactory.insert(options.version);
         parentBatch = options.queryFactory.insert(options.parent);
         propertyBatch = options.queryFactory.insert(options.property);
+        squashParentBatch = options.queryFactory.update(options.parent);
+        squashPropertyBatch = options.queryFactory.update(options.property);
+        headPropertyBatch = options.headProperty != null ? options.queryFactory.insert(options.headProperty) : null;
+        checkpointBatch = options.checkpointProperty != null ? options.queryFactory.insert(options.checkpointProperty) : null;
+        valueIndexBatch = options.valueIndex != null ? options.queryFactory.insert(options.valueIndex) : null;
     }
 
     @Override
@@ -81,12 +104,30 @@ public abstract class AbstractUpdateBatch<Id, M,
                 options.transactions.afterCommit(this::publishAfterCommit);
             }
         }
+        if (!blobs.isEmpty()) {
+            insertBlobs();
+        }
         if (isNotEmpty(parentBatch)) {
             parentBatch.execute();
         }
         if (isNotEmpty(propertyBatch)) {
             propertyBatch.execute();
         }
+        if (isNotEmpty(squashParentBatch)) {
+            squashParentBatch.execute();
+        }
+        if (isNotEmpty(squashPropertyBatch)) {
+            squashPropertyBatch.execute();
+        }
+        if (isNotEmpty(headPropertyBatch)) {
+            headPropertyBatch.execute();
+        }
+        if (isNotEmpty(checkpointBatch)) {
+            checkpointBatch.execute();
+        }
+        if (isNotEmpty(valueIndexBatch)) {
+            valueIndexBatch.execute();
+        }
     }
 
     protected This prune(ObjectVersionGraph<M> graph, Predicate<VersionNode<PropertyPath, Object, M>> keep) {
@@ -99,6 +140,9 @@ public abstract class AbstractUpdateBatch<Id, M,
             if (!squashedRevisions.isEmpty()) {
                 deleteParents(modifiedRevisions);
                 deleteProperties(modifiedRevisions);
+                if (options.checkpointProperty != null) {
+                    deleteCheckpoints(squashedRevisions);
+                }
                 deleteVersions(squashedRevisions);
                 insertOptimizedParentsAndProperties(optimizedGraph.getGraph());
             }
@@ -121,6 +165,55 @@ public abstract class AbstractUpdateBatch<Id, M,
         return self();
     }
 
+    /**
+     * Replaces head properties of given documents with the merged properties of their branches.
+     */
+    protected This updateHeads(Map<Id, ObjectVersionGraph<M>> graphs) {
+        if (!graphs.isEmpty()) {
+            deleteHeadProperties(graphs.keySet());
+            graphs.forEach((docId, graph) -> graph.getBranches().forEach(branch ->
+                    graph.mergeBranches(branch).getProperties().forEach((path, value) ->
+                            insertHeadProperty(docId, branch, path, value))));
+        }
+        return self();
+    }
+
+    /**
+     * Replaces value index rows of given documents with the values of indexed paths in the merged properties of their branches.
+     */
+    protected This updateValueIndex(Map<Id, ObjectVersionGraph<M>> graphs) {
+        if (!graphs.isEmpty()) {
+            deleteValueIndex(graphs.keySet());
+            graphs.forEach((docId, graph) -> graph.getBranches().forEach(branch -> {
+                Revision head = graph.getHead(branch).revision;
+                Map<PropertyPath, Object> properties = graph.mergeBranches(branch).getProperties();
+                for (PropertyPath path : options.indexedPaths) {
+                    Object value = properties.get(path);
+                    if (value != null) {
+                        insertValueIndex(docId, branch, head, path, value);
+                    }
+                }
+            }));
+        }
+        return self();
+    }
+
+    /**
+     * Stores full state of given versions as checkpoints.
+     */
+    protected This insertCheckpoints(Iterable<VersionNode<PropertyPath, Object, M>> versions) {
+        versions.forEach(version -> version.getProperties().forEach((path, value) -> {
+            if (!options.versionTableProperties.containsKey(path)) {
+                checkpointBatch
+                        .set(options.checkpointProperty.revision, version.revision)
+                        .set(options.checkpointProperty.path, path.toString())
+                        .set(options.checkpointProperty.status, ACTIVE);
+                setValue(value, checkpointBatch, options.checkpointProperty.type, options.checkpointProperty.str, options.checkpointProperty.nbr);
+                checkpointBatch.addBatch();
+            }
+        }));
+        return self();
+    }
 
     @SuppressWarnings("unchecked")
     protected This self() {
@@ -128,6 +221,7 @@ public abstract class AbstractUpdateBatch<Id, M,
     }
 
     protected void publishAfterCommit() {
+        store.committed();
         options.publisher.execute(store::publish);
     }
 
@@ -241,54 +335,72 @@ public abstract class AbstractUpdateBatch<Id, M,
         }
     }
 
+    protected void insertHeadProperty(Id docId, String branch, PropertyPath path, Object value) {
+        headPropertyBatch
+                .set(options.headProperty.docId, docId)
+                .set(options.headProperty.branch, branch)
+                .set(options.headProperty.path, path.toString());
+        setValue(value, headPropertyBatch, options.headProperty.type, options.headProperty.str, options.headProperty.nbr);
+        headPropertyBatch.addBatch();
+    }
+
+    protected void insertValueIndex(Id docId, String branch, Revision revision, PropertyPath path, Object value) {
+        valueIndexBatch
+                .set(options.valueIndex.docId, docId)
+                .set(options.valueIndex.branch, branch)
+                .set(options.valueIndex.path, path.toString())
+                .set(options.valueIndex.revision, revision);
+        StoredValue stored = StoredValue.of(value, options);
+        setValue(stored, value, valueIndexBatch, options.valueIndex.type, options.valueIndex.str, options.valueIndex.nbr);
+        valueIndexBatch.set(options.valueIndex.strHash, stored.strHash());
+        valueIndexBatch.addBatch();
+    }
+
     protected void setValue(@SuppressWarnings("unused") PropertyPath path, Object value) {
-        // type:
-        // n=null, O=object, A=array, s=string,
-        // b=boolean, l=long, d=double, D=bigdecimal
-        char type;
-        String str = null;
-        Long nbr = null;
-        switch (Persistent.Type.of(value)) {
-            case TOMBSTONE:
-                type = 'n';
-                break;
-            case NULL:
-                type = 'N';
-                break;
-            case OBJECT:
-                type = 'O';
-                str = ((Persistent.Object) value).type;
-                break;
-            case ARRAY:
-                type = 'A';
-                break;
-            case STRING:
-                type = 's';
-                str = (String) value;
-                break;
-            case BOOLEAN:
-                type = 'b';
-                nbr = ((Boolean) value) ? 1L : 0L;
-                break;
-            case LONG:
-                type = 'l';
-                nbr = (Long) value;
-                break;
-            case DOUBLE:
-                type = 'd';
-                nbr = Double.doubleToRawLongBits((Double) value);
-                break;
-            case BIG_DECIMAL:
-                type = 'D';
-                str = value.toString();
-                break;
-            default:
-                throw new IllegalArgumentException("Unsupported type: " + value.getClass());
+        setValue(value, propertyBatch, options.property.type, options.property.str, options.property.nbr);
+    }
+
+    protected void setValue(Object value, StoreClause<?> clause, Path<String> typeColumn, Path<String> strColumn, Path<Long> nbrColumn) {
+        setValue(StoredValue.of(value, options), value, clause, typeColumn, strColumn, nbrColumn);
+    }
+
+    private void setValue(StoredValue stored, Object value, StoreClause<?> clause, Path<String> typeColumn, Path<String> strColumn, Path<Long> nbrColumn) {
+        if (stored.type == 'H') {
+            blobs.put(stored.str, (String) value);
+        }
+        clause.set(typeColumn, stored.typeString());
+        clause.set(strColumn, stored.str);
+        clause.set(nbrColumn, stored.nbr);
+    }
+
+    /**
+     * Inserts blobs not already stored. Concurrent transactions may insert the same blob,
+     * so hash is not required to be unique.
+     */
+    protected void insertBlobs() {
+        JBlob blob = options.blob;
+        Set<String> existing = new HashSet<>();
+        for (List<String> hashes : Iterables.partition(blobs.keySet(), 500)) {
+            existing.addAll(options.queryFactory
+                    .select(blob.hash)
+                    .from(blob)
+                    .where(blob.hash.in(hashes))
+                    .fetch());
+        }
+        SQLInsertClause blobBatch = options.queryFactory.insert(blob);
+        blobs.forEach((hash, value) -> {
+            if (!existing.contains(hash)) {
+                blobBatch
+                        .set(blob.hash, hash)
+                        .set(blob.data, JBlob.compress(value))
+                        .addBatch();
+            }
+            store.blobCache.put(hash, value);
+        });
+        if (isNotEmpty(blobBatch)) {
+            blobBatch.execute();
         }
-        propertyBatch
-                .set(options.property.type, Character.toString(type))
-                .set(options.property.str, str)
-                .set(options.property.nbr, nbr);
+        blobs.clear();
     }
 
     private void insertOptimizedParentsAndProperties(ObjectVersionGraph<M> optimizedGraph) {
@@ -312,6 +424,27 @@ public abstract class AbstractUpdateBatch<Id, M,
                 .execute();
     }
 
+    private void deleteHeadProperties(Set<Id> docIds) {
+        options.queryFactory
+                .delete(options.headProperty)
+                .where(predicate(IN, options.headProperty.docId, constant(docIds)))
+                .execute();
+    }
+
+    private void deleteValueIndex(Set<Id> docIds) {
+        options.queryFactory
+                .delete(options.valueIndex)
+                .where(predicate(IN, options.valueIndex.docId, constant(docIds)))
+                .execute();
+    }
+
+    private void deleteCheckpoints(List<Revision> revisions) {
+        options.queryFactory
+                .delete(options.checkpointProperty)
+                .where(options.checkpointProperty.revision.in(revisions))
+                .execute();
+    }
+
     private void deleteVersions(List<Revision> revisions) {
         // Delete squashed versions
         long count = options.queryFactory
@@ -349,19 +482,17 @@ public abstract class AbstractUpdateBatch<Id, M,
     }
 
     private void squashParent(Revision revision, Revision parentRevision) {
-        options.queryFactory
-                .update(options.parent)
+        squashParentBatch
                 .set(options.parent.status, SQUASHED)
                 .where(options.parent.revision.eq(revision), options.parent.parentRevision.eq(parentRevision))
-                .execute();
+                .addBatch();
     }
 
     private void squashProperty(Revision revision, PropertyPath path) {
-        options.queryFactory
-                .update(options.property)
+        squashPropertyBatch
                 .set(options.property.status, SQUASHED)
                 .where(options.property.revision.eq(revision), options.property.path.eq(path.toString()))
-                .execute();
+                .addBatch();
     }
 
 }
@@ -15,6 +15,8 @@
  */
 package org.javersion.store.jdbc;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.*;
 import com.querydsl.core.ResultTransformer;
 import com.querydsl.core.Tuple;
@@ -26,8 +28,10 @@ import com.querydsl.core.types.OrderSpecifier;
 import com.querydsl.core.types.Path;
 import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.core.types.dsl.BooleanOperation;
+import com.querydsl.core.types.dsl.CaseBuilder;
 import com.querydsl.sql.Configuration;
 import com.querydsl.sql.SQLQuery;
+import com.querydsl.sql.SQLQueryFactory;
 import com.querydsl.sql.dml.SQLUpdateClause;
 import com.querydsl.sql.types.EnumByNameType;
 import com.querydsl.sql.types.EnumByOrdinalType;
@@ -40,11 +44,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.math.BigDecimal;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 import static com.google.common.base.MoreObjects.firstNonNull;
 import static com.google.common.base.Strings.isNullOrEmpty;
@@ -57,7 +64,9 @@ import static com.querydsl.core.types.dsl.Expressions.predicate;
 import static java.lang.System.arraycopy;
 import static java.util.Arrays.asList;
 import static java.util.Collections.*;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.javersion.store.jdbc.RevisionType.REVISION_TYPE;
+import static org.javersion.store.jdbc.StoreMetrics.*;
 import static org.javersion.store.jdbc.VersionStatus.*;
 
 public abstract class AbstractVersionStoreJdbc<Id, M, V extends JVersion<Id>,
@@ -67,6 +76,11 @@ public abstract class AbstractVersionStoreJdbc<Id, M, V extends JVersion<Id>,
 
     private final Logger log = LoggerFactory.getLogger(AbstractVersionStoreJdbc.class);
 
+    /**
+     * Max number of revisions to publish with a single update statement.
+     */
+    protected static final int PUBLISH_CHUNK_SIZE = 500;
+
     public static EnumByOrdinalType<VersionStatus> VERSION_STATUS_TYPE = new EnumByOrdinalType<>(VersionStatus.class);
 
     public static void registerTypes(String tablePrefix, Configuration configuration) {
@@ -80,6 +94,11 @@ public abstract class AbstractVersionStoreJdbc<Id, M, V extends JVersion<Id>,
 
         configuration.register(tablePrefix + "VERSION_PROPERTY", "REVISION", REVISION_TYPE);
         configuration.register(tablePrefix + "VERSION_PROPERTY", "STATUS", VERSION_STATUS_TYPE);
+
+        configuration.register(tablePrefix + "CHECKPOINT_PROPERTY", "REVISION", REVISION_TYPE);
+        configuration.register(tablePrefix + "CHECKPOINT_PROPERTY", "STATUS", VERSION_STATUS_TYPE);
+
+        configuration.register(tablePrefix + "VALUE_INDEX", "REVISION", REVISION_TYPE);
     }
 
 
@@ -97,6 +116,20 @@ public abstract class AbstractVersionStoreJdbc<Id, M, V extends JVersion<Id>,
 
     protected final GraphCache<Id, M> cache;
 
+    /**
+     * Time of the first commit waiting for publish or 0 if none.
+     */
+    private final AtomicLong unpublishedSince = new AtomicLong();
+
+    /**
+     * Decompressed blob values by hash or null if blobs are not in use.
+     */
+    protected final Cache<String, String> blobCache;
+
+    private final ThreadLocal<Boolean> replicaRead = new ThreadLocal<>();
+
+    private final ThreadLocal<Boolean> primaryRead = new ThreadLocal<>();
+
     protected final Function<Id, ObjectVersionGraph<M>> cacheLoader;
 
     /**
@@ -109,6 +142,7 @@ public abstract class AbstractVersionStoreJdbc<Id, M, V extends JVersion<Id>,
         properties = null;
         cache = null;
         cacheLoader = null;
+        blobCache = null;
     }
 
     public AbstractVersionStoreJdbc(Options options) {
@@ -120,13 +154,16 @@ public abstract class AbstractVersionStoreJdbc<Id, M, V extends JVersion<Id>,
         Expression<?>[] propertyColumns = without(options.property.all(), options.property.revision);
         properties = groupBy(options.property.revision).as(GroupBy.list(tuple(propertyColumns)));
 
+        this.blobCache = options.blob != null
+                ? CacheBuilder.newBuilder().maximumSize(options.blobCacheSize).build()
+                : null;
         this.cache = options.cacheBuilder.apply(this);
         this.cacheLoader = this.cache != null ? this.cache::load : this::getOptimizedGraph;
     }
 
     @Override
     public ObjectVersionGraph<M> getFullGraph(Id docId) {
-        return options.transactions.readOnly(() -> doLoad(docId));
+        return readOnly(() -> doLoad(docId));
     }
 
     @Override
@@ -134,28 +171,106 @@ public abstract class AbstractVersionStoreJdbc<Id, M, V extends JVersion<Id>,
         return getGraph(docId, emptyList());
     }
 
+    /**
+     * Returns (cached) optimized graph if it contains all of the given revisions.
+     * Otherwise the graph is loaded from the nearest checkpoint preceding given revisions
+     * or, if that is not possible, the full graph is loaded.
+     */
     @Override
     public ObjectVersionGraph<M> getGraph(Id docId, Iterable<Revision> revisions) {
         ObjectVersionGraph<M> graph = cacheLoader.apply(docId);
         if (!graph.containsAll(revisions)) {
-            return getFullGraph(docId);
+            graph = readOnly(() -> doLoad(docId, revisions));
+            if (options.readQueryFactory != null && !graph.containsAll(revisions)) {
+                // Not yet replicated
+                graph = options.transactions.readOnly(() -> doLoad(docId, revisions));
+            }
         }
         return graph;
     }
 
     @Override
     public ObjectVersionGraph<M> getOptimizedGraph(Id docId) {
-        return options.transactions.readOnly(() -> doLoadOptimized(docId));
+        return readOnly(() -> doLoadOptimized(docId));
     }
 
     @Override
     public GraphResults<Id, M> getGraphs(Collection<Id> docIds) {
-        return options.transactions.readOnly(() -> doLoad(docIds));
+        return readOnly(() -> doLoad(docIds));
+    }
+
+    /**
+     * Reads the merged properties of given branch from the head property table if one is configured.
+     * Otherwise they are merged from the version graph.
+     */
+    @Override
+    public Map<Id, Map<PropertyPath, Object>> getHeadProperties(Collection<Id> docIds, String branch) {
+        if (options.headProperty != null) {
+            return readOnly(() -> doFetchHeadProperties(docIds, branch));
+        }
+        return VersionStore.super.getHeadProperties(docIds, branch);
     }
 
     @Override
     public List<ObjectVersion<M>> fetchUpdates(Id docId, Revision since) {
-        return options.transactions.readOnly(() -> doFetchUpdates(docId, since));
+        try {
+            return readOnly(() -> doFetchUpdates(docId, since));
+        } catch (VersionNotFoundException e) {
+            if (options.readQueryFactory == null) {
+                throw e;
+            }
+            // Not yet replicated
+            return options.transactions.readOnly(() -> doFetchUpdates(docId, since));
+        }
+    }
+
+    /**
+     * Executes callback in a read-only transaction of <code>readTransactions</code> using <code>readQueryFactory</code>
+     * if configured. Otherwise, within {@link #readPrimary(Supplier)} or when a primary transaction is already active,
+     * uses primary <code>transactions</code> and <code>queryFactory</code>.
+     */
+    protected <T> T readOnly(Supplier<T> callback) {
+        if (options.readQueryFactory == null || primaryRead.get() != null) {
+            return options.transactions.readOnly(callback);
+        }
+        if (replicaRead.get() != null) {
+            return options.readTransactions.readOnly(callback);
+        }
+        if (options.transactions.isActive()) {
+            // See own writes
+            return options.transactions.readOnly(callback);
+        }
+        replicaRead.set(Boolean.TRUE);
+        try {
+            return options.readTransactions.readOnly(callback);
+        } finally {
+            replicaRead.remove();
+        }
+    }
+
+    /**
+     * Executes callback so that reads within it use primary <code>transactions</code> and <code>queryFactory</code>
+     * even if <code>readQueryFactory</code> is configured, e.g. when reloading a cached graph after publish that
+     * a replica may not have received yet.
+     */
+    public <T> T readPrimary(Supplier<T> callback) {
+        if (primaryRead.get() != null) {
+            return callback.get();
+        }
+        primaryRead.set(Boolean.TRUE);
+        try {
+            return callback.get();
+        } finally {
+            primaryRead.remove();
+        }
+    }
+
+    /**
+     * @return readQueryFactory within {@link #readOnly(Supplier)} or primary queryFactory otherwise, e.g. when
+     * reading within a write transaction.
+     */
+    protected SQLQueryFactory readQueryFactory() {
+        return replicaRead.get() != null ? options.readQueryFactory : options.queryFactory;
     }
 
     /**
@@ -163,13 +278,44 @@ public abstract class AbstractVersionStoreJdbc<Id, M, V extends JVersion<Id>,
      */
     @Override
     public Multimap<Id, Revision> publish() {
+        long pendingSince = unpublishedSince.getAndSet(0);
+        long start = System.nanoTime();
         Multimap<Id, Revision> result = options.transactions.writeNewRequired(this::doPublish);
+        if (options.headProperty != null || options.valueIndex != null || options.checkpointProperty != null) {
+            // Outside of publish transaction so that graphs are not loaded while holding publish locks
+            result.keySet().forEach(this::tryUpdateHeads);
+        }
+        long duration = System.nanoTime() - start;
+        options.metrics.time(PUBLISH, duration);
+        options.metrics.count(PUBLISH, result.size());
+        if (pendingSince > 0) {
+            options.metrics.time(PUBLISH_LAG, MILLISECONDS.toNanos(System.currentTimeMillis() - pendingSince));
+        }
         if (this.cache != null) {
             result.keySet().forEach(this.cache::refresh);
         }
         return result;
     }
 
+    /**
+     * Rebuilds head properties and value index of given document from its optimized graph, e.g. to backfill
+     * documents published before <code>headPropertyTable</code> or <code>valueIndexTable</code> was configured
+     * or to repair heads whose update after publish failed.
+     */
+    public void rebuildHeads(Id docId) {
+        if (options.headProperty == null && options.valueIndex == null) {
+            throw new IllegalStateException("Neither headPropertyTable nor valueIndexTable is configured");
+        }
+        updateHeads(docId);
+    }
+
+    /**
+     * Called after commit of versions that are published by <code>StoreOptions.publisher</code>.
+     */
+    void committed() {
+        unpublishedSince.compareAndSet(0, System.currentTimeMillis());
+    }
+
     @Override
     public void prune(Id docId, Function<ObjectVersionGraph<M>, Predicate<VersionNode<PropertyPath, Object, M>>> keep) {
         options.transactions.writeRequired(() -> {
@@ -214,7 +360,7 @@ public abstract class AbstractVersionStoreJdbc<Id, M, V extends JVersion<Id>,
 
     protected abstract List<ObjectVersion<M>> doFetchUpdates(Id docId, Revision since);
 
-    protected abstract SQLUpdateClause setOrdinal(SQLUpdateClause versionUpdateBatch, long ordinal);
+    protected abstract SQLUpdateClause setOrdinal(SQLUpdateClause versionUpdate, Expression<Long> ordinal);
 
     protected abstract Map<Revision, Id> getUnpublishedRevisionsForUpdate();
 
@@ -223,6 +369,67 @@ public abstract class AbstractVersionStoreJdbc<Id, M, V extends JVersion<Id>,
         return results.containsKey(docId) ? results.getVersionGraph(docId) : ObjectVersionGraph.init();
     }
 
+    protected ObjectVersionGraph<M> doLoad(Id docId, Iterable<Revision> revisions) {
+        ObjectVersionGraph<M> graph = doLoadFromCheckpoint(docId, revisions);
+        return graph != null ? graph : doLoad(docId);
+    }
+
+    /**
+     * @return graph starting from the nearest checkpoint preceding all given revisions
+     * or null if there is no such checkpoint or the graph cannot be constructed from it.
+     */
+    protected ObjectVersionGraph<M> doLoadFromCheckpoint(Id docId, Iterable<Revision> revisions) {
+        if (options.checkpointProperty == null) {
+            return null;
+        }
+        List<Revision> revisionList = ImmutableList.copyOf(revisions);
+        if (revisionList.isEmpty()) {
+            return null;
+        }
+        Long minOrdinal = readQueryFactory()
+                .select(options.version.ordinal.min())
+                .from(options.version)
+                .where(predicate(EQ, options.version.docId, constant(docId)),
+                        options.version.revision.in(revisionList))
+                .fetchFirst();
+        if (minOrdinal == null) {
+            return null;
+        }
+        Tuple checkpoint = findCheckpoint(docId, minOrdinal);
+        if (checkpoint == null) {
+            return null;
+        }
+        try {
+            ObjectVersionGraph<M> graph = doLoadFromCheckpoint(docId,
+                    checkpoint.get(options.version.revision),
+                    checkpoint.get(options.version.ordinal));
+            return graph.containsAll(revisionList) ? graph : null;
+        } catch (VersionNotFoundException e) {
+            // Some version after the checkpoint refers to an older version
+            return null;
+        }
+    }
+
+    protected ObjectVersionGraph<M> doLoadFromCheckpoint(Id docId, Revision checkpoint, long checkpointOrdinal) {
+        BooleanExpression predicate = predicate(EQ, options.version.docId, constant(docId))
+                .and(options.version.ordinal.goe(checkpointOrdinal));
+
+        List<Group> versionsAndParents = fetchVersionsAndParents(false, predicate, options.version.ordinal.asc());
+        Map<Revision, List<Tuple>> properties = fetchProperties(false, predicate.and(options.version.revision.ne(checkpoint)));
+
+        List<ObjectVersion<M>> versions = new ArrayList<>(versionsAndParents.size());
+        for (Group versionAndParents : versionsAndParents) {
+            Revision revision = versionAndParents.getOne(options.version.revision);
+            if (revision.equals(checkpoint)) {
+                // Checkpoint is the root of the graph with full state as it's changeset
+                versions.add(buildVersion(revision, versionAndParents, ImmutableSet.of(), fetchCheckpointProperties(checkpoint)));
+            } else {
+                versions.add(buildVersion(revision, versionAndParents, toChangeSet(properties.get(revision))));
+            }
+        }
+        return ObjectVersionGraph.init(versions);
+    }
+
     protected ObjectVersionGraph<M> doLoadOptimized(Id docId) {
         return toVersionGraph(docId, doFetch(docId, true));
     }
@@ -267,34 +474,196 @@ public abstract class AbstractVersionStoreJdbc<Id, M, V extends JVersion<Id>,
         }
     }
 
+    /**
+     * Assigns a block of ordinals following current max ordinal to unpublished versions in their insertion order.
+     * Ordinals are set with a single update per chunk of revisions:
+     * <pre>
+     * UPDATE VERSION SET ORDINAL = CASE WHEN REVISION = ? THEN ? ... ELSE ORDINAL END WHERE REVISION IN (...)
+     * </pre>
+     */
     protected Multimap<Id, Revision> doPublish() {
         Map<Revision, Id> uncommittedRevisions = getUnpublishedRevisionsForUpdate();
-        long lastOrdinal = getMaxOrdinal();
 
         log.debug("publish({})", uncommittedRevisions.size());
         if (uncommittedRevisions.isEmpty()) {
             return ImmutableMultimap.of();
         }
 
+        long lastOrdinal = getMaxOrdinal();
         Multimap<Id, Revision> publishedDocs = ArrayListMultimap.create();
 
-        SQLUpdateClause versionUpdateBatch = options.queryFactory.update(options.version);
+        for (List<Map.Entry<Revision, Id>> chunk : Iterables.partition(uncommittedRevisions.entrySet(), PUBLISH_CHUNK_SIZE)) {
+            List<Revision> revisions = new ArrayList<>(chunk.size());
+            CaseBuilder.Cases<Long, Expression<Long>> ordinals = null;
+
+            for (Map.Entry<Revision, Id> entry : chunk) {
+                Revision revision = entry.getKey();
+                Id docId = entry.getValue();
+                publishedDocs.put(docId, revision);
+                revisions.add(revision);
+
+                BooleanExpression isRevision = options.version.revision.eq(revision);
+                Expression<Long> ordinal = constant(++lastOrdinal);
+                ordinals = ordinals == null
+                        ? new CaseBuilder().when(isRevision).then(ordinal)
+                        : ordinals.when(isRevision).then(ordinal);
+            }
 
-        for (Map.Entry<Revision, Id> entry : uncommittedRevisions.entrySet()) {
-            Revision revision = entry.getKey();
-            Id docId = entry.getValue();
-            publishedDocs.put(docId, revision);
-            setOrdinal(versionUpdateBatch, ++lastOrdinal)
-                    .where(options.version.revision.eq(revision))
-                    .addBatch();
+            setOrdinal(options.queryFactory.update(options.version), ordinals.otherwise(options.version.ordinal))
+                    .where(options.version.revision.in(revisions))
+                    .execute();
         }
 
-        versionUpdateBatch.execute();
-
         afterPublish(publishedDocs);
         return publishedDocs;
     }
 
+    /**
+     * Updates head properties, value index and checkpoint of given published document in a new transaction. The document
+     * is locked first so that concurrent updates run one at a time and the last one sees all published versions.
+     */
+    protected void updateHeads(Id docId) {
+        options.transactions.writeNewRequired(() -> {
+            lockForMaintenance(docId);
+            Batch batch = updateBatch(ImmutableSet.of());
+            if (options.headProperty != null || options.valueIndex != null) {
+                Map<Id, ObjectVersionGraph<M>> graphs = ImmutableMap.of(docId, doLoadOptimized(docId));
+                if (options.headProperty != null) {
+                    batch.updateHeads(graphs);
+                }
+                if (options.valueIndex != null) {
+                    batch.updateValueIndex(graphs);
+                }
+            }
+            if (options.checkpointProperty != null) {
+                updateCheckpoint(docId, batch);
+            }
+            batch.execute();
+            return null;
+        });
+    }
+
+    /**
+     * Failure to update heads of one document is logged so that it doesn't prevent updating the rest. Versions are
+     * already published at this point and failed heads can be repaired with {@link #rebuildHeads(Object)}.
+     */
+    protected void tryUpdateHeads(Id docId) {
+        try {
+            updateHeads(docId);
+        } catch (RuntimeException e) {
+            log.error("updateHeads({}) failed", docId, e);
+        }
+    }
+
+    /**
+     * Adds a checkpoint of the latest version of the document to the batch if it has at least
+     * <code>checkpointInterval</code> versions since the previous checkpoint.
+     */
+    protected void updateCheckpoint(Id docId, Batch batch) {
+        Tuple previous = findCheckpoint(docId, null);
+        long previousOrdinal = previous != null ? previous.get(options.version.ordinal) : 0;
+        long versionsSince = options.queryFactory
+                .from(options.version)
+                .where(predicate(EQ, options.version.docId, constant(docId)),
+                        options.version.ordinal.gt(previousOrdinal))
+                .fetchCount();
+
+        if (versionsSince >= options.checkpointInterval) {
+            ObjectVersionGraph<M> graph = null;
+            if (previous != null) {
+                try {
+                    graph = doLoadFromCheckpoint(docId, previous.get(options.version.revision), previousOrdinal);
+                } catch (VersionNotFoundException e) {
+                    // Fall back to full load
+                }
+            }
+            if (graph == null) {
+                graph = doLoad(docId);
+            }
+            batch.insertCheckpoints(singleton(graph.getTip()));
+        }
+    }
+
+    /**
+     * @return revision and ordinal of the latest checkpoint of the document, optionally at or before given ordinal.
+     */
+    protected Tuple findCheckpoint(Id docId, @Nullable Long maxOrdinal) {
+        SQLQuery<Tuple> qry = readQueryFactory()
+                .select(options.version.revision, options.version.ordinal)
+                .from(options.version)
+                .innerJoin(options.checkpointProperty).on(
+                        options.checkpointProperty.revision.eq(options.version.revision),
+                        options.checkpointProperty.status.eq(ACTIVE))
+                .where(predicate(EQ, options.version.docId, constant(docId)));
+        if (maxOrdinal != null) {
+            qry.where(options.version.ordinal.loe(maxOrdinal));
+        }
+        return qry.orderBy(options.version.ordinal.desc()).fetchFirst();
+    }
+
+    protected Map<PropertyPath, Object> fetchCheckpointProperties(Revision revision) {
+        JVersionProperty checkpoint = options.checkpointProperty;
+        List<Tuple> tuples = readQueryFactory()
+                .select(checkpoint.path, checkpoint.type, checkpoint.str, checkpoint.nbr)
+                .from(checkpoint)
+                .where(checkpoint.revision.eq(revision), checkpoint.status.eq(ACTIVE))
+                .fetch();
+        return toProperties(tuples, checkpoint.path, checkpoint.type, checkpoint.str, checkpoint.nbr);
+    }
+
+    /**
+     * @return ids of documents having given value at given indexed path in the merged properties of default branch.
+     */
+    public Set<Id> findDocIds(PropertyPath path, Object value) {
+        return findDocIds(Version.DEFAULT_BRANCH, path, value);
+    }
+
+    /**
+     * @return ids of documents having given value at given indexed path in the merged properties of given branch.
+     */
+    public Set<Id> findDocIds(String branch, PropertyPath path, Object value) {
+        if (options.valueIndex == null) {
+            throw new IllegalStateException("valueIndexTable is not configured");
+        }
+        Check.notNull(branch, "branch");
+        Check.that(options.indexedPaths.contains(path), "%s is not indexed", path);
+        // Removed (null) values are not indexed
+        Check.notNull(value, "value");
+        return readOnly(() -> doFindDocIds(branch, path, value));
+    }
+
+    protected Set<Id> doFindDocIds(String branch, PropertyPath path, Object value) {
+        JValueIndex<Id> index = options.valueIndex;
+        StoredValue stored = StoredValue.of(value, options);
+        SQLQuery<Id> qry = readQueryFactory()
+                .select(index.docId)
+                .from(index)
+                .where(index.branch.eq(branch),
+                        index.path.eq(path.toString()),
+                        index.type.eq(stored.typeString()));
+        if (stored.str != null) {
+            // Look up by indexed hash and compare str only to rule out collisions
+            qry.where(index.strHash.eq(stored.strHash()), index.str.eq(stored.str));
+        } else {
+            qry.where(index.strHash.isNull());
+        }
+        qry.where(stored.nbr != null ? index.nbr.eq(stored.nbr) : index.nbr.isNull());
+        return ImmutableSet.copyOf(qry.fetch());
+    }
+
+    protected Map<Id, Map<PropertyPath, Object>> doFetchHeadProperties(Collection<Id> docIds, String branch) {
+        JHeadProperty<Id> head = options.headProperty;
+        Map<Id, List<Tuple>> rows = readQueryFactory()
+                .from(head)
+                .where(predicate(IN, head.docId, constant(docIds)), head.branch.eq(branch))
+                .transform(groupBy(head.docId).as(GroupBy.list(tuple(head.path, head.type, head.str, head.nbr))));
+
+        ImmutableMap.Builder<Id, Map<PropertyPath, Object>> results = ImmutableMap.builder();
+        rows.forEach((docId, tuples) ->
+                results.put(docId, unmodifiableMap(toProperties(tuples, head.path, head.type, head.str, head.nbr))));
+        return results.build();
+    }
+
     protected void doPrune(Id docId, Function<ObjectVersionGraph<M>, Predicate<VersionNode<PropertyPath, Object, M>>> keep) {
         lockForMaintenance(docId);
         doReset(docId);
@@ -305,7 +674,11 @@ public abstract class AbstractVersionStoreJdbc<Id, M, V extends JVersion<Id>,
     }
 
     protected void optimizeAsync(Id docId, ObjectVersionGraph<M> baseGraph, boolean reset) {
-        if (options.optimizer != null && runningOptimizations.add(docId)) {
+        if (options.maintenanceScheduler != null) {
+            // Queued task may run much later so it reloads the graph
+            options.maintenanceScheduler.schedule(docId, () -> estimateSavings(baseGraph, reset),
+                    () -> optimize(docId, options.optimizeKeep));
+        } else if (options.optimizer != null && runningOptimizations.add(docId)) {
             options.optimizer.execute(() -> {
                 try {
                     options.transactions.writeNewRequired(() -> {
@@ -319,6 +692,23 @@ public abstract class AbstractVersionStoreJdbc<Id, M, V extends JVersion<Id>,
         }
     }
 
+    /**
+     * @return estimated number of versions squashed by optimize: versions not kept or all versions on reset.
+     */
+    protected long estimateSavings(ObjectVersionGraph<M> graph, boolean reset) {
+        if (reset) {
+            return graph.size();
+        }
+        Predicate<VersionNode<PropertyPath, Object, M>> keep = options.optimizeKeep.apply(graph);
+        long squashable = 0;
+        for (VersionNode<PropertyPath, Object, M> node : graph.getVersionNodes()) {
+            if (!keep.test(node)) {
+                squashable++;
+            }
+        }
+        return squashable;
+    }
+
     protected void doOptimize(Id docId,
                               ObjectVersionGraph<M> graph,
                               Function<ObjectVersionGraph<M>, Predicate<VersionNode<PropertyPath, Object, M>>> keep,
@@ -328,6 +718,7 @@ public abstract class AbstractVersionStoreJdbc<Id, M, V extends JVersion<Id>,
         } else {
             log.debug("optimize({})", docId);
         }
+        long start = System.nanoTime();
         lockForMaintenance(docId);
         if (reset) {
             long revived = doReset(docId);
@@ -338,6 +729,7 @@ public abstract class AbstractVersionStoreJdbc<Id, M, V extends JVersion<Id>,
         updateBatch(ImmutableSet.of())
                 .optimize(graph, keep.apply(graph))
                 .execute();
+        options.metrics.time(OPTIMIZE, System.nanoTime() - start);
     }
 
     protected abstract void lockForMaintenance(Id docId);
@@ -418,22 +810,41 @@ public abstract class AbstractVersionStoreJdbc<Id, M, V extends JVersion<Id>,
             return noResults;
         }
 
-        Map<Revision, List<Tuple>> properties = fetchProperties(optimized, predicate);
+        return fetch(versionsAndParents, fetchProperties(optimized, predicate));
+    }
+
+    protected FetchResults<Id, M> fetch(List<Group> versionsAndParents, Map<Revision, List<Tuple>> properties) {
+        long start = System.nanoTime();
         ListMultimap<Id, ObjectVersion<M>> results = ArrayListMultimap.create();
         Revision latestRevision = null;
+        long rows = versionsAndParents.size();
 
         for (Group versionAndParents : versionsAndParents) {
             Id id = versionAndParents.getOne(options.version.docId);
             latestRevision = versionAndParents.getOne(options.version.revision);
-            Map<PropertyPath, Object> changeset = toChangeSet(properties.get(latestRevision));
+            List<Tuple> versionProperties = properties.get(latestRevision);
+            int propertyCount = versionProperties != null ? versionProperties.size() : 0;
+            rows += propertyCount;
+            options.metrics.count(FETCH_PROPERTIES, propertyCount);
+            Map<PropertyPath, Object> changeset = toChangeSet(versionProperties);
 
             results.put(id, buildVersion(latestRevision, versionAndParents, changeset));
         }
+        options.metrics.time(FETCH_BUILD, System.nanoTime() - start);
+        options.metrics.count(FETCH_BUILD, versionsAndParents.size());
+        options.metrics.count(FETCH_ROWS, rows);
         return new FetchResults<>(results, latestRevision);
     }
 
     protected Map<Revision, List<Tuple>> fetchProperties(boolean optimized, BooleanExpression predicate) {
-        SQLQuery<?> qry = options.queryFactory
+        Map<Revision, List<Tuple>> results = timed(FETCH_SQL, () ->
+                propertiesQuery(readQueryFactory(), optimized, predicate).transform(properties));
+        prefetchBlobs(Iterables.concat(results.values()), options.property.type, options.property.str);
+        return results;
+    }
+
+    protected SQLQuery<?> propertiesQuery(SQLQueryFactory queryFactory, boolean optimized, BooleanExpression predicate) {
+        SQLQuery<?> qry = queryFactory
                 .from(options.property)
                 .where(predicate);
 
@@ -446,11 +857,77 @@ public abstract class AbstractVersionStoreJdbc<Id, M, V extends JVersion<Id>,
             qry.innerJoin(options.version).on(options.version.revision.eq(options.property.revision));
             qry.where(options.property.status.loe(ACTIVE));
         }
-        return qry.transform(properties);
+        return qry;
+    }
+
+    /**
+     * Fetches blobs referenced by given property rows that are not already cached with a single query
+     * (per 500 blobs).
+     */
+    protected void prefetchBlobs(Iterable<Tuple> tuples, Path<String> typeColumn, Path<String> strColumn) {
+        if (blobCache == null) {
+            return;
+        }
+        Set<String> missing = new HashSet<>();
+        for (Tuple tuple : tuples) {
+            if ("H".equals(tuple.get(typeColumn))) {
+                String hash = tuple.get(strColumn);
+                if (blobCache.getIfPresent(hash) == null) {
+                    missing.add(hash);
+                }
+            }
+        }
+        for (List<String> hashes : Iterables.partition(missing, 500)) {
+            blobCache.putAll(fetchBlobs(hashes));
+        }
+    }
+
+    protected Map<String, String> fetchBlobs(Collection<String> hashes) {
+        JBlob blob = options.blob;
+        Map<String, String> blobs = Maps.newHashMapWithExpectedSize(hashes.size());
+        readQueryFactory()
+                .select(blob.hash, blob.data)
+                .from(blob)
+                .where(blob.hash.in(hashes))
+                .fetch()
+                .forEach(tuple -> blobs.putIfAbsent(tuple.get(blob.hash), JBlob.decompress(tuple.get(blob.data))));
+        return blobs;
+    }
+
+    protected String getBlob(String hash) {
+        if (blobCache == null) {
+            throw new IllegalStateException("blobTable is not configured");
+        }
+        String value = blobCache.getIfPresent(hash);
+        if (value == null) {
+            value = fetchBlobs(ImmutableList.of(hash)).get(hash);
+            if (value == null) {
+                throw new IllegalStateException("Blob not found: " + hash);
+            }
+            blobCache.put(hash, value);
+        }
+        return value;
     }
 
     protected List<Group> fetchVersionsAndParents(boolean optimized, BooleanExpression predicate, OrderSpecifier<?> orderBy) {
-        SQLQuery<?> qry = options.queryFactory
+        return timed(FETCH_SQL, () ->
+                versionsAndParentsQuery(readQueryFactory(), optimized, predicate, orderBy).transform(versionAndParents));
+    }
+
+    /**
+     * Records execution time of given operation to <code>options.metrics</code>.
+     */
+    protected <T> T timed(String metric, Supplier<T> operation) {
+        long start = System.nanoTime();
+        try {
+            return operation.get();
+        } finally {
+            options.metrics.time(metric, System.nanoTime() - start);
+        }
+    }
+
+    protected SQLQuery<?> versionsAndParentsQuery(SQLQueryFactory queryFactory, boolean optimized, BooleanExpression predicate, OrderSpecifier<?> orderBy) {
+        SQLQuery<?> qry = queryFactory
                 .from(options.version)
                 .where(predicate)
                 .orderBy(orderBy);
@@ -462,8 +939,7 @@ public abstract class AbstractVersionStoreJdbc<Id, M, V extends JVersion<Id>,
             qry.leftJoin(options.parent).on(options.parent.revision.eq(options.version.revision), options.parent.status.loe(ACTIVE));
             qry.where(options.version.status.loe(ACTIVE));
         }
-
-        return qry.transform(versionAndParents);
+        return qry;
     }
 
     protected List<Group> verifyVersionsAndParentsSince(List<Group> versionsAndParents, Revision since) {
@@ -477,6 +953,10 @@ public abstract class AbstractVersionStoreJdbc<Id, M, V extends JVersion<Id>,
     }
 
     protected ObjectVersion<M> buildVersion(Revision rev, Group versionAndParents, Map<PropertyPath, Object> changeset) {
+        return buildVersion(rev, versionAndParents, versionAndParents.getSet(options.parent.parentRevision), changeset);
+    }
+
+    protected ObjectVersion<M> buildVersion(Revision rev, Group versionAndParents, Set<Revision> parents, Map<PropertyPath, Object> changeset) {
         if (!options.versionTableProperties.isEmpty()) {
             if (changeset == null) {
                 changeset = new HashMap<>();
@@ -491,7 +971,7 @@ public abstract class AbstractVersionStoreJdbc<Id, M, V extends JVersion<Id>,
         return new ObjectVersion.Builder<M>(rev)
                 .branch(versionAndParents.getOne(options.version.branch))
                 .type(versionAndParents.getOne(options.version.type))
-                .parents(versionAndParents.getSet(options.parent.parentRevision))
+                .parents(parents)
                 .changeset(changeset)
                 .meta(getMeta(versionAndParents))
                 .build();
@@ -510,16 +990,36 @@ public abstract class AbstractVersionStoreJdbc<Id, M, V extends JVersion<Id>,
         return changeset;
     }
 
-    @SuppressWarnings("unused")
+    protected Map<PropertyPath, Object> toProperties(List<Tuple> tuples,
+                                                     Path<String> pathColumn,
+                                                     Path<String> typeColumn,
+                                                     Path<String> strColumn,
+                                                     Path<Long> nbrColumn) {
+        prefetchBlobs(tuples, typeColumn, strColumn);
+        Map<PropertyPath, Object> properties = Maps.newHashMapWithExpectedSize(tuples.size());
+        for (Tuple tuple : tuples) {
+            PropertyPath path = PropertyPath.parse(tuple.get(pathColumn));
+            properties.put(path, getPropertyValue(path, tuple.get(typeColumn), tuple.get(strColumn), tuple.get(nbrColumn)));
+        }
+        return properties;
+    }
+
     protected Object getPropertyValue(PropertyPath path, Tuple tuple) {
-        String type = firstNonNull(tuple.get(options.property.type), "N");
-        String str = tuple.get(options.property.str);
-        Long nbr = tuple.get(options.property.nbr);
+        return getPropertyValue(path,
+                tuple.get(options.property.type),
+                tuple.get(options.property.str),
+                tuple.get(options.property.nbr));
+    }
+
+    @SuppressWarnings("unused")
+    protected Object getPropertyValue(PropertyPath path, String type, String str, Long nbr) {
+        type = firstNonNull(type, "N");
 
         switch (type.charAt(0)) {
             case 'O': return Persistent.object(str);
             case 'A': return Persistent.array();
             case 's': return str;
+            case 'H': return getBlob(str);
             case 'b': return nbr != null ? nbr != 0 : null;
             case 'l': return nbr;
             case 'd': return nbr != null ? Double.longBitsToDouble(nbr) : null;
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2016 Samppa Saarela
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javersion.store.jdbc;
+
+import static java.util.concurrent.CompletableFuture.runAsync;
+import static java.util.concurrent.CompletableFuture.supplyAsync;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.javersion.core.Revision;
+import org.javersion.core.VersionNode;
+import org.javersion.object.ObjectVersion;
+import org.javersion.object.ObjectVersionGraph;
+import org.javersion.path.PropertyPath;
+import org.javersion.util.Check;
+
+import com.google.common.collect.Multimap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * CompletableFuture based facade for a VersionStore. Calls are executed with given executor,
+ * by default with virtual threads if supported by the JVM and otherwise with a bounded thread pool.
+ * <p>
+ * Concurrent <code>getGraph(docId)</code> calls for the same document share the same load, so a
+ * caller may receive a graph whose load was started just before its call.
+ */
+public class AsyncVersionStore<Id, M> {
+
+    private static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    /**
+     * @return virtual thread per task executor if supported by the JVM or a pool of
+     * 2 × available processors daemon threads with a bounded task queue. When the queue is full,
+     * tasks are run in the calling thread.
+     */
+    public static ExecutorService defaultExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            int threads = 2 * Runtime.getRuntime().availableProcessors();
+            return new ThreadPoolExecutor(threads, threads,
+                    60L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(DEFAULT_QUEUE_CAPACITY),
+                    new ThreadFactoryBuilder().setNameFormat("javersion-async-%d").setDaemon(true).build(),
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+        }
+    }
+
+    private final AbstractVersionStoreJdbc<Id, M, ?, ?, ?> store;
+
+    private final Executor executor;
+
+    private final ConcurrentMap<Id, CompletableFuture<ObjectVersionGraph<M>>> graphLoads = new ConcurrentHashMap<>();
+
+    public AsyncVersionStore(AbstractVersionStoreJdbc<Id, M, ?, ?, ?> store) {
+        this(store, defaultExecutor());
+    }
+
+    public AsyncVersionStore(AbstractVersionStoreJdbc<Id, M, ?, ?, ?> store, Executor executor) {
+        this.store = Check.notNull(store, "store");
+        this.executor = Check.notNull(executor, "executor");
+    }
+
+    public CompletableFuture<ObjectVersionGraph<M>> getGraph(Id docId) {
+        CompletableFuture<ObjectVersionGraph<M>> future = new CompletableFuture<>();
+        CompletableFuture<ObjectVersionGraph<M>> inFlight = graphLoads.putIfAbsent(docId, future);
+        if (inFlight != null) {
+            // Callers must not be able to complete or cancel the shared load
+            return inFlight.thenApply(Function.identity());
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    ObjectVersionGraph<M> graph = store.getGraph(docId);
+                    graphLoads.remove(docId, future);
+                    future.complete(graph);
+                } catch (Throwable t) {
+                    graphLoads.remove(docId, future);
+                    future.completeExceptionally(t);
+                }
+            });
+        } catch (RuntimeException e) {
+            graphLoads.remove(docId, future);
+            future.completeExceptionally(e);
+        }
+        return future.thenApply(Function.identity());
+    }
+
+    public CompletableFuture<ObjectVersionGraph<M>> getGraph(Id docId, Iterable<Revision> revisions) {
+        return supplyAsync(() -> store.getGraph(docId, revisions), executor);
+    }
+
+    public CompletableFuture<GraphResults<Id, M>> getGraphs(Collection<Id> docIds) {
+        return supplyAsync(() -> store.getGraphs(docIds), executor);
+    }
+
+    public CompletableFuture<List<ObjectVersion<M>>> fetchUpdates(Id docId, Revision since) {
+        return supplyAsync(() -> store.fetchUpdates(docId, since), executor);
+    }
+
+    /**
+     * Appends versions in a new transaction.
+     */
+    public CompletableFuture<Void> append(Id docId, Iterable<VersionNode<PropertyPath, Object, M>> versions) {
+        return runAsync(() -> store.options.transactions.writeRequired(() -> {
+            UpdateBatch<Id, M> batch = store.updateBatch(docId);
+            versions.forEach(version -> batch.addVersion(docId, version));
+            batch.execute();
+            return null;
+        }), executor);
+    }
+
+    public CompletableFuture<Multimap<Id, Revision>> publish() {
+        return supplyAsync(store::publish, executor);
+    }
+
+    /**
+     * @return number of getGraph(docId) loads in progress.
+     */
+    public int getGraphLoadsInFlight() {
+        return graphLoads.size();
+    }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2016 Samppa Saarela
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javersion.store.jdbc;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.javersion.util.Check;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.querydsl.core.Tuple;
+
+/**
+ * Keeps a store's GraphCache coherent with versions published by other instances (nodes) by
+ * tailing version ordinals. Each poll fetches versions published after the last seen ordinal
+ * in batches and refreshes (or evicts) the affected documents in the cache.
+ */
+@ThreadSafe
+public class CacheSynchronizer<Id, M> {
+
+    private final Logger log = LoggerFactory.getLogger(CacheSynchronizer.class);
+
+    private final StoreOptions<Id, M, ?> options;
+
+    private final GraphCache<Id, M> cache;
+
+    private final int batchSize;
+
+    private final boolean evict;
+
+    private long lastOrdinal;
+
+    private ScheduledFuture<?> scheduledPoll;
+
+    public CacheSynchronizer(AbstractVersionStoreJdbc<Id, M, ?, ?, ?> store) {
+        this(store, 1000, false);
+    }
+
+    /**
+     * @param batchSize max number of versions fetched with one query.
+     * @param evict evict changed documents instead of refreshing them.
+     */
+    public CacheSynchronizer(AbstractVersionStoreJdbc<Id, M, ?, ?, ?> store, int batchSize, boolean evict) {
+        Check.that(batchSize > 0, "batchSize should be > 0");
+        this.options = store.options;
+        this.cache = Check.notNull(store.cache, "store.cache");
+        this.batchSize = batchSize;
+        this.evict = evict;
+        this.lastOrdinal = options.transactions.readOnly(store::getMaxOrdinal);
+    }
+
+    /**
+     * Start polling with fixed delay.
+     */
+    public synchronized CacheSynchronizer<Id, M> start(ScheduledExecutorService scheduler, long pollInterval, TimeUnit unit) {
+        if (scheduledPoll != null) {
+            throw new IllegalStateException("Already started");
+        }
+        scheduledPoll = scheduler.scheduleWithFixedDelay(this::safePoll, pollInterval, pollInterval, unit);
+        return this;
+    }
+
+    public CacheSynchronizer<Id, M> start(ScheduledExecutorService scheduler, long pollIntervalMillis) {
+        return start(scheduler, pollIntervalMillis, MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (scheduledPoll != null) {
+            scheduledPoll.cancel(false);
+            scheduledPoll = null;
+        }
+    }
+
+    /**
+     * @return documents that have changed since last poll.
+     */
+    public synchronized Set<Id> poll() {
+        Set<Id> changedDocIds = new LinkedHashSet<>();
+        List<Tuple> changes;
+        do {
+            changes = options.transactions.readOnly(() -> fetchChanges(lastOrdinal));
+            for (Tuple change : changes) {
+                changedDocIds.add(change.get(options.version.docId));
+                lastOrdinal = change.get(options.version.ordinal);
+            }
+        } while (changes.size() == batchSize);
+
+        log.debug("poll: {} documents changed", changedDocIds.size());
+        if (evict) {
+            cache.evict(changedDocIds.iterator());
+        } else {
+            changedDocIds.forEach(cache::refresh);
+        }
+        return changedDocIds;
+    }
+
+    public synchronized long getLastOrdinal() {
+        return lastOrdinal;
+    }
+
+    private List<Tuple> fetchChanges(long sinceOrdinal) {
+        return options.queryFactory
+                .select(options.version.docId, options.version.ordinal)
+                .from(options.version)
+                .where(options.version.ordinal.gt(sinceOrdinal))
+                .orderBy(options.version.ordinal.asc())
+                .limit(batchSize)
+                .fetch();
+    }
+
+    private void safePoll() {
+        try {
+            poll();
+        } catch (RuntimeException e) {
+            log.error("poll failed", e);
+        }
+    }
+}
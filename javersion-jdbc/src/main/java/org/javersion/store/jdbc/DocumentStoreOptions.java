@@ -23,9 +23,16 @@ public class DocumentStoreOptions<Id, M, V extends JDocumentVersion<Id>> extends
 
     public final Expression<Long> nextOrdinal;
 
+    /**
+     * Serialize the hot load queries to SQL once and execute them as plain prepared statements,
+     * bypassing QueryDSL query construction and result transformation per call.
+     */
+    public final boolean precompiledQueries;
+
     protected DocumentStoreOptions(Builder<Id, M, V> builder) {
         super(builder);
         this.nextOrdinal = Check.notNull(builder.nextOrdinal, "nextOrdinal");
+        this.precompiledQueries = builder.precompiledQueries;
     }
 
     @Override
@@ -37,11 +44,14 @@ public class DocumentStoreOptions<Id, M, V extends JDocumentVersion<Id>> extends
 
         protected Expression<Long> nextOrdinal;
 
+        protected boolean precompiledQueries = false;
+
         public Builder() {}
 
         public Builder(DocumentStoreOptions<Id, M, V> options) {
             super(options);
             this.nextOrdinal = options.nextOrdinal;
+            this.precompiledQueries = options.precompiledQueries;
         }
 
         public Builder<Id, M, V> nextOrdinal(Expression<Long> nextOrdinal) {
@@ -49,6 +59,11 @@ public class DocumentStoreOptions<Id, M, V extends JDocumentVersion<Id>> extends
             return this;
         }
 
+        public Builder<Id, M, V> precompiledQueries(boolean precompiledQueries) {
+            this.precompiledQueries = precompiledQueries;
+            return this;
+        }
+
         @Override
         public DocumentStoreOptions<Id, M, V> build() {
             return new DocumentStoreOptions<>(this);
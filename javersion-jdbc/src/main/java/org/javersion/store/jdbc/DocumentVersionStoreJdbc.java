@@ -21,6 +21,7 @@ import static com.querydsl.core.types.Ops.GT;
 import static com.querydsl.core.types.Ops.IS_NULL;
 import static com.querydsl.core.types.dsl.Expressions.constant;
 import static com.querydsl.core.types.dsl.Expressions.predicate;
+import static org.javersion.store.jdbc.StoreMetrics.FETCH_SQL;
 
 import java.util.Collection;
 import java.util.List;
@@ -34,11 +35,14 @@ import org.javersion.util.Check;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Multimap;
+import com.querydsl.core.Tuple;
 import com.querydsl.core.group.Group;
 import com.querydsl.core.types.Expression;
 import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.sql.SQLQuery;
+import com.querydsl.sql.SQLQueryFactory;
 import com.querydsl.sql.dml.SQLUpdateClause;
 
 public class DocumentVersionStoreJdbc<Id, M, V extends JDocumentVersion<Id>>
@@ -46,6 +50,8 @@ public class DocumentVersionStoreJdbc<Id, M, V extends JDocumentVersion<Id>>
 
     protected final Expression<?>[] versionAndParentsSince;
 
+    final PrecompiledDocumentQueries<Id, M, V> precompiledQueries;
+
     /**
      * No-args constructor for proxies
      */
@@ -53,11 +59,13 @@ public class DocumentVersionStoreJdbc<Id, M, V extends JDocumentVersion<Id>>
     public DocumentVersionStoreJdbc() {
         super();
         versionAndParentsSince = null;
+        precompiledQueries = null;
     }
 
     public DocumentVersionStoreJdbc(DocumentStoreOptions<Id, M, V> options) {
         super(options);
         versionAndParentsSince = concat(versionAndParentColumns, options.sinceVersion.ordinal);
+        precompiledQueries = options.precompiledQueries ? new PrecompiledDocumentQueries<>(this) : null;
     }
 
     public void append(Id docId, VersionNode<PropertyPath, Object, M> version) {
@@ -87,6 +95,16 @@ public class DocumentVersionStoreJdbc<Id, M, V extends JDocumentVersion<Id>>
     protected FetchResults<Id, M> doFetch(Id docId, boolean optimized) {
         Check.notNull(docId, "docId");
 
+        if (precompiledQueries != null) {
+            List<Group> versionsAndParents = timed(FETCH_SQL, () ->
+                    precompiledQueries.versionsAndParents(readQueryFactory(), docId, optimized));
+            if (versionsAndParents.isEmpty()) {
+                return noResults;
+            }
+            return fetch(versionsAndParents, prefetchBlobs(timed(FETCH_SQL, () ->
+                    precompiledQueries.properties(readQueryFactory(), docId, optimized))));
+        }
+
         BooleanExpression predicate = versionsOf(docId);
 
         List<Group> versionsAndParents = fetchVersionsAndParents(optimized, predicate,
@@ -104,6 +122,12 @@ public class DocumentVersionStoreJdbc<Id, M, V extends JDocumentVersion<Id>>
 
         Long sinceOrdinal = versionsAndParents.get(0).getOne(options.sinceVersion.ordinal);
 
+        if (precompiledQueries != null) {
+            FetchResults<Id, M> results = fetch(versionsAndParents, prefetchBlobs(timed(FETCH_SQL, () ->
+                    precompiledQueries.propertiesSince(readQueryFactory(), docId, sinceOrdinal))));
+            return results.containsKey(docId) ? results.getVersions(docId) : ImmutableList.of();
+        }
+
         BooleanExpression predicate = versionsOf(docId)
                 .and(predicate(GT, options.version.ordinal, constant(sinceOrdinal)));
 
@@ -129,12 +153,27 @@ public class DocumentVersionStoreJdbc<Id, M, V extends JDocumentVersion<Id>>
     }
 
     protected BooleanExpression versionsOf(Id docId) {
-        return predicate(EQ, options.version.docId, constant(docId))
+        return versionsOf(constant(docId));
+    }
+
+    protected BooleanExpression versionsOf(Expression<Id> docId) {
+        return predicate(EQ, options.version.docId, docId)
                 .and(options.version.ordinal.isNotNull());
     }
 
     protected List<Group> versionsAndParentsSince(Id docId, Revision since) {
-        SQLQuery<?> qry = options.queryFactory.from(options.sinceVersion);
+        List<Group> versionsAndParents = timed(FETCH_SQL, () -> {
+            if (precompiledQueries != null) {
+                return precompiledQueries.versionsAndParentsSince(readQueryFactory(), docId, since);
+            }
+            return versionsAndParentsSinceQuery(readQueryFactory(), constant(docId), constant(since))
+                    .transform(groupBy(options.version.revision).list(versionAndParentsSince));
+        });
+        return verifyVersionsAndParentsSince(versionsAndParents, since);
+    }
+
+    protected SQLQuery<?> versionsAndParentsSinceQuery(SQLQueryFactory queryFactory, Expression<Id> docId, Expression<Revision> since) {
+        SQLQuery<?> qry = queryFactory.from(options.sinceVersion);
 
         // Left join version version on version.ordinal > since.ordinal and version.doc_id = since.doc_id
         qry.leftJoin(options.version).on(
@@ -144,18 +183,21 @@ public class DocumentVersionStoreJdbc<Id, M, V extends JDocumentVersion<Id>>
         // Left join parents
         qry.leftJoin(options.parent).on(options.parent.revision.eq(options.version.revision));
 
-        qry.where(options.sinceVersion.revision.eq(since),
+        qry.where(predicate(EQ, options.sinceVersion.revision, since),
                 // Return "since" row even if there is no newer versions
                 versionsOf(docId).or(predicate(IS_NULL, options.version.docId)));
 
-        qry.orderBy(options.version.ordinal.asc());
+        return qry.orderBy(options.version.ordinal.asc());
+    }
 
-        return verifyVersionsAndParentsSince(qry.transform(groupBy(options.version.revision).list(versionAndParentsSince)), since);
+    private Map<Revision, List<Tuple>> prefetchBlobs(Map<Revision, List<Tuple>> properties) {
+        prefetchBlobs(Iterables.concat(properties.values()), options.property.type, options.property.str);
+        return properties;
     }
 
     @Override
-    protected SQLUpdateClause setOrdinal(SQLUpdateClause versionUpdateBatch, long ordinal) {
-        return versionUpdateBatch
+    protected SQLUpdateClause setOrdinal(SQLUpdateClause versionUpdate, Expression<Long> ordinal) {
+        return versionUpdate
                 .set(options.version.ordinal, ordinal)
                 .setNull(options.version.txOrdinal);
     }
@@ -172,13 +214,21 @@ public class DocumentVersionStoreJdbc<Id, M, V extends JDocumentVersion<Id>>
 
     @Override
     protected void lockForMaintenance(Id docId) {
-        options.queryFactory
+        if (precompiledQueries != null) {
+            precompiledQueries.lock(options.queryFactory, docId);
+        } else {
+            lockQuery(options.queryFactory, constant(docId))
+                    .iterate()
+                    .close();
+        }
+    }
+
+    protected SQLQuery<Revision> lockQuery(SQLQueryFactory queryFactory, Expression<Id> docId) {
+        return queryFactory
                 .select(options.version.revision)
                 .from(options.version)
                 .where(versionsOf(docId))
                 .orderBy(options.version.ordinal.asc())
-                .forUpdate()
-                .iterate()
-                .close();
+                .forUpdate();
     }
 }
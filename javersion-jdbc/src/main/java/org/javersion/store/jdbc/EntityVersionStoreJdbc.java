@@ -100,12 +100,12 @@ public class EntityVersionStoreJdbc<Id extends Comparable, M, V extends JEntityV
     }
 
     @Override
-    protected SQLUpdateClause setOrdinal(SQLUpdateClause versionUpdateBatch, long ordinal) {
-        return versionUpdateBatch.set(options.version.ordinal, ordinal);
+    protected SQLUpdateClause setOrdinal(SQLUpdateClause versionUpdate, Expression<Long> ordinal) {
+        return versionUpdate.set(options.version.ordinal, ordinal);
     }
 
     protected List<Group> versionsAndParentsSince(Id docId, Revision since) {
-        SQLQuery<?> qry = options.queryFactory.from(options.sinceVersion);
+        SQLQuery<?> qry = readQueryFactory().from(options.sinceVersion);
 
         // Left join version version on version.ordinal > since.ordinal and version.doc_id = since.doc_id
         qry.leftJoin(options.version).on(
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2016 Samppa Saarela
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javersion.store.jdbc;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.javersion.core.VersionNode;
+import org.javersion.path.PropertyPath;
+import org.javersion.util.Check;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.Multimap;
+
+/**
+ * Group commit for DocumentVersionStoreJdbc.append: appends from concurrent callers are queued and
+ * written with a single DocumentUpdateBatch and transaction per group. A group is closed when it
+ * reaches <code>maxGroupSize</code> appends or <code>maxDelayMillis</code> has passed since its first append.
+ * <p>
+ * Futures are completed after the group is committed. If a group fails, its appends are retried one by one
+ * in their own transactions so that a failing append doesn't fail others.
+ */
+@ThreadSafe
+public class GroupCommitAppender<Id, M> implements AutoCloseable {
+
+    private static class Append<Id, M> {
+        final Multimap<Id, VersionNode<PropertyPath, Object, M>> versions;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Append(Multimap<Id, VersionNode<PropertyPath, Object, M>> versions) {
+            this.versions = versions;
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static final Append CLOSE = new Append<>(null);
+
+    private final Logger log = LoggerFactory.getLogger(GroupCommitAppender.class);
+
+    private final DocumentVersionStoreJdbc<Id, M, ?> store;
+
+    private final int maxGroupSize;
+
+    private final long maxDelayNanos;
+
+    private final BlockingQueue<Append<Id, M>> queue = new LinkedBlockingQueue<>();
+
+    private final Thread committer;
+
+    private boolean closed = false;
+
+    public GroupCommitAppender(DocumentVersionStoreJdbc<Id, M, ?> store, int maxGroupSize, long maxDelayMillis) {
+        Check.that(maxGroupSize > 0, "maxGroupSize should be > 0");
+        Check.that(maxDelayMillis >= 0, "maxDelayMillis should be >= 0");
+        this.store = Check.notNull(store, "store");
+        this.maxGroupSize = maxGroupSize;
+        this.maxDelayNanos = MILLISECONDS.toNanos(maxDelayMillis);
+        this.committer = new Thread(this::run, "javersion-group-commit");
+        this.committer.setDaemon(true);
+        this.committer.start();
+    }
+
+    public CompletableFuture<Void> append(Id docId, VersionNode<PropertyPath, Object, M> version) {
+        return append(ImmutableListMultimap.of(docId, version));
+    }
+
+    public CompletableFuture<Void> append(Id docId, Iterable<VersionNode<PropertyPath, Object, M>> versions) {
+        ImmutableListMultimap.Builder<Id, VersionNode<PropertyPath, Object, M>> builder = ImmutableListMultimap.builder();
+        return append(builder.putAll(docId, versions).build());
+    }
+
+    public CompletableFuture<Void> append(Multimap<Id, VersionNode<PropertyPath, Object, M>> versionsByDocId) {
+        Append<Id, M> append = new Append<>(versionsByDocId);
+        synchronized (queue) {
+            if (closed) {
+                append.future.completeExceptionally(new IllegalStateException("closed"));
+            } else {
+                queue.add(append);
+            }
+        }
+        return append.future;
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * Commits queued appends and stops the committer thread.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void close() throws InterruptedException {
+        synchronized (queue) {
+            if (!closed) {
+                closed = true;
+                queue.add(CLOSE);
+            }
+        }
+        committer.join();
+    }
+
+    private void run() {
+        List<Append<Id, M>> group = new ArrayList<>(maxGroupSize);
+        Throwable failure = null;
+        try {
+            boolean running = true;
+            while (running) {
+                try {
+                    Append<Id, M> next = queue.take();
+                    long deadline = System.nanoTime() + maxDelayNanos;
+                    while (next != null) {
+                        if (next == CLOSE) {
+                            running = false;
+                            break;
+                        }
+                        group.add(next);
+                        if (group.size() == maxGroupSize) {
+                            break;
+                        }
+                        next = queue.poll(deadline - System.nanoTime(), NANOSECONDS);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    running = false;
+                }
+                if (!group.isEmpty()) {
+                    commit(group);
+                    group.clear();
+                }
+            }
+        } catch (Throwable t) {
+            failure = t;
+            throw t;
+        } finally {
+            failPending(group, failure);
+        }
+    }
+
+    /**
+     * Closes this appender and fails appends that the committer thread didn't complete before stopping.
+     */
+    private void failPending(List<Append<Id, M>> group, Throwable cause) {
+        List<Append<Id, M>> pending = new ArrayList<>(group);
+        synchronized (queue) {
+            closed = true;
+            queue.drainTo(pending);
+        }
+        pending.remove(CLOSE);
+        if (!pending.isEmpty()) {
+            log.warn("Committer stopped with {} pending appends", pending.size(), cause);
+            for (Append<Id, M> append : pending) {
+                append.future.completeExceptionally(new IllegalStateException("closed", cause));
+            }
+        }
+    }
+
+    private void commit(List<Append<Id, M>> group) {
+        if (group.size() > 1) {
+            Multimap<Id, VersionNode<PropertyPath, Object, M>> versions = ArrayListMultimap.create();
+            group.forEach(append -> versions.putAll(append.versions));
+            try {
+                store.append(versions);
+                group.forEach(append -> append.future.complete(null));
+                return;
+            } catch (RuntimeException e) {
+                log.debug("Group of {} appends failed. Retrying individually.", group.size(), e);
+            }
+        }
+        for (Append<Id, M> append : group) {
+            try {
+                store.append(append.versions);
+                append.future.complete(null);
+            } catch (RuntimeException e) {
+                append.future.completeExceptionally(e);
+            }
+        }
+    }
+}
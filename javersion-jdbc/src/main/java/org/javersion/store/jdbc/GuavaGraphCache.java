@@ -19,6 +19,7 @@ import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.util.concurrent.ListenableFuture;
+import org.javersion.core.Metrics;
 import org.javersion.core.Revision;
 import org.javersion.core.VersionNotFoundException;
 import org.javersion.object.ObjectVersion;
@@ -31,9 +32,12 @@ import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 import static com.google.common.base.MoreObjects.firstNonNull;
 import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static org.javersion.store.jdbc.StoreMetrics.CACHE_HIT;
+import static org.javersion.store.jdbc.StoreMetrics.CACHE_MISS;
 
 public class GuavaGraphCache<Id, M> implements GraphCache<Id, M> {
 
@@ -53,10 +57,14 @@ public class GuavaGraphCache<Id, M> implements GraphCache<Id, M> {
 
     protected final LoadingCache<Id, ObjectVersionGraph<M>> cache;
 
+    private final CacheLoader<Id, ObjectVersionGraph<M>> cacheLoader;
+
     private final GraphOptions<Id, M> graphOptions;
 
     protected final Set<Id> cachedDocIds;
 
+    protected final Metrics metrics;
+
     public GuavaGraphCache(VersionStore<Id, M> versionStore,
                            CacheBuilder<Object, Object> cacheBuilder) {
         this(versionStore, cacheBuilder, null);
@@ -67,15 +75,46 @@ public class GuavaGraphCache<Id, M> implements GraphCache<Id, M> {
     public GuavaGraphCache(VersionStore<Id, M> versionStore,
                            CacheBuilder<Object, Object> cacheBuilder,
                            GraphOptions<Id, M> graphOptions) {
-        this.cache = cacheBuilder.build(newCacheLoader(versionStore));
+        this.cacheLoader = newCacheLoader(versionStore);
+        this.cache = cacheBuilder.build(cacheLoader);
         this.cachedDocIds = cache.asMap().keySet();
         this.graphOptions = firstNonNull(graphOptions, DEFAULT_CACHE_OPTIONS);
+        this.metrics = metricsOf(versionStore);
+    }
+
+    private static Metrics metricsOf(VersionStore<?, ?> versionStore) {
+        if (versionStore instanceof AbstractVersionStoreJdbc) {
+            StoreOptions<?, ?, ?> options = ((AbstractVersionStoreJdbc<?, ?, ?, ?, ?>) versionStore).options;
+            // options is null for proxies
+            if (options != null) {
+                return options.metrics;
+            }
+        }
+        return Metrics.NOOP;
+    }
+
+    /**
+     * Refresh follows a publish or a change seen by CacheSynchronizer so the changed versions are read from primary:
+     * a read replica may not have them yet.
+     */
+    private static <T> T readPrimary(VersionStore<?, ?> versionStore, Supplier<T> callback) {
+        if (versionStore instanceof AbstractVersionStoreJdbc) {
+            return ((AbstractVersionStoreJdbc<?, ?, ?, ?, ?>) versionStore).readPrimary(callback);
+        }
+        return callback.get();
     }
 
     @Override
     public ObjectVersionGraph<M> load(Id docId) {
+        // Single lookup so that cache stats count each load once
+        boolean[] loaded = { false };
         try {
-            return cache.get(docId);
+            ObjectVersionGraph<M> graph = cache.get(docId, () -> {
+                loaded[0] = true;
+                return cacheLoader.load(docId);
+            });
+            metrics.count(loaded[0] ? CACHE_MISS : CACHE_HIT, 1);
+            return graph;
         } catch (ExecutionException e) {
             throw new RuntimeException(e);
         }
@@ -114,6 +153,10 @@ public class GuavaGraphCache<Id, M> implements GraphCache<Id, M> {
 
             @Override
             public ListenableFuture<ObjectVersionGraph<M>> reload(Id docId, ObjectVersionGraph<M> oldValue) throws Exception {
+                return immediateFuture(readPrimary(versionStore, () -> doReload(docId, oldValue)));
+            }
+
+            private ObjectVersionGraph<M> doReload(Id docId, ObjectVersionGraph<M> oldValue) {
                 if (!oldValue.isEmpty()) {
                     ObjectVersionGraph<M> newValue = oldValue;
                     Revision since = oldValue.getTip().getRevision();
@@ -123,12 +166,12 @@ public class GuavaGraphCache<Id, M> implements GraphCache<Id, M> {
                         if (!updates.isEmpty()) {
                             newValue = oldValue.commit(updates);
                         }
-                        return immediateFuture(compactIfRequired(newValue));
+                        return compactIfRequired(newValue);
                     } catch (VersionNotFoundException e) {
                         // since revision is deleted - reload graph
                     }
                 }
-                return immediateFuture(load(docId));
+                return compactIfRequired(versionStore.getOptimizedGraph(docId));
             }
 
             private ObjectVersionGraph<M> compactIfRequired(ObjectVersionGraph<M> graph) {
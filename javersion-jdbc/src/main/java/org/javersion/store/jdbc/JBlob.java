@@ -0,0 +1,99 @@
+/*
+ * Copyright 2016 Samppa Saarela
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javersion.store.jdbc;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.sql.Types;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import com.google.common.hash.Hashing;
+import com.querydsl.core.types.PathMetadataFactory;
+import com.querydsl.core.types.dsl.SimplePath;
+import com.querydsl.core.types.dsl.StringPath;
+import com.querydsl.sql.ColumnMetadata;
+import com.querydsl.sql.RelationalPathBase;
+
+/**
+ * Optional table for content addressed, compressed storage of large string values.
+ * Property rows reference blobs by SHA-256 hash of the value.
+ */
+public class JBlob extends RelationalPathBase<JBlob> {
+
+    public final StringPath hash = createString("hash");
+
+    public final SimplePath<byte[]> data = createSimple("data", byte[].class);
+
+    public JBlob(RelationalPathBase<?> table) {
+        super(JBlob.class, table.getMetadata(), table.getSchemaName(), table.getTableName());
+        table.getColumns().forEach(path -> addMetadata(path, table.getMetadata(path)));
+    }
+
+    public JBlob(String repositoryName) {
+        this("PUBLIC", repositoryName + "_BLOB");
+    }
+
+    public JBlob(String schema, String table) {
+        super(JBlob.class, PathMetadataFactory.forVariable(table), schema, table);
+        addMetadata(hash, ColumnMetadata.named("HASH").withIndex(1).ofType(Types.VARCHAR).withSize(64).notNull());
+        addMetadata(data, ColumnMetadata.named("DATA").withIndex(2).ofType(Types.VARBINARY).notNull());
+    }
+
+    public static String hash(String value) {
+        return Hashing.sha256().hashString(value, UTF_8).toString();
+    }
+
+    public static byte[] compress(String value) {
+        Deflater deflater = new Deflater();
+        try {
+            deflater.setInput(value.getBytes(UTF_8));
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public static String decompress(byte[] data) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("Truncated blob");
+                }
+                out.write(buffer, 0, length);
+            }
+            return new String(out.toByteArray(), UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException(e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2016 Samppa Saarela
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javersion.store.jdbc;
+
+import java.sql.Types;
+
+import org.javersion.core.Revision;
+
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.PathMetadataFactory;
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.core.types.dsl.SimplePath;
+import com.querydsl.core.types.dsl.StringPath;
+import com.querydsl.sql.ColumnMetadata;
+import com.querydsl.sql.RelationalPathBase;
+
+/**
+ * Optional index of values of selected paths (<code>StoreOptions.indexedPaths</code>) in the merged
+ * properties of each branch of a document. Maintained when versions are published.
+ */
+public class JValueIndex<Id> extends RelationalPathBase<JValueIndex> {
+
+    public final Path<Id> docId;
+
+    public final StringPath branch = createString("branch");
+
+    public final StringPath path = createString("path");
+
+    public final StringPath type = createString("type");
+
+    public final StringPath str = createString("str");
+
+    public final NumberPath<Long> nbr = createNumber("nbr", Long.class);
+
+    /**
+     * Hash of str. Unlike str, it's short enough to be indexed in all databases.
+     */
+    public final StringPath strHash = createString("strHash");
+
+    public final SimplePath<Revision> revision = createSimple("revision", Revision.class);
+
+    public JValueIndex(RelationalPathBase<?> table, Path<Id> docId) {
+        super(JValueIndex.class, table.getMetadata(), table.getSchemaName(), table.getTableName());
+        this.docId = docId;
+        table.getColumns().forEach(path -> addMetadata(path, table.getMetadata(path)));
+    }
+
+    public JValueIndex(String repositoryName, Class<? super Id> docIdType) {
+        this("PUBLIC", repositoryName + "_VALUE_INDEX", docIdType);
+    }
+
+    public JValueIndex(String schema, String table, Class<? super Id> docIdType) {
+        super(JValueIndex.class, PathMetadataFactory.forVariable(table), schema, table);
+        this.docId = createSimple("docId", docIdType);
+        addMetadata(docId, ColumnMetadata.named("DOC_ID").withIndex(1).notNull());
+        addMetadata(branch, ColumnMetadata.named("BRANCH").withIndex(2).ofType(Types.VARCHAR).withSize(128).notNull());
+        addMetadata(path, ColumnMetadata.named("PATH").withIndex(3).ofType(Types.VARCHAR).notNull());
+        addMetadata(type, ColumnMetadata.named("TYPE").withIndex(4).ofType(Types.CHAR).withSize(1).notNull());
+        addMetadata(str, ColumnMetadata.named("STR").withIndex(5).ofType(Types.VARCHAR));
+        addMetadata(nbr, ColumnMetadata.named("NBR").withIndex(6).ofType(Types.BIGINT).withSize(19));
+        addMetadata(strHash, ColumnMetadata.named("STR_HASH").withIndex(7).ofType(Types.VARCHAR).withSize(64));
+        addMetadata(revision, ColumnMetadata.named("REVISION").withIndex(8).ofType(Types.VARCHAR).withSize(32).notNull());
+    }
+
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2016 Samppa Saarela
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javersion.store.jdbc;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import org.javersion.core.Metrics;
+import org.javersion.util.Check;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Exposes recorded metrics as JMX MBeans for local inspection, e.g. with JConsole. Each metric is registered
+ * on first use as <code>{domain}:type=time|count,name="{name}"</code> with count, total, max and mean of
+ * recorded values. Timings are in nanoseconds.
+ * <p>
+ * Use as <code>StoreOptions.metrics</code> and/or <code>GraphMetrics.set(metrics)</code>.
+ */
+@ThreadSafe
+public class JmxMetrics implements Metrics {
+
+    public interface MetricMBean {
+
+        long getCount();
+
+        long getTotal();
+
+        long getMax();
+
+        double getMean();
+
+        void reset();
+    }
+
+    public static class Metric implements MetricMBean {
+
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder total = new LongAdder();
+
+        private final LongAccumulator max = new LongAccumulator(Long::max, 0);
+
+        void record(long value) {
+            count.increment();
+            total.add(value);
+            max.accumulate(value);
+        }
+
+        @Override
+        public long getCount() {
+            return count.sum();
+        }
+
+        @Override
+        public long getTotal() {
+            return total.sum();
+        }
+
+        @Override
+        public long getMax() {
+            return max.get();
+        }
+
+        @Override
+        public double getMean() {
+            long n = count.sum();
+            return n > 0 ? (double) total.sum() / n : 0;
+        }
+
+        @Override
+        public void reset() {
+            count.reset();
+            total.reset();
+            max.reset();
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(JmxMetrics.class);
+
+    private static final String TIME = "time";
+
+    private static final String COUNT = "count";
+
+    private final MBeanServer mbeanServer;
+
+    private final String domain;
+
+    private final ConcurrentMap<ObjectName, Metric> metrics = new ConcurrentHashMap<>();
+
+    public JmxMetrics() {
+        this(ManagementFactory.getPlatformMBeanServer(), "org.javersion");
+    }
+
+    public JmxMetrics(MBeanServer mbeanServer, String domain) {
+        this.mbeanServer = Check.notNull(mbeanServer, "mbeanServer");
+        this.domain = Check.notNullOrEmpty(domain, "domain");
+    }
+
+    @Override
+    public void time(String name, long nanos) {
+        getOrRegister(TIME, name).record(nanos);
+    }
+
+    @Override
+    public void count(String name, long value) {
+        getOrRegister(COUNT, name).record(value);
+    }
+
+    @Nullable
+    public Metric getTime(String name) {
+        return metrics.get(objectName(TIME, name));
+    }
+
+    @Nullable
+    public Metric getCount(String name) {
+        return metrics.get(objectName(COUNT, name));
+    }
+
+    /**
+     * Unregisters all MBeans registered by this instance.
+     */
+    public void unregister() {
+        for (ObjectName objectName : metrics.keySet()) {
+            try {
+                if (mbeanServer.isRegistered(objectName)) {
+                    mbeanServer.unregisterMBean(objectName);
+                }
+            } catch (JMException e) {
+                log.warn("Failed to unregister {}", objectName, e);
+            }
+            metrics.remove(objectName);
+        }
+    }
+
+    private Metric getOrRegister(String type, String name) {
+        ObjectName objectName = objectName(type, name);
+        Metric metric = metrics.get(objectName);
+        if (metric == null) {
+            metric = metrics.computeIfAbsent(objectName, this::register);
+        }
+        return metric;
+    }
+
+    private Metric register(ObjectName objectName) {
+        Metric metric = new Metric();
+        try {
+            mbeanServer.registerMBean(new StandardMBean(metric, MetricMBean.class), objectName);
+        } catch (JMException e) {
+            // Metric is still recorded, just not visible through JMX
+            log.warn("Failed to register {}", objectName, e);
+        }
+        return metric;
+    }
+
+    private ObjectName objectName(String type, String name) {
+        try {
+            return new ObjectName(domain + ":type=" + type + ",name=" + ObjectName.quote(name));
+        } catch (JMException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+}
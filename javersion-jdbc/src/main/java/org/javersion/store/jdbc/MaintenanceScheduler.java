@@ -0,0 +1,219 @@
+/*
+ * Copyright 2016 Samppa Saarela
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javersion.store.jdbc;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.javersion.util.Check;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Executes maintenance tasks (e.g. optimize) in priority order with limited concurrency and rate.
+ * Tasks are deduplicated by key: a task is not scheduled if a task with the same key is queued or running.
+ * Tasks failing with ConcurrentMaintenanceException are retried with exponential backoff.
+ * <p>
+ * Use with <code>StoreOptions.maintenanceScheduler</code> to prioritize automatic optimizations by
+ * estimated savings.
+ */
+@ThreadSafe
+public class MaintenanceScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(MaintenanceScheduler.class);
+
+    private class Task implements Runnable, Comparable<Task> {
+        final Object key;
+        final long priority;
+        final long sequence;
+        final Runnable action;
+        int attempt = 0;
+
+        Task(Object key, long priority, Runnable action) {
+            this.key = key;
+            this.priority = priority;
+            this.sequence = sequences.getAndIncrement();
+            this.action = action;
+        }
+
+        @Override
+        public void run() {
+            if (rateLimiter != null) {
+                rateLimiter.acquire();
+            }
+            running.incrementAndGet();
+            try {
+                action.run();
+                keys.remove(key);
+                completed.incrementAndGet();
+            } catch (ConcurrentMaintenanceException e) {
+                if (attempt < maxRetries) {
+                    long delay = initialBackoffMillis << attempt++;
+                    log.debug("Retrying maintenance of {} in {} ms: {}", key, delay, e.getMessage());
+                    retried.incrementAndGet();
+                    retryScheduler.schedule(() -> executor.execute(this), delay, MILLISECONDS);
+                } else {
+                    fail(e);
+                }
+            } catch (RuntimeException e) {
+                fail(e);
+            } finally {
+                running.decrementAndGet();
+            }
+        }
+
+        private void fail(RuntimeException e) {
+            log.warn("Maintenance of {} failed", key, e);
+            keys.remove(key);
+            failed.incrementAndGet();
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            int cmp = Long.compare(other.priority, this.priority);
+            return cmp != 0 ? cmp : Long.compare(this.sequence, other.sequence);
+        }
+    }
+
+    private final ThreadPoolExecutor executor;
+
+    private final ScheduledExecutorService retryScheduler;
+
+    private final RateLimiter rateLimiter;
+
+    private final int maxRetries;
+
+    private final long initialBackoffMillis;
+
+    private final Set<Object> keys = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong sequences = new AtomicLong();
+
+    private final AtomicInteger running = new AtomicInteger();
+
+    private final AtomicLong completed = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final AtomicLong retried = new AtomicLong();
+
+    public MaintenanceScheduler(int concurrency) {
+        this(concurrency, 0, 3, 100);
+    }
+
+    /**
+     * @param concurrency max number of concurrently running tasks.
+     * @param tasksPerSecond max rate of starting tasks or 0 for unlimited.
+     * @param maxRetries max number of retries on ConcurrentMaintenanceException.
+     * @param initialBackoffMillis delay before first retry, doubled for each subsequent retry.
+     */
+    public MaintenanceScheduler(int concurrency, double tasksPerSecond, int maxRetries, long initialBackoffMillis) {
+        Check.that(concurrency > 0, "concurrency should be > 0");
+        Check.that(tasksPerSecond >= 0, "tasksPerSecond should be >= 0");
+        Check.that(maxRetries >= 0, "maxRetries should be >= 0");
+        Check.that(initialBackoffMillis >= 0, "initialBackoffMillis should be >= 0");
+        this.executor = new ThreadPoolExecutor(concurrency, concurrency,
+                0L, MILLISECONDS,
+                new PriorityBlockingQueue<>(),
+                new ThreadFactoryBuilder().setNameFormat("javersion-maintenance-%d").setDaemon(true).build());
+        ScheduledThreadPoolExecutor retryScheduler = new ScheduledThreadPoolExecutor(1,
+                new ThreadFactoryBuilder().setNameFormat("javersion-maintenance-retry-%d").setDaemon(true).build());
+        retryScheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.retryScheduler = retryScheduler;
+        this.rateLimiter = tasksPerSecond > 0 ? RateLimiter.create(tasksPerSecond) : null;
+        this.maxRetries = maxRetries;
+        this.initialBackoffMillis = initialBackoffMillis;
+    }
+
+    /**
+     * @param key of the task, e.g. docId.
+     * @param priority of the task, e.g. estimated savings. Tasks with higher priority are executed first.
+     * @return true if scheduled or false if a task with the same key is already queued or running.
+     */
+    public boolean schedule(Object key, long priority, Runnable action) {
+        return schedule(key, () -> priority, action);
+    }
+
+    /**
+     * @param key of the task, e.g. docId.
+     * @param priority of the task, evaluated only if the task is scheduled. Tasks with higher priority are executed first.
+     * @return true if scheduled or false if a task with the same key is already queued or running.
+     */
+    public boolean schedule(Object key, LongSupplier priority, Runnable action) {
+        Check.notNull(key, "key");
+        Check.notNull(priority, "priority");
+        Check.notNull(action, "action");
+        if (!keys.add(key)) {
+            return false;
+        }
+        try {
+            executor.execute(new Task(key, priority.getAsLong(), action));
+            return true;
+        } catch (RuntimeException e) {
+            keys.remove(key);
+            throw e;
+        }
+    }
+
+    /**
+     * @return number of tasks waiting for execution, excluding tasks waiting for retry.
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * @return number of distinct keys queued, running or waiting for retry.
+     */
+    public int getPending() {
+        return keys.size();
+    }
+
+    public int getRunning() {
+        return running.get();
+    }
+
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public long getRetried() {
+        return retried.get();
+    }
+
+    public void shutdown() {
+        retryScheduler.shutdown();
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,432 @@
+/*
+ * Copyright 2016 Samppa Saarela
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javersion.store.jdbc;
+
+import static com.querydsl.core.types.Ops.GT;
+import static com.querydsl.core.types.dsl.Expressions.predicate;
+import static java.util.Collections.unmodifiableList;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+
+import org.javersion.core.Revision;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedSet;
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.Tuple;
+import com.querydsl.core.group.Group;
+import com.querydsl.core.group.GroupCollector;
+import com.querydsl.core.group.GroupExpression;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.dsl.Param;
+import com.querydsl.sql.Configuration;
+import com.querydsl.sql.SQLDetailedListener;
+import com.querydsl.sql.SQLListenerContextImpl;
+import com.querydsl.sql.SQLQuery;
+import com.querydsl.sql.SQLQueryFactory;
+import com.querydsl.sql.SQLSerializer;
+
+/**
+ * Hot queries of DocumentVersionStoreJdbc serialized to SQL once and executed as plain prepared statements.
+ * Results are read with hand written ResultSet readers into lightweight Group and Tuple rows
+ * equivalent to those produced by QueryDSL's GroupBy transformations.
+ */
+class PrecompiledDocumentQueries<Id, M, V extends JDocumentVersion<Id>> {
+
+    private interface ResultSetReader<T> {
+        T read(ResultSet rs) throws SQLException;
+    }
+
+    private static class CompiledQuery {
+        final QueryMetadata metadata;
+        final String sql;
+        final List<Object> constants;
+        final List<Path<?>> constantPaths;
+
+        CompiledQuery(QueryMetadata metadata, SQLSerializer serializer) {
+            this.metadata = metadata;
+            this.sql = serializer.toString();
+            this.constants = unmodifiableList(new ArrayList<>(serializer.getConstants()));
+            this.constantPaths = unmodifiableList(new ArrayList<>(serializer.getConstantPaths()));
+        }
+    }
+
+    private final DocumentStoreOptions<Id, M, V> options;
+
+    private final Configuration configuration;
+
+    private final Param<Id> docIdParam;
+
+    private final Param<Revision> sinceParam;
+
+    private final Param<Long> sinceOrdinalParam;
+
+    /**
+     * Paths used for binding parameters that QueryDSL doesn't associate with a column.
+     */
+    private final Map<Param<?>, Path<?>> paramPaths;
+
+    private final Path<?>[] versionColumns;
+
+    private final Path<?>[] versionSinceColumns;
+
+    private final Map<Expression<?>, Integer> versionIndexes;
+
+    private final Map<Expression<?>, Integer> versionSinceIndexes;
+
+    private final Path<?>[] propertyColumns;
+
+    private final Map<Expression<?>, Integer> propertyIndexes;
+
+    private final CompiledQuery optimizedVersions;
+
+    private final CompiledQuery fullVersions;
+
+    private final CompiledQuery versionsSince;
+
+    private final CompiledQuery optimizedProperties;
+
+    private final CompiledQuery fullProperties;
+
+    private final CompiledQuery propertiesSince;
+
+    private final CompiledQuery lock;
+
+    PrecompiledDocumentQueries(DocumentVersionStoreJdbc<Id, M, V> store) {
+        this.options = store.options;
+        this.configuration = options.queryFactory.getConfiguration();
+        this.docIdParam = new Param<>(options.version.docId.getType(), "docId");
+        this.sinceParam = new Param<>(Revision.class, "since");
+        this.sinceOrdinalParam = new Param<>(Long.class, "sinceOrdinal");
+        this.paramPaths = ImmutableMap.of(
+                docIdParam, options.version.docId,
+                sinceParam, options.sinceVersion.revision,
+                sinceOrdinalParam, options.version.ordinal);
+
+        List<Path<?>> columns = new ArrayList<>(options.version.getColumns());
+        columns.add(options.parent.parentRevision);
+        this.versionColumns = columns.toArray(new Path<?>[columns.size()]);
+        this.versionIndexes = indexesOf(versionColumns);
+        columns.add(options.sinceVersion.ordinal);
+        this.versionSinceColumns = columns.toArray(new Path<?>[columns.size()]);
+        this.versionSinceIndexes = indexesOf(versionSinceColumns);
+
+        this.propertyColumns = options.property.getColumns().toArray(new Path<?>[0]);
+        this.propertyIndexes = indexesOf(propertyColumns);
+
+        SQLQueryFactory queryFactory = options.queryFactory;
+
+        this.optimizedVersions = compile(store.versionsAndParentsQuery(queryFactory, true, store.versionsOf(docIdParam),
+                options.version.ordinal.asc()).select(versionColumns));
+        this.fullVersions = compile(store.versionsAndParentsQuery(queryFactory, false, store.versionsOf(docIdParam),
+                options.version.ordinal.asc()).select(versionColumns));
+        this.versionsSince = compile(store.versionsAndParentsSinceQuery(queryFactory, docIdParam, sinceParam)
+                .select(versionSinceColumns));
+
+        this.optimizedProperties = compile(store.propertiesQuery(queryFactory, true, store.versionsOf(docIdParam))
+                .select(propertyColumns));
+        this.fullProperties = compile(store.propertiesQuery(queryFactory, false, store.versionsOf(docIdParam))
+                .select(propertyColumns));
+        this.propertiesSince = compile(store.propertiesQuery(queryFactory, false, store.versionsOf(docIdParam)
+                .and(predicate(GT, options.version.ordinal, sinceOrdinalParam)))
+                .select(propertyColumns));
+
+        this.lock = compile(store.lockQuery(queryFactory, docIdParam));
+    }
+
+    List<Group> versionsAndParents(SQLQueryFactory queryFactory, Id docId, boolean optimized) {
+        return execute(queryFactory, optimized ? optimizedVersions : fullVersions, ImmutableMap.of(docIdParam, docId),
+                rs -> readVersions(rs, versionColumns, versionIndexes));
+    }
+
+    List<Group> versionsAndParentsSince(SQLQueryFactory queryFactory, Id docId, Revision since) {
+        return execute(queryFactory, versionsSince, ImmutableMap.of(docIdParam, docId, sinceParam, since),
+                rs -> readVersions(rs, versionSinceColumns, versionSinceIndexes));
+    }
+
+    Map<Revision, List<Tuple>> properties(SQLQueryFactory queryFactory, Id docId, boolean optimized) {
+        return execute(queryFactory, optimized ? optimizedProperties : fullProperties, ImmutableMap.of(docIdParam, docId),
+                this::readProperties);
+    }
+
+    Map<Revision, List<Tuple>> propertiesSince(SQLQueryFactory queryFactory, Id docId, long sinceOrdinal) {
+        return execute(queryFactory, propertiesSince, ImmutableMap.of(docIdParam, docId, sinceOrdinalParam, sinceOrdinal),
+                this::readProperties);
+    }
+
+    void lock(SQLQueryFactory queryFactory, Id docId) {
+        execute(queryFactory, lock, ImmutableMap.of(docIdParam, docId), rs -> null);
+    }
+
+    private CompiledQuery compile(SQLQuery<?> query) {
+        SQLSerializer serializer = new SQLSerializer(configuration);
+        serializer.serialize(query.getMetadata(), false);
+        return new CompiledQuery(query.getMetadata(), serializer);
+    }
+
+    /**
+     * Executes query within the listener context of the configuration like QueryDSL queries do, so that
+     * e.g. SQLCloseListener releases the connection obtained from the factory's connection provider.
+     */
+    private <T> T execute(SQLQueryFactory queryFactory, CompiledQuery query, Map<Param<?>, Object> params, ResultSetReader<T> reader) {
+        SQLDetailedListener listeners = configuration.getListeners();
+        Connection connection = queryFactory.getConnection();
+        SQLListenerContextImpl context = new SQLListenerContextImpl(query.metadata, connection);
+        listeners.start(context);
+        context.setSQL(query.sql);
+        try (PreparedStatement stmt = connection.prepareStatement(query.sql)) {
+            context.setStatement(stmt);
+            for (int i = 0; i < query.constants.size(); i++) {
+                Object value = query.constants.get(i);
+                Path<?> path = i < query.constantPaths.size() ? query.constantPaths.get(i) : null;
+                if (value instanceof ParamExpression) {
+                    if (path == null) {
+                        path = paramPaths.get(value);
+                    }
+                    value = params.get(value);
+                }
+                configuration.set(stmt, path, i + 1, value);
+            }
+            listeners.preExecute(context);
+            try (ResultSet rs = stmt.executeQuery()) {
+                listeners.executed(context);
+                return reader.read(rs);
+            }
+        } catch (SQLException e) {
+            context.setException(e);
+            listeners.exception(context);
+            throw configuration.translate(query.sql, query.constants, e);
+        } finally {
+            listeners.end(context);
+        }
+    }
+
+    /**
+     * Groups rows by revision as <code>groupBy(version.revision).list(...)</code> would.
+     */
+    private List<Group> readVersions(ResultSet rs, Path<?>[] columns, Map<Expression<?>, Integer> indexes) throws SQLException {
+        final int revisionIndex = indexes.get(options.version.revision);
+        final int parentIndex = indexes.get(options.parent.parentRevision);
+        Map<Revision, VersionRow> rows = new LinkedHashMap<>();
+        while (rs.next()) {
+            Revision revision = configuration.get(rs, options.version.revision, revisionIndex + 1, Revision.class);
+            VersionRow row = rows.get(revision);
+            if (row == null) {
+                Object[] values = new Object[columns.length];
+                for (int i = 0; i < columns.length; i++) {
+                    if (i != parentIndex) {
+                        values[i] = configuration.get(rs, columns[i], i + 1, columns[i].getType());
+                    }
+                }
+                row = new VersionRow(indexes, values);
+                rows.put(revision, row);
+            }
+            Revision parent = configuration.get(rs, options.parent.parentRevision, parentIndex + 1, Revision.class);
+            if (parent != null) {
+                row.parents.add(parent);
+            }
+        }
+        return new ArrayList<>(rows.values());
+    }
+
+    private Map<Revision, List<Tuple>> readProperties(ResultSet rs) throws SQLException {
+        final int revisionIndex = propertyIndexes.get(options.property.revision);
+        Map<Revision, List<Tuple>> results = new HashMap<>();
+        while (rs.next()) {
+            Object[] values = new Object[propertyColumns.length];
+            for (int i = 0; i < propertyColumns.length; i++) {
+                values[i] = configuration.get(rs, propertyColumns[i], i + 1, propertyColumns[i].getType());
+            }
+            Revision revision = (Revision) values[revisionIndex];
+            results.computeIfAbsent(revision, r -> new ArrayList<>()).add(new PropertyRow(propertyIndexes, values));
+        }
+        return results;
+    }
+
+    private static Map<Expression<?>, Integer> indexesOf(Path<?>[] columns) {
+        ImmutableMap.Builder<Expression<?>, Integer> indexes = ImmutableMap.builder();
+        for (int i = 0; i < columns.length; i++) {
+            indexes.put(columns[i], i);
+        }
+        return indexes.build();
+    }
+
+    /**
+     * Version columns with parent revisions collected into a set as with <code>GroupBy.set(parent.parentRevision)</code>.
+     */
+    private class VersionRow implements Group {
+
+        private final Map<Expression<?>, Integer> indexes;
+
+        private final Object[] values;
+
+        private final Set<Revision> parents = new LinkedHashSet<>();
+
+        VersionRow(Map<Expression<?>, Integer> indexes, Object[] values) {
+            this.indexes = indexes;
+            this.values = values;
+        }
+
+        @Override
+        public Object[] toArray() {
+            return values.clone();
+        }
+
+        /**
+         * Collects values of coldef's expression over the joined rows, i.e. once per parent.
+         */
+        public <T, R> R getGroup(GroupExpression<T, R> coldef) {
+            GroupCollector<T, R> collector = coldef.createGroupCollector();
+            Expression<T> expr = coldef.getExpression();
+            if (parents.isEmpty()) {
+                collector.add(valueOf(expr, null));
+            } else {
+                for (Revision parent : parents) {
+                    collector.add(valueOf(expr, parent));
+                }
+            }
+            return collector.get();
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public <T> T getOne(Expression<T> expr) {
+            Integer index = indexes.get(expr);
+            if (index == null) {
+                throw new NoSuchElementException("Could not find column for " + expr);
+            }
+            return (T) values[index];
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public <T> Set<T> getSet(Expression<T> expr) {
+            if (!options.parent.parentRevision.equals(expr)) {
+                throw new NoSuchElementException("Could not find set for " + expr);
+            }
+            return (Set<T>) parents;
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        public <T> SortedSet<T> getSortedSet(Expression<T> expr) {
+            return (SortedSet<T>) ImmutableSortedSet.copyOf((Collection) getSet(expr));
+        }
+
+        @Override
+        public <T> List<T> getList(Expression<T> expr) {
+            return new ArrayList<>(getSet(expr));
+        }
+
+        @Override
+        public <K, T> Map<K, T> getMap(Expression<K> key, Expression<T> value) {
+            return putAll(key, value, new LinkedHashMap<>());
+        }
+
+        public <K, T> SortedMap<K, T> getSortedMap(Expression<K> key, Expression<T> value) {
+            return putAll(key, value, new TreeMap<>());
+        }
+
+        private <K, T, R extends Map<K, T>> R putAll(Expression<K> key, Expression<T> value, R map) {
+            if (parents.isEmpty()) {
+                map.put(valueOf(key, null), valueOf(value, null));
+            } else {
+                for (Revision parent : parents) {
+                    map.put(valueOf(key, parent), valueOf(value, parent));
+                }
+            }
+            return map;
+        }
+
+        @SuppressWarnings("unchecked")
+        private <T> T valueOf(Expression<T> expr, Revision parent) {
+            return options.parent.parentRevision.equals(expr) ? (T) parent : getOne(expr);
+        }
+    }
+
+    private static class PropertyRow implements Tuple {
+
+        private final Map<Expression<?>, Integer> indexes;
+
+        private final Object[] values;
+
+        PropertyRow(Map<Expression<?>, Integer> indexes, Object[] values) {
+            this.indexes = indexes;
+            this.values = values;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public <T> T get(int index, Class<T> type) {
+            return (T) values[index];
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public <T> T get(Expression<T> expr) {
+            Integer index = indexes.get(expr);
+            return index != null ? (T) values[index] : null;
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+
+        @Override
+        public Object[] toArray() {
+            return values.clone();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            } else if (obj instanceof Tuple) {
+                return Arrays.equals(values, ((Tuple) obj).toArray());
+            } else {
+                return false;
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(values);
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.toString(values);
+        }
+    }
+}
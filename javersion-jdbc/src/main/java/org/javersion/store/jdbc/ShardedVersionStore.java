@@ -0,0 +1,232 @@
+/*
+ * Copyright 2016 Samppa Saarela
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javersion.store.jdbc;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.CompletableFuture.supplyAsync;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import org.javersion.core.Revision;
+import org.javersion.core.VersionNode;
+import org.javersion.object.ObjectVersion;
+import org.javersion.object.ObjectVersionGraph;
+import org.javersion.path.PropertyPath;
+import org.javersion.util.Check;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Multimaps;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * VersionStore routing each document to one of N underlying stores (shards), e.g. stores using
+ * different DataSources, by consistent hashing of <code>docId.toString()</code>.
+ * Multi-document reads and publish are executed in parallel per shard.
+ * <p>
+ * As shards are independent, there is no cross-shard transaction or ordering: an UpdateBatch
+ * may only contain documents of a single shard and GraphResults.latestRevision
+ * is null if results span multiple shards.
+ */
+public class ShardedVersionStore<Id, M> implements VersionStore<Id, M> {
+
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    private final List<VersionStore<Id, M>> shards;
+
+    private final Executor executor;
+
+    public ShardedVersionStore(List<? extends VersionStore<Id, M>> shards) {
+        this(shards, AsyncVersionStore.defaultExecutor());
+    }
+
+    /**
+     * @param shards order of shards defines routing and should not be changed. Adding a shard
+     *               to the end moves ~1/N of documents to the new shard.
+     * @param executor for parallel per shard operations.
+     */
+    public ShardedVersionStore(List<? extends VersionStore<Id, M>> shards, Executor executor) {
+        Check.that(!shards.isEmpty(), "shards should not be empty");
+        this.shards = ImmutableList.copyOf(shards);
+        this.executor = Check.notNull(executor, "executor");
+    }
+
+    public int getShardIndex(Id docId) {
+        Check.notNull(docId, "docId");
+        return Hashing.consistentHash(HASH_FUNCTION.hashString(docId.toString(), UTF_8), shards.size());
+    }
+
+    public VersionStore<Id, M> getShard(Id docId) {
+        return shards.get(getShardIndex(docId));
+    }
+
+    public List<VersionStore<Id, M>> getShards() {
+        return shards;
+    }
+
+    @Override
+    public ObjectVersionGraph<M> getGraph(Id docId) {
+        return getShard(docId).getGraph(docId);
+    }
+
+    @Override
+    public ObjectVersionGraph<M> getGraph(Id docId, Iterable<Revision> revisions) {
+        return getShard(docId).getGraph(docId, revisions);
+    }
+
+    @Override
+    public ObjectVersionGraph<M> getFullGraph(Id docId) {
+        return getShard(docId).getFullGraph(docId);
+    }
+
+    @Override
+    public ObjectVersionGraph<M> getOptimizedGraph(Id docId) {
+        return getShard(docId).getOptimizedGraph(docId);
+    }
+
+    @Override
+    public GraphResults<Id, M> getGraphs(Collection<Id> docIds) {
+        List<GraphResults<Id, M>> results = forEachShard(docIds, VersionStore::getGraphs);
+        if (results.size() == 1) {
+            return results.get(0);
+        }
+        Map<Id, ObjectVersionGraph<M>> graphs = new HashMap<>();
+        results.forEach(result -> graphs.putAll(result.graphsByDocId));
+        return new GraphResults<>(graphs, null);
+    }
+
+    @Override
+    public Map<PropertyPath, Object> getHeadProperties(Id docId, String branch) {
+        return getShard(docId).getHeadProperties(docId, branch);
+    }
+
+    @Override
+    public Map<Id, Map<PropertyPath, Object>> getHeadProperties(Collection<Id> docIds, String branch) {
+        ImmutableMap.Builder<Id, Map<PropertyPath, Object>> results = ImmutableMap.builder();
+        forEachShard(docIds, (shard, ids) -> shard.getHeadProperties(ids, branch)).forEach(results::putAll);
+        return results.build();
+    }
+
+    @Override
+    public List<ObjectVersion<M>> fetchUpdates(Id docId, Revision since) {
+        return getShard(docId).fetchUpdates(docId, since);
+    }
+
+    /**
+     * Publishes all shards in parallel.
+     */
+    @Override
+    public Multimap<Id, Revision> publish() {
+        List<CompletableFuture<Multimap<Id, Revision>>> futures = new ArrayList<>(shards.size());
+        for (VersionStore<Id, M> shard : shards) {
+            futures.add(supplyAsync(shard::publish, executor));
+        }
+        ListMultimap<Id, Revision> published = ArrayListMultimap.create();
+        join(futures).forEach(published::putAll);
+        return published;
+    }
+
+    @Override
+    public void prune(Id docId, Function<ObjectVersionGraph<M>, Predicate<VersionNode<PropertyPath, Object, M>>> keep) {
+        getShard(docId).prune(docId, keep);
+    }
+
+    @Override
+    public void optimize(Id docId, Function<ObjectVersionGraph<M>, Predicate<VersionNode<PropertyPath, Object, M>>> keep) {
+        getShard(docId).optimize(docId, keep);
+    }
+
+    @Override
+    public void reset(Id docId) {
+        getShard(docId).reset(docId);
+    }
+
+    @Override
+    public UpdateBatch<Id, M> updateBatch(Id docId) {
+        return getShard(docId).updateBatch(docId);
+    }
+
+    /**
+     * @throws IllegalArgumentException if docIds belong to different shards.
+     */
+    @Override
+    public UpdateBatch<Id, M> updateBatch(Collection<Id> docIds) {
+        ListMultimap<Integer, Id> docIdsByShard = groupByShard(docIds);
+        if (docIdsByShard.keySet().size() > 1) {
+            throw new IllegalArgumentException("UpdateBatch cannot span multiple shards");
+        }
+        return singleShard(docIdsByShard).updateBatch(docIds);
+    }
+
+    private <R> List<R> forEachShard(Collection<Id> docIds, ShardFunction<Id, M, R> function) {
+        ListMultimap<Integer, Id> docIdsByShard = groupByShard(docIds);
+        if (docIdsByShard.keySet().size() <= 1) {
+            return ImmutableList.of(function.apply(singleShard(docIdsByShard), docIds));
+        }
+        List<CompletableFuture<R>> futures = new ArrayList<>(docIdsByShard.keySet().size());
+        for (Map.Entry<Integer, List<Id>> entry : Multimaps.asMap(docIdsByShard).entrySet()) {
+            VersionStore<Id, M> shard = shards.get(entry.getKey());
+            List<Id> shardDocIds = entry.getValue();
+            futures.add(supplyAsync(() -> function.apply(shard, shardDocIds), executor));
+        }
+        return join(futures);
+    }
+
+    private VersionStore<Id, M> singleShard(ListMultimap<Integer, Id> docIdsByShard) {
+        return docIdsByShard.isEmpty() ? shards.get(0) : shards.get(docIdsByShard.keySet().iterator().next());
+    }
+
+    private ListMultimap<Integer, Id> groupByShard(Collection<Id> docIds) {
+        ListMultimap<Integer, Id> docIdsByShard = ArrayListMultimap.create();
+        for (Id docId : docIds) {
+            docIdsByShard.put(getShardIndex(docId), docId);
+        }
+        return docIdsByShard;
+    }
+
+    private static <R> List<R> join(List<CompletableFuture<R>> futures) {
+        List<R> results = new ArrayList<>(futures.size());
+        try {
+            for (CompletableFuture<R> future : futures) {
+                results.add(future.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        return results;
+    }
+
+    @FunctionalInterface
+    private interface ShardFunction<Id, M, R> {
+        R apply(VersionStore<Id, M> shard, Collection<Id> docIds);
+    }
+}
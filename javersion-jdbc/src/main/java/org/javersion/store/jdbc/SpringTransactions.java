@@ -19,6 +19,7 @@ import static org.springframework.transaction.annotation.Isolation.READ_COMMITTE
 import static org.springframework.transaction.annotation.Propagation.MANDATORY;
 import static org.springframework.transaction.annotation.Propagation.REQUIRED;
 import static org.springframework.transaction.annotation.Propagation.REQUIRES_NEW;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.isActualTransactionActive;
 import static org.springframework.transaction.support.TransactionSynchronizationManager.registerSynchronization;
 
 import java.util.function.Supplier;
@@ -61,4 +62,9 @@ public class SpringTransactions implements Transactions {
             }
         });
     }
+
+    @Override
+    public boolean isActive() {
+        return isActualTransactionActive();
+    }
 }
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2016 Samppa Saarela
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javersion.store.jdbc;
+
+import org.javersion.core.GraphMetrics;
+
+/**
+ * Names of metrics recorded to <code>StoreOptions.metrics</code>. Graph operations
+ * (e.g. <code>ObjectVersionGraph.init</code>) are recorded to {@link GraphMetrics}.
+ */
+public final class StoreMetrics {
+
+    /**
+     * Time of executing version, parent and property queries of a load.
+     */
+    public static final String FETCH_SQL = "store.fetch.sql";
+
+    /**
+     * Time of building versions from fetched rows and number of versions built.
+     */
+    public static final String FETCH_BUILD = "store.fetch.build";
+
+    /**
+     * Number of version and property rows read per load.
+     */
+    public static final String FETCH_ROWS = "store.fetch.rows";
+
+    /**
+     * Number of properties per version read.
+     */
+    public static final String FETCH_PROPERTIES = "store.fetch.properties";
+
+    /**
+     * Time of publishing and number of published revisions.
+     */
+    public static final String PUBLISH = "store.publish";
+
+    /**
+     * Time from the commit of the first unpublished version to the end of the publish that made it visible.
+     * Recorded only when publish is triggered by commit, i.e. <code>StoreOptions.publisher</code> is configured.
+     */
+    public static final String PUBLISH_LAG = "store.publish.lag";
+
+    /**
+     * Time of persisting an optimization.
+     */
+    public static final String OPTIMIZE = "store.optimize";
+
+    /**
+     * Number of GraphCache loads served from cache.
+     */
+    public static final String CACHE_HIT = "cache.hit";
+
+    /**
+     * Number of GraphCache loads that required loading the graph.
+     */
+    public static final String CACHE_MISS = "cache.miss";
+
+    private StoreMetrics() {}
+}
@@ -16,8 +16,10 @@
 package org.javersion.store.jdbc;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.querydsl.core.types.Path;
 import com.querydsl.sql.SQLQueryFactory;
+import org.javersion.core.Metrics;
 import org.javersion.core.VersionNode;
 import org.javersion.object.ObjectVersionGraph;
 import org.javersion.path.PropertyPath;
@@ -25,6 +27,7 @@ import org.javersion.util.Check;
 
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
+import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
@@ -46,32 +49,106 @@ public abstract class StoreOptions<Id, M, V extends JVersion<Id>> extends GraphO
 
     public final JVersionProperty property;
 
+    /**
+     * Optional materialized state of branch heads. Maintained on publish.
+     */
+    @Nullable
+    public final JHeadProperty<Id> headProperty;
+
+    /**
+     * Optional full state of every <code>checkpointInterval</code>th version of a document.
+     * Used to load graphs containing versions not included in optimized graph.
+     */
+    @Nullable
+    public final JVersionProperty checkpointProperty;
+
+    public final int checkpointInterval;
+
+    @Nullable
+    public final JBlob blob;
+
+    public final int blobThreshold;
+
+    public final long blobCacheSize;
+
+    @Nullable
+    public final JValueIndex<Id> valueIndex;
+
+    /**
+     * Paths whose values are maintained in <code>valueIndex</code>.
+     */
+    public final ImmutableSet<PropertyPath> indexedPaths;
+
     public final ImmutableMap<PropertyPath, Path<?>> versionTableProperties;
 
     public final Transactions transactions;
 
     public final Executor optimizer;
 
+    @Nullable
+    public final MaintenanceScheduler maintenanceScheduler;
+
     public final Executor publisher;
 
     public final Function<VersionStore<Id, M>, GraphCache<Id, M>> cacheBuilder;
 
     public final SQLQueryFactory queryFactory;
 
+    /**
+     * Optional query factory for read-only operations, e.g. of a read replica.
+     */
+    @Nullable
+    public final SQLQueryFactory readQueryFactory;
+
+    /**
+     * Transactions for readQueryFactory. Defaults to <code>transactions</code>.
+     */
+    public final Transactions readTransactions;
+
+    /**
+     * Timings and counts of store operations. Defaults to no-op.
+     *
+     * @see StoreMetrics
+     */
+    public final Metrics metrics;
+
     protected StoreOptions(AbstractBuilder<Id, M, V, ?, ?> builder) {
         super(builder.optimizeWhen, builder.optimizeKeep);
         this.version = Check.notNull(builder.version, "versionTable");
         this.sinceVersion = Check.notNull(builder.versionTableSince, "versionTableSince");
         this.parent = Check.notNull(builder.parentTable, "parentTable");
         this.property = Check.notNull(builder.propertyTable, "propertyTable");
+        this.headProperty = builder.headPropertyTable;
+        this.checkpointProperty = builder.checkpointPropertyTable;
+        this.checkpointInterval = builder.checkpointInterval;
+        if (checkpointInterval < 1) {
+            throw new IllegalArgumentException("checkpointInterval should be > 0");
+        }
+        this.blob = builder.blobTable;
+        this.blobThreshold = builder.blobThreshold;
+        this.blobCacheSize = builder.blobCacheSize;
+        if (blobThreshold < 1) {
+            throw new IllegalArgumentException("blobThreshold should be > 0");
+        }
+        this.valueIndex = builder.valueIndexTable;
+        this.indexedPaths = builder.indexedPaths != null
+                ? ImmutableSet.copyOf(builder.indexedPaths)
+                : ImmutableSet.of();
+        if (valueIndex != null && indexedPaths.isEmpty()) {
+            throw new IllegalArgumentException("indexedPaths should not be empty when valueIndexTable is configured");
+        }
         this.versionTableProperties = builder.versionTableProperties != null
                 ? ImmutableMap.copyOf(builder.versionTableProperties)
                 : ImmutableMap.of();
         this.transactions = Check.notNull(builder.transactions, "transactions");
         this.optimizer = builder.optimizer;
+        this.maintenanceScheduler = builder.maintenanceScheduler;
         this.publisher = builder.publisher;
         this.cacheBuilder = firstNonNull(builder.cacheBuilder, store -> null);
         this.queryFactory = Check.notNull(builder.queryFactory, "queryFactory");
+        this.readQueryFactory = builder.readQueryFactory;
+        this.readTransactions = firstNonNull(builder.readTransactions, transactions);
+        this.metrics = firstNonNull(builder.metrics, Metrics.NOOP);
     }
 
     public abstract AbstractBuilder<Id, M, V, ?, ?> toBuilder();
@@ -90,6 +167,27 @@ public abstract class StoreOptions<Id, M, V extends JVersion<Id>> extends GraphO
 
         protected JVersionProperty propertyTable;
 
+        @Nullable
+        protected JHeadProperty<Id> headPropertyTable;
+
+        @Nullable
+        protected JVersionProperty checkpointPropertyTable;
+
+        protected int checkpointInterval = 100;
+
+        @Nullable
+        protected JBlob blobTable;
+
+        protected int blobThreshold = 4096;
+
+        protected long blobCacheSize = 1000;
+
+        @Nullable
+        protected JValueIndex<Id> valueIndexTable;
+
+        @Nullable
+        protected Set<PropertyPath> indexedPaths;
+
         protected Predicate<ObjectVersionGraph<M>> optimizeWhen;
 
         protected Function<ObjectVersionGraph<M>, Predicate<VersionNode<PropertyPath, Object, M>>> optimizeKeep;
@@ -98,6 +196,9 @@ public abstract class StoreOptions<Id, M, V extends JVersion<Id>> extends GraphO
 
         protected Executor optimizer;
 
+        @Nullable
+        protected MaintenanceScheduler maintenanceScheduler;
+
         protected Executor publisher;
 
         @Nullable
@@ -107,6 +208,15 @@ public abstract class StoreOptions<Id, M, V extends JVersion<Id>> extends GraphO
 
         protected SQLQueryFactory queryFactory;
 
+        @Nullable
+        protected SQLQueryFactory readQueryFactory;
+
+        @Nullable
+        protected Transactions readTransactions;
+
+        @Nullable
+        protected Metrics metrics;
+
         public AbstractBuilder() {}
 
         public AbstractBuilder(StoreOptions<Id, M, V> options) {
@@ -114,13 +224,26 @@ public abstract class StoreOptions<Id, M, V extends JVersion<Id>> extends GraphO
             this.versionTableSince = options.sinceVersion;
             this.parentTable = options.parent;
             this.propertyTable = options.property;
+            this.headPropertyTable = options.headProperty;
+            this.checkpointPropertyTable = options.checkpointProperty;
+            this.checkpointInterval = options.checkpointInterval;
+            this.blobTable = options.blob;
+            this.blobThreshold = options.blobThreshold;
+            this.blobCacheSize = options.blobCacheSize;
+            this.valueIndexTable = options.valueIndex;
+            this.indexedPaths = options.indexedPaths;
             this.optimizeWhen = options.optimizeWhen;
             this.optimizeKeep = options.optimizeKeep;
             this.transactions = options.transactions;
             this.optimizer = options.optimizer;
+            this.maintenanceScheduler = options.maintenanceScheduler;
             this.publisher = options.publisher;
             this.versionTableProperties = options.versionTableProperties;
             this.queryFactory = options.queryFactory;
+            this.readQueryFactory = options.readQueryFactory;
+            // Keep defaulting to transactions
+            this.readTransactions = options.readTransactions != options.transactions ? options.readTransactions : null;
+            this.metrics = options.metrics;
         }
 
         public This versionTableSince(V sinceVersion) {
@@ -143,6 +266,52 @@ public abstract class StoreOptions<Id, M, V extends JVersion<Id>> extends GraphO
             return self();
         }
 
+        public This headPropertyTable(JHeadProperty<Id> jHeadProperty) {
+            this.headPropertyTable = jHeadProperty;
+            return self();
+        }
+
+        public This checkpointPropertyTable(JVersionProperty jCheckpointProperty) {
+            this.checkpointPropertyTable = jCheckpointProperty;
+            return self();
+        }
+
+        public This checkpointInterval(int checkpointInterval) {
+            this.checkpointInterval = checkpointInterval;
+            return self();
+        }
+
+        /**
+         * Store strings of at least <code>blobThreshold</code> characters compressed and deduplicated in given table.
+         */
+        public This blobTable(JBlob jBlob) {
+            this.blobTable = jBlob;
+            return self();
+        }
+
+        public This blobThreshold(int blobThreshold) {
+            this.blobThreshold = blobThreshold;
+            return self();
+        }
+
+        /**
+         * Max number of decompressed blob values cached in memory.
+         */
+        public This blobCacheSize(long blobCacheSize) {
+            this.blobCacheSize = blobCacheSize;
+            return self();
+        }
+
+        public This valueIndexTable(JValueIndex<Id> valueIndexTable) {
+            this.valueIndexTable = valueIndexTable;
+            return self();
+        }
+
+        public This indexedPaths(Set<PropertyPath> indexedPaths) {
+            this.indexedPaths = indexedPaths;
+            return self();
+        }
+
         public This graphOptions(GraphOptions<Id, M> graphOptions) {
             return optimizeWhen(graphOptions.optimizeWhen).optimizeKeep(graphOptions.optimizeKeep);
         }
@@ -192,6 +361,19 @@ public abstract class StoreOptions<Id, M, V extends JVersion<Id>> extends GraphO
             return self();
         }
 
+        /**
+         * Schedule automatic optimizations with given scheduler instead of <code>optimizer</code>.
+         */
+        public This maintenanceScheduler(MaintenanceScheduler maintenanceScheduler) {
+            this.maintenanceScheduler = maintenanceScheduler;
+            return self();
+        }
+
+        public This metrics(Metrics metrics) {
+            this.metrics = metrics;
+            return self();
+        }
+
         public This publisher(Executor publisher) {
             this.publisher = publisher;
             return self();
@@ -219,6 +401,20 @@ public abstract class StoreOptions<Id, M, V extends JVersion<Id>> extends GraphO
 
         public abstract Options build();
 
+        /**
+         * Route read-only operations (getGraph, getGraphs, fetchUpdates...) to given query factory, e.g. of a read replica.
+         * Reads fall back to primary <code>queryFactory</code> if requested revisions are not (yet) found.
+         */
+        public This readQueryFactory(SQLQueryFactory readQueryFactory) {
+            this.readQueryFactory = readQueryFactory;
+            return self();
+        }
+
+        public This readTransactions(Transactions readTransactions) {
+            this.readTransactions = readTransactions;
+            return self();
+        }
+
         public Options build(SQLQueryFactory queryFactory) {
             return queryFactory(queryFactory).build();
         }
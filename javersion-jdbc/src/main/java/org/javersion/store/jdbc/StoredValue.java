@@ -0,0 +1,88 @@
+/*
+ * Copyright 2016 Samppa Saarela
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javersion.store.jdbc;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import org.javersion.core.Persistent;
+
+/**
+ * Type, str and nbr column values of a property value.
+ */
+@Immutable
+final class StoredValue {
+
+    // type:
+    // n=null, O=object, A=array, s=string,
+    // b=boolean, l=long, d=double, D=bigdecimal,
+    // H=string stored in blob table by hash
+    final char type;
+
+    @Nullable
+    final String str;
+
+    @Nullable
+    final Long nbr;
+
+    private StoredValue(char type, String str, Long nbr) {
+        this.type = type;
+        this.str = str;
+        this.nbr = nbr;
+    }
+
+    String typeString() {
+        return Character.toString(type);
+    }
+
+    /**
+     * @return hash of str for indexing or null if str is null
+     */
+    @Nullable
+    String strHash() {
+        return str != null ? JBlob.hash(str) : null;
+    }
+
+    static StoredValue of(Object value, StoreOptions<?, ?, ?> options) {
+        switch (Persistent.Type.of(value)) {
+            case TOMBSTONE:
+                return new StoredValue('n', null, null);
+            case NULL:
+                return new StoredValue('N', null, null);
+            case OBJECT:
+                return new StoredValue('O', ((Persistent.Object) value).type, null);
+            case ARRAY:
+                return new StoredValue('A', null, null);
+            case STRING:
+                String str = (String) value;
+                if (options.blob != null && str.length() >= options.blobThreshold) {
+                    return new StoredValue('H', JBlob.hash(str), null);
+                } else {
+                    return new StoredValue('s', str, null);
+                }
+            case BOOLEAN:
+                return new StoredValue('b', null, ((Boolean) value) ? 1L : 0L);
+            case LONG:
+                return new StoredValue('l', null, (Long) value);
+            case DOUBLE:
+                return new StoredValue('d', null, Double.doubleToRawLongBits((Double) value));
+            case BIG_DECIMAL:
+                return new StoredValue('D', value.toString(), null);
+            default:
+                throw new IllegalArgumentException("Unsupported type: " + value.getClass());
+        }
+    }
+}
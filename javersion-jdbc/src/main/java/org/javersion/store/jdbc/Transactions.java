@@ -41,4 +41,11 @@ public interface Transactions {
 
     void afterCommit(Runnable callback);
 
+    /**
+     * @return true if current thread has an active transaction of these Transactions.
+     */
+    default boolean isActive() {
+        return false;
+    }
+
 }
@@ -15,8 +15,11 @@
  */
 package org.javersion.store.jdbc;
 
+import static java.util.Collections.singleton;
+
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Function;
 import java.util.function.Predicate;
 
@@ -26,6 +29,7 @@ import org.javersion.object.ObjectVersion;
 import org.javersion.object.ObjectVersionGraph;
 import org.javersion.path.PropertyPath;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Multimap;
 
 public interface VersionStore<Id, M> {
@@ -40,6 +44,23 @@ public interface VersionStore<Id, M> {
 
     GraphResults<Id, M> getGraphs(Collection<Id> docIds);
 
+    default Map<PropertyPath, Object> getHeadProperties(Id docId, String branch) {
+        return getHeadProperties(singleton(docId), branch).getOrDefault(docId, ImmutableMap.of());
+    }
+
+    /**
+     * @return merged properties of given branch by docId. Documents not having given branch are omitted.
+     */
+    default Map<Id, Map<PropertyPath, Object>> getHeadProperties(Collection<Id> docIds, String branch) {
+        ImmutableMap.Builder<Id, Map<PropertyPath, Object>> results = ImmutableMap.builder();
+        getGraphs(docIds).graphsByDocId.forEach((docId, graph) -> {
+            if (graph.getBranches().contains(branch)) {
+                results.put(docId, graph.mergeBranches(branch).getProperties());
+            }
+        });
+        return results.build();
+    }
+
     List<ObjectVersion<M>> fetchUpdates(Id docId, Revision since);
 
     Multimap<Id, Revision> publish();
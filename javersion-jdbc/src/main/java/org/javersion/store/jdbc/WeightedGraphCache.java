@@ -0,0 +1,136 @@
+/*
+ * Copyright 2016 Samppa Saarela
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javersion.store.jdbc;
+
+import static java.lang.Boolean.FALSE;
+import static java.lang.Boolean.TRUE;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+import org.javersion.object.ObjectVersionGraph;
+import org.javersion.util.Check;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+
+/**
+ * GraphCache bounded by total weight of cached graphs instead of number of documents. Weight of a graph is
+ * number of versions × number of properties of the tip. Refreshes are executed asynchronously with
+ * given executor and coalesced per document: while a document is being refreshed, further refresh requests
+ * result in at most one more refresh. Stale graph is served until refresh completes.
+ */
+public class WeightedGraphCache<Id, M> extends GuavaGraphCache<Id, M> {
+
+    public static <Id, M> Function<VersionStore<Id, M>, GraphCache<Id, M>> weightedCacheBuilder(long maximumWeight,
+                                                                                                Executor refreshExecutor) {
+        return weightedCacheBuilder(maximumWeight, refreshExecutor, null);
+    }
+
+    public static <Id, M> Function<VersionStore<Id, M>, GraphCache<Id, M>> weightedCacheBuilder(long maximumWeight,
+                                                                                                Executor refreshExecutor,
+                                                                                                GraphOptions<Id, M> graphOptions) {
+        return versionStore -> new WeightedGraphCache<>(versionStore, maximumWeight, refreshExecutor, graphOptions);
+    }
+
+    public static int weigh(ObjectVersionGraph<?> graph) {
+        if (graph.isEmpty()) {
+            return 1;
+        }
+        long weight = (long) graph.size() * Math.max(1, graph.getTip().mergedProperties.size());
+        return (int) Math.min(weight, Integer.MAX_VALUE);
+    }
+
+    private final Logger log = LoggerFactory.getLogger(WeightedGraphCache.class);
+
+    private final Executor refreshExecutor;
+
+    /**
+     * TRUE = refresh requested, FALSE = refresh running
+     */
+    private final ConcurrentMap<Id, Boolean> refreshes = new ConcurrentHashMap<>();
+
+    public WeightedGraphCache(VersionStore<Id, M> versionStore, long maximumWeight, Executor refreshExecutor) {
+        this(versionStore, maximumWeight, refreshExecutor, null);
+    }
+
+    public WeightedGraphCache(VersionStore<Id, M> versionStore,
+                              long maximumWeight,
+                              Executor refreshExecutor,
+                              GraphOptions<Id, M> graphOptions) {
+        super(versionStore, newCacheBuilder(maximumWeight), graphOptions);
+        this.refreshExecutor = Check.notNull(refreshExecutor, "refreshExecutor");
+    }
+
+    private static CacheBuilder<Object, Object> newCacheBuilder(long maximumWeight) {
+        Weigher<Object, Object> weigher = (docId, graph) -> weigh((ObjectVersionGraph<?>) graph);
+        return CacheBuilder.newBuilder()
+                .maximumWeight(maximumWeight)
+                .weigher(weigher)
+                .recordStats();
+    }
+
+    @Override
+    public void refresh(Id docId) {
+        if (cachedDocIds.contains(docId) && refreshes.put(docId, TRUE) == null) {
+            try {
+                refreshExecutor.execute(() -> doRefresh(docId));
+            } catch (RejectedExecutionException e) {
+                refreshes.remove(docId);
+                log.warn("refresh({}) rejected - evicting", docId);
+                evict(docId);
+            }
+        }
+    }
+
+    private void doRefresh(Id docId) {
+        try {
+            do {
+                refreshes.put(docId, FALSE);
+                cache.refresh(docId);
+            } while (!refreshes.remove(docId, FALSE));
+        } catch (RuntimeException e) {
+            refreshes.remove(docId);
+            log.warn("refresh(" + docId + ") failed - evicting", e);
+            evict(docId);
+        }
+    }
+
+    /**
+     * @return true if a refresh of given document is requested or running.
+     */
+    public boolean isRefreshing(Id docId) {
+        return refreshes.containsKey(docId);
+    }
+
+    /**
+     * @return hit, miss, load and eviction statistics.
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+}
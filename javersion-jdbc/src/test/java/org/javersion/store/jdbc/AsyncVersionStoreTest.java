@@ -0,0 +1,100 @@
+package org.javersion.store.jdbc;
+
+import static java.util.UUID.randomUUID;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.javersion.path.PropertyPath.ROOT;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Resource;
+
+import org.javersion.object.ObjectVersion;
+import org.javersion.object.ObjectVersionGraph;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringApplicationConfiguration(classes = PersistenceTestConfiguration.class)
+public class AsyncVersionStoreTest {
+
+    @Resource
+    DocumentVersionStoreJdbc<String, String, JDocumentVersion<String>> documentStore;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @After
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void append_publish_and_load() throws Exception {
+        AsyncVersionStore<String, String> store = new AsyncVersionStore<>(documentStore, executor);
+        String docId = randomUUID().toString();
+        ObjectVersion<String> version = ObjectVersion.<String>builder()
+                .changeset(ImmutableMap.of(ROOT.property("property"), "value"))
+                .build();
+
+        store.append(docId, ImmutableList.of(ObjectVersionGraph.init(version).getTip()))
+                .thenCompose(v -> store.publish())
+                .get();
+
+        ObjectVersionGraph<String> graph = store.getGraph(docId).get();
+        assertThat(graph.getTip().getVersion()).isEqualTo(version);
+        assertThat(store.fetchUpdates(docId, version.revision).get()).isEmpty();
+        assertThat(store.getGraphs(ImmutableList.of(docId)).get().getDocIds()).containsExactly(docId);
+    }
+
+    @Test
+    public void concurrent_loads_of_same_document_are_deduplicated() throws Exception {
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch continueLoad = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        DocumentVersionStoreJdbc<String, String, JDocumentVersion<String>> blockingStore =
+                new DocumentVersionStoreJdbc<String, String, JDocumentVersion<String>>(documentStore.options) {
+                    @Override
+                    public ObjectVersionGraph<String> getOptimizedGraph(String docId) {
+                        loads.incrementAndGet();
+                        loadStarted.countDown();
+                        try {
+                            continueLoad.await();
+                        } catch (InterruptedException e) {
+                            throw new RuntimeException(e);
+                        }
+                        return super.getOptimizedGraph(docId);
+                    }
+                };
+        AsyncVersionStore<String, String> store = new AsyncVersionStore<>(blockingStore, executor);
+        String docId = randomUUID().toString();
+
+        CompletableFuture<ObjectVersionGraph<String>> first = store.getGraph(docId);
+        loadStarted.await();
+        CompletableFuture<ObjectVersionGraph<String>> second = store.getGraph(docId);
+        CompletableFuture<ObjectVersionGraph<String>> third = store.getGraph(docId);
+        assertThat(second).isNotSameAs(first);
+        assertThat(store.getGraphLoadsInFlight()).isEqualTo(1);
+
+        // Cancelling one caller's future doesn't affect the shared load
+        second.cancel(false);
+
+        continueLoad.countDown();
+        assertThat(first.get().isEmpty()).isTrue();
+        assertThat(third.get()).isSameAs(first.get());
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(store.getGraphLoadsInFlight()).isEqualTo(0);
+
+        // New load after completion
+        store.getGraph(docId).get();
+        assertThat(loads.get()).isEqualTo(2);
+    }
+}
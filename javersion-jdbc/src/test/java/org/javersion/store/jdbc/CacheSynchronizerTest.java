@@ -0,0 +1,92 @@
+package org.javersion.store.jdbc;
+
+import static java.util.UUID.randomUUID;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.javersion.path.PropertyPath.ROOT;
+import static org.javersion.store.jdbc.GuavaGraphCache.guavaCacheBuilder;
+
+import javax.annotation.Resource;
+
+import org.javersion.object.ObjectVersion;
+import org.javersion.object.ObjectVersionGraph;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringApplicationConfiguration(classes = PersistenceTestConfiguration.class)
+public class CacheSynchronizerTest {
+
+    @Resource
+    DocumentVersionStoreJdbc<String, String, JDocumentVersion<String>> documentStore;
+
+    @Test
+    public void refresh_documents_published_by_other_store() {
+        // Two stores sharing the same database, i.e. two nodes
+        DocumentVersionStoreJdbc<String, String, JDocumentVersion<String>> node1 = newCachingStore();
+        DocumentVersionStoreJdbc<String, String, JDocumentVersion<String>> node2 = newCachingStore();
+        CacheSynchronizer<String, String> synchronizer = new CacheSynchronizer<>(node2, 2, false);
+
+        String docId1 = randomUUID().toString();
+        String docId2 = randomUUID().toString();
+        ObjectVersion<String> v1 = append(node1, docId1, "value1");
+        append(node1, docId2, "value1");
+        assertThat(node2.getGraph(docId1).getTip().getVersion()).isEqualTo(v1);
+        assertThat(synchronizer.poll()).isEqualTo(ImmutableSet.of(docId1, docId2));
+
+        // More changes than fits in one batch
+        ObjectVersion<String> v2 = append(node1, docId1, "value2");
+        append(node1, docId1, "value3");
+        ObjectVersion<String> v4 = append(node1, docId1, "value4");
+        append(node1, docId2, "value2");
+
+        // Stale until poll
+        assertThat(node1.getGraph(docId1).getTip().getVersion()).isEqualTo(v4);
+        assertThat(node2.getGraph(docId1).getTip().getVersion()).isEqualTo(v1);
+
+        assertThat(synchronizer.poll()).isEqualTo(ImmutableSet.of(docId1, docId2));
+        assertThat(node2.getGraph(docId1).getTip().getVersion()).isEqualTo(v4);
+        assertThat(node2.getGraph(docId1).contains(v2.revision)).isTrue();
+
+        assertThat(synchronizer.poll()).isEmpty();
+    }
+
+    @Test
+    public void evict_documents_published_by_other_store() {
+        DocumentVersionStoreJdbc<String, String, JDocumentVersion<String>> node1 = newCachingStore();
+        DocumentVersionStoreJdbc<String, String, JDocumentVersion<String>> node2 = newCachingStore();
+
+        String docId = randomUUID().toString();
+        ObjectVersion<String> v1 = append(node1, docId, "value1");
+        assertThat(node2.getGraph(docId).getTip().getVersion()).isEqualTo(v1);
+
+        CacheSynchronizer<String, String> synchronizer = new CacheSynchronizer<>(node2, 10, true);
+        ObjectVersion<String> v2 = append(node1, docId, "value2");
+        assertThat(synchronizer.poll()).isEqualTo(ImmutableSet.of(docId));
+        assertThat(node2.getGraph(docId).getTip().getVersion()).isEqualTo(v2);
+    }
+
+    private ObjectVersion<String> append(DocumentVersionStoreJdbc<String, String, JDocumentVersion<String>> store, String docId, String value) {
+        ObjectVersionGraph<String> graph = store.getGraph(docId);
+        ObjectVersion.Builder<String> builder = ObjectVersion.<String>builder()
+                .changeset(ImmutableMap.of(ROOT.property("property"), value));
+        if (!graph.isEmpty()) {
+            builder.parents(graph.getTip().revision);
+        }
+        ObjectVersion<String> version = builder.build();
+        store.append(docId, graph.commit(version).getTip());
+        store.publish();
+        return version;
+    }
+
+    private DocumentVersionStoreJdbc<String, String, JDocumentVersion<String>> newCachingStore() {
+        return new DocumentVersionStoreJdbc<>(documentStore.options.toBuilder()
+                .cacheBuilder(guavaCacheBuilder(CacheBuilder.newBuilder().maximumSize(8)))
+                .build());
+    }
+}
@@ -1,5 +1,6 @@
 package org.javersion.store.jdbc;
 
+import static com.google.common.collect.Iterables.transform;
 import static com.google.common.collect.Lists.newArrayList;
 import static java.util.Arrays.asList;
 import static java.util.UUID.randomUUID;
@@ -32,7 +33,9 @@ import org.javersion.path.PropertyPath;
 import org.junit.Test;
 import org.springframework.transaction.support.TransactionTemplate;
 
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.ImmutableSet;
 import com.querydsl.core.group.GroupBy;
@@ -434,6 +437,252 @@ public class DocumentVersionStoreJdbcTest extends AbstractVersionStoreTest {
         assertThat(mappedDocumentStore.getFullGraph(docId).getTip().getVersion()).isEqualTo(v2);
     }
 
+    @Test
+    public void head_properties_are_maintained_on_publish() {
+        String docId = randomUUID().toString();
+        AbstractVersionStoreJdbc<String, String, ?, ?, ?> store = newStore(documentStore.options.toBuilder()
+                .headPropertyTable(new JHeadProperty<>("PUBLIC", "DOCUMENT_HEAD_PROPERTY", String.class))
+                .build());
+
+        ObjectVersion<String> v1 = ObjectVersion.<String>builder()
+                .changeset(mapOf("id", 1l, "name", "name1", "price", new BigDecimal("1.5")))
+                .build();
+        ObjectVersion<String> v2 = ObjectVersion.<String>builder()
+                .branch("other")
+                .changeset(mapOf("name", "name2"))
+                .parents(v1.revision)
+                .build();
+        ObjectVersion<String> v3 = ObjectVersion.<String>builder()
+                .changeset(mapOf("id", 2l, "price", null))
+                .parents(v1.revision)
+                .build();
+
+        assertThat(store.getHeadProperties(docId, Version.DEFAULT_BRANCH)).isEmpty();
+
+        ObjectVersionGraph<String> graph = ObjectVersionGraph.init(v1, v2, v3);
+        addVersions(docId, store, graph.getVersionNode(v1.revision));
+        assertThat(store.getHeadProperties(docId, Version.DEFAULT_BRANCH)).isEqualTo(v1.changeset);
+
+        addVersions(docId, store, graph.getVersionNode(v2.revision), graph.getVersionNode(v3.revision));
+
+        Map<PropertyPath, Object> defaultHead = store.getHeadProperties(docId, Version.DEFAULT_BRANCH);
+        assertThat(defaultHead).isEqualTo(mapOf("id", 2l, "name", "name1"));
+        assertThat(defaultHead).isEqualTo(graph.mergeBranches(Version.DEFAULT_BRANCH).getProperties());
+
+        Map<PropertyPath, Object> otherHead = store.getHeadProperties(docId, "other");
+        assertThat(otherHead).isEqualTo(mapOf("id", 1l, "name", "name2", "price", new BigDecimal("1.5")));
+
+        // Store without head table merges properties from the version graph
+        assertThat(documentStore.getHeadProperties(asList(docId), "other")).isEqualTo(ImmutableMap.of(docId, otherHead));
+    }
+
+    @Test
+    public void heads_of_existing_documents_are_rebuilt() {
+        String docId = randomUUID().toString();
+        ObjectVersion<String> v1 = ObjectVersion.<String>builder()
+                .changeset(mapOf("id", 1l, "name", "name1"))
+                .build();
+        // Published before head table is configured
+        addVersions(docId, documentStore, ObjectVersionGraph.init(v1).getTip());
+
+        AbstractVersionStoreJdbc<String, String, ?, ?, ?> store = newStore(documentStore.options.toBuilder()
+                .headPropertyTable(new JHeadProperty<>("PUBLIC", "DOCUMENT_HEAD_PROPERTY", String.class))
+                .build());
+        assertThat(store.getHeadProperties(docId, Version.DEFAULT_BRANCH)).isEmpty();
+
+        store.rebuildHeads(docId);
+        assertThat(store.getHeadProperties(docId, Version.DEFAULT_BRANCH)).isEqualTo(v1.changeset);
+    }
+
+    @Test
+    public void failed_heads_update_does_not_prevent_updating_other_documents() {
+        String docId1 = randomUUID().toString();
+        String docId2 = randomUUID().toString();
+        DocumentStoreOptions<String, String, JDocumentVersion<String>> options = documentStore.options.toBuilder()
+                .headPropertyTable(new JHeadProperty<>("PUBLIC", "DOCUMENT_HEAD_PROPERTY", String.class))
+                .build();
+        DocumentVersionStoreJdbc<String, String, JDocumentVersion<String>> store = new DocumentVersionStoreJdbc<String, String, JDocumentVersion<String>>(options) {
+            @Override
+            protected void updateHeads(String docId) {
+                if (docId.equals(docId1)) {
+                    throw new IllegalStateException("failure");
+                }
+                super.updateHeads(docId);
+            }
+        };
+        ObjectVersion<String> v1 = ObjectVersion.<String>builder().changeset(mapOf("name", "name1")).build();
+        ObjectVersion<String> v2 = ObjectVersion.<String>builder().changeset(mapOf("name", "name2")).build();
+        transactionTemplate.execute(status -> {
+            store.updateBatch(asList(docId1, docId2))
+                    .addVersion(docId1, ObjectVersionGraph.init(v1).getTip())
+                    .addVersion(docId2, ObjectVersionGraph.init(v2).getTip())
+                    .execute();
+            return null;
+        });
+
+        assertThat(store.publish().keySet()).contains(docId1, docId2);
+        assertThat(store.getHeadProperties(asList(docId1, docId2), Version.DEFAULT_BRANCH))
+                .isEqualTo(ImmutableMap.of(docId2, v2.changeset));
+
+        newStore(options).rebuildHeads(docId1);
+        assertThat(store.getHeadProperties(docId1, Version.DEFAULT_BRANCH)).isEqualTo(v1.changeset);
+    }
+
+    @Test
+    public void documents_are_found_by_indexed_value() {
+        String docId1 = randomUUID().toString();
+        String docId2 = randomUUID().toString();
+        PropertyPath name = ROOT.property("name");
+        PropertyPath price = ROOT.property("price");
+        AbstractVersionStoreJdbc<String, String, ?, ?, ?> store = newStore(documentStore.options.toBuilder()
+                .valueIndexTable(new JValueIndex<>("PUBLIC", "DOCUMENT_VALUE_INDEX", String.class))
+                .indexedPaths(ImmutableSet.of(name, price))
+                .build());
+
+        ObjectVersion<String> v1 = ObjectVersion.<String>builder()
+                .changeset(mapOf("name", "indexed", "price", new BigDecimal("1.5"), "id", 1l))
+                .build();
+        ObjectVersion<String> v2 = ObjectVersion.<String>builder()
+                .branch("other")
+                .changeset(mapOf("name", "other"))
+                .parents(v1.revision)
+                .build();
+        ObjectVersion<String> v3 = ObjectVersion.<String>builder()
+                .changeset(mapOf("name", "indexed", "price", new BigDecimal("1.5")))
+                .build();
+        ObjectVersionGraph<String> graph = ObjectVersionGraph.init(v1, v2);
+        addVersions(docId1, store, graph.getVersionNode(v1.revision), graph.getVersionNode(v2.revision));
+        addVersions(docId2, store, ObjectVersionGraph.init(v3).getTip());
+
+        assertThat(store.findDocIds(name, "indexed")).contains(docId1, docId2);
+        assertThat(store.findDocIds(price, new BigDecimal("1.5"))).contains(docId1, docId2);
+        assertThat(store.findDocIds("other", name, "other")).containsExactly(docId1);
+        assertThat(store.findDocIds("other", name, "indexed")).doesNotContain(docId1);
+
+        ObjectVersion<String> v4 = ObjectVersion.<String>builder()
+                .changeset(mapOf("name", "renamed", "price", null))
+                .parents(v3.revision)
+                .build();
+        addVersions(docId2, store, ObjectVersionGraph.init(v3, v4).getTip());
+
+        assertThat(store.findDocIds(name, "indexed")).contains(docId1).doesNotContain(docId2);
+        assertThat(store.findDocIds(name, "renamed")).containsExactly(docId2);
+        assertThat(store.findDocIds(price, new BigDecimal("1.5"))).doesNotContain(docId2);
+    }
+
+    @Test
+    public void value_index_of_existing_documents_is_rebuilt() {
+        String docId = randomUUID().toString();
+        PropertyPath name = ROOT.property("name");
+        String value = randomUUID().toString();
+        // Published before value index is configured
+        addVersions(docId, documentStore, ObjectVersionGraph.init(ObjectVersion.<String>builder()
+                .changeset(mapOf("name", value))
+                .build()).getTip());
+
+        AbstractVersionStoreJdbc<String, String, ?, ?, ?> store = newStore(documentStore.options.toBuilder()
+                .valueIndexTable(new JValueIndex<>("PUBLIC", "DOCUMENT_VALUE_INDEX", String.class))
+                .indexedPaths(ImmutableSet.of(name))
+                .build());
+        assertThat(store.findDocIds(name, value)).isEmpty();
+
+        store.rebuildHeads(docId);
+        assertThat(store.findDocIds(name, value)).containsExactly(docId);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rebuild_heads_requires_head_or_value_index_table() {
+        documentStore.rebuildHeads(randomUUID().toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void value_index_requires_indexed_path() {
+        AbstractVersionStoreJdbc<String, String, ?, ?, ?> store = newStore(documentStore.options.toBuilder()
+                .valueIndexTable(new JValueIndex<>("PUBLIC", "DOCUMENT_VALUE_INDEX", String.class))
+                .indexedPaths(ImmutableSet.of(ROOT.property("name")))
+                .build());
+        store.findDocIds(ROOT.property("id"), 1l);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void value_index_requires_value() {
+        AbstractVersionStoreJdbc<String, String, ?, ?, ?> store = newStore(documentStore.options.toBuilder()
+                .valueIndexTable(new JValueIndex<>("PUBLIC", "DOCUMENT_VALUE_INDEX", String.class))
+                .indexedPaths(ImmutableSet.of(ROOT.property("name")))
+                .build());
+        store.findDocIds(ROOT.property("name"), null);
+    }
+
+    @Test
+    public void load_from_checkpoint() {
+        String docId = randomUUID().toString();
+        AbstractVersionStoreJdbc<String, String, ?, ?, ?> store = newStore(documentStore.options.toBuilder()
+                .checkpointPropertyTable(new JVersionProperty("PUBLIC", "DOCUMENT_CHECKPOINT_PROPERTY"))
+                .checkpointInterval(2)
+                .build());
+
+        ObjectVersion<String> v1 = ObjectVersion.<String>builder().changeset(mapOf("a", 1l)).build();
+        ObjectVersion<String> v2 = ObjectVersion.<String>builder().changeset(mapOf("b", 2l)).parents(v1.revision).build();
+        ObjectVersion<String> v3 = ObjectVersion.<String>builder().changeset(mapOf("a", 3l)).parents(v2.revision).build();
+        ObjectVersion<String> v4 = ObjectVersion.<String>builder().changeset(mapOf("c", 4l)).parents(v3.revision).build();
+        ObjectVersion<String> v5 = ObjectVersion.<String>builder().changeset(mapOf("b", null)).parents(v4.revision).build();
+        ObjectVersionGraph<String> graph = ObjectVersionGraph.init(v1, v2, v3, v4, v5);
+
+        // Checkpoints for v2 and v4
+        asList(v1, v2, v3, v4, v5).forEach(v -> addVersions(docId, store, graph.getVersionNode(v.revision)));
+        optimize(docId, v -> v.revision.equals(v5.revision), store);
+        assertThat(store.getGraph(docId).getVersionNode(v5.revision).getParentRevisions()).isEmpty();
+
+        ObjectVersionGraph<String> fromCheckpoint = store.getGraph(docId, asList(v4.revision));
+        assertThat(transform(fromCheckpoint.getVersionNodes(), node -> node.revision)).containsExactly(v5.revision, v4.revision);
+        assertThat(fromCheckpoint.getVersionNode(v4.revision).getProperties())
+                .isEqualTo(graph.getVersionNode(v4.revision).getProperties());
+        assertThat(fromCheckpoint.getTip().getProperties()).isEqualTo(graph.getTip().getProperties());
+
+        fromCheckpoint = store.getGraph(docId, asList(v3.revision, v5.revision));
+        assertThat(transform(fromCheckpoint.getVersionNodes(), node -> node.revision))
+                .containsExactly(v5.revision, v4.revision, v3.revision, v2.revision);
+        assertThat(fromCheckpoint.getVersionNode(v3.revision).getProperties())
+                .isEqualTo(graph.getVersionNode(v3.revision).getProperties());
+
+        // No checkpoint before v1
+        assertThat(store.getGraph(docId, asList(v1.revision)).getVersionNodes()).hasSize(5);
+    }
+
+    @Test
+    public void large_strings_are_stored_as_blobs() {
+        String docId1 = randomUUID().toString();
+        String docId2 = randomUUID().toString();
+        JBlob blob = new JBlob("PUBLIC", "DOCUMENT_BLOB");
+        DocumentStoreOptions<String, String, JDocumentVersion<String>> options = documentStore.options.toBuilder()
+                .blobTable(blob)
+                .blobThreshold(100)
+                .build();
+        AbstractVersionStoreJdbc<String, String, ?, ?, ?> store = newStore(options);
+
+        String large = Strings.repeat(randomUUID().toString(), 100);
+        ObjectVersion<String> v1 = ObjectVersion.<String>builder()
+                .changeset(mapOf("large", large, "small", "small"))
+                .build();
+        ObjectVersion<String> v2 = ObjectVersion.<String>builder()
+                .changeset(mapOf("copy", large))
+                .build();
+        addVersions(docId1, store, ObjectVersionGraph.init(v1).getTip());
+        addVersions(docId2, store, ObjectVersionGraph.init(v2).getTip());
+
+        String hash = JBlob.hash(large);
+        assertThat(queryFactory.from(blob).where(blob.hash.eq(hash)).fetchCount()).isEqualTo(1);
+        assertThat(queryFactory.select(documentVersionProperty.str)
+                .from(documentVersionProperty)
+                .where(documentVersionProperty.revision.eq(v1.revision), documentVersionProperty.type.eq("H"))
+                .fetch())
+                .containsExactly(hash);
+
+        // Read with an empty blob cache
+        assertThat(newStore(options).getGraph(docId1).getTip().getVersion()).isEqualTo(v1);
+        assertThat(store.getGraph(docId2).getTip().getVersion()).isEqualTo(v2);
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     protected AbstractVersionStoreJdbc<String, String, ?, ?, ?> newStore(StoreOptions options) {
@@ -0,0 +1,134 @@
+package org.javersion.store.jdbc;
+
+import static java.util.UUID.randomUUID;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.javersion.path.PropertyPath.ROOT;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Resource;
+
+import org.javersion.core.Revision;
+import org.javersion.core.VersionNode;
+import org.javersion.object.ObjectVersion;
+import org.javersion.object.ObjectVersionGraph;
+import org.javersion.path.PropertyPath;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Multimap;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringApplicationConfiguration(classes = PersistenceTestConfiguration.class)
+public class GroupCommitAppenderTest {
+
+    @Resource
+    DocumentVersionStoreJdbc<String, String, JDocumentVersion<String>> documentStore;
+
+    @Test
+    public void appends_are_committed_in_groups() throws Exception {
+        AtomicInteger transactions = new AtomicInteger();
+        DocumentVersionStoreJdbc<String, String, JDocumentVersion<String>> countingStore =
+                new DocumentVersionStoreJdbc<String, String, JDocumentVersion<String>>(documentStore.options) {
+                    @Override
+                    public void append(Multimap<String, VersionNode<PropertyPath, Object, String>> versionsByDocId) {
+                        transactions.incrementAndGet();
+                        super.append(versionsByDocId);
+                    }
+                };
+
+        List<String> docIds = new ArrayList<>();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        try (GroupCommitAppender<String, String> appender = new GroupCommitAppender<>(countingStore, 10, 200)) {
+            for (int i = 0; i < 10; i++) {
+                String docId = randomUUID().toString();
+                docIds.add(docId);
+                futures.add(appender.append(docId, ObjectVersionGraph.init(version(null)).getTip()));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()])).get();
+        }
+        assertThat(transactions.get()).isEqualTo(1);
+
+        documentStore.publish();
+        for (String docId : docIds) {
+            assertThat(documentStore.getGraph(docId).isEmpty()).isFalse();
+        }
+    }
+
+    @Test
+    public void failing_append_does_not_fail_others() throws Exception {
+        String docId = randomUUID().toString();
+        ObjectVersion<String> v1 = version(null);
+        ObjectVersionGraph<String> graph = ObjectVersionGraph.init(v1);
+        documentStore.append(docId, graph.getTip());
+
+        CompletableFuture<Void> duplicate;
+        CompletableFuture<Void> valid;
+        try (GroupCommitAppender<String, String> appender = new GroupCommitAppender<>(documentStore, 10, 200)) {
+            duplicate = appender.append(docId, graph.getTip());
+            valid = appender.append(docId, graph.commit(version(v1.revision)).getTip());
+        }
+
+        assertThat(valid.get()).isNull();
+        try {
+            duplicate.get();
+            throw new AssertionError("Expected duplicate revision to fail");
+        } catch (ExecutionException e) {
+            // as expected
+        }
+        documentStore.publish();
+        assertThat(documentStore.getGraph(docId).size()).isEqualTo(2);
+    }
+
+    @Test
+    public void append_after_close_fails() throws Exception {
+        GroupCommitAppender<String, String> appender = new GroupCommitAppender<>(documentStore, 10, 0);
+        appender.close();
+        assertThat(appender.append(randomUUID().toString(), ObjectVersionGraph.init(version(null)).getTip())
+                .isCompletedExceptionally()).isTrue();
+    }
+
+    @Test
+    public void pending_appends_fail_if_committer_dies() throws Exception {
+        DocumentVersionStoreJdbc<String, String, JDocumentVersion<String>> failingStore =
+                new DocumentVersionStoreJdbc<String, String, JDocumentVersion<String>>(documentStore.options) {
+                    @Override
+                    public void append(Multimap<String, VersionNode<PropertyPath, Object, String>> versionsByDocId) {
+                        throw new Error("committer failure");
+                    }
+                };
+        GroupCommitAppender<String, String> appender = new GroupCommitAppender<>(failingStore, 1, 0);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(appender.append(randomUUID().toString(), ObjectVersionGraph.init(version(null)).getTip()));
+        }
+        for (CompletableFuture<Void> future : futures) {
+            try {
+                future.get(10, SECONDS);
+                throw new AssertionError("Expected append to fail");
+            } catch (ExecutionException e) {
+                // as expected
+            }
+        }
+        assertThat(appender.append(randomUUID().toString(), ObjectVersionGraph.init(version(null)).getTip())
+                .isCompletedExceptionally()).isTrue();
+        appender.close();
+    }
+
+    private static ObjectVersion<String> version(Revision parent) {
+        ObjectVersion.Builder<String> builder = ObjectVersion.<String>builder()
+                .changeset(ImmutableMap.of(ROOT.property("property"), randomUUID().toString()));
+        if (parent != null) {
+            builder.parents(parent);
+        }
+        return builder.build();
+    }
+}
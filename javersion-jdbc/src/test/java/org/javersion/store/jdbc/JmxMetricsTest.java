@@ -0,0 +1,102 @@
+package org.javersion.store.jdbc;
+
+import static java.util.UUID.randomUUID;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.javersion.path.PropertyPath.ROOT;
+import static org.javersion.store.jdbc.ExecutorType.SYNC;
+import static org.javersion.store.jdbc.GuavaGraphCache.guavaCacheBuilder;
+
+import javax.annotation.Resource;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import org.javersion.core.GraphMetrics;
+import org.javersion.core.Metrics;
+import org.javersion.object.ObjectVersion;
+import org.javersion.object.ObjectVersionGraph;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringApplicationConfiguration(classes = PersistenceTestConfiguration.class)
+public class JmxMetricsTest {
+
+    @Resource
+    DocumentVersionStoreJdbc<String, String, JDocumentVersion<String>> documentStore;
+
+    private final MBeanServer mbeanServer = MBeanServerFactory.newMBeanServer();
+
+    private final JmxMetrics metrics = new JmxMetrics(mbeanServer, "javersion.test");
+
+    @After
+    public void reset() {
+        GraphMetrics.set(Metrics.NOOP);
+        metrics.unregister();
+    }
+
+    @Test
+    public void store_and_graph_operations_are_recorded() throws Exception {
+        GraphMetrics.set(metrics);
+        DocumentVersionStoreJdbc<String, String, JDocumentVersion<String>> store = new DocumentVersionStoreJdbc<>(
+                documentStore.options.toBuilder()
+                        .metrics(metrics)
+                        .cacheBuilder(guavaCacheBuilder(CacheBuilder.newBuilder().maximumSize(8)))
+                        .build());
+
+        String docId = randomUUID().toString();
+        ObjectVersion<String> version = ObjectVersion.<String>builder()
+                .changeset(ImmutableMap.of(
+                        ROOT.property("first"), "value",
+                        ROOT.property("second"), "value"))
+                .build();
+        store.append(docId, ObjectVersionGraph.init(version).getTip());
+        store.publish();
+
+        assertThat(store.getGraph(docId).getTip().getVersion()).isEqualTo(version);
+        assertThat(store.getGraph(docId).getTip().getVersion()).isEqualTo(version);
+
+        assertThat(metrics.getTime(StoreMetrics.PUBLISH).getCount()).isEqualTo(1);
+        assertThat(metrics.getCount(StoreMetrics.PUBLISH).getTotal()).isEqualTo(1);
+        assertThat(metrics.getTime(StoreMetrics.FETCH_SQL).getCount()).isEqualTo(2);
+        assertThat(metrics.getCount(StoreMetrics.FETCH_BUILD).getTotal()).isEqualTo(1);
+        assertThat(metrics.getCount(StoreMetrics.FETCH_ROWS).getTotal()).isEqualTo(3);
+        assertThat(metrics.getCount(StoreMetrics.FETCH_PROPERTIES).getMean()).isEqualTo(2.0);
+        assertThat(metrics.getCount(StoreMetrics.CACHE_MISS).getCount()).isEqualTo(1);
+        assertThat(metrics.getCount(StoreMetrics.CACHE_HIT).getCount()).isEqualTo(1);
+        assertThat(metrics.getTime(GraphMetrics.INIT).getCount()).isGreaterThan(0);
+
+        ObjectName objectName = new ObjectName("javersion.test:type=count,name=\"" + StoreMetrics.CACHE_HIT + "\"");
+        assertThat(mbeanServer.getAttribute(objectName, "Count")).isEqualTo(1L);
+
+        metrics.unregister();
+        assertThat(mbeanServer.isRegistered(objectName)).isFalse();
+    }
+
+    @Test
+    public void publish_lag_is_recorded_for_versions_published_after_commit() {
+        DocumentVersionStoreJdbc<String, String, JDocumentVersion<String>> store = new DocumentVersionStoreJdbc<>(
+                documentStore.options.toBuilder()
+                        .metrics(metrics)
+                        .publisherType(SYNC)
+                        .build());
+
+        String docId = randomUUID().toString();
+        ObjectVersion<String> version = ObjectVersion.<String>builder()
+                .changeset(ImmutableMap.of(ROOT.property("first"), "value"))
+                .build();
+        store.append(docId, ObjectVersionGraph.init(version).getTip());
+        assertThat(metrics.getTime(StoreMetrics.PUBLISH_LAG).getCount()).isEqualTo(1);
+
+        // Explicit publish without pending commits doesn't record lag
+        store.publish();
+        assertThat(metrics.getTime(StoreMetrics.PUBLISH).getCount()).isEqualTo(2);
+        assertThat(metrics.getTime(StoreMetrics.PUBLISH_LAG).getCount()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,120 @@
+package org.javersion.store.jdbc;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class MaintenanceSchedulerTest {
+
+    private MaintenanceScheduler scheduler;
+
+    @After
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void tasks_are_executed_in_priority_order() throws InterruptedException {
+        scheduler = new MaintenanceScheduler(1);
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(4);
+        List<String> executed = new CopyOnWriteArrayList<>();
+
+        scheduler.schedule("blocker", 0, () -> {
+            await(blocked);
+            done.countDown();
+        });
+        scheduler.schedule("low", 1, () -> { executed.add("low"); done.countDown(); });
+        scheduler.schedule("high", 10, () -> { executed.add("high"); done.countDown(); });
+        scheduler.schedule("medium", 5, () -> { executed.add("medium"); done.countDown(); });
+        assertThat(scheduler.getQueueDepth()).isEqualTo(3);
+
+        blocked.countDown();
+        assertThat(done.await(5, SECONDS)).isTrue();
+        assertThat(executed).containsExactly("high", "medium", "low");
+    }
+
+    @Test
+    public void tasks_are_deduplicated_by_key() throws InterruptedException {
+        scheduler = new MaintenanceScheduler(1);
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+
+        assertThat(scheduler.schedule("doc", 1, () -> {
+            await(blocked);
+            done.countDown();
+        })).isTrue();
+        assertThat(scheduler.schedule("doc", 1, done::countDown)).isFalse();
+        assertThat(scheduler.getPending()).isEqualTo(1);
+
+        blocked.countDown();
+        assertThat(done.await(5, SECONDS)).isTrue();
+    }
+
+    @Test
+    public void priority_of_duplicate_task_is_not_evaluated() throws InterruptedException {
+        scheduler = new MaintenanceScheduler(1);
+        CountDownLatch blocked = new CountDownLatch(1);
+        AtomicInteger evaluations = new AtomicInteger();
+
+        assertThat(scheduler.schedule("doc", evaluations::incrementAndGet, () -> await(blocked))).isTrue();
+        assertThat(scheduler.schedule("doc", evaluations::incrementAndGet, () -> {})).isFalse();
+        assertThat(evaluations.get()).isEqualTo(1);
+
+        blocked.countDown();
+    }
+
+    @Test
+    public void retry_on_concurrent_maintenance() throws InterruptedException {
+        scheduler = new MaintenanceScheduler(1, 0, 2, 1);
+        AtomicInteger attempts = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(1);
+
+        scheduler.schedule("doc", 1, () -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new ConcurrentMaintenanceException("conflict");
+            }
+            done.countDown();
+        });
+
+        assertThat(done.await(5, SECONDS)).isTrue();
+        assertThat(attempts.get()).isEqualTo(3);
+        assertThat(scheduler.getRetried()).isEqualTo(2);
+        assertThat(scheduler.getFailed()).isEqualTo(0);
+    }
+
+    @Test
+    public void give_up_after_max_retries() throws InterruptedException {
+        scheduler = new MaintenanceScheduler(1, 0, 1, 1);
+        AtomicInteger attempts = new AtomicInteger();
+
+        scheduler.schedule("doc", 1, () -> {
+            attempts.incrementAndGet();
+            throw new ConcurrentMaintenanceException("conflict");
+        });
+
+        for (int i = 0; i < 100 && scheduler.getFailed() == 0; i++) {
+            Thread.sleep(10);
+        }
+        assertThat(scheduler.getFailed()).isEqualTo(1);
+        assertThat(attempts.get()).isEqualTo(2);
+        assertThat(scheduler.getPending()).isEqualTo(0);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
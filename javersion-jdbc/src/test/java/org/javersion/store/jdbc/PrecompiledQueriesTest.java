@@ -0,0 +1,167 @@
+package org.javersion.store.jdbc;
+
+import static com.google.common.collect.Iterables.getLast;
+import static java.util.UUID.randomUUID;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.javersion.path.PropertyPath.ROOT;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Resource;
+import javax.sql.DataSource;
+
+import org.javersion.core.Revision;
+import org.javersion.object.ObjectVersion;
+import org.javersion.object.ObjectVersionGraph;
+import org.javersion.path.PropertyPath;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.querydsl.sql.Configuration;
+import com.querydsl.sql.SQLBaseListener;
+import com.querydsl.sql.SQLListenerContext;
+import com.querydsl.sql.SQLQueryFactory;
+import com.querydsl.sql.SQLTemplates;
+
+/**
+ * Runs DocumentVersionStoreJdbcTest against stores using precompiled queries.
+ */
+public class PrecompiledQueriesTest extends DocumentVersionStoreJdbcTest {
+
+    @Resource
+    DataSource dataSource;
+
+    @Resource
+    SQLTemplates sqlTemplates;
+
+    @Before
+    public void usePrecompiledQueries() {
+        documentStore = precompiled(documentStore.options);
+        mappedDocumentStore = precompiled(mappedDocumentStore.options);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected AbstractVersionStoreJdbc<String, String, ?, ?, ?> newStore(StoreOptions options) {
+        return precompiled((DocumentStoreOptions<String, String, JDocumentVersion<String>>) options);
+    }
+
+    @Test
+    public void precompiled_and_dynamic_queries_load_same_graph() {
+        String docId = randomUUID().toString();
+        ObjectVersionGraph<String> graph = generateGraph(20, 5);
+        documentStore.append(docId, ImmutableList.copyOf(graph.getVersionNodes()).reverse());
+        documentStore.publish();
+        Revision first = getLast(graph.getVersions()).revision;
+
+        DocumentVersionStoreJdbc<String, String, JDocumentVersion<String>> dynamic = dynamic(documentStore.options);
+
+        assertThat(documentStore.precompiledQueries).isNotNull();
+        assertThat(dynamic.precompiledQueries).isNull();
+        assertThat(ImmutableList.copyOf(documentStore.getFullGraph(docId).getVersions()))
+                .isEqualTo(ImmutableList.copyOf(dynamic.getFullGraph(docId).getVersions()));
+        assertThat(documentStore.fetchUpdates(docId, first))
+                .hasSize(19)
+                .isEqualTo(dynamic.fetchUpdates(docId, first));
+    }
+
+    @Test
+    public void precompiled_queries_are_executed_within_listener_context() {
+        String docId = randomUUID().toString();
+        ObjectVersion<String> version = ObjectVersion.<String>builder()
+                .changeset(ImmutableMap.of(ROOT.property("property"), "value"))
+                .build();
+        documentStore.append(docId, ObjectVersionGraph.init(version).getTip());
+        documentStore.publish();
+
+        // Connection handling, e.g. SQLCloseListener, is configured with listeners
+        List<Connection> ended = new ArrayList<>();
+        Configuration configuration = new Configuration(sqlTemplates);
+        AbstractVersionStoreJdbc.registerTypes("DOCUMENT_", configuration);
+        configuration.addListener(new SQLBaseListener() {
+            @Override
+            public void end(SQLListenerContext context) {
+                ended.add(context.getConnection());
+            }
+        });
+        SQLQueryFactory queryFactory = new SQLQueryFactory(configuration, () -> DataSourceUtils.getConnection(dataSource));
+        DocumentVersionStoreJdbc<String, String, JDocumentVersion<String>> store = precompiled(documentStore.options.toBuilder()
+                .queryFactory(queryFactory)
+                .build());
+
+        assertThat(store.getFullGraph(docId).getTip().getVersion()).isEqualTo(version);
+        // Versions and parents, properties
+        assertThat(ended).hasSize(2).doesNotContainNull();
+    }
+
+    /**
+     * Prints per-load CPU time and allocated bytes of fetching a document with dynamic (QueryDSL) and precompiled queries.
+     * Requires HotSpot's com.sun.management.ThreadMXBean.
+     */
+    @Test
+    @Ignore
+    public void load_cpu_and_allocation() {
+        String docId = randomUUID().toString();
+        documentStore.append(docId, ImmutableList.copyOf(generateGraph(100, 20).getVersionNodes()).reverse());
+        documentStore.publish();
+
+        for (int i = 0; i < 3; i++) {
+            measure("Dynamic", dynamic(documentStore.options), docId);
+            measure("Precompiled", documentStore, docId);
+        }
+    }
+
+    private void measure(String name, DocumentVersionStoreJdbc<String, String, JDocumentVersion<String>> store, String docId) {
+        final int warmup = 200;
+        final int rounds = 1000;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        transactionTemplate.execute(status -> {
+            for (int i = 0; i < warmup; i++) {
+                store.doFetch(docId, false);
+            }
+            long cpu = threads.getCurrentThreadCpuTime();
+            long bytes = threads.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < rounds; i++) {
+                store.doFetch(docId, false);
+            }
+            cpu = threads.getCurrentThreadCpuTime() - cpu;
+            bytes = threads.getThreadAllocatedBytes(threadId) - bytes;
+            System.out.println(String.format("%s: %d us CPU, %d bytes allocated per load", name, cpu / rounds / 1000, bytes / rounds));
+            return null;
+        });
+    }
+
+    private static ObjectVersionGraph<String> generateGraph(int versionCount, int propertyCount) {
+        ObjectVersionGraph<String> graph = ObjectVersionGraph.init();
+        for (int i = 0; i < versionCount; i++) {
+            Map<PropertyPath, Object> changeset = new HashMap<>();
+            for (int j = 0; j < propertyCount; j++) {
+                changeset.put(ROOT.property("property" + j), "value " + i + "." + j);
+            }
+            ObjectVersion.Builder<String> builder = ObjectVersion.<String>builder().changeset(changeset);
+            if (!graph.isEmpty()) {
+                builder.parents(graph.getTip().revision);
+            }
+            graph = graph.commit(builder.build());
+        }
+        return graph;
+    }
+
+    private static DocumentVersionStoreJdbc<String, String, JDocumentVersion<String>> precompiled(DocumentStoreOptions<String, String, JDocumentVersion<String>> options) {
+        return new DocumentVersionStoreJdbc<>(options.toBuilder().precompiledQueries(true).build());
+    }
+
+    private static DocumentVersionStoreJdbc<String, String, JDocumentVersion<String>> dynamic(DocumentStoreOptions<String, String, JDocumentVersion<String>> options) {
+        return new DocumentVersionStoreJdbc<>(options.toBuilder().precompiledQueries(false).build());
+    }
+}
@@ -0,0 +1,121 @@
+package org.javersion.store.jdbc;
+
+import static java.util.Arrays.asList;
+import static java.util.UUID.randomUUID;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.javersion.path.PropertyPath.ROOT;
+import static org.javersion.store.jdbc.GuavaGraphCache.guavaCacheBuilder;
+
+import javax.annotation.Resource;
+
+import org.javersion.object.ObjectVersion;
+import org.javersion.object.ObjectVersionGraph;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringApplicationConfiguration(classes = PersistenceTestConfiguration.class)
+public class ReadReplicaTest {
+
+    @Resource
+    DocumentVersionStoreJdbc<String, String, JDocumentVersion<String>> documentStore;
+
+    @Resource
+    TransactionTemplate transactionTemplate;
+
+    @Test
+    public void reads_are_routed_to_replica_and_fall_back_to_primary() {
+        // Replica that has not (yet) received any changes
+        TestDatabase replica = new TestDatabase("replica");
+        DocumentVersionStoreJdbc<String, String, JDocumentVersion<String>> store = new DocumentVersionStoreJdbc<>(
+                documentStore.options.toBuilder()
+                        .readQueryFactory(replica.queryFactory)
+                        .readTransactions(replica.transactions)
+                        .build());
+
+        String docId = randomUUID().toString();
+        ObjectVersion<String> version = ObjectVersion.<String>builder()
+                .changeset(ImmutableMap.of(ROOT.property("property"), "value"))
+                .build();
+        store.append(docId, ObjectVersionGraph.init(version).getTip());
+        store.publish();
+
+        // Plain reads go to replica
+        assertThat(store.getOptimizedGraph(docId).isEmpty()).isTrue();
+        assertThat(store.getGraphs(asList(docId)).isEmpty()).isTrue();
+
+        // Requested revision is not found from replica
+        assertThat(store.getGraph(docId, asList(version.revision)).getTip().getVersion()).isEqualTo(version);
+        assertThat(store.fetchUpdates(docId, version.revision)).isEmpty();
+
+        // Primary
+        assertThat(documentStore.getOptimizedGraph(docId).getTip().getVersion()).isEqualTo(version);
+    }
+
+    @Test
+    public void reads_within_primary_transaction_are_not_routed_to_replica() {
+        TestDatabase replica = new TestDatabase("replica");
+        DocumentVersionStoreJdbc<String, String, JDocumentVersion<String>> store = new DocumentVersionStoreJdbc<>(
+                documentStore.options.toBuilder()
+                        .readQueryFactory(replica.queryFactory)
+                        .readTransactions(replica.transactions)
+                        .build());
+
+        String docId = randomUUID().toString();
+        ObjectVersion<String> version = ObjectVersion.<String>builder()
+                .changeset(ImmutableMap.of(ROOT.property("property"), "value"))
+                .build();
+        store.append(docId, ObjectVersionGraph.init(version).getTip());
+        store.publish();
+
+        assertThat(store.getOptimizedGraph(docId).isEmpty()).isTrue();
+        ObjectVersionGraph<String> graph = transactionTemplate.execute(status -> store.getOptimizedGraph(docId));
+        assertThat(graph.getTip().getVersion()).isEqualTo(version);
+    }
+
+    @Test
+    public void cache_is_refreshed_from_primary_after_publish() {
+        // Replica that has received the first but not the second version
+        TestDatabase replica = new TestDatabase("lagging_replica");
+        DocumentVersionStoreJdbc<String, String, JDocumentVersion<String>> replicated = new DocumentVersionStoreJdbc<>(
+                documentStore.options.toBuilder()
+                        .queryFactory(replica.queryFactory)
+                        .transactions(replica.transactions)
+                        .build());
+        DocumentVersionStoreJdbc<String, String, JDocumentVersion<String>> store = new DocumentVersionStoreJdbc<>(
+                documentStore.options.toBuilder()
+                        .readQueryFactory(replica.queryFactory)
+                        .readTransactions(replica.transactions)
+                        .cacheBuilder(guavaCacheBuilder(CacheBuilder.newBuilder()))
+                        .build());
+
+        String docId = randomUUID().toString();
+        ObjectVersion<String> v1 = ObjectVersion.<String>builder()
+                .changeset(ImmutableMap.of(ROOT.property("property"), "value1"))
+                .build();
+        ObjectVersion<String> v2 = ObjectVersion.<String>builder()
+                .changeset(ImmutableMap.of(ROOT.property("property"), "value2"))
+                .parents(v1.revision)
+                .build();
+        ObjectVersionGraph<String> graph = ObjectVersionGraph.init(v1, v2);
+
+        store.append(docId, graph.getVersionNode(v1.revision));
+        store.publish();
+        replicated.append(docId, graph.getVersionNode(v1.revision));
+        replicated.publish();
+
+        // Cached from replica
+        assertThat(store.getGraph(docId).getTip().getVersion()).isEqualTo(v1);
+
+        store.append(docId, graph.getVersionNode(v2.revision));
+        store.publish();
+
+        assertThat(store.getGraph(docId).getTip().getVersion()).isEqualTo(v2);
+    }
+}
@@ -0,0 +1,119 @@
+package org.javersion.store.jdbc;
+
+import static java.util.UUID.randomUUID;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.javersion.path.PropertyPath.ROOT;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.annotation.Resource;
+
+import org.javersion.core.Version;
+import org.javersion.object.ObjectVersion;
+import org.javersion.object.ObjectVersionGraph;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringApplicationConfiguration(classes = PersistenceTestConfiguration.class)
+public class ShardedVersionStoreTest {
+
+    @Resource
+    DocumentVersionStoreJdbc<String, String, JDocumentVersion<String>> documentStore;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(3);
+
+    private final List<DocumentVersionStoreJdbc<String, String, JDocumentVersion<String>>> shards = new ArrayList<>();
+
+    private ShardedVersionStore<String, String> store;
+
+    @Before
+    public void init() {
+        for (int i = 0; i < 3; i++) {
+            shards.add(newShard("shard" + i));
+        }
+        store = new ShardedVersionStore<>(shards, executor);
+    }
+
+    @After
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void documents_are_distributed_to_shards() {
+        List<String> docIds = new ArrayList<>();
+        Set<Integer> usedShards = new HashSet<>();
+        for (int i = 0; i < 30; i++) {
+            String docId = randomUUID().toString();
+            docIds.add(docId);
+            usedShards.add(store.getShardIndex(docId));
+            shards.get(store.getShardIndex(docId)).append(docId, ObjectVersionGraph.init(version(docId)).getTip());
+        }
+        assertThat(usedShards.size()).isGreaterThan(1);
+
+        assertThat(store.publish().keySet()).isEqualTo(new HashSet<>(docIds));
+
+        for (String docId : docIds) {
+            int shardIndex = store.getShardIndex(docId);
+            assertThat(store.getGraph(docId).getTip().getProperties()).isEqualTo(ImmutableMap.of(ROOT.property("id"), docId));
+            for (int i = 0; i < shards.size(); i++) {
+                assertThat(shards.get(i).getGraph(docId).isEmpty()).isEqualTo(i != shardIndex);
+            }
+        }
+
+        GraphResults<String, String> results = store.getGraphs(docIds);
+        assertThat(results.getDocIds()).isEqualTo(new HashSet<>(docIds));
+        assertThat(results.latestRevision).isNull();
+
+        Map<String, ?> heads = store.getHeadProperties(docIds, Version.DEFAULT_BRANCH);
+        assertThat(heads.keySet()).isEqualTo(new HashSet<>(docIds));
+    }
+
+    @Test
+    public void routing_is_stable() {
+        String docId = randomUUID().toString();
+        ShardedVersionStore<String, String> other = new ShardedVersionStore<>(ImmutableList.copyOf(shards), executor);
+        assertThat(other.getShardIndex(docId)).isEqualTo(store.getShardIndex(docId));
+        assertThat(store.getShard(docId)).isSameAs(shards.get(store.getShardIndex(docId)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void update_batch_cannot_span_shards() {
+        List<String> docIds = new ArrayList<>();
+        Set<Integer> usedShards = new HashSet<>();
+        while (usedShards.size() < 2) {
+            String docId = randomUUID().toString();
+            docIds.add(docId);
+            usedShards.add(store.getShardIndex(docId));
+        }
+        store.updateBatch(docIds);
+    }
+
+    private static ObjectVersion<String> version(String id) {
+        return ObjectVersion.<String>builder()
+                .changeset(ImmutableMap.of(ROOT.property("id"), id))
+                .build();
+    }
+
+    private DocumentVersionStoreJdbc<String, String, JDocumentVersion<String>> newShard(String name) {
+        TestDatabase database = new TestDatabase(name);
+        return new DocumentVersionStoreJdbc<>(documentStore.options.toBuilder()
+                .queryFactory(database.queryFactory)
+                .transactions(database.transactions)
+                .build());
+    }
+}
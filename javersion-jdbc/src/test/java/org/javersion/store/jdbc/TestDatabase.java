@@ -0,0 +1,104 @@
+package org.javersion.store.jdbc;
+
+import java.util.function.Supplier;
+
+import javax.sql.DataSource;
+
+import org.flywaydb.core.Flyway;
+import org.h2.jdbcx.JdbcDataSource;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.querydsl.sql.Configuration;
+import com.querydsl.sql.H2Templates;
+import com.querydsl.sql.SQLQueryFactory;
+
+/**
+ * Separate, migrated in-memory H2 database with its own transaction manager.
+ */
+class TestDatabase {
+
+    final DataSource dataSource;
+
+    final SQLQueryFactory queryFactory;
+
+    final Transactions transactions;
+
+    TestDatabase(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        this.dataSource = dataSource;
+
+        Flyway flyway = new Flyway();
+        flyway.setDataSource(dataSource);
+        flyway.setLocations("db/migration/common");
+        flyway.migrate();
+
+        Configuration configuration = new Configuration(new H2Templates());
+        AbstractVersionStoreJdbc.registerTypes("DOCUMENT_", configuration);
+        this.queryFactory = new SQLQueryFactory(configuration, () -> DataSourceUtils.getConnection(dataSource));
+        this.transactions = new TemplateTransactions(dataSource);
+    }
+
+    private static class TemplateTransactions implements Transactions {
+
+        private final TransactionTemplate readOnly;
+
+        private final TransactionTemplate writeRequired;
+
+        private final TransactionTemplate writeNewRequired;
+
+        private final TransactionTemplate writeMandatory;
+
+        TemplateTransactions(DataSource dataSource) {
+            DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+            readOnly = template(transactionManager, TransactionDefinition.PROPAGATION_REQUIRED);
+            readOnly.setReadOnly(true);
+            writeRequired = template(transactionManager, TransactionDefinition.PROPAGATION_REQUIRED);
+            writeNewRequired = template(transactionManager, TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+            writeMandatory = template(transactionManager, TransactionDefinition.PROPAGATION_MANDATORY);
+        }
+
+        private static TransactionTemplate template(DataSourceTransactionManager transactionManager, int propagation) {
+            TransactionTemplate template = new TransactionTemplate(transactionManager);
+            template.setPropagationBehavior(propagation);
+            template.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+            return template;
+        }
+
+        @Override
+        public <T> T readOnly(Supplier<T> callback) {
+            return readOnly.execute(status -> callback.get());
+        }
+
+        @Override
+        public <T> T writeRequired(Supplier<T> callback) {
+            return writeRequired.execute(status -> callback.get());
+        }
+
+        @Override
+        public <T> T writeNewRequired(Supplier<T> callback) {
+            return writeNewRequired.execute(status -> callback.get());
+        }
+
+        @Override
+        public <T> T writeMandatory(Supplier<T> callback) {
+            return writeMandatory.execute(status -> callback.get());
+        }
+
+        @Override
+        public void afterCommit(Runnable callback) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    callback.run();
+                }
+            });
+        }
+    }
+}
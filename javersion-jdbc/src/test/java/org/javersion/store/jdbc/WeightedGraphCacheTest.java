@@ -0,0 +1,115 @@
+package org.javersion.store.jdbc;
+
+import static java.util.UUID.randomUUID;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.javersion.path.PropertyPath.ROOT;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.annotation.Resource;
+
+import org.javersion.object.ObjectVersion;
+import org.javersion.object.ObjectVersionGraph;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableMap;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringApplicationConfiguration(classes = PersistenceTestConfiguration.class)
+public class WeightedGraphCacheTest {
+
+    @Resource
+    DocumentVersionStoreJdbc<String, String, JDocumentVersion<String>> documentStore;
+
+    private final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor();
+
+    @After
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    @Test
+    public void refresh_asynchronously() throws InterruptedException {
+        WeightedGraphCache<String, String> cache = new WeightedGraphCache<>(documentStore, 1000, refreshExecutor);
+        String docId = randomUUID().toString();
+
+        ObjectVersion<String> v1 = append(docId, "value1");
+        assertThat(cache.load(docId).getTip().getVersion()).isEqualTo(v1);
+
+        // Block refresh executor
+        CountDownLatch latch = new CountDownLatch(1);
+        refreshExecutor.execute(() -> {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        ObjectVersion<String> v2 = append(docId, "value2");
+        cache.refresh(docId);
+        cache.refresh(docId);
+        assertThat(cache.isRefreshing(docId)).isTrue();
+        // Stale graph is served while refreshing
+        assertThat(cache.load(docId).getTip().getVersion()).isEqualTo(v1);
+
+        latch.countDown();
+        awaitRefresh(cache, docId);
+        assertThat(cache.load(docId).getTip().getVersion()).isEqualTo(v2);
+    }
+
+    @Test
+    public void refresh_only_cached_graphs() {
+        WeightedGraphCache<String, String> cache = new WeightedGraphCache<>(documentStore, 1000, refreshExecutor);
+        String docId = randomUUID().toString();
+        cache.refresh(docId);
+        assertThat(cache.isRefreshing(docId)).isFalse();
+    }
+
+    @Test
+    public void evict_by_weight() {
+        WeightedGraphCache<String, String> cache = new WeightedGraphCache<>(documentStore, 2, refreshExecutor);
+        String docId1 = randomUUID().toString();
+        String docId2 = randomUUID().toString();
+        String docId3 = randomUUID().toString();
+
+        ObjectVersionGraph<String> graph = ObjectVersionGraph.init(append(docId1, "value"));
+        assertThat(WeightedGraphCache.weigh(graph)).isEqualTo(1);
+        append(docId2, "value");
+        append(docId3, "value");
+
+        cache.load(docId1);
+        cache.load(docId1);
+        cache.load(docId2);
+        cache.load(docId3);
+
+        assertThat(cache.size()).isLessThanOrEqualTo(2);
+        CacheStats stats = cache.getStats();
+        assertThat(stats.hitCount()).isEqualTo(1);
+        assertThat(stats.missCount()).isEqualTo(3);
+        assertThat(stats.evictionCount()).isGreaterThan(0);
+    }
+
+    private ObjectVersion<String> append(String docId, String value) {
+        ObjectVersion<String> version = ObjectVersion.<String>builder()
+                .changeset(ImmutableMap.of(ROOT.property("property"), value))
+                .build();
+        documentStore.append(docId, ObjectVersionGraph.init(version).getTip());
+        documentStore.publish();
+        return version;
+    }
+
+    private void awaitRefresh(WeightedGraphCache<String, String> cache, String docId) throws InterruptedException {
+        for (int i = 0; i < 100 && cache.isRefreshing(docId); i++) {
+            Thread.sleep(10);
+        }
+        assertThat(cache.isRefreshing(docId)).isFalse();
+    }
+}
@@ -62,7 +62,7 @@ create table DOCUMENT_VERSION_PROPERTY (
 
   PATH varchar(1024) not null,
   -- n=null, O=object, A=array, s=string,
-  -- b=boolean, l=long, d=double, D=bigdecimal
+  -- b=boolean, l=long, d=double, D=bigdecimal, H=blob hash
   TYPE char(1) not null,
   STR text,
   NBR bigint,
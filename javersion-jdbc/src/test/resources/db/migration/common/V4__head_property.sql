@@ -0,0 +1,18 @@
+-------------------------------------------------------
+-- Optional materialized state of document branches. --
+-- For custom repositories, replace DOCUMENT_         --
+-------------------------------------------------------
+
+create table DOCUMENT_HEAD_PROPERTY (
+  DOC_ID varchar(255) not null,
+  BRANCH varchar(128) not null,
+
+  PATH varchar(1024) not null,
+  -- n=null, O=object, A=array, s=string,
+  -- b=boolean, l=long, d=double, D=bigdecimal, H=blob hash
+  TYPE char(1) not null,
+  STR text,
+  NBR bigint,
+
+  primary key (DOC_ID, BRANCH, PATH)
+);
@@ -0,0 +1,23 @@
+---------------------------------------------------------
+-- Optional full state checkpoints of document versions. --
+-- For custom repositories, replace DOCUMENT_           --
+---------------------------------------------------------
+
+create table DOCUMENT_CHECKPOINT_PROPERTY (
+  REVISION varchar(32) not null,
+  -- 1 = active
+  STATUS numeric(1) not null,
+
+  PATH varchar(1024) not null,
+  -- n=null, O=object, A=array, s=string,
+  -- b=boolean, l=long, d=double, D=bigdecimal, H=blob hash
+  TYPE char(1) not null,
+  STR text,
+  NBR bigint,
+
+  primary key (REVISION, PATH),
+
+  constraint DOCUMENT_CHECKPOINT_PROPERTY_REVISION_FK
+    foreign key (REVISION)
+    references DOCUMENT_VERSION (REVISION)
+);
@@ -0,0 +1,14 @@
+---------------------------------------------------------
+-- Optional compressed storage of large string values. --
+-- For custom repositories, replace DOCUMENT_           --
+---------------------------------------------------------
+
+create table DOCUMENT_BLOB (
+  -- SHA-256 of the value
+  HASH varchar(64) not null,
+  -- Deflate compressed UTF-8 value
+  DATA bytea not null
+);
+
+-- Not unique: concurrent transactions may insert the same blob
+create index DOCUMENT_BLOB_HASH_IDX on DOCUMENT_BLOB (HASH);
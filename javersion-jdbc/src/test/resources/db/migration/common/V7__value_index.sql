@@ -0,0 +1,27 @@
+------------------------------------------------------------
+-- Optional index of document values by indexed paths.    --
+-- For custom repositories, replace DOCUMENT_             --
+------------------------------------------------------------
+
+create table DOCUMENT_VALUE_INDEX (
+  DOC_ID varchar(255) not null,
+  BRANCH varchar(128) not null,
+
+  PATH varchar(1024) not null,
+  -- n=null, O=object, A=array, s=string,
+  -- b=boolean, l=long, d=double, D=bigdecimal, H=blob hash
+  TYPE char(1) not null,
+  STR text,
+  NBR bigint,
+  -- SHA-256 of STR
+  STR_HASH varchar(64),
+
+  -- Head revision of the branch
+  REVISION varchar(32) not null,
+
+  primary key (DOC_ID, BRANCH, PATH)
+);
+
+-- STR is text and not indexable in all databases so strings are looked up by STR_HASH
+create index DOCUMENT_VALUE_INDEX_NBR_IDX on DOCUMENT_VALUE_INDEX (PATH, NBR);
+create index DOCUMENT_VALUE_INDEX_STR_IDX on DOCUMENT_VALUE_INDEX (PATH, STR_HASH);
@@ -17,6 +17,8 @@ package org.javersion.object;
 
 import org.javersion.core.Version;
 import org.javersion.core.AbstractVersionGraph;
+import org.javersion.core.GraphMetrics;
+import org.javersion.core.Metrics;
 import org.javersion.core.VersionGraphBuilder;
 import org.javersion.object.ObjectVersionGraph.Builder;
 import org.javersion.path.PropertyPath;
@@ -45,11 +47,18 @@ public final class ObjectVersionGraph<M> extends AbstractVersionGraph<PropertyPa
     }
 
     public static <M> ObjectVersionGraph<M> init(Iterable<? extends Version<PropertyPath, Object, M>> versions) {
+        long start = System.nanoTime();
         Builder<M> builder = new Builder<M>();
+        int count = 0;
         for (Version<PropertyPath, Object, M> version : versions) {
             builder.add(version);
+            count++;
         }
-        return builder.build();
+        ObjectVersionGraph<M> graph = builder.build();
+        Metrics metrics = GraphMetrics.get();
+        metrics.time(GraphMetrics.INIT, System.nanoTime() - start);
+        metrics.count(GraphMetrics.INIT, count);
+        return graph;
     }
 
     private ObjectVersionGraph() {
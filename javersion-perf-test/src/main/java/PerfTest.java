@@ -1,5 +1,9 @@
 import static java.lang.System.out;
 
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.TreeMap;
 
@@ -16,6 +20,7 @@ public class PerfTest {
         runJaversion(data);
 //        runJaversionTree(data);
 //        runJaversionMutableTree(data);
+//        runJaversionSortedBuild(sequentialData(100000));
 
 //        runClojure(data);
 //        runClojureTree(data);
@@ -125,6 +130,28 @@ public class PerfTest {
         out.println(String.format("\n%s", System.nanoTime() - begin));
     }
     
+    private static void runJaversionSortedBuild(Integer[] data) {
+        out.println("Javersion PersistentTreeMap: incremental vs sorted build");
+        List<Map.Entry<Integer, Integer>> entries = new ArrayList<>(data.length);
+        for (Integer v : data) {
+            entries.add(new AbstractMap.SimpleEntry<>(v, v));
+        }
+        for (int round = 0; round < 20; round++) {
+            start();
+            PersistentTreeMap<Integer, Integer> incremental = PersistentTreeMap.<Integer, Integer> empty().assocAll(entries);
+            long incrementalTime = end();
+
+            start();
+            PersistentTreeMap<Integer, Integer> sorted = PersistentTreeMap.copyOfSorted(entries);
+            long sortedTime = end();
+
+            if (incremental.size() != sorted.size()) {
+                throw new AssertionError("Expected " + incremental.size() + " GOT " + sorted.size());
+            }
+            out.println(String.format("%s\t%s", incrementalTime, sortedTime));
+        }
+    }
+
     private static void runJavaTree(Integer[] data) {
         out.println("Java TreeMap");
         TreeMap<Integer, Integer> map = new TreeMap<Integer, Integer>();
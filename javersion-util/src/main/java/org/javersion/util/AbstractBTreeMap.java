@@ -0,0 +1,1131 @@
+/*
+ * Copyright 2016 Samppa Saarela
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javersion.util;
+
+import static java.lang.System.arraycopy;
+import static java.util.Arrays.copyOfRange;
+import static java.util.Objects.requireNonNull;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import com.google.common.collect.UnmodifiableIterator;
+
+/**
+ * Persistent B+-tree. Entries are stored in leaves of up to {@value #MAX_SIZE} keys and values, branches hold
+ * up to {@value #MAX_SIZE} children. Compared to {@link AbstractRedBlackTree} a lookup or range scan touches
+ * far fewer nodes and an update copies only a few wide nodes instead of O(log<sub>2</sub> n) small ones.
+ * <p>
+ * Nodes created within an uncommitted {@link UpdateContext} own their arrays and are edited in place.
+ * <p>
+ * Branches keep count of entries in their subtree, so that entries can be accessed by index and
+ * counted by key range in logarithmic time.
+ */
+public abstract class AbstractBTreeMap<K, V, This extends AbstractBTreeMap<K, V, This>>
+        implements Iterable<Map.Entry<K, V>> {
+
+    static final int MAX_SIZE = 32;
+
+    static final int MIN_SIZE = MAX_SIZE / 2;
+
+    // Non-root nodes have at least MIN_SIZE entries or children, so Integer.MAX_VALUE entries fit in 8 levels
+    static final int MAX_DEPTH = 8;
+
+    @SuppressWarnings("rawtypes")
+    private final static Comparator<Comparable> NATURAL = new Comparator<Comparable>() {
+        @SuppressWarnings("unchecked")
+        @Override
+        public int compare(Comparable left, Comparable right) {
+            return left.compareTo(right);
+        }
+    };
+
+    protected final Comparator<? super K> comparator;
+
+    @SuppressWarnings("unchecked")
+    protected AbstractBTreeMap() {
+        this((Comparator<K>) NATURAL);
+    }
+
+    protected AbstractBTreeMap(Comparator<? super K> comparator) {
+        this.comparator = requireNonNull(comparator, "comparator");
+    }
+
+    public abstract int size();
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    protected This self() {
+        return (This) this;
+    }
+
+    protected abstract Node<K, V> root();
+
+    protected abstract This doReturn(Comparator<? super K> comparator, Node<K, V> newRoot, int newSize);
+
+    protected UpdateContext<Map.Entry<K, V>> updateContext(int expectedUpdates, Merger<Map.Entry<K, V>> merger) {
+        return new UpdateContext<>(expectedUpdates, merger);
+    }
+
+    protected void commit(UpdateContext<?> updateContext) {
+        updateContext.commit();
+    }
+
+    private This commitAndReturn(UpdateContext<?> updateContext, Node<K, V> newRoot, int newSize) {
+        commit(updateContext);
+        return doReturn(comparator, newRoot, newSize);
+    }
+
+    public V get(Object key) {
+        Leaf<K, V> leaf = findLeaf(root(), key);
+        if (leaf != null) {
+            int index = leaf.indexOf(key, comparator);
+            return index >= 0 ? leaf.valueAt(index) : null;
+        }
+        return null;
+    }
+
+    public boolean containsKey(Object key) {
+        Leaf<K, V> leaf = findLeaf(root(), key);
+        return leaf != null && leaf.indexOf(key, comparator) >= 0;
+    }
+
+    private Leaf<K, V> findLeaf(Node<K, V> node, Object key) {
+        if (node == null) {
+            return null;
+        }
+        while (node instanceof Branch) {
+            Branch<K, V> branch = (Branch<K, V>) node;
+            node = branch.childAt(branch.childIndex(key, comparator));
+        }
+        return (Leaf<K, V>) node;
+    }
+
+    public Map.Entry<K, V> getFirstEntry() {
+        Node<K, V> node = root();
+        if (node == null) {
+            return null;
+        }
+        while (node instanceof Branch) {
+            node = ((Branch<K, V>) node).childAt(0);
+        }
+        return ((Leaf<K, V>) node).entryAt(0);
+    }
+
+    public Map.Entry<K, V> getLastEntry() {
+        Node<K, V> node = root();
+        if (node == null) {
+            return null;
+        }
+        while (node instanceof Branch) {
+            node = ((Branch<K, V>) node).childAt(node.size - 1);
+        }
+        return ((Leaf<K, V>) node).entryAt(node.size - 1);
+    }
+
+    public Map.Entry<K, V> higherEntry(K key) {
+        return first(key, false, null, false, true);
+    }
+
+    public Map.Entry<K, V> ceilingEntry(K key) {
+        return first(key, true, null, false, true);
+    }
+
+    public Map.Entry<K, V> lowerEntry(K key) {
+        return first(null, false, key, false, false);
+    }
+
+    public Map.Entry<K, V> floorEntry(K key) {
+        return first(null, false, key, true, false);
+    }
+
+    private Map.Entry<K, V> first(K from, boolean fromInclusive, K to, boolean toInclusive, boolean asc) {
+        EntryIterator<K, V> iter = new EntryIterator<>(root(), comparator, asc, from, fromInclusive, to, toInclusive);
+        return iter.hasNext() ? iter.next() : null;
+    }
+
+    public This assoc(K key, V value) {
+        return merge(key, value, null);
+    }
+
+    public This assocAll(Map<? extends K, ? extends V> map) {
+        return mergeAll(map, null);
+    }
+
+    public This assocAll(Iterable<Map.Entry<K, V>> entries) {
+        return mergeAll(entries, null);
+    }
+
+    /**
+     * Adds entries given in strictly ascending key order. Builds the tree bottom-up in O(n) if this map is empty.
+     *
+     * @param checkOrder verify that entries are in strictly ascending order
+     * @throws IllegalArgumentException if checkOrder is true and entries are not in strictly ascending order
+     */
+    public This assocAllSorted(Iterable<Map.Entry<K, V>> sortedEntries, boolean checkOrder) {
+        if (checkOrder) {
+            sortedEntries = checkOrder(sortedEntries);
+        }
+        if (root() != null) {
+            return mergeAll(sortedEntries, null);
+        }
+        UpdateContext<Map.Entry<K, V>> updateContext = updateContext(32, null);
+        List<Map.Entry<K, V>> entries = sortedEntries instanceof Collection
+                ? new ArrayList<>(((Collection<?>) sortedEntries).size())
+                : new ArrayList<>();
+        for (Map.Entry<K, V> entry : sortedEntries) {
+            if (updateContext.insert(entry)) {
+                entries.add(entry);
+            }
+        }
+        if (entries.isEmpty()) {
+            return self();
+        }
+        updateContext.getChangeAndReset();
+        return commitAndReturn(updateContext, buildSorted(updateContext, entries), entries.size());
+    }
+
+    private List<Map.Entry<K, V>> checkOrder(Iterable<Map.Entry<K, V>> sortedEntries) {
+        List<Map.Entry<K, V>> entries = new ArrayList<>();
+        Map.Entry<K, V> previous = null;
+        for (Map.Entry<K, V> entry : sortedEntries) {
+            if (previous != null && comparator.compare(previous.getKey(), entry.getKey()) >= 0) {
+                throw new IllegalArgumentException("Keys should be in strictly ascending order: " + previous.getKey() + " >= " + entry.getKey());
+            }
+            entries.add(entry);
+            previous = entry;
+        }
+        return entries;
+    }
+
+    /**
+     * Entries are divided evenly into as few leaves as possible and leaves into as few branches as possible,
+     * level by level, so that all nodes but root have at least MIN_SIZE entries or children.
+     */
+    private Node<K, V> buildSorted(UpdateContext<?> updateContext, List<Map.Entry<K, V>> entries) {
+        int size = entries.size();
+        int leafCount = (size + MAX_SIZE - 1) / MAX_SIZE;
+        List<Node<K, V>> nodes = new ArrayList<>(leafCount);
+        int offset = 0;
+        for (int i = 0; i < leafCount; i++) {
+            int leafSize = (size - offset) / (leafCount - i);
+            Object[] keys = new Object[leafSize];
+            Object[] values = new Object[leafSize];
+            for (int j = 0; j < leafSize; j++) {
+                Map.Entry<K, V> entry = entries.get(offset + j);
+                keys[j] = entry.getKey();
+                values[j] = entry.getValue();
+            }
+            nodes.add(new Leaf<>(updateContext, keys, values, leafSize));
+            offset += leafSize;
+        }
+        while (nodes.size() > 1) {
+            int count = nodes.size();
+            int branchCount = (count + MAX_SIZE - 1) / MAX_SIZE;
+            List<Node<K, V>> branches = new ArrayList<>(branchCount);
+            offset = 0;
+            for (int i = 0; i < branchCount; i++) {
+                int branchSize = (count - offset) / (branchCount - i);
+                Object[] keys = new Object[branchSize];
+                Object[] children = new Object[branchSize];
+                for (int j = 0; j < branchSize; j++) {
+                    Node<K, V> child = nodes.get(offset + j);
+                    keys[j] = child.keys[0];
+                    children[j] = child;
+                }
+                branches.add(new Branch<>(updateContext, keys, children, branchSize));
+                offset += branchSize;
+            }
+            nodes = branches;
+        }
+        return nodes.get(0);
+    }
+
+    public This merge(K key, V value, Merger<Map.Entry<K, V>> merger) {
+        UpdateContext<Map.Entry<K, V>> updateContext = updateContext(1, merger);
+        Node<K, V> newRoot = doAssoc(updateContext, root(), new SimpleImmutableEntry<>(key, value));
+        return commitAndReturn(updateContext, newRoot, size() + updateContext.getChangeAndReset());
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public This mergeAll(Map<? extends K, ? extends V> map, Merger<Map.Entry<K, V>> merger) {
+        Iterable<Map.Entry<K, V>> entries = (Iterable) map.entrySet();
+        return doMergeAll(updateContext(map.size(), merger), entries);
+    }
+
+    public This mergeAll(Iterable<Map.Entry<K, V>> entries, Merger<Map.Entry<K, V>> merger) {
+        return doMergeAll(updateContext(32, merger), entries);
+    }
+
+    private This doMergeAll(UpdateContext<Map.Entry<K, V>> updateContext, Iterable<Map.Entry<K, V>> entries) {
+        Node<K, V> newRoot = root();
+        int newSize = size();
+        for (Map.Entry<K, V> entry : entries) {
+            newRoot = doAssoc(updateContext, newRoot, entry);
+            newSize += updateContext.getChangeAndReset();
+        }
+        return commitAndReturn(updateContext, newRoot, newSize);
+    }
+
+    private Node<K, V> doAssoc(UpdateContext<Map.Entry<K, V>> updateContext, Node<K, V> root, Map.Entry<K, V> newEntry) {
+        if (root == null) {
+            if (!updateContext.insert(newEntry)) {
+                return null;
+            }
+            return new Leaf<>(updateContext, new Object[] { newEntry.getKey() }, new Object[] { newEntry.getValue() }, 1);
+        }
+        Node<K, V> newRoot = root.assoc(updateContext, newEntry, comparator);
+        if (newRoot.size > MAX_SIZE) {
+            Node<K, V> right = newRoot.split(updateContext);
+            return new Branch<>(updateContext, new Object[] { newRoot.keys[0], right.keys[0] }, new Object[] { newRoot, right }, 2,
+                    newRoot.count() + right.count());
+        }
+        return newRoot;
+    }
+
+    public This dissoc(Object key) {
+        return dissoc(key, null);
+    }
+
+    public This dissoc(Object key, Merger<Map.Entry<K, V>> merger) {
+        Node<K, V> root = root();
+        if (root == null) {
+            return self();
+        }
+        UpdateContext<Map.Entry<K, V>> updateContext = updateContext(1, merger);
+        Node<K, V> newRoot = root.dissoc(updateContext, key, comparator);
+        if (newRoot.size == 0) {
+            newRoot = null;
+        } else if (newRoot instanceof Branch && newRoot.size == 1) {
+            newRoot = ((Branch<K, V>) newRoot).childAt(0);
+        }
+        return commitAndReturn(updateContext, newRoot, size() + updateContext.getChangeAndReset());
+    }
+
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return iterator(true);
+    }
+
+    /**
+     * @return number of keys less than given key, i.e. index of the key if it's in this map or it's insertion point
+     */
+    public int rank(Object key) {
+        return rank(key, false);
+    }
+
+    /**
+     * @return entry at given index in key order
+     * @throws IndexOutOfBoundsException if index is negative or not less than size
+     */
+    public Map.Entry<K, V> getByIndex(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + size());
+        }
+        Node<K, V> node = root();
+        while (node instanceof Branch) {
+            Branch<K, V> branch = (Branch<K, V>) node;
+            int i = 0;
+            Node<K, V> child = branch.childAt(i);
+            while (index >= child.count()) {
+                index -= child.count();
+                child = branch.childAt(++i);
+            }
+            node = child;
+        }
+        return ((Leaf<K, V>) node).entryAt(index);
+    }
+
+    /**
+     * @return number of entries within given range in O(log n). Null bound denotes an unbounded range.
+     */
+    public int rangeSize(K from, boolean fromInclusive, K to, boolean toInclusive) {
+        int start = from == null ? 0 : rank(from, !fromInclusive);
+        int end = to == null ? size() : rank(to, toInclusive);
+        return Math.max(0, end - start);
+    }
+
+    /**
+     * @return number of keys less than (or equal to, if inclusive) given key
+     */
+    private int rank(Object key, boolean inclusive) {
+        Node<K, V> node = root();
+        if (node == null) {
+            return 0;
+        }
+        int rank = 0;
+        while (node instanceof Branch) {
+            Branch<K, V> branch = (Branch<K, V>) node;
+            int index = branch.childIndex(key, comparator);
+            for (int i = 0; i < index; i++) {
+                rank += branch.childAt(i).count();
+            }
+            node = branch.childAt(index);
+        }
+        int index = ((Leaf<K, V>) node).indexOf(key, comparator);
+        if (index >= 0) {
+            return rank + (inclusive ? index + 1 : index);
+        }
+        return rank - (index + 1);
+    }
+
+    public Iterator<Map.Entry<K, V>> iterator(boolean asc) {
+        return new EntryIterator<>(root(), comparator, asc, null, false, null, false);
+    }
+
+    public Iterable<Map.Entry<K, V>> range(K from, K to) {
+        return range(from, true, to, false, true);
+    }
+
+    public Iterable<Map.Entry<K, V>> range(K from, K to, boolean asc) {
+        return range(from, true, to, false, asc);
+    }
+
+    public Iterable<Map.Entry<K, V>> range(final K from, final boolean fromInclusive, final K to, final boolean toInclusive) {
+        return range(from, fromInclusive, to, toInclusive, true);
+    }
+
+    public Iterable<Map.Entry<K, V>> range(final K from, final boolean fromInclusive, final K to, final boolean toInclusive, final boolean asc) {
+        return () -> new EntryIterator<>(root(), comparator, asc, from, fromInclusive, to, toInclusive);
+    }
+
+    /**
+     * Inserts value into array at index. An editable node's array is shifted in place if it has room,
+     * otherwise a new array is allocated with room to grow within the current update context.
+     */
+    static Object[] insert(Object[] array, int size, int index, Object value, boolean editable) {
+        if (editable && size < array.length) {
+            arraycopy(array, index, array, index + 1, size - index);
+            array[index] = value;
+            return array;
+        }
+        Object[] result = new Object[editable ? MAX_SIZE + 1 : size + 1];
+        arraycopy(array, 0, result, 0, index);
+        result[index] = value;
+        arraycopy(array, index, result, index + 1, size - index);
+        return result;
+    }
+
+    static Object[] remove(Object[] array, int size, int index, boolean editable) {
+        if (editable) {
+            arraycopy(array, index + 1, array, index, size - index - 1);
+            array[size - 1] = null;
+            return array;
+        }
+        Object[] result = new Object[size - 1];
+        arraycopy(array, 0, result, 0, index);
+        arraycopy(array, index + 1, result, index, size - index - 1);
+        return result;
+    }
+
+    static Object[] concat(Object[] left, int leftSize, Object[] right, int rightSize) {
+        Object[] result = new Object[leftSize + rightSize];
+        arraycopy(left, 0, result, 0, leftSize);
+        arraycopy(right, 0, result, leftSize, rightSize);
+        return result;
+    }
+
+    static abstract class Node<K, V> {
+
+        final UpdateContext<?> updateContext;
+
+        /**
+         * Number of entries in a leaf or children in a branch.
+         */
+        int size;
+
+        /**
+         * Leaf: keys of entries. Branch: keys[i] is a lower bound of keys in children[i].
+         */
+        Object[] keys;
+
+        Node(UpdateContext<?> updateContext, Object[] keys, int size) {
+            this.updateContext = updateContext;
+            this.keys = keys;
+            this.size = size;
+        }
+
+        final boolean isEditable(UpdateContext<?> currentContext) {
+            return updateContext != null && updateContext.isSameAs(currentContext);
+        }
+
+        @SuppressWarnings("unchecked")
+        final K keyAt(int index) {
+            return (K) keys[index];
+        }
+
+        /**
+         * Number of entries in this subtree.
+         */
+        abstract int count();
+
+        abstract Node<K, V> assoc(UpdateContext<Map.Entry<K, V>> currentContext, Map.Entry<K, V> newEntry, Comparator<? super K> comparator);
+
+        abstract Node<K, V> dissoc(UpdateContext<Map.Entry<K, V>> currentContext, Object key, Comparator<? super K> comparator);
+
+        /**
+         * Values of a leaf or children of a branch.
+         */
+        abstract Object[] items();
+
+        abstract Node<K, V> withContent(UpdateContext<?> currentContext, Object[] newKeys, Object[] newItems, int newSize);
+
+        /**
+         * Splits an overfull node. This node keeps the lower half and the upper half is returned as a new node.
+         */
+        final Node<K, V> split(UpdateContext<?> currentContext) {
+            int leftSize = size / 2;
+            Object[] items = items();
+            Node<K, V> right = newNode(currentContext, copyOfRange(keys, leftSize, size), copyOfRange(items, leftSize, size), size - leftSize);
+            if (isEditable(currentContext)) {
+                for (int i = leftSize; i < size; i++) {
+                    keys[i] = null;
+                    items[i] = null;
+                }
+                size = leftSize;
+                if (this instanceof Branch) {
+                    ((Branch<K, V>) this).count -= right.count();
+                }
+            } else {
+                // Overfull nodes are always created within current context - this is just for safety
+                throw new IllegalStateException("node from another UpdateContext");
+            }
+            return right;
+        }
+
+        abstract Node<K, V> newNode(UpdateContext<?> currentContext, Object[] newKeys, Object[] newItems, int newSize);
+
+    }
+
+    static final class Leaf<K, V> extends Node<K, V> {
+
+        Object[] values;
+
+        Leaf(UpdateContext<?> updateContext, Object[] keys, Object[] values, int size) {
+            super(updateContext, keys, size);
+            this.values = values;
+        }
+
+        @Override
+        int count() {
+            return size;
+        }
+
+        @SuppressWarnings("unchecked")
+        V valueAt(int index) {
+            return (V) values[index];
+        }
+
+        Map.Entry<K, V> entryAt(int index) {
+            return new SimpleImmutableEntry<>(keyAt(index), valueAt(index));
+        }
+
+        /**
+         * @return index of the key or (-(insertion point) - 1) if not found
+         */
+        @SuppressWarnings("unchecked")
+        int indexOf(Object key, Comparator<? super K> comparator) {
+            int lo = 0;
+            int hi = size - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int cmp = comparator.compare(keyAt(mid), (K) key);
+                if (cmp < 0) {
+                    lo = mid + 1;
+                } else if (cmp > 0) {
+                    hi = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(lo + 1);
+        }
+
+        @Override
+        Node<K, V> assoc(UpdateContext<Map.Entry<K, V>> currentContext, Map.Entry<K, V> newEntry, Comparator<? super K> comparator) {
+            int index = indexOf(newEntry.getKey(), comparator);
+            if (index >= 0) {
+                if (Objects.equals(valueAt(index), newEntry.getValue()) || !currentContext.merge(entryAt(index), newEntry)) {
+                    return this;
+                }
+                if (isEditable(currentContext)) {
+                    values[index] = newEntry.getValue();
+                    return this;
+                }
+                Object[] newValues = values.clone();
+                newValues[index] = newEntry.getValue();
+                return new Leaf<>(currentContext, keys.clone(), newValues, size);
+            }
+            if (!currentContext.insert(newEntry)) {
+                return this;
+            }
+            index = -(index + 1);
+            boolean editable = isEditable(currentContext);
+            return withContent(currentContext,
+                    insert(keys, size, index, newEntry.getKey(), editable),
+                    insert(values, size, index, newEntry.getValue(), editable),
+                    size + 1);
+        }
+
+        @Override
+        Node<K, V> dissoc(UpdateContext<Map.Entry<K, V>> currentContext, Object key, Comparator<? super K> comparator) {
+            int index = indexOf(key, comparator);
+            if (index < 0 || !currentContext.delete(entryAt(index))) {
+                return this;
+            }
+            boolean editable = isEditable(currentContext);
+            return withContent(currentContext,
+                    remove(keys, size, index, editable),
+                    remove(values, size, index, editable),
+                    size - 1);
+        }
+
+        @Override
+        Object[] items() {
+            return values;
+        }
+
+        @Override
+        Node<K, V> withContent(UpdateContext<?> currentContext, Object[] newKeys, Object[] newValues, int newSize) {
+            if (isEditable(currentContext)) {
+                this.keys = newKeys;
+                this.values = newValues;
+                this.size = newSize;
+                return this;
+            }
+            return new Leaf<>(currentContext, newKeys, newValues, newSize);
+        }
+
+        @Override
+        Node<K, V> newNode(UpdateContext<?> currentContext, Object[] newKeys, Object[] newValues, int newSize) {
+            return new Leaf<>(currentContext, newKeys, newValues, newSize);
+        }
+    }
+
+    static final class Branch<K, V> extends Node<K, V> {
+
+        Object[] children;
+
+        int count;
+
+        Branch(UpdateContext<?> updateContext, Object[] keys, Object[] children, int size) {
+            this(updateContext, keys, children, size, count(children, size));
+        }
+
+        Branch(UpdateContext<?> updateContext, Object[] keys, Object[] children, int size, int count) {
+            super(updateContext, keys, size);
+            this.children = children;
+            this.count = count;
+        }
+
+        private static int count(Object[] children, int size) {
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                count += ((Node<?, ?>) children[i]).count();
+            }
+            return count;
+        }
+
+        @Override
+        int count() {
+            return count;
+        }
+
+        @SuppressWarnings("unchecked")
+        Node<K, V> childAt(int index) {
+            return (Node<K, V>) children[index];
+        }
+
+        /**
+         * @return index of the last child whose lower bound is less than or equal to key or 0
+         */
+        @SuppressWarnings("unchecked")
+        int childIndex(Object key, Comparator<? super K> comparator) {
+            int lo = 1;
+            int hi = size - 1;
+            int index = 0;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (comparator.compare(keyAt(mid), (K) key) <= 0) {
+                    index = mid;
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return index;
+        }
+
+        @Override
+        Node<K, V> assoc(UpdateContext<Map.Entry<K, V>> currentContext, Map.Entry<K, V> newEntry, Comparator<? super K> comparator) {
+            int index = childIndex(newEntry.getKey(), comparator);
+            Node<K, V> child = childAt(index);
+            int childCount = child.count();
+            Node<K, V> newChild = child.assoc(currentContext, newEntry, comparator);
+            if (newChild.size > MAX_SIZE) {
+                Node<K, V> right = newChild.split(currentContext);
+                boolean editable = isEditable(currentContext);
+                Object[] newKeys = insert(keys, size, index + 1, right.keys[0], editable);
+                Object[] newChildren = insert(children, size, index + 1, right, editable);
+                newChildren[index] = newChild;
+                return withContent(currentContext, newKeys, newChildren, size + 1);
+            }
+            return setChild(currentContext, index, child, newChild, count + newChild.count() - childCount);
+        }
+
+        @Override
+        Node<K, V> dissoc(UpdateContext<Map.Entry<K, V>> currentContext, Object key, Comparator<? super K> comparator) {
+            int index = childIndex(key, comparator);
+            Node<K, V> child = childAt(index);
+            int childCount = child.count();
+            Node<K, V> newChild = child.dissoc(currentContext, key, comparator);
+            if (newChild.size < MIN_SIZE) {
+                return rebalance(currentContext, index, newChild);
+            }
+            return setChild(currentContext, index, child, newChild, count + newChild.count() - childCount);
+        }
+
+        /**
+         * An editable child may have changed in place, so newCount is compared in addition to identity.
+         */
+        private Node<K, V> setChild(UpdateContext<?> currentContext, int index, Node<K, V> child, Node<K, V> newChild, int newCount) {
+            if (newChild == child && newCount == count) {
+                return this;
+            }
+            if (isEditable(currentContext)) {
+                children[index] = newChild;
+                count = newCount;
+                return this;
+            }
+            Object[] newChildren = children.clone();
+            newChildren[index] = newChild;
+            return new Branch<>(currentContext, keys.clone(), newChildren, size, newCount);
+        }
+
+        /**
+         * Merges an underfull child with it's sibling or, if they don't fit into one node, distributes their
+         * entries or children evenly.
+         */
+        private Node<K, V> rebalance(UpdateContext<?> currentContext, int index, Node<K, V> child) {
+            int leftIndex = index > 0 ? index - 1 : index;
+            Node<K, V> left = leftIndex == index ? child : childAt(leftIndex);
+            Node<K, V> right = leftIndex == index ? childAt(index + 1) : child;
+            int total = left.size + right.size;
+
+            Object[] mergedKeys = concat(left.keys, left.size, right.keys, right.size);
+            if (left instanceof Branch) {
+                // Lower bound of the right node's first child is it's separator in this node
+                mergedKeys[left.size] = keys[leftIndex + 1];
+            }
+            Object[] mergedItems = concat(left.items(), left.size, right.items(), right.size);
+
+            boolean editable = isEditable(currentContext);
+            if (total <= MAX_SIZE) {
+                Node<K, V> merged = left.withContent(currentContext, mergedKeys, mergedItems, total);
+                Object[] newKeys = remove(keys, size, leftIndex + 1, editable);
+                Object[] newChildren = remove(children, size, leftIndex + 1, editable);
+                newChildren[leftIndex] = merged;
+                return withContent(currentContext, newKeys, newChildren, size - 1);
+            } else {
+                int leftSize = total / 2;
+                Node<K, V> newLeft = left.withContent(currentContext,
+                        copyOfRange(mergedKeys, 0, leftSize), copyOfRange(mergedItems, 0, leftSize), leftSize);
+                Node<K, V> newRight = right.withContent(currentContext,
+                        copyOfRange(mergedKeys, leftSize, total), copyOfRange(mergedItems, leftSize, total), total - leftSize);
+                Object[] newKeys = editable ? keys : keys.clone();
+                Object[] newChildren = editable ? children : children.clone();
+                newKeys[leftIndex + 1] = newRight.keys[0];
+                newChildren[leftIndex] = newLeft;
+                newChildren[leftIndex + 1] = newRight;
+                return withContent(currentContext, newKeys, newChildren, size);
+            }
+        }
+
+        @Override
+        Object[] items() {
+            return children;
+        }
+
+        @Override
+        Node<K, V> withContent(UpdateContext<?> currentContext, Object[] newKeys, Object[] newChildren, int newSize) {
+            if (isEditable(currentContext)) {
+                this.keys = newKeys;
+                this.children = newChildren;
+                this.size = newSize;
+                this.count = count(newChildren, newSize);
+                return this;
+            }
+            return new Branch<>(currentContext, newKeys, newChildren, newSize);
+        }
+
+        @Override
+        Node<K, V> newNode(UpdateContext<?> currentContext, Object[] newKeys, Object[] newChildren, int newSize) {
+            return new Branch<>(currentContext, newKeys, newChildren, newSize);
+        }
+    }
+
+    static class EntryIterator<K, V> extends UnmodifiableIterator<Map.Entry<K, V>> {
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private final Node<K, V>[] path = new Node[MAX_DEPTH];
+
+        private final int[] indices = new int[MAX_DEPTH];
+
+        /**
+         * Depth of the current leaf or -1 if there are no more entries.
+         */
+        private int depth = -1;
+
+        private final Comparator<? super K> comparator;
+
+        private final boolean asc;
+
+        private final K from;
+
+        private final boolean fromInclusive;
+
+        private final K to;
+
+        private final boolean toInclusive;
+
+        EntryIterator(Node<K, V> root, Comparator<? super K> comparator, boolean asc, K from, boolean fromInclusive, K to, boolean toInclusive) {
+            this.comparator = comparator;
+            this.asc = asc;
+            this.from = from;
+            this.fromInclusive = fromInclusive;
+            this.to = to;
+            this.toInclusive = toInclusive;
+            if (root != null) {
+                seek(root, asc ? from : to);
+            }
+        }
+
+        private void seek(Node<K, V> node, K start) {
+            int d = 0;
+            while (node instanceof Branch) {
+                Branch<K, V> branch = (Branch<K, V>) node;
+                int index = start == null ? (asc ? 0 : branch.size - 1) : branch.childIndex(start, comparator);
+                path[d] = branch;
+                indices[d] = index;
+                d++;
+                node = branch.childAt(index);
+            }
+            Leaf<K, V> leaf = (Leaf<K, V>) node;
+            int index;
+            if (start == null) {
+                index = asc ? 0 : leaf.size - 1;
+            } else {
+                index = leaf.indexOf(start, comparator);
+                if (asc) {
+                    index = index >= 0 ? (fromInclusive ? index : index + 1) : -(index + 1);
+                } else {
+                    index = index >= 0 ? (toInclusive ? index : index - 1) : -(index + 1) - 1;
+                }
+            }
+            path[d] = leaf;
+            indices[d] = index;
+            depth = d;
+            if (index < 0 || index >= leaf.size) {
+                nextLeaf();
+            }
+            checkBound();
+        }
+
+        private void nextLeaf() {
+            int d = depth - 1;
+            while (d >= 0 && (asc ? indices[d] + 1 >= path[d].size : indices[d] == 0)) {
+                d--;
+            }
+            if (d < 0) {
+                depth = -1;
+                return;
+            }
+            indices[d] += asc ? 1 : -1;
+            Node<K, V> node = ((Branch<K, V>) path[d]).childAt(indices[d]);
+            while (++d <= depth) {
+                path[d] = node;
+                indices[d] = asc ? 0 : node.size - 1;
+                if (d < depth) {
+                    node = ((Branch<K, V>) node).childAt(indices[d]);
+                }
+            }
+        }
+
+        private void checkBound() {
+            if (depth >= 0) {
+                K key = path[depth].keyAt(indices[depth]);
+                if (asc ? to != null && !isIncluded(key, to, toInclusive) : from != null && !isIncluded(from, key, fromInclusive)) {
+                    depth = -1;
+                }
+            }
+        }
+
+        private boolean isIncluded(K key1, K key2, boolean inclusive) {
+            int cmpr = comparator.compare(key1, key2);
+            return cmpr < 0 || inclusive && cmpr == 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return depth >= 0;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (depth < 0) {
+                throw new NoSuchElementException();
+            }
+            Leaf<K, V> leaf = (Leaf<K, V>) path[depth];
+            int index = indices[depth];
+            Map.Entry<K, V> entry = leaf.entryAt(index);
+            index += asc ? 1 : -1;
+            indices[depth] = index;
+            if (index < 0 || index >= leaf.size) {
+                nextLeaf();
+            }
+            checkBound();
+            return entry;
+        }
+    }
+
+    static abstract class BTreeSpliterator<T, K, V> implements Spliterator<T> {
+
+        /**
+         * Subtrees to be visited in order.
+         */
+        private final Deque<Node<K, V>> pending = new ArrayDeque<>();
+
+        private Leaf<K, V> leaf;
+
+        private int index;
+
+        private int end;
+
+        private long sizeEstimate;
+
+        private int characteristics;
+
+        protected BTreeSpliterator(Node<K, V> root, int size, int additionalCharacteristics) {
+            if (root != null) {
+                pending.add(root);
+            }
+            this.sizeEstimate = size;
+            this.characteristics = ORDERED | SIZED | SUBSIZED | additionalCharacteristics;
+        }
+
+        protected BTreeSpliterator(long sizeEstimate, int characteristics) {
+            this.sizeEstimate = sizeEstimate;
+            this.characteristics = characteristics;
+        }
+
+        protected abstract BTreeSpliterator<T, K, V> newSpliterator(long sizeEstimate, int characteristics);
+
+        protected abstract T apply(Leaf<K, V> leaf, int index);
+
+        private boolean hasLeaf() {
+            return leaf != null && index < end;
+        }
+
+        private boolean nextLeaf() {
+            while (!hasLeaf()) {
+                Node<K, V> node = pending.pollFirst();
+                if (node == null) {
+                    return false;
+                }
+                if (node instanceof Leaf) {
+                    leaf = (Leaf<K, V>) node;
+                    index = 0;
+                    end = node.size;
+                } else {
+                    Branch<K, V> branch = (Branch<K, V>) node;
+                    for (int i = branch.size - 1; i >= 0; i--) {
+                        pending.addFirst(branch.childAt(i));
+                    }
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (!nextLeaf()) {
+                return false;
+            }
+            if (sizeEstimate > 0) {
+                sizeEstimate--;
+            }
+            action.accept(apply(leaf, index++));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            while (nextLeaf()) {
+                while (index < end) {
+                    action.accept(apply(leaf, index++));
+                }
+            }
+            sizeEstimate = 0;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            if (!hasLeaf() && pending.size() == 1) {
+                Node<K, V> node = pending.pollFirst();
+                if (node instanceof Branch) {
+                    Branch<K, V> branch = (Branch<K, V>) node;
+                    for (int i = 0; i < branch.size; i++) {
+                        pending.addLast(branch.childAt(i));
+                    }
+                } else {
+                    leaf = (Leaf<K, V>) node;
+                    index = 0;
+                    end = node.size;
+                }
+            }
+            BTreeSpliterator<T, K, V> prefix;
+            if (!pending.isEmpty() && (hasLeaf() || pending.size() > 1)) {
+                prefix = newSpliterator(sizeEstimate / 2, characteristics & ~(SIZED | SUBSIZED));
+                if (hasLeaf()) {
+                    prefix.leaf = leaf;
+                    prefix.index = index;
+                    prefix.end = end;
+                    leaf = null;
+                }
+                for (int i = pending.size() / 2; i > 0; i--) {
+                    prefix.pending.addLast(pending.pollFirst());
+                }
+            } else if (hasLeaf() && end - index > 1) {
+                prefix = newSpliterator(sizeEstimate / 2, characteristics & ~(SIZED | SUBSIZED));
+                int mid = (index + end) >>> 1;
+                prefix.leaf = leaf;
+                prefix.index = index;
+                prefix.end = mid;
+                index = mid;
+            } else {
+                return null;
+            }
+            sizeEstimate -= prefix.sizeEstimate;
+            characteristics &= ~(SIZED | SUBSIZED);
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return sizeEstimate;
+        }
+
+        @Override
+        public int characteristics() {
+            return characteristics;
+        }
+    }
+
+    static class EntrySpliterator<K, V> extends BTreeSpliterator<Map.Entry<K, V>, K, V> {
+
+        private final Comparator<? super K> comparator;
+
+        EntrySpliterator(Node<K, V> root, int size, Comparator<? super K> comparator, boolean immutable) {
+            super(root, size, SORTED | DISTINCT | (immutable ? IMMUTABLE : 0));
+            this.comparator = comparator;
+        }
+
+        private EntrySpliterator(long sizeEstimate, int characteristics, Comparator<? super K> comparator) {
+            super(sizeEstimate, characteristics);
+            this.comparator = comparator;
+        }
+
+        @Override
+        protected BTreeSpliterator<Map.Entry<K, V>, K, V> newSpliterator(long sizeEstimate, int characteristics) {
+            return new EntrySpliterator<>(sizeEstimate, characteristics, comparator);
+        }
+
+        @Override
+        protected Map.Entry<K, V> apply(Leaf<K, V> leaf, int index) {
+            return leaf.entryAt(index);
+        }
+
+        @Override
+        public Comparator<? super Map.Entry<K, V>> getComparator() {
+            return Map.Entry.comparingByKey(comparator);
+        }
+    }
+
+    static class KeySpliterator<K, V> extends BTreeSpliterator<K, K, V> {
+
+        private final Comparator<? super K> comparator;
+
+        KeySpliterator(Node<K, V> root, int size, Comparator<? super K> comparator, boolean immutable) {
+            super(root, size, SORTED | DISTINCT | (immutable ? IMMUTABLE : 0));
+            this.comparator = comparator;
+        }
+
+        private KeySpliterator(long sizeEstimate, int characteristics, Comparator<? super K> comparator) {
+            super(sizeEstimate, characteristics);
+            this.comparator = comparator;
+        }
+
+        @Override
+        protected BTreeSpliterator<K, K, V> newSpliterator(long sizeEstimate, int characteristics) {
+            return new KeySpliterator<>(sizeEstimate, characteristics, comparator);
+        }
+
+        @Override
+        protected K apply(Leaf<K, V> leaf, int index) {
+            return leaf.keyAt(index);
+        }
+
+        @Override
+        public Comparator<? super K> getComparator() {
+            return comparator;
+        }
+    }
+
+    static class ValueSpliterator<K, V> extends BTreeSpliterator<V, K, V> {
+
+        ValueSpliterator(Node<K, V> root, int size, boolean immutable) {
+            super(root, size, immutable ? IMMUTABLE : 0);
+        }
+
+        private ValueSpliterator(long sizeEstimate, int characteristics) {
+            super(sizeEstimate, characteristics);
+        }
+
+        @Override
+        protected BTreeSpliterator<V, K, V> newSpliterator(long sizeEstimate, int characteristics) {
+            return new ValueSpliterator<>(sizeEstimate, characteristics);
+        }
+
+        @Override
+        protected V apply(Leaf<K, V> leaf, int index) {
+            return leaf.valueAt(index);
+        }
+    }
+}
@@ -0,0 +1,817 @@
+/*
+ * Copyright 2016 Samppa Saarela
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javersion.util;
+
+import static java.lang.System.arraycopy;
+import static java.util.Spliterator.DISTINCT;
+import static java.util.Spliterator.IMMUTABLE;
+import static java.util.Spliterator.SIZED;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import com.google.common.collect.UnmodifiableIterator;
+
+/**
+ * Hash array mapped trie using compressed (CHAMP) node layout: keys and values are stored inline in node's
+ * content array, entries first and sub nodes last in reverse order, indexed by separate data and node bitmaps.
+ * Compared to {@link AbstractHashMap} there are no per-entry objects and iteration of a node's entries
+ * doesn't need to chase pointers.
+ */
+public abstract class AbstractCompactHashMap<K, V, This extends AbstractCompactHashMap<K, V, This>>
+        implements Iterable<Map.Entry<K, V>> {
+
+    static final int SHIFT_INCREMENT = 5;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static final Node EMPTY_NODE = new BitmapNode(null, 0, 0, new Object[0]);
+
+    public abstract int size();
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    protected This self() {
+        return (This) this;
+    }
+
+    protected abstract Node<K, V> root();
+
+    protected abstract This doReturn(Node<K, V> newRoot, int newSize);
+
+    protected UpdateContext<Map.Entry<K, V>> updateContext(int expectedSize, Merger<Map.Entry<K, V>> merger) {
+        return new UpdateContext<>(expectedSize, merger);
+    }
+
+    protected void commit(UpdateContext<?> updateContext) {
+        updateContext.commit();
+    }
+
+    private This commitAndReturn(UpdateContext<?> updateContext, Node<K, V> newRoot, int newSize) {
+        commit(updateContext);
+        return doReturn(newRoot, newSize);
+    }
+
+    public V get(Object key) {
+        return root().get(key, hash(key), 0);
+    }
+
+    public boolean containsKey(Object key) {
+        return root().containsKey(key, hash(key), 0);
+    }
+
+    public This assoc(K key, V value) {
+        return merge(key, value, null);
+    }
+
+    public This assocAll(Map<? extends K, ? extends V> map) {
+        return mergeAll(map, null);
+    }
+
+    public This assocAll(Iterable<Map.Entry<K, V>> entries) {
+        return mergeAll(entries, null);
+    }
+
+    public This merge(K key, V value, Merger<Map.Entry<K, V>> merger) {
+        UpdateContext<Map.Entry<K, V>> updateContext = updateContext(1, merger);
+        Node<K, V> newRoot = root().assoc(updateContext, new SimpleImmutableEntry<>(key, value), hash(key), 0);
+        return commitAndReturn(updateContext, newRoot, size() + updateContext.getChangeAndReset());
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public This mergeAll(Map<? extends K, ? extends V> map, Merger<Map.Entry<K, V>> merger) {
+        Iterable<Map.Entry<K, V>> entries = (Iterable) map.entrySet();
+        return doMergeAll(updateContext(map.size(), merger), entries);
+    }
+
+    public This mergeAll(Iterable<Map.Entry<K, V>> entries, Merger<Map.Entry<K, V>> merger) {
+        return doMergeAll(updateContext(32, merger), entries);
+    }
+
+    private This doMergeAll(UpdateContext<Map.Entry<K, V>> updateContext, Iterable<Map.Entry<K, V>> entries) {
+        Node<K, V> newRoot = root();
+        int newSize = size();
+        for (Map.Entry<K, V> entry : entries) {
+            newRoot = newRoot.assoc(updateContext, entry, hash(entry.getKey()), 0);
+            newSize += updateContext.getChangeAndReset();
+        }
+        return commitAndReturn(updateContext, newRoot, newSize);
+    }
+
+    public This dissoc(Object key) {
+        return dissoc(key, null);
+    }
+
+    public This dissoc(Object key, Merger<Map.Entry<K, V>> merger) {
+        UpdateContext<Map.Entry<K, V>> updateContext = updateContext(1, merger);
+        Node<K, V> newRoot = root().dissoc(updateContext, key, hash(key), 0);
+        return commitAndReturn(updateContext, newRoot, size() + updateContext.getChangeAndReset());
+    }
+
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return new NodeIterator<Map.Entry<K, V>, K, V>(root()) {
+            @Override
+            protected Map.Entry<K, V> apply(Node<K, V> node, int index) {
+                return node.entryAt(index);
+            }
+        };
+    }
+
+    public Iterator<K> keyIterator() {
+        return new NodeIterator<K, K, V>(root()) {
+            @Override
+            protected K apply(Node<K, V> node, int index) {
+                return node.keyAt(index);
+            }
+        };
+    }
+
+    public Iterator<V> valueIterator() {
+        return new NodeIterator<V, K, V>(root()) {
+            @Override
+            protected V apply(Node<K, V> node, int index) {
+                return node.valueAt(index);
+            }
+        };
+    }
+
+    static int hash(Object key) {
+        return key == null ? 0 : key.hashCode();
+    }
+
+    static int bit(int hash, int shift) {
+        return 1 << ((hash >>> shift) & 0x01f);
+    }
+
+    static int index(int bitmap, int bit) {
+        return Integer.bitCount(bitmap & (bit - 1));
+    }
+
+    static abstract class Node<K, V> {
+
+        abstract V get(Object key, int hash, int shift);
+
+        abstract boolean containsKey(Object key, int hash, int shift);
+
+        abstract Node<K, V> assoc(UpdateContext<? super Map.Entry<K, V>> currentContext, Map.Entry<K, V> newEntry, int hash, int shift);
+
+        abstract Node<K, V> dissoc(UpdateContext<? super Map.Entry<K, V>> currentContext, Object key, int hash, int shift);
+
+        abstract int payloadArity();
+
+        abstract int nodeArity();
+
+        abstract K keyAt(int index);
+
+        abstract V valueAt(int index);
+
+        abstract Node<K, V> nodeAt(int index);
+
+        Map.Entry<K, V> entryAt(int index) {
+            return new SimpleImmutableEntry<>(keyAt(index), valueAt(index));
+        }
+
+        boolean isSingleton() {
+            return payloadArity() == 1 && nodeArity() == 0;
+        }
+    }
+
+    static final class BitmapNode<K, V> extends Node<K, V> {
+
+        final UpdateContext<?> updateContext;
+
+        private int dataMap;
+
+        private int nodeMap;
+
+        /**
+         * key0, value0, key1, value1, ..., nodeN, ..., node1, node0
+         */
+        private Object[] content;
+
+        BitmapNode(UpdateContext<?> updateContext, int dataMap, int nodeMap, Object[] content) {
+            this.updateContext = updateContext;
+            this.dataMap = dataMap;
+            this.nodeMap = nodeMap;
+            this.content = content;
+        }
+
+        @Override
+        V get(Object key, int hash, int shift) {
+            int bit = bit(hash, shift);
+            if ((dataMap & bit) != 0) {
+                int index = index(dataMap, bit);
+                return Objects.equals(key, keyAt(index)) ? valueAt(index) : null;
+            }
+            if ((nodeMap & bit) != 0) {
+                return subNode(bit).get(key, hash, shift + SHIFT_INCREMENT);
+            }
+            return null;
+        }
+
+        @Override
+        boolean containsKey(Object key, int hash, int shift) {
+            int bit = bit(hash, shift);
+            if ((dataMap & bit) != 0) {
+                return Objects.equals(key, keyAt(index(dataMap, bit)));
+            }
+            if ((nodeMap & bit) != 0) {
+                return subNode(bit).containsKey(key, hash, shift + SHIFT_INCREMENT);
+            }
+            return false;
+        }
+
+        @Override
+        Node<K, V> assoc(UpdateContext<? super Map.Entry<K, V>> currentContext, Map.Entry<K, V> newEntry, int hash, int shift) {
+            int bit = bit(hash, shift);
+            if ((dataMap & bit) != 0) {
+                int index = index(dataMap, bit);
+                K key = keyAt(index);
+                V value = valueAt(index);
+                if (Objects.equals(key, newEntry.getKey())) {
+                    if (Objects.equals(value, newEntry.getValue()) || !currentContext.merge(entryAt(index), newEntry)) {
+                        return this;
+                    }
+                    return copyAndSetEntry(currentContext, index, newEntry);
+                }
+                if (!currentContext.insert(newEntry)) {
+                    return this;
+                }
+                Node<K, V> subNode = mergeTwo(currentContext, key, value, hash(key), newEntry.getKey(), newEntry.getValue(), hash, shift + SHIFT_INCREMENT);
+                return copyAndMigrateToNode(currentContext, bit, subNode);
+            }
+            if ((nodeMap & bit) != 0) {
+                int contentIndex = nodeContentIndex(bit);
+                @SuppressWarnings("unchecked")
+                Node<K, V> subNode = (Node<K, V>) content[contentIndex];
+                Node<K, V> newSubNode = subNode.assoc(currentContext, newEntry, hash, shift + SHIFT_INCREMENT);
+                if (newSubNode == subNode) {
+                    return this;
+                }
+                return copyAndSetNode(currentContext, contentIndex, newSubNode);
+            }
+            if (!currentContext.insert(newEntry)) {
+                return this;
+            }
+            return copyAndInsertEntry(currentContext, bit, newEntry);
+        }
+
+        @Override
+        Node<K, V> dissoc(UpdateContext<? super Map.Entry<K, V>> currentContext, Object key, int hash, int shift) {
+            int bit = bit(hash, shift);
+            if ((dataMap & bit) != 0) {
+                int index = index(dataMap, bit);
+                if (!Objects.equals(key, keyAt(index)) || !currentContext.delete(entryAt(index))) {
+                    return this;
+                }
+                if (shift > 0 && payloadArity() == 2 && nodeArity() == 0) {
+                    // Remaining entry is inlined into parent or, if this becomes root, it should be positioned for shift 0
+                    int remaining = index == 0 ? 1 : 0;
+                    K remainingKey = keyAt(remaining);
+                    return new BitmapNode<>(currentContext, bit(hash(remainingKey), 0), 0,
+                            new Object[] { remainingKey, valueAt(remaining) });
+                }
+                return copyAndRemoveEntry(currentContext, bit);
+            }
+            if ((nodeMap & bit) != 0) {
+                int contentIndex = nodeContentIndex(bit);
+                @SuppressWarnings("unchecked")
+                Node<K, V> subNode = (Node<K, V>) content[contentIndex];
+                Node<K, V> newSubNode = subNode.dissoc(currentContext, key, hash, shift + SHIFT_INCREMENT);
+                if (newSubNode == subNode) {
+                    return this;
+                }
+                if (newSubNode.isSingleton()) {
+                    if (dataMap == 0 && nodeArity() == 1) {
+                        // Escalate singleton towards root
+                        return newSubNode;
+                    }
+                    return copyAndMigrateToInline(currentContext, bit, newSubNode);
+                }
+                return copyAndSetNode(currentContext, contentIndex, newSubNode);
+            }
+            return this;
+        }
+
+        @Override
+        int payloadArity() {
+            return Integer.bitCount(dataMap);
+        }
+
+        @Override
+        int nodeArity() {
+            return Integer.bitCount(nodeMap);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        K keyAt(int index) {
+            return (K) content[2 * index];
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        V valueAt(int index) {
+            return (V) content[2 * index + 1];
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        Node<K, V> nodeAt(int index) {
+            return (Node<K, V>) content[content.length - 1 - index];
+        }
+
+        @SuppressWarnings("unchecked")
+        private Node<K, V> subNode(int bit) {
+            return (Node<K, V>) content[nodeContentIndex(bit)];
+        }
+
+        private int nodeContentIndex(int bit) {
+            return content.length - 1 - index(nodeMap, bit);
+        }
+
+        private boolean isEditInPlace(UpdateContext<?> currentContext) {
+            return updateContext != null && updateContext.isSameAs(currentContext);
+        }
+
+        private Node<K, V> edit(UpdateContext<?> currentContext, int newDataMap, int newNodeMap, Object[] newContent) {
+            if (isEditInPlace(currentContext)) {
+                this.dataMap = newDataMap;
+                this.nodeMap = newNodeMap;
+                this.content = newContent;
+                return this;
+            }
+            return new BitmapNode<>(currentContext, newDataMap, newNodeMap, newContent);
+        }
+
+        private Node<K, V> copyAndSetEntry(UpdateContext<?> currentContext, int index, Map.Entry<K, V> newEntry) {
+            Object[] newContent = isEditInPlace(currentContext) ? content : content.clone();
+            newContent[2 * index] = newEntry.getKey();
+            newContent[2 * index + 1] = newEntry.getValue();
+            return edit(currentContext, dataMap, nodeMap, newContent);
+        }
+
+        private Node<K, V> copyAndSetNode(UpdateContext<?> currentContext, int contentIndex, Node<K, V> newNode) {
+            Object[] newContent = isEditInPlace(currentContext) ? content : content.clone();
+            newContent[contentIndex] = newNode;
+            return edit(currentContext, dataMap, nodeMap, newContent);
+        }
+
+        private Node<K, V> copyAndInsertEntry(UpdateContext<?> currentContext, int bit, Map.Entry<K, V> newEntry) {
+            int contentIndex = 2 * index(dataMap, bit);
+            Object[] newContent = new Object[content.length + 2];
+            arraycopy(content, 0, newContent, 0, contentIndex);
+            newContent[contentIndex] = newEntry.getKey();
+            newContent[contentIndex + 1] = newEntry.getValue();
+            arraycopy(content, contentIndex, newContent, contentIndex + 2, content.length - contentIndex);
+            return edit(currentContext, dataMap | bit, nodeMap, newContent);
+        }
+
+        private Node<K, V> copyAndRemoveEntry(UpdateContext<?> currentContext, int bit) {
+            int contentIndex = 2 * index(dataMap, bit);
+            Object[] newContent = new Object[content.length - 2];
+            arraycopy(content, 0, newContent, 0, contentIndex);
+            arraycopy(content, contentIndex + 2, newContent, contentIndex, content.length - contentIndex - 2);
+            return edit(currentContext, dataMap ^ bit, nodeMap, newContent);
+        }
+
+        private Node<K, V> copyAndMigrateToNode(UpdateContext<?> currentContext, int bit, Node<K, V> node) {
+            int oldIndex = 2 * index(dataMap, bit);
+            int newIndex = content.length - 2 - index(nodeMap, bit);
+            Object[] newContent = new Object[content.length - 1];
+            arraycopy(content, 0, newContent, 0, oldIndex);
+            arraycopy(content, oldIndex + 2, newContent, oldIndex, newIndex - oldIndex);
+            newContent[newIndex] = node;
+            arraycopy(content, newIndex + 2, newContent, newIndex + 1, content.length - newIndex - 2);
+            return edit(currentContext, dataMap ^ bit, nodeMap | bit, newContent);
+        }
+
+        private Node<K, V> copyAndMigrateToInline(UpdateContext<?> currentContext, int bit, Node<K, V> node) {
+            int oldIndex = content.length - 1 - index(nodeMap, bit);
+            int newIndex = 2 * index(dataMap, bit);
+            Object[] newContent = new Object[content.length + 1];
+            arraycopy(content, 0, newContent, 0, newIndex);
+            newContent[newIndex] = node.keyAt(0);
+            newContent[newIndex + 1] = node.valueAt(0);
+            arraycopy(content, newIndex, newContent, newIndex + 2, oldIndex - newIndex);
+            arraycopy(content, oldIndex + 1, newContent, oldIndex + 2, content.length - oldIndex - 1);
+            return edit(currentContext, dataMap | bit, nodeMap ^ bit, newContent);
+        }
+
+        private static <K, V> Node<K, V> mergeTwo(UpdateContext<?> currentContext, K key1, V value1, int hash1, K key2, V value2, int hash2, int shift) {
+            if (shift >= 32) {
+                return new CollisionNode<>(hash1, new Object[] { key1, value1, key2, value2 });
+            }
+            int bit1 = bit(hash1, shift);
+            int bit2 = bit(hash2, shift);
+            if (bit1 == bit2) {
+                Node<K, V> node = mergeTwo(currentContext, key1, value1, hash1, key2, value2, hash2, shift + SHIFT_INCREMENT);
+                return new BitmapNode<>(currentContext, 0, bit1, new Object[] { node });
+            }
+            if (Integer.compareUnsigned(bit1, bit2) < 0) {
+                return new BitmapNode<>(currentContext, bit1 | bit2, 0, new Object[] { key1, value1, key2, value2 });
+            } else {
+                return new BitmapNode<>(currentContext, bit1 | bit2, 0, new Object[] { key2, value2, key1, value1 });
+            }
+        }
+    }
+
+    /**
+     * Entries with equal hash codes.
+     */
+    static final class CollisionNode<K, V> extends Node<K, V> {
+
+        final int hash;
+
+        /**
+         * key0, value0, key1, value1, ...
+         */
+        private final Object[] content;
+
+        CollisionNode(int hash, Object[] content) {
+            this.hash = hash;
+            this.content = content;
+        }
+
+        @Override
+        V get(Object key, int hash, int shift) {
+            int index = indexOf(key);
+            return index >= 0 ? valueAt(index) : null;
+        }
+
+        @Override
+        boolean containsKey(Object key, int hash, int shift) {
+            return indexOf(key) >= 0;
+        }
+
+        @Override
+        Node<K, V> assoc(UpdateContext<? super Map.Entry<K, V>> currentContext, Map.Entry<K, V> newEntry, int hash, int shift) {
+            int index = indexOf(newEntry.getKey());
+            if (index >= 0) {
+                if (Objects.equals(valueAt(index), newEntry.getValue()) || !currentContext.merge(entryAt(index), newEntry)) {
+                    return this;
+                }
+                Object[] newContent = content.clone();
+                newContent[2 * index] = newEntry.getKey();
+                newContent[2 * index + 1] = newEntry.getValue();
+                return new CollisionNode<>(hash, newContent);
+            }
+            if (!currentContext.insert(newEntry)) {
+                return this;
+            }
+            Object[] newContent = new Object[content.length + 2];
+            arraycopy(content, 0, newContent, 0, content.length);
+            newContent[content.length] = newEntry.getKey();
+            newContent[content.length + 1] = newEntry.getValue();
+            return new CollisionNode<>(hash, newContent);
+        }
+
+        @Override
+        Node<K, V> dissoc(UpdateContext<? super Map.Entry<K, V>> currentContext, Object key, int hash, int shift) {
+            int index = indexOf(key);
+            if (index < 0 || !currentContext.delete(entryAt(index))) {
+                return this;
+            }
+            if (payloadArity() == 2) {
+                int remaining = index == 0 ? 1 : 0;
+                return new BitmapNode<>(currentContext, bit(this.hash, 0), 0, new Object[] { keyAt(remaining), valueAt(remaining) });
+            }
+            Object[] newContent = new Object[content.length - 2];
+            arraycopy(content, 0, newContent, 0, 2 * index);
+            arraycopy(content, 2 * index + 2, newContent, 2 * index, content.length - 2 * index - 2);
+            return new CollisionNode<>(this.hash, newContent);
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < content.length; i += 2) {
+                if (Objects.equals(key, content[i])) {
+                    return i / 2;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        int payloadArity() {
+            return content.length / 2;
+        }
+
+        @Override
+        int nodeArity() {
+            return 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        K keyAt(int index) {
+            return (K) content[2 * index];
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        V valueAt(int index) {
+            return (V) content[2 * index + 1];
+        }
+
+        @Override
+        Node<K, V> nodeAt(int index) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+
+    static abstract class NodeIterator<T, K, V> extends UnmodifiableIterator<T> {
+
+        // Max depth is 7 levels of bitmap nodes and a collision node
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private final Node<K, V>[] nodes = new Node[8];
+
+        private final int[] nodeIndices = new int[8];
+
+        private int depth = 0;
+
+        private Node<K, V> current;
+
+        private int payloadIndex;
+
+        NodeIterator(Node<K, V> root) {
+            nodes[0] = root;
+            current = root;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (payloadIndex >= current.payloadArity()) {
+                if (!advance()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean advance() {
+            while (depth >= 0) {
+                Node<K, V> node = nodes[depth];
+                if (nodeIndices[depth] < node.nodeArity()) {
+                    Node<K, V> child = node.nodeAt(nodeIndices[depth]++);
+                    depth++;
+                    nodes[depth] = child;
+                    nodeIndices[depth] = 0;
+                    current = child;
+                    payloadIndex = 0;
+                    return true;
+                }
+                depth--;
+            }
+            return false;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return apply(current, payloadIndex++);
+        }
+
+        protected abstract T apply(Node<K, V> node, int index);
+    }
+
+    /**
+     * Splits by remaining sub nodes of current node or, if only one remains, by descending into it.
+     */
+    static abstract class NodeSpliterator<T, K, V> implements Spliterator<T> {
+
+        private Node<K, V> node;
+
+        private int payloadPos;
+
+        private int payloadLimit;
+
+        private int nodePos;
+
+        private int nodeLimit;
+
+        private long sizeEstimate;
+
+        private int characteristics;
+
+        private NodeSpliterator<T, K, V> subSpliterator;
+
+        protected NodeSpliterator(Node<K, V> root, int size, int additionalCharacteristics) {
+            this(root, 0, root.payloadArity(), 0, root.nodeArity(), size, SIZED | additionalCharacteristics);
+        }
+
+        protected NodeSpliterator(Node<K, V> node, int payloadPos, int payloadLimit, int nodePos, int nodeLimit, long sizeEstimate, int characteristics) {
+            this.node = node;
+            this.payloadPos = payloadPos;
+            this.payloadLimit = payloadLimit;
+            this.nodePos = nodePos;
+            this.nodeLimit = nodeLimit;
+            this.sizeEstimate = sizeEstimate;
+            this.characteristics = characteristics;
+        }
+
+        protected abstract NodeSpliterator<T, K, V> newSubSpliterator(Node<K, V> node, int payloadPos, int payloadLimit, int nodePos, int nodeLimit, long sizeEstimate);
+
+        protected abstract T apply(Node<K, V> node, int index);
+
+        private NodeSpliterator<T, K, V> newSubSpliterator(Node<K, V> node, long sizeEstimate) {
+            return newSubSpliterator(node, 0, node.payloadArity(), 0, node.nodeArity(), sizeEstimate);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (subSpliterator != null) {
+                if (subSpliterator.tryAdvance(action)) {
+                    consumed();
+                    return true;
+                }
+                subSpliterator = null;
+            }
+            if (payloadPos < payloadLimit) {
+                action.accept(apply(node, payloadPos++));
+                consumed();
+                return true;
+            }
+            while (nodePos < nodeLimit) {
+                NodeSpliterator<T, K, V> sub = newSubSpliterator(node.nodeAt(nodePos++), sizeEstimate / (nodeLimit - nodePos + 1));
+                if (sub.tryAdvance(action)) {
+                    subSpliterator = sub;
+                    consumed();
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void consumed() {
+            if (sizeEstimate > 0) {
+                sizeEstimate--;
+            }
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            if (subSpliterator != null) {
+                subSpliterator.forEachRemaining(action);
+                subSpliterator = null;
+            }
+            for (; payloadPos < payloadLimit; payloadPos++) {
+                action.accept(apply(node, payloadPos));
+            }
+            for (; nodePos < nodeLimit; nodePos++) {
+                forEach(node.nodeAt(nodePos), action);
+            }
+            sizeEstimate = 0;
+        }
+
+        private void forEach(Node<K, V> node, Consumer<? super T> action) {
+            for (int i = 0, len = node.payloadArity(); i < len; i++) {
+                action.accept(apply(node, i));
+            }
+            for (int i = 0, len = node.nodeArity(); i < len; i++) {
+                forEach(node.nodeAt(i), action);
+            }
+        }
+
+        @Override
+        public NodeSpliterator<T, K, V> trySplit() {
+            int nodes = nodeLimit - nodePos;
+            int payload = payloadLimit - payloadPos;
+            NodeSpliterator<T, K, V> prefix;
+            if (nodes > 1) {
+                int mid = (nodePos + nodeLimit) >>> 1;
+                prefix = newSubSpliterator(node, payloadPos, payloadLimit, nodePos, mid, sizeEstimate >>> 1);
+                payloadPos = payloadLimit;
+                nodePos = mid;
+            } else if (subSpliterator != null) {
+                if (nodes == 0 && payload == 0) {
+                    prefix = subSpliterator.trySplit();
+                    if (prefix == null) {
+                        return null;
+                    }
+                } else {
+                    // Leave only the sub spliterator in traversal
+                    prefix = newSubSpliterator(node, payloadPos, payloadLimit, nodePos, nodeLimit, sizeEstimate >>> 1);
+                    payloadPos = payloadLimit;
+                    nodePos = nodeLimit;
+                }
+            } else if (nodes == 1) {
+                if (payload > 0) {
+                    prefix = newSubSpliterator(node, payloadPos, payloadLimit, 0, 0, payload);
+                    payloadPos = payloadLimit;
+                } else {
+                    node = node.nodeAt(nodePos);
+                    payloadPos = 0;
+                    payloadLimit = node.payloadArity();
+                    nodePos = 0;
+                    nodeLimit = node.nodeArity();
+                    return trySplit();
+                }
+            } else if (payload > 1) {
+                int mid = (payloadPos + payloadLimit) >>> 1;
+                prefix = newSubSpliterator(node, payloadPos, mid, 0, 0, mid - payloadPos);
+                payloadPos = mid;
+            } else {
+                return null;
+            }
+            sizeEstimate = Math.max(0, sizeEstimate - prefix.sizeEstimate);
+            characteristics &= ~SIZED;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return sizeEstimate;
+        }
+
+        @Override
+        public int characteristics() {
+            return characteristics;
+        }
+    }
+
+    static class EntrySpliterator<K, V> extends NodeSpliterator<Map.Entry<K, V>, K, V> {
+
+        public EntrySpliterator(Node<K, V> root, int size, boolean immutable) {
+            super(root, size, DISTINCT | (immutable ? IMMUTABLE : 0));
+        }
+
+        private EntrySpliterator(Node<K, V> node, int payloadPos, int payloadLimit, int nodePos, int nodeLimit, long sizeEstimate, int characteristics) {
+            super(node, payloadPos, payloadLimit, nodePos, nodeLimit, sizeEstimate, characteristics);
+        }
+
+        @Override
+        protected NodeSpliterator<Map.Entry<K, V>, K, V> newSubSpliterator(Node<K, V> node, int payloadPos, int payloadLimit, int nodePos, int nodeLimit, long sizeEstimate) {
+            return new EntrySpliterator<>(node, payloadPos, payloadLimit, nodePos, nodeLimit, sizeEstimate, characteristics() & ~SIZED);
+        }
+
+        @Override
+        protected Map.Entry<K, V> apply(Node<K, V> node, int index) {
+            return node.entryAt(index);
+        }
+    }
+
+    static class KeySpliterator<K, V> extends NodeSpliterator<K, K, V> {
+
+        public KeySpliterator(Node<K, V> root, int size, boolean immutable) {
+            super(root, size, DISTINCT | (immutable ? IMMUTABLE : 0));
+        }
+
+        private KeySpliterator(Node<K, V> node, int payloadPos, int payloadLimit, int nodePos, int nodeLimit, long sizeEstimate, int characteristics) {
+            super(node, payloadPos, payloadLimit, nodePos, nodeLimit, sizeEstimate, characteristics);
+        }
+
+        @Override
+        protected NodeSpliterator<K, K, V> newSubSpliterator(Node<K, V> node, int payloadPos, int payloadLimit, int nodePos, int nodeLimit, long sizeEstimate) {
+            return new KeySpliterator<>(node, payloadPos, payloadLimit, nodePos, nodeLimit, sizeEstimate, characteristics() & ~SIZED);
+        }
+
+        @Override
+        protected K apply(Node<K, V> node, int index) {
+            return node.keyAt(index);
+        }
+    }
+
+    static class ValueSpliterator<K, V> extends NodeSpliterator<V, K, V> {
+
+        public ValueSpliterator(Node<K, V> root, int size, boolean immutable) {
+            super(root, size, immutable ? IMMUTABLE : 0);
+        }
+
+        private ValueSpliterator(Node<K, V> node, int payloadPos, int payloadLimit, int nodePos, int nodeLimit, long sizeEstimate, int characteristics) {
+            super(node, payloadPos, payloadLimit, nodePos, nodeLimit, sizeEstimate, characteristics);
+        }
+
+        @Override
+        protected NodeSpliterator<V, K, V> newSubSpliterator(Node<K, V> node, int payloadPos, int payloadLimit, int nodePos, int nodeLimit, long sizeEstimate) {
+            return new ValueSpliterator<>(node, payloadPos, payloadLimit, nodePos, nodeLimit, sizeEstimate, characteristics() & ~SIZED);
+        }
+
+        @Override
+        protected V apply(Node<K, V> node, int index) {
+            return node.valueAt(index);
+        }
+    }
+}
@@ -91,6 +91,34 @@ public abstract class AbstractHashMap<K, V, This extends AbstractHashMap<K, V, T
         return (This) doRemove(updateContext, key);
     }
 
+    /**
+     * Adds entries of other to this map. Entries of other replace those of equal keys. Subtrees shared with
+     * other are reused as such, so union of largely overlapping maps is much cheaper than assocAll.
+     */
+    @SuppressWarnings("unchecked")
+    public This union(PersistentHashMap<K, V> other) {
+        final UpdateContext<Map.Entry<K, V>> updateContext = updateContext(32, null);
+        return (This) doUnion(updateContext, other);
+    }
+
+    /**
+     * Retains entries whose keys are also in other, comparing shared subtrees by reference.
+     */
+    @SuppressWarnings("unchecked")
+    public This intersection(PersistentHashMap<K, V> other) {
+        final UpdateContext<Map.Entry<K, V>> updateContext = updateContext(32, null);
+        return (This) doIntersection(updateContext, other);
+    }
+
+    /**
+     * Removes entries whose keys are in other, comparing shared subtrees by reference.
+     */
+    @SuppressWarnings("unchecked")
+    public This difference(PersistentHashMap<K, V> other) {
+        final UpdateContext<Map.Entry<K, V>> updateContext = updateContext(32, null);
+        return (This) doDifference(updateContext, other);
+    }
+
     public V get(Object key) {
         EntryNode<K, V> entry = root().find(key);
         return entry != null ? entry.getValue() : null;
@@ -136,6 +164,11 @@ public abstract class AbstractHashMap<K, V, This extends AbstractHashMap<K, V, T
             throw new UnsupportedOperationException();
         }
 
+        @Override
+        protected boolean valueEquals(EntryNode<K, V> other) {
+            return Objects.equals(value, other.value);
+        }
+
         public String toString() {
             return "" + key + ": " + value;
         }
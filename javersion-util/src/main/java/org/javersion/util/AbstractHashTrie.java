@@ -18,11 +18,19 @@ package org.javersion.util;
 import static java.lang.System.arraycopy;
 import java.util.Objects;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Spliterator;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 import org.javersion.util.AbstractHashTrie.EntryNode;
 
@@ -94,6 +102,52 @@ public abstract class AbstractHashTrie<K, E extends EntryNode<K, E>, This extend
         return commitAndReturn(updateContext, newRoot, size);
     }
 
+    /**
+     * Adds entries of other that are not in this trie. Entries of other replace equal keys of this.
+     */
+    protected final This doUnion(UpdateContext<? super E> updateContext, AbstractHashTrie<K, E, ?> other) {
+        if (isEmpty()) {
+            return commitAndReturn(updateContext, other.root(), other.size());
+        }
+        if (other.isEmpty()) {
+            return commitAndReturn(updateContext, root(), size());
+        }
+        SetAlgebra<K, E> algebra = new SetAlgebra<K, E>(updateContext);
+        Node<K, E> newRoot = algebra.union(root(), other.root(), 0);
+        return commitAndReturn(updateContext, newRoot, size() + algebra.change);
+    }
+
+    /**
+     * Retains entries of this whose keys are in other.
+     */
+    protected final This doIntersection(UpdateContext<? super E> updateContext, AbstractHashTrie<K, E, ?> other) {
+        if (isEmpty() || other.isEmpty()) {
+            return commitAndReturn(updateContext, isEmpty() ? root() : null, 0);
+        }
+        SetAlgebra<K, E> algebra = new SetAlgebra<K, E>(updateContext);
+        Node<K, E> newRoot = algebra.intersection(root(), other.root(), 0);
+        return commitAndReturn(updateContext, newRoot, size() + algebra.change);
+    }
+
+    /**
+     * Removes entries of this whose keys are in other.
+     */
+    protected final This doDifference(UpdateContext<? super E> updateContext, AbstractHashTrie<K, E, ?> other) {
+        if (isEmpty() || other.isEmpty()) {
+            return commitAndReturn(updateContext, root(), size());
+        }
+        SetAlgebra<K, E> algebra = new SetAlgebra<K, E>(updateContext);
+        Node<K, E> newRoot = algebra.difference(root(), other.root(), 0);
+        return commitAndReturn(updateContext, newRoot, size() + algebra.change);
+    }
+
+    protected final boolean doEquals(AbstractHashTrie<K, E, ?> other) {
+        if (size() != other.size()) {
+            return false;
+        }
+        return isEmpty() || SetAlgebra.equal(root(), other.root(), 0);
+    }
+
     protected void commit(UpdateContext<?> updateContext) {
         updateContext.commit();
     }
@@ -197,6 +251,11 @@ public abstract class AbstractHashTrie<K, E extends EntryNode<K, E>, This extend
             return hash(key);
         }
 
+        /**
+         * @return true if this entry is equal to an entry of the same key
+         */
+        protected abstract boolean valueEquals(E other);
+
         @SuppressWarnings("unchecked")
         protected E self() {
             return (E) this;
@@ -393,9 +452,9 @@ public abstract class AbstractHashTrie<K, E extends EntryNode<K, E>, This extend
             // Delete given node
             if (index + 1 < childCount) {
                 arraycopy(children, index + 1, newChildren, index, childCount - index - 1);
-                if (newChildren.length >= childCount) {
-                    newChildren[childCount - 1] = null;
-                }
+            }
+            if (newChildren.length >= childCount) {
+                newChildren[childCount - 1] = null;
             }
 
             if (editInPlace) {
@@ -647,6 +706,513 @@ public abstract class AbstractHashTrie<K, E extends EntryNode<K, E>, This extend
 
     }
 
+    /**
+     * Structural set operations on two tries. Nodes are compared level by level so that subtrees
+     * shared by both are handled by reference and only differing branches are visited. A subtree
+     * that is present in only one of the tries is reused as such. Mixed cases of an entry or
+     * collision node against a branch fall back to per-entry operations on that branch.
+     * <p>
+     * Change in size is tracked relative to the left hand side.
+     */
+    static final class SetAlgebra<K, E extends EntryNode<K, E>> {
+
+        private final UpdateContext<? super E> updateContext;
+
+        int change;
+
+        SetAlgebra(UpdateContext<? super E> updateContext) {
+            this.updateContext = updateContext;
+        }
+
+        Node<K, E> union(Node<K, E> left, Node<K, E> right, int shift) {
+            if (left == right) {
+                return left;
+            }
+            if (isLeaf(right)) {
+                for (E entry : entries(right)) {
+                    left = left.assocInternal(updateContext, shift, entry.getHash(), entry);
+                    change += updateContext.getChangeAndReset();
+                }
+                return left;
+            }
+            if (isLeaf(left)) {
+                // Entries of right replace those of left
+                Node<K, E> result = right;
+                int found = 0;
+                for (E entry : entries(left)) {
+                    if (right.findInternal(shift, entry.getHash(), entry.key) == null) {
+                        result = result.assocInternal(updateContext, shift, entry.getHash(), entry);
+                        updateContext.getChangeAndReset();
+                    } else {
+                        found++;
+                    }
+                }
+                change += count(right) - found;
+                return result;
+            }
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            Node<K, E>[] children = new Node[32];
+            for (int i = 0; i < 32; i++) {
+                Node<K, E> leftChild = childAt(left, i);
+                Node<K, E> rightChild = childAt(right, i);
+                if (leftChild == null) {
+                    if (rightChild != null) {
+                        change += count(rightChild);
+                    }
+                    children[i] = rightChild;
+                } else if (rightChild == null) {
+                    children[i] = leftChild;
+                } else {
+                    children[i] = union(leftChild, rightChild, shift + Node.SHIFT_INCREMENT);
+                }
+            }
+            return toNode(updateContext, children, left, right);
+        }
+
+        Node<K, E> intersection(Node<K, E> left, Node<K, E> right, int shift) {
+            if (left == right) {
+                return left;
+            }
+            if (isLeaf(left)) {
+                Node<K, E> result = left;
+                for (E entry : entries(left)) {
+                    if (right.findInternal(shift, entry.getHash(), entry.key) == null) {
+                        result = result.dissocInternal(updateContext, shift, entry.getHash(), entry.key);
+                        change += updateContext.getChangeAndReset();
+                        if (result == null) {
+                            break;
+                        }
+                    }
+                }
+                return result;
+            }
+            if (isLeaf(right)) {
+                Node<K, E> result = null;
+                int found = 0;
+                for (E entry : entries(right)) {
+                    E leftEntry = left.findInternal(shift, entry.getHash(), entry.key);
+                    if (leftEntry != null) {
+                        if (result == null) {
+                            result = leftEntry;
+                        } else {
+                            result = result.assocInternal(updateContext, shift, leftEntry.getHash(), leftEntry);
+                            updateContext.getChangeAndReset();
+                        }
+                        found++;
+                    }
+                }
+                change += found - count(left);
+                return result;
+            }
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            Node<K, E>[] children = new Node[32];
+            for (int i = 0; i < 32; i++) {
+                Node<K, E> leftChild = childAt(left, i);
+                if (leftChild != null) {
+                    Node<K, E> rightChild = childAt(right, i);
+                    if (rightChild == null) {
+                        change -= count(leftChild);
+                    } else {
+                        children[i] = intersection(leftChild, rightChild, shift + Node.SHIFT_INCREMENT);
+                    }
+                }
+            }
+            return toNode(updateContext, children, left, null);
+        }
+
+        Node<K, E> difference(Node<K, E> left, Node<K, E> right, int shift) {
+            if (left == right) {
+                change -= count(left);
+                return null;
+            }
+            if (isLeaf(left) || isLeaf(right)) {
+                Node<K, E> result = left;
+                for (E entry : entries(isLeaf(right) ? right : left)) {
+                    if (isLeaf(right) || right.findInternal(shift, entry.getHash(), entry.key) != null) {
+                        result = result.dissocInternal(updateContext, shift, entry.getHash(), entry.key);
+                        change += updateContext.getChangeAndReset();
+                        if (result == null) {
+                            break;
+                        }
+                    }
+                }
+                return result;
+            }
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            Node<K, E>[] children = new Node[32];
+            for (int i = 0; i < 32; i++) {
+                Node<K, E> leftChild = childAt(left, i);
+                if (leftChild != null) {
+                    Node<K, E> rightChild = childAt(right, i);
+                    if (rightChild == null) {
+                        children[i] = leftChild;
+                    } else {
+                        children[i] = difference(leftChild, rightChild, shift + Node.SHIFT_INCREMENT);
+                    }
+                }
+            }
+            return toNode(updateContext, children, left, null);
+        }
+
+        static <K, E extends EntryNode<K, E>> boolean equal(Node<K, E> left, Node<K, E> right, int shift) {
+            if (left == right) {
+                return true;
+            }
+            if (isLeaf(left) || isLeaf(right)) {
+                Node<K, E> leaf = isLeaf(left) ? left : right;
+                Node<K, E> other = leaf == left ? right : left;
+                E[] entries = entries(leaf);
+                if (count(other) != entries.length) {
+                    return false;
+                }
+                for (E entry : entries) {
+                    E otherEntry = other.findInternal(shift, entry.getHash(), entry.key);
+                    if (otherEntry == null || !entry.valueEquals(otherEntry)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            for (int i = 0; i < 32; i++) {
+                Node<K, E> leftChild = childAt(left, i);
+                Node<K, E> rightChild = childAt(right, i);
+                if (leftChild == null || rightChild == null) {
+                    if (leftChild != rightChild) {
+                        return false;
+                    }
+                } else if (!equal(leftChild, rightChild, shift + Node.SHIFT_INCREMENT)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * @param children by bit index
+     * @return left or right if children are the same as theirs, otherwise a new node of children
+     */
+    static <K, E extends EntryNode<K, E>> Node<K, E> toNode(UpdateContext<? super E> updateContext, Node<K, E>[] children,
+                                                            Node<K, E> left, Node<K, E> right) {
+        boolean sameAsLeft = left != null;
+        boolean sameAsRight = right != null;
+        int childCount = 0;
+        int bitmap = 0;
+        for (int i = 0; i < 32; i++) {
+            Node<K, E> child = children[i];
+            sameAsLeft = sameAsLeft && child == childAt(left, i);
+            sameAsRight = sameAsRight && child == childAt(right, i);
+            if (child != null) {
+                childCount++;
+                bitmap |= 1 << i;
+            }
+        }
+        if (sameAsLeft) {
+            return left;
+        } else if (sameAsRight) {
+            return right;
+        } else if (childCount == 0) {
+            return null;
+        } else if (childCount == 32 || childCount >= 16 && left instanceof ArrayNode) {
+            return new ArrayNode<>(updateContext, children, childCount);
+        }
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Node<K, E>[] newChildren = new Node[childCount];
+        for (int i = 0, j = 0; i < 32; i++) {
+            if (children[i] != null) {
+                newChildren[j++] = children[i];
+            }
+        }
+        return new HashNode<>(updateContext, bitmap, newChildren);
+    }
+
+    static boolean isLeaf(Node<?, ?> node) {
+        return node instanceof EntryNode || node instanceof CollisionNode;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static <K, E extends EntryNode<K, E>> E[] entries(Node<K, E> leaf) {
+        if (leaf instanceof EntryNode) {
+            return (E[]) new EntryNode[] { (EntryNode<K, E>) leaf };
+        }
+        return ((CollisionNode<K, E>) leaf).entries;
+    }
+
+    static <K, E extends EntryNode<K, E>> Node<K, E> childAt(Node<K, E> node, int bitIndex) {
+        if (node instanceof ArrayNode) {
+            return ((ArrayNode<K, E>) node).children[bitIndex];
+        }
+        HashNode<K, E> hashNode = (HashNode<K, E>) node;
+        int bit = 1 << bitIndex;
+        if ((hashNode.bitmap & bit) == 0) {
+            return null;
+        }
+        return hashNode.children[Node.index(hashNode.bitmap, bit)];
+    }
+
+    static int count(Node<?, ?> node) {
+        if (node instanceof EntryNode) {
+            return 1;
+        } else if (node instanceof CollisionNode) {
+            return ((CollisionNode<?, ?>) node).entries.length;
+        }
+        int count = 0;
+        for (Node<?, ?> child : node.getChildren()) {
+            if (child != null) {
+                count += count(child);
+            }
+        }
+        return count;
+    }
+
+    static boolean isBranch(Node<?, ?> node) {
+        return node instanceof HashNode || node instanceof ArrayNode;
+    }
+
+    /**
+     * Fork-join transformation of a trie. Branches of subtries larger than PARALLEL_THRESHOLD are
+     * split per child and results of children are assembled by bit index, so that result subtries
+     * are built independently of each other.
+     *
+     * @param <R> result of a (sub)trie
+     */
+    @SuppressWarnings("serial")
+    static abstract class TrieTask<K, E extends EntryNode<K, E>, R> extends RecursiveTask<R> {
+
+        static final int PARALLEL_THRESHOLD = 2048;
+
+        final Node<K, E> node;
+
+        final int sizeEstimate;
+
+        TrieTask(Node<K, E> node, int sizeEstimate) {
+            this.node = node;
+            this.sizeEstimate = sizeEstimate;
+        }
+
+        @Override
+        protected final R compute() {
+            if (sizeEstimate <= PARALLEL_THRESHOLD || !isBranch(node)) {
+                return computeSequentially(node);
+            }
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            Node<K, E>[] children = new Node[32];
+            int childCount = 0;
+            for (int i = 0; i < 32; i++) {
+                children[i] = childAt(node, i);
+                if (children[i] != null) {
+                    childCount++;
+                }
+            }
+            List<TrieTask<K, E, R>> subtasks = new ArrayList<>(childCount);
+            for (Node<K, E> child : children) {
+                if (child != null) {
+                    subtasks.add(newSubtask(child, sizeEstimate / childCount));
+                }
+            }
+            invokeAll(subtasks);
+
+            R[] results = newResults();
+            for (int i = 0, j = 0; i < 32; i++) {
+                if (children[i] != null) {
+                    TrieTask<K, E, R> subtask = subtasks.get(j++);
+                    joined(subtask);
+                    results[i] = subtask.join();
+                }
+            }
+            return branch(node, results);
+        }
+
+        R computeSequentially(Node<K, E> node) {
+            if (isBranch(node)) {
+                R[] results = newResults();
+                for (int i = 0; i < 32; i++) {
+                    Node<K, E> child = childAt(node, i);
+                    if (child != null) {
+                        results[i] = computeSequentially(child);
+                    }
+                }
+                return branch(node, results);
+            }
+            return leaf(node);
+        }
+
+        void joined(TrieTask<K, E, R> subtask) {}
+
+        abstract TrieTask<K, E, R> newSubtask(Node<K, E> child, int sizeEstimate);
+
+        abstract R[] newResults();
+
+        /**
+         * @param node EntryNode or CollisionNode
+         */
+        abstract R leaf(Node<K, E> node);
+
+        /**
+         * @param results of children by bit index
+         */
+        abstract R branch(Node<K, E> node, R[] results);
+    }
+
+    @SuppressWarnings("serial")
+    static final class MapTask<K, E extends EntryNode<K, E>, F extends EntryNode<K, F>> extends TrieTask<K, E, Node<K, F>> {
+
+        private final UpdateContext<? super F> updateContext;
+
+        private final Function<? super E, ? extends F> fn;
+
+        MapTask(UpdateContext<? super F> updateContext, Node<K, E> node, int sizeEstimate, Function<? super E, ? extends F> fn) {
+            super(node, sizeEstimate);
+            this.updateContext = updateContext;
+            this.fn = fn;
+        }
+
+        @Override
+        TrieTask<K, E, Node<K, F>> newSubtask(Node<K, E> child, int sizeEstimate) {
+            return new MapTask<>(updateContext, child, sizeEstimate, fn);
+        }
+
+        @Override
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Node<K, F>[] newResults() {
+            return new Node[32];
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Node<K, F> leaf(Node<K, E> node) {
+            if (node instanceof EntryNode) {
+                return fn.apply((E) node);
+            }
+            E[] entries = entries(node);
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            F[] newEntries = (F[]) new EntryNode[entries.length];
+            for (int i = 0; i < entries.length; i++) {
+                newEntries[i] = fn.apply(entries[i]);
+            }
+            return new CollisionNode<>(newEntries);
+        }
+
+        @Override
+        Node<K, F> branch(Node<K, E> node, Node<K, F>[] results) {
+            return toNode(updateContext, results, null, null);
+        }
+    }
+
+    @SuppressWarnings("serial")
+    static final class FilterTask<K, E extends EntryNode<K, E>> extends TrieTask<K, E, Node<K, E>> {
+
+        private final UpdateContext<? super E> updateContext;
+
+        private final Predicate<? super E> predicate;
+
+        int count;
+
+        FilterTask(UpdateContext<? super E> updateContext, Node<K, E> node, int sizeEstimate, Predicate<? super E> predicate) {
+            super(node, sizeEstimate);
+            this.updateContext = updateContext;
+            this.predicate = predicate;
+        }
+
+        @Override
+        TrieTask<K, E, Node<K, E>> newSubtask(Node<K, E> child, int sizeEstimate) {
+            return new FilterTask<>(updateContext, child, sizeEstimate, predicate);
+        }
+
+        @Override
+        void joined(TrieTask<K, E, Node<K, E>> subtask) {
+            count += ((FilterTask<K, E>) subtask).count;
+        }
+
+        @Override
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Node<K, E>[] newResults() {
+            return new Node[32];
+        }
+
+        @Override
+        Node<K, E> leaf(Node<K, E> node) {
+            E[] entries = entries(node);
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            E[] kept = (E[]) new EntryNode[entries.length];
+            int keptCount = 0;
+            for (E entry : entries) {
+                if (predicate.test(entry)) {
+                    kept[keptCount++] = entry;
+                }
+            }
+            count += keptCount;
+            if (keptCount == entries.length) {
+                return node;
+            } else if (keptCount == 0) {
+                return null;
+            } else if (keptCount == 1) {
+                return kept[0];
+            }
+            return new CollisionNode<>(Arrays.copyOf(kept, keptCount));
+        }
+
+        @Override
+        Node<K, E> branch(Node<K, E> node, Node<K, E>[] results) {
+            return toNode(updateContext, results, node, null);
+        }
+    }
+
+    @SuppressWarnings("serial")
+    static final class ReduceTask<K, E extends EntryNode<K, E>, R> extends TrieTask<K, E, R> {
+
+        private final R identity;
+
+        private final BiFunction<R, ? super E, R> accumulator;
+
+        private final BinaryOperator<R> combiner;
+
+        ReduceTask(Node<K, E> node, int sizeEstimate, R identity, BiFunction<R, ? super E, R> accumulator, BinaryOperator<R> combiner) {
+            super(node, sizeEstimate);
+            this.identity = identity;
+            this.accumulator = accumulator;
+            this.combiner = combiner;
+        }
+
+        @Override
+        R computeSequentially(Node<K, E> node) {
+            R result = identity;
+            for (E entry : node) {
+                result = accumulator.apply(result, entry);
+            }
+            return result;
+        }
+
+        @Override
+        TrieTask<K, E, R> newSubtask(Node<K, E> child, int sizeEstimate) {
+            return new ReduceTask<>(child, sizeEstimate, identity, accumulator, combiner);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        R[] newResults() {
+            return (R[]) new Object[32];
+        }
+
+        @Override
+        R leaf(Node<K, E> node) {
+            return computeSequentially(node);
+        }
+
+        @Override
+        R branch(Node<K, E> node, R[] results) {
+            R result = identity;
+            boolean first = true;
+            for (int i = 0; i < 32; i++) {
+                if (childAt(node, i) != null) {
+                    result = first ? results[i] : combiner.apply(result, results[i]);
+                    first = false;
+                }
+            }
+            return result;
+        }
+    }
+
     static class ArrayIterator<K, E extends EntryNode<K, E>> extends UnmodifiableIterator<E> {
 
         @SuppressWarnings("unchecked")
@@ -0,0 +1,512 @@
+/*
+ * Copyright 2016 Samppa Saarela
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javersion.util;
+
+import static java.lang.System.arraycopy;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.PrimitiveIterator;
+
+/**
+ * Hash array mapped trie of primitive long keys using the compressed node layout of {@link AbstractCompactHashMap}.
+ * Keys are stored in a long[] and values and sub nodes in a separate content array, so get, assoc and dissoc
+ * don't box keys. As keys are their own (64-bit) hashes, there are no collisions: distinct keys always end up
+ * in different slots within 13 levels.
+ * <p>
+ * Entries are allocated only for a Merger, if one is given.
+ */
+public abstract class AbstractLongMap<V, This extends AbstractLongMap<V, This>> implements Iterable<LongEntry<V>> {
+
+    static final int SHIFT_INCREMENT = 5;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static final Node EMPTY_NODE = new Node(null, 0, 0, new long[0], new Object[0]);
+
+    public abstract int size();
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    protected This self() {
+        return (This) this;
+    }
+
+    protected abstract Node<V> root();
+
+    protected abstract This doReturn(Node<V> newRoot, int newSize);
+
+    protected UpdateContext<Map.Entry<Long, V>> updateContext(int expectedSize, Merger<Map.Entry<Long, V>> merger) {
+        return new UpdateContext<>(expectedSize, merger);
+    }
+
+    protected void commit(UpdateContext<?> updateContext) {
+        updateContext.commit();
+    }
+
+    private This commitAndReturn(UpdateContext<?> updateContext, Node<V> newRoot, int newSize) {
+        commit(updateContext);
+        return doReturn(newRoot, newSize);
+    }
+
+    public V get(long key) {
+        return root().get(key, hash(key), 0);
+    }
+
+    public boolean containsKey(long key) {
+        return root().containsKey(key, hash(key), 0);
+    }
+
+    public This assoc(long key, V value) {
+        return merge(key, value, null);
+    }
+
+    public This assocAll(AbstractLongMap<? extends V, ?> map) {
+        return mergeAll(map, null);
+    }
+
+    public This merge(long key, V value, Merger<Map.Entry<Long, V>> merger) {
+        UpdateContext<Map.Entry<Long, V>> updateContext = updateContext(1, merger);
+        Node<V> newRoot = root().assoc(updateContext, key, value, hash(key), 0);
+        return commitAndReturn(updateContext, newRoot, size() + updateContext.getChangeAndReset());
+    }
+
+    public This mergeAll(AbstractLongMap<? extends V, ?> map, Merger<Map.Entry<Long, V>> merger) {
+        UpdateContext<Map.Entry<Long, V>> updateContext = updateContext(map.size(), merger);
+        Node<V> newRoot = root();
+        int newSize = size();
+        KeyIterator<? extends V> iter = new KeyIterator<>(map.root());
+        while (iter.hasNext()) {
+            long key = iter.nextLong();
+            newRoot = newRoot.assoc(updateContext, key, iter.currentValue(), hash(key), 0);
+            newSize += updateContext.getChangeAndReset();
+        }
+        return commitAndReturn(updateContext, newRoot, newSize);
+    }
+
+    public This dissoc(long key) {
+        return dissoc(key, null);
+    }
+
+    public This dissoc(long key, Merger<Map.Entry<Long, V>> merger) {
+        UpdateContext<Map.Entry<Long, V>> updateContext = updateContext(1, merger);
+        Node<V> newRoot = root().dissoc(updateContext, key, hash(key), 0);
+        return commitAndReturn(updateContext, newRoot, size() + updateContext.getChangeAndReset());
+    }
+
+    @Override
+    public Iterator<LongEntry<V>> iterator() {
+        return new NodeIterator<LongEntry<V>, V>(root()) {
+            @Override
+            public LongEntry<V> next() {
+                advance();
+                return new LongEntry<>(currentKey(), currentValue());
+            }
+        };
+    }
+
+    public PrimitiveIterator.OfLong keyIterator() {
+        return new KeyIterator<>(root());
+    }
+
+    public Iterator<V> valueIterator() {
+        return new NodeIterator<V, V>(root()) {
+            @Override
+            public V next() {
+                advance();
+                return currentValue();
+            }
+        };
+    }
+
+    /**
+     * Spreads high bits of the key to the lowest levels of the trie. This is a bijection, so distinct keys have
+     * distinct hashes. Keys that differ only in low bits, e.g. sequential ordinals, stay in densely packed nodes.
+     */
+    static long hash(long key) {
+        return key ^ (key >>> 32);
+    }
+
+    static int bit(long hash, int shift) {
+        return 1 << ((int) (hash >>> shift) & 0x01f);
+    }
+
+    static int index(int bitmap, int bit) {
+        return Integer.bitCount(bitmap & (bit - 1));
+    }
+
+    private static <V> Map.Entry<Long, V> entry(UpdateContext<?> currentContext, long key, V value) {
+        // Entries are only needed by a Merger
+        return currentContext.hasMerger() ? new LongEntry<>(key, value) : null;
+    }
+
+    static final class Node<V> {
+
+        final UpdateContext<?> updateContext;
+
+        private int dataMap;
+
+        private int nodeMap;
+
+        /**
+         * key0, key1, ...
+         */
+        private long[] keys;
+
+        /**
+         * value0, value1, ..., nodeN, ..., node1, node0
+         */
+        private Object[] content;
+
+        Node(UpdateContext<?> updateContext, int dataMap, int nodeMap, long[] keys, Object[] content) {
+            this.updateContext = updateContext;
+            this.dataMap = dataMap;
+            this.nodeMap = nodeMap;
+            this.keys = keys;
+            this.content = content;
+        }
+
+        V get(long key, long hash, int shift) {
+            Node<V> node = this;
+            while (true) {
+                int bit = bit(hash, shift);
+                if ((node.dataMap & bit) != 0) {
+                    int index = index(node.dataMap, bit);
+                    return node.keys[index] == key ? node.valueAt(index) : null;
+                }
+                if ((node.nodeMap & bit) == 0) {
+                    return null;
+                }
+                node = node.subNode(bit);
+                shift += SHIFT_INCREMENT;
+            }
+        }
+
+        boolean containsKey(long key, long hash, int shift) {
+            Node<V> node = this;
+            while (true) {
+                int bit = bit(hash, shift);
+                if ((node.dataMap & bit) != 0) {
+                    return node.keys[index(node.dataMap, bit)] == key;
+                }
+                if ((node.nodeMap & bit) == 0) {
+                    return false;
+                }
+                node = node.subNode(bit);
+                shift += SHIFT_INCREMENT;
+            }
+        }
+
+        Node<V> assoc(UpdateContext<? super Map.Entry<Long, V>> currentContext, long key, V value, long hash, int shift) {
+            int bit = bit(hash, shift);
+            if ((dataMap & bit) != 0) {
+                int index = index(dataMap, bit);
+                long oldKey = keys[index];
+                V oldValue = valueAt(index);
+                if (oldKey == key) {
+                    if (Objects.equals(oldValue, value)
+                            || !currentContext.merge(entry(currentContext, oldKey, oldValue), entry(currentContext, key, value))) {
+                        return this;
+                    }
+                    return copyAndSetValue(currentContext, index, value);
+                }
+                if (!currentContext.insert(entry(currentContext, key, value))) {
+                    return this;
+                }
+                Node<V> subNode = mergeTwo(currentContext, oldKey, oldValue, hash(oldKey), key, value, hash, shift + SHIFT_INCREMENT);
+                return copyAndMigrateToNode(currentContext, bit, subNode);
+            }
+            if ((nodeMap & bit) != 0) {
+                int contentIndex = nodeContentIndex(bit);
+                @SuppressWarnings("unchecked")
+                Node<V> subNode = (Node<V>) content[contentIndex];
+                Node<V> newSubNode = subNode.assoc(currentContext, key, value, hash, shift + SHIFT_INCREMENT);
+                if (newSubNode == subNode) {
+                    return this;
+                }
+                return copyAndSetNode(currentContext, contentIndex, newSubNode);
+            }
+            if (!currentContext.insert(entry(currentContext, key, value))) {
+                return this;
+            }
+            return copyAndInsertValue(currentContext, bit, key, value);
+        }
+
+        Node<V> dissoc(UpdateContext<? super Map.Entry<Long, V>> currentContext, long key, long hash, int shift) {
+            int bit = bit(hash, shift);
+            if ((dataMap & bit) != 0) {
+                int index = index(dataMap, bit);
+                if (keys[index] != key || !currentContext.delete(entry(currentContext, key, valueAt(index)))) {
+                    return this;
+                }
+                if (shift > 0 && payloadArity() == 2 && nodeArity() == 0) {
+                    // Remaining entry is inlined into parent or, if this becomes root, it should be positioned for shift 0
+                    int remaining = index == 0 ? 1 : 0;
+                    long remainingKey = keys[remaining];
+                    return new Node<>(currentContext, bit(hash(remainingKey), 0), 0,
+                            new long[] { remainingKey }, new Object[] { valueAt(remaining) });
+                }
+                return copyAndRemoveValue(currentContext, bit);
+            }
+            if ((nodeMap & bit) != 0) {
+                int contentIndex = nodeContentIndex(bit);
+                @SuppressWarnings("unchecked")
+                Node<V> subNode = (Node<V>) content[contentIndex];
+                Node<V> newSubNode = subNode.dissoc(currentContext, key, hash, shift + SHIFT_INCREMENT);
+                if (newSubNode == subNode) {
+                    return this;
+                }
+                if (newSubNode.isSingleton()) {
+                    if (dataMap == 0 && nodeArity() == 1) {
+                        // Escalate singleton towards root
+                        return newSubNode;
+                    }
+                    return copyAndMigrateToInline(currentContext, bit, newSubNode);
+                }
+                return copyAndSetNode(currentContext, contentIndex, newSubNode);
+            }
+            return this;
+        }
+
+        int payloadArity() {
+            return Integer.bitCount(dataMap);
+        }
+
+        int nodeArity() {
+            return Integer.bitCount(nodeMap);
+        }
+
+        boolean isSingleton() {
+            return payloadArity() == 1 && nodeArity() == 0;
+        }
+
+        long keyAt(int index) {
+            return keys[index];
+        }
+
+        @SuppressWarnings("unchecked")
+        V valueAt(int index) {
+            return (V) content[index];
+        }
+
+        @SuppressWarnings("unchecked")
+        Node<V> nodeAt(int index) {
+            return (Node<V>) content[content.length - 1 - index];
+        }
+
+        @SuppressWarnings("unchecked")
+        private Node<V> subNode(int bit) {
+            return (Node<V>) content[nodeContentIndex(bit)];
+        }
+
+        private int nodeContentIndex(int bit) {
+            return content.length - 1 - index(nodeMap, bit);
+        }
+
+        private boolean isEditInPlace(UpdateContext<?> currentContext) {
+            return updateContext != null && updateContext.isSameAs(currentContext);
+        }
+
+        private Node<V> edit(UpdateContext<?> currentContext, int newDataMap, int newNodeMap, long[] newKeys, Object[] newContent) {
+            if (isEditInPlace(currentContext)) {
+                this.dataMap = newDataMap;
+                this.nodeMap = newNodeMap;
+                this.keys = newKeys;
+                this.content = newContent;
+                return this;
+            }
+            return new Node<>(currentContext, newDataMap, newNodeMap, newKeys, newContent);
+        }
+
+        private Node<V> copyAndSetValue(UpdateContext<?> currentContext, int index, V value) {
+            Object[] newContent = isEditInPlace(currentContext) ? content : content.clone();
+            newContent[index] = value;
+            return edit(currentContext, dataMap, nodeMap, keys, newContent);
+        }
+
+        private Node<V> copyAndSetNode(UpdateContext<?> currentContext, int contentIndex, Node<V> newNode) {
+            Object[] newContent = isEditInPlace(currentContext) ? content : content.clone();
+            newContent[contentIndex] = newNode;
+            return edit(currentContext, dataMap, nodeMap, keys, newContent);
+        }
+
+        private Node<V> copyAndInsertValue(UpdateContext<?> currentContext, int bit, long key, V value) {
+            int index = index(dataMap, bit);
+            long[] newKeys = new long[keys.length + 1];
+            arraycopy(keys, 0, newKeys, 0, index);
+            newKeys[index] = key;
+            arraycopy(keys, index, newKeys, index + 1, keys.length - index);
+
+            Object[] newContent = new Object[content.length + 1];
+            arraycopy(content, 0, newContent, 0, index);
+            newContent[index] = value;
+            arraycopy(content, index, newContent, index + 1, content.length - index);
+            return edit(currentContext, dataMap | bit, nodeMap, newKeys, newContent);
+        }
+
+        private Node<V> copyAndRemoveValue(UpdateContext<?> currentContext, int bit) {
+            int index = index(dataMap, bit);
+            long[] newKeys = new long[keys.length - 1];
+            arraycopy(keys, 0, newKeys, 0, index);
+            arraycopy(keys, index + 1, newKeys, index, keys.length - index - 1);
+
+            Object[] newContent = new Object[content.length - 1];
+            arraycopy(content, 0, newContent, 0, index);
+            arraycopy(content, index + 1, newContent, index, content.length - index - 1);
+            return edit(currentContext, dataMap ^ bit, nodeMap, newKeys, newContent);
+        }
+
+        private Node<V> copyAndMigrateToNode(UpdateContext<?> currentContext, int bit, Node<V> node) {
+            int oldIndex = index(dataMap, bit);
+            long[] newKeys = new long[keys.length - 1];
+            arraycopy(keys, 0, newKeys, 0, oldIndex);
+            arraycopy(keys, oldIndex + 1, newKeys, oldIndex, keys.length - oldIndex - 1);
+
+            // Content length stays the same: value at oldIndex is removed and node at newIndex is added
+            int newIndex = content.length - 1 - index(nodeMap, bit);
+            Object[] newContent = new Object[content.length];
+            arraycopy(content, 0, newContent, 0, oldIndex);
+            arraycopy(content, oldIndex + 1, newContent, oldIndex, newIndex - oldIndex);
+            newContent[newIndex] = node;
+            arraycopy(content, newIndex + 1, newContent, newIndex + 1, content.length - newIndex - 1);
+            return edit(currentContext, dataMap ^ bit, nodeMap | bit, newKeys, newContent);
+        }
+
+        private Node<V> copyAndMigrateToInline(UpdateContext<?> currentContext, int bit, Node<V> node) {
+            int newIndex = index(dataMap, bit);
+            long[] newKeys = new long[keys.length + 1];
+            arraycopy(keys, 0, newKeys, 0, newIndex);
+            newKeys[newIndex] = node.keyAt(0);
+            arraycopy(keys, newIndex, newKeys, newIndex + 1, keys.length - newIndex);
+
+            int oldIndex = content.length - 1 - index(nodeMap, bit);
+            Object[] newContent = new Object[content.length];
+            arraycopy(content, 0, newContent, 0, newIndex);
+            newContent[newIndex] = node.valueAt(0);
+            arraycopy(content, newIndex, newContent, newIndex + 1, oldIndex - newIndex);
+            arraycopy(content, oldIndex + 1, newContent, oldIndex + 1, content.length - oldIndex - 1);
+            return edit(currentContext, dataMap | bit, nodeMap ^ bit, newKeys, newContent);
+        }
+
+        private static <V> Node<V> mergeTwo(UpdateContext<?> currentContext, long key1, V value1, long hash1, long key2, V value2, long hash2, int shift) {
+            int bit1 = bit(hash1, shift);
+            int bit2 = bit(hash2, shift);
+            if (bit1 == bit2) {
+                Node<V> node = mergeTwo(currentContext, key1, value1, hash1, key2, value2, hash2, shift + SHIFT_INCREMENT);
+                return new Node<>(currentContext, 0, bit1, new long[0], new Object[] { node });
+            }
+            if (Integer.compareUnsigned(bit1, bit2) < 0) {
+                return new Node<>(currentContext, bit1 | bit2, 0, new long[] { key1, key2 }, new Object[] { value1, value2 });
+            } else {
+                return new Node<>(currentContext, bit1 | bit2, 0, new long[] { key2, key1 }, new Object[] { value2, value1 });
+            }
+        }
+    }
+
+    /**
+     * Depth-first iterator over entries. Subclasses call {@link #advance()} and then read the current key and value.
+     */
+    static abstract class NodeIterator<T, V> implements Iterator<T> {
+
+        // Max depth is 13 levels
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private final Node<V>[] nodes = new Node[14];
+
+        private final int[] nodeIndices = new int[14];
+
+        private int depth = 0;
+
+        private Node<V> current;
+
+        private int payloadIndex = -1;
+
+        @SuppressWarnings("unchecked")
+        NodeIterator(Node<? extends V> root) {
+            nodes[0] = (Node<V>) root;
+            current = (Node<V>) root;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (payloadIndex + 1 >= current.payloadArity()) {
+                if (!nextNode()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean nextNode() {
+            while (depth >= 0) {
+                Node<V> node = nodes[depth];
+                if (nodeIndices[depth] < node.nodeArity()) {
+                    Node<V> child = node.nodeAt(nodeIndices[depth]++);
+                    depth++;
+                    nodes[depth] = child;
+                    nodeIndices[depth] = 0;
+                    current = child;
+                    payloadIndex = -1;
+                    return true;
+                }
+                depth--;
+            }
+            return false;
+        }
+
+        /**
+         * Moves to the next entry.
+         *
+         * @throws NoSuchElementException if there are no more entries
+         */
+        final void advance() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            payloadIndex++;
+        }
+
+        final long currentKey() {
+            return current.keyAt(payloadIndex);
+        }
+
+        final V currentValue() {
+            return current.valueAt(payloadIndex);
+        }
+
+    }
+
+    static final class KeyIterator<V> extends NodeIterator<Long, V> implements PrimitiveIterator.OfLong {
+
+        KeyIterator(Node<? extends V> root) {
+            super(root);
+        }
+
+        @Override
+        public long nextLong() {
+            advance();
+            return currentKey();
+        }
+
+        @Override
+        public Long next() {
+            return nextLong();
+        }
+    }
+}
@@ -208,6 +208,69 @@ public abstract class AbstractRedBlackTree<K, N extends Node<K, N>, This extends
         return commitAndReturn(context, comparator, newRoot, newSize);
     }
 
+    /**
+     * Adds nodes given in strictly ascending key order. If this tree is empty, a balanced tree is built bottom-up
+     * in O(n) instead of inserting nodes one by one. Otherwise falls back to {@link #doAddAll(UpdateContext, Node, Iterable)}.
+     *
+     * @param checkOrder verify that nodes are in strictly ascending order
+     * @throws IllegalArgumentException if checkOrder is true and nodes are not in strictly ascending order
+     */
+    protected final This doAddAllSorted(UpdateContext<? super N> context, final N root, Iterable<N> sortedNodes, boolean checkOrder) {
+        if (checkOrder) {
+            sortedNodes = checkOrder(sortedNodes);
+        }
+        if (root != null) {
+            return doAddAll(context, root, sortedNodes);
+        }
+        List<N> nodes = sortedNodes instanceof Collection ? new ArrayList<>(((Collection<?>) sortedNodes).size()) : new ArrayList<>();
+        for (N node : sortedNodes) {
+            if (context.insert(node)) {
+                nodes.add(node);
+            }
+        }
+        if (nodes.isEmpty()) {
+            return self();
+        }
+        context.getChangeAndReset();
+        N newRoot = buildSorted(context, nodes, 0, nodes.size() - 1, 0, redLevel(nodes.size()));
+        return commitAndReturn(context, comparator, newRoot, nodes.size());
+    }
+
+    private List<N> checkOrder(Iterable<N> sortedNodes) {
+        List<N> nodes = new ArrayList<>();
+        N previous = null;
+        for (N node : sortedNodes) {
+            if (previous != null && comparator.compare(previous.key, node.key) >= 0) {
+                throw new IllegalArgumentException("Keys should be in strictly ascending order: " + previous.key + " >= " + node.key);
+            }
+            nodes.add(node);
+            previous = node;
+        }
+        return nodes;
+    }
+
+    /**
+     * Nodes on all levels but the deepest (which may be incomplete) are black. Nodes on the deepest level are red,
+     * unless it's complete.
+     */
+    private N buildSorted(UpdateContext<? super N> context, List<N> nodes, int lo, int hi, int level, int redLevel) {
+        if (hi < lo) {
+            return null;
+        }
+        int mid = (lo + hi) >>> 1;
+        N left = buildSorted(context, nodes, lo, mid - 1, level + 1, redLevel);
+        N right = buildSorted(context, nodes, mid + 1, hi, level + 1, redLevel);
+        return nodes.get(mid).edit(context, level == redLevel ? RED : BLACK, left, right);
+    }
+
+    private static int redLevel(int size) {
+        int level = 0;
+        for (int m = size - 1; m >= 0; m = m / 2 - 1) {
+            level++;
+        }
+        return level;
+    }
+
     protected Iterator<N> doIterator(N root, boolean asc) {
         return new RBIterator<K, N>(root, asc);
     }
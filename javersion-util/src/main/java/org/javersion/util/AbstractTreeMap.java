@@ -18,10 +18,17 @@ package org.javersion.util;
 import static com.google.common.collect.Iterables.transform;
 import static org.javersion.util.AbstractRedBlackTree.Color.RED;
 
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 import org.javersion.util.AbstractTreeMap.Node;
 
@@ -93,6 +100,18 @@ public abstract class AbstractTreeMap<K, V, This extends AbstractTreeMap<K, V, T
         return (This) doAddAll(context, root(), transform(entries, (entry) -> entryToNode(entry, context)));
     }
 
+    /**
+     * Adds entries given in strictly ascending key order. Builds the tree in O(n) if this map is empty.
+     *
+     * @param checkOrder verify that entries are in strictly ascending order
+     * @throws IllegalArgumentException if checkOrder is true and entries are not in strictly ascending order
+     */
+    @SuppressWarnings("unchecked")
+    public This assocAllSorted(Iterable<Entry<K, V>> sortedEntries, boolean checkOrder) {
+        final UpdateContext<Entry<K, V>> context = updateContext();
+        return (This) doAddAllSorted(context, root(), transform(sortedEntries, (entry) -> entryToNode(entry, context)), checkOrder);
+    }
+
     public This merge(K key, V value, Merger<Entry<K, V>> merger) {
         final UpdateContext<Entry<K, V>> context = updateContext(merger);
         return doAdd(context, root(), new Node<K, V>(context, key, value, RED));
@@ -297,4 +316,143 @@ public abstract class AbstractTreeMap<K, V, This extends AbstractTreeMap<K, V, T
 
     }
 
+    /**
+     * Subtrees larger than this are split into left and right halves that are transformed in parallel.
+     */
+    static final int PARALLEL_THRESHOLD = 2048;
+
+    @SuppressWarnings("serial")
+    static class MapValuesTask<K, V, U> extends RecursiveTask<Node<K, U>> {
+
+        private final UpdateContext<Entry<K, U>> context;
+
+        private final Node<K, V> node;
+
+        private final int sizeEstimate;
+
+        private final Function<? super V, ? extends U> fn;
+
+        MapValuesTask(UpdateContext<Entry<K, U>> context, Node<K, V> node, int sizeEstimate, Function<? super V, ? extends U> fn) {
+            this.context = context;
+            this.node = node;
+            this.sizeEstimate = sizeEstimate;
+            this.fn = fn;
+        }
+
+        @Override
+        protected Node<K, U> compute() {
+            if (node == null || sizeEstimate <= PARALLEL_THRESHOLD) {
+                return map(node);
+            }
+            MapValuesTask<K, V, U> leftTask = new MapValuesTask<>(context, node.left, sizeEstimate / 2, fn);
+            leftTask.fork();
+            Node<K, U> right = new MapValuesTask<>(context, node.right, sizeEstimate / 2, fn).compute();
+            U value = fn.apply(node.value);
+            return new Node<>(context, node.key, value, node.color, leftTask.join(), right);
+        }
+
+        private Node<K, U> map(Node<K, V> node) {
+            if (node == null) {
+                return null;
+            }
+            return new Node<>(context, node.key, fn.apply(node.value), node.color, map(node.left), map(node.right));
+        }
+    }
+
+    /**
+     * Collects matching nodes in ascending order.
+     */
+    @SuppressWarnings("serial")
+    static class FilterTask<K, V> extends RecursiveTask<List<Node<K, V>>> {
+
+        private final Node<K, V> node;
+
+        private final int sizeEstimate;
+
+        private final Predicate<? super Entry<K, V>> predicate;
+
+        FilterTask(Node<K, V> node, int sizeEstimate, Predicate<? super Entry<K, V>> predicate) {
+            this.node = node;
+            this.sizeEstimate = sizeEstimate;
+            this.predicate = predicate;
+        }
+
+        @Override
+        protected List<Node<K, V>> compute() {
+            if (node == null || sizeEstimate <= PARALLEL_THRESHOLD) {
+                List<Node<K, V>> result = new ArrayList<>();
+                filter(node, result);
+                return result;
+            }
+            FilterTask<K, V> leftTask = new FilterTask<>(node.left, sizeEstimate / 2, predicate);
+            leftTask.fork();
+            List<Node<K, V>> right = new FilterTask<>(node.right, sizeEstimate / 2, predicate).compute();
+            boolean matches = predicate.test(node);
+            List<Node<K, V>> left = leftTask.join();
+
+            List<Node<K, V>> result = new ArrayList<>(left.size() + right.size() + 1);
+            result.addAll(left);
+            if (matches) {
+                result.add(node);
+            }
+            result.addAll(right);
+            return result;
+        }
+
+        private void filter(Node<K, V> node, List<Node<K, V>> result) {
+            if (node != null) {
+                filter(node.left, result);
+                if (predicate.test(node)) {
+                    result.add(node);
+                }
+                filter(node.right, result);
+            }
+        }
+    }
+
+    /**
+     * Reduces entries in ascending order so that combiner needs only to be associative.
+     */
+    @SuppressWarnings("serial")
+    static class ReduceTask<K, V, R> extends RecursiveTask<R> {
+
+        private final Node<K, V> node;
+
+        private final int sizeEstimate;
+
+        private final R identity;
+
+        private final BiFunction<R, ? super Entry<K, V>, R> accumulator;
+
+        private final BinaryOperator<R> combiner;
+
+        ReduceTask(Node<K, V> node, int sizeEstimate, R identity, BiFunction<R, ? super Entry<K, V>, R> accumulator, BinaryOperator<R> combiner) {
+            this.node = node;
+            this.sizeEstimate = sizeEstimate;
+            this.identity = identity;
+            this.accumulator = accumulator;
+            this.combiner = combiner;
+        }
+
+        @Override
+        protected R compute() {
+            if (node == null || sizeEstimate <= PARALLEL_THRESHOLD) {
+                return reduce(identity, node);
+            }
+            ReduceTask<K, V, R> leftTask = new ReduceTask<>(node.left, sizeEstimate / 2, identity, accumulator, combiner);
+            leftTask.fork();
+            R right = new ReduceTask<>(node.right, sizeEstimate / 2, identity, accumulator, combiner).compute();
+            return combiner.apply(accumulator.apply(leftTask.join(), node), right);
+        }
+
+        private R reduce(R result, Node<K, V> node) {
+            if (node == null) {
+                return result;
+            }
+            result = reduce(result, node.left);
+            result = accumulator.apply(result, node);
+            return reduce(result, node.right);
+        }
+    }
+
 }
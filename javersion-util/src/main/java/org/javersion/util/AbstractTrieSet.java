@@ -90,6 +90,43 @@ public abstract class AbstractTrieSet<E, This extends AbstractTrieSet<E, This>>
         }
     }
 
+    /**
+     * Adds elements of other to this set. Subtrees shared with other are reused as such, so union of
+     * largely overlapping sets is much cheaper than adding elements one by one.
+     */
+    public This union(PersistentHashSet<E> other) {
+        final UpdateContext<EntryNode<E>> updateContext = updateContext(32, null);
+        try {
+            return doUnion(updateContext, other);
+        } finally {
+            commit(updateContext);
+        }
+    }
+
+    /**
+     * Retains elements that are also in other, comparing shared subtrees by reference.
+     */
+    public This intersection(PersistentHashSet<E> other) {
+        final UpdateContext<EntryNode<E>> updateContext = updateContext(32, null);
+        try {
+            return doIntersection(updateContext, other);
+        } finally {
+            commit(updateContext);
+        }
+    }
+
+    /**
+     * Removes elements that are in other, comparing shared subtrees by reference.
+     */
+    public This difference(PersistentHashSet<E> other) {
+        final UpdateContext<EntryNode<E>> updateContext = updateContext(32, null);
+        try {
+            return doDifference(updateContext, other);
+        } finally {
+            commit(updateContext);
+        }
+    }
+
     @SuppressWarnings("unchecked")
     public Iterator<E> iterator() {
         return Iterators.transform(doIterator(), ENTRY_TO_ELEMENT);
@@ -113,6 +150,11 @@ public abstract class AbstractTrieSet<E, This extends AbstractTrieSet<E, This>>
             return key;
         }
 
+        @Override
+        protected boolean valueEquals(EntryNode<E> other) {
+            return true;
+        }
+
         @Override
         public Node<E, EntryNode<E>> assocInternal(final UpdateContext<? super EntryNode<E>>  currentContext, final int shift, final int hash, final EntryNode<E> newEntry) {
             if (equal(this.key, newEntry.key)) {
@@ -4,6 +4,11 @@ import static java.lang.String.format;
 import static java.util.Arrays.copyOf;
 import static java.util.Arrays.fill;
 
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
 import javax.annotation.concurrent.Immutable;
 
 /**
@@ -15,6 +20,7 @@ import javax.annotation.concurrent.Immutable;
  *         Encoding numbers in reverse retains the numeric order.</li>
  *     <li>Configurable signed/unsigned encoding for numeric encoders.</li>
  *     <li>Fluent builder for defining encoders.</li>
+ *     <li>Allocation free encoding and decoding of longs from/to char arrays and buffers.</li>
  * </ul>
  * Reverse encoding is especially useful for text-based indexing.
  *
@@ -192,6 +198,13 @@ public abstract class BinaryEncoder {
 
     final int[] charToNumber;
 
+    /**
+     * Right shifts (or left shifts if negative) of a long for each encoded character.
+     */
+    private final int[] longShifts;
+
+    private final boolean ascii;
+
     private BinaryEncoder(char[] numberToChar, int[] charToNumber) {
         Check.notNull(numberToChar, "toChar");
         Check.notNull(charToNumber, "charToNumber");
@@ -206,6 +219,16 @@ public abstract class BinaryEncoder {
 
         this.encodingBitLen = Integer.bitCount(radix-1);
         this.mask = (byte) (radix - 1);
+
+        this.longShifts = new int[charLen(8)];
+        for (int i=0; i < longShifts.length; i++) {
+            longShifts[i] = 64 - encodingBitLen - bitIndex(i, longShifts.length, 8);
+        }
+        boolean ascii = true;
+        for (char ch : numberToChar) {
+            ascii &= ch < 128;
+        }
+        this.ascii = ascii;
     }
 
     public String encode(byte[] bytes) {
@@ -217,7 +240,61 @@ public abstract class BinaryEncoder {
     }
 
     public String encodeLong(long l) {
-        return encode(new Bytes.Long(l));
+        char[] chars = new char[longShifts.length];
+        encodeLong(l, chars, 0);
+        return new String(chars);
+    }
+
+    /**
+     * @return length of an encoded long
+     */
+    public int longLength() {
+        return longShifts.length;
+    }
+
+    /**
+     * Writes {@link #longLength()} characters into chars starting from offset.
+     *
+     * @return offset after the encoded long
+     */
+    public int encodeLong(long l, char[] chars, int offset) {
+        l = adjustSign(l);
+        int numberMask = numberToChar.length - 1;
+        for (int shift : longShifts) {
+            chars[offset++] = numberToChar[numberMask & (int) (shift >= 0 ? l >>> shift : l << -shift)];
+        }
+        return offset;
+    }
+
+    public void encodeLong(long l, CharBuffer buffer) {
+        if (buffer.remaining() < longShifts.length) {
+            throw new BufferOverflowException();
+        }
+        if (buffer.hasArray()) {
+            int end = encodeLong(l, buffer.array(), buffer.arrayOffset() + buffer.position());
+            buffer.position(end - buffer.arrayOffset());
+        } else {
+            l = adjustSign(l);
+            int numberMask = numberToChar.length - 1;
+            for (int shift : longShifts) {
+                buffer.put(numberToChar[numberMask & (int) (shift >= 0 ? l >>> shift : l << -shift)]);
+            }
+        }
+    }
+
+    /**
+     * Writes encoded long into buffer as US-ASCII bytes. Requires an ASCII alphabet.
+     */
+    public void encodeLong(long l, ByteBuffer buffer) {
+        Check.that(ascii, "Expected ASCII alphabet");
+        if (buffer.remaining() < longShifts.length) {
+            throw new BufferOverflowException();
+        }
+        l = adjustSign(l);
+        int numberMask = numberToChar.length - 1;
+        for (int shift : longShifts) {
+            buffer.put((byte) numberToChar[numberMask & (int) (shift >= 0 ? l >>> shift : l << -shift)]);
+        }
     }
 
     public String encodeInt(int i) {
@@ -225,7 +302,62 @@ public abstract class BinaryEncoder {
     }
 
     public long decodeLong(String str) {
-        return decode(str, new Bytes.Long(0)).getLong();
+        if (str.length() == longShifts.length) {
+            return decodeLong((CharSequence) str, 0);
+        }
+        return adjustSign(decode(str, new Bytes.Long(0)).getLong());
+    }
+
+    /**
+     * Reads {@link #longLength()} characters starting from offset.
+     */
+    public long decodeLong(CharSequence chars, int offset) {
+        long l = 0;
+        for (int shift : longShifts) {
+            l |= toLongBits(toNumber(chars.charAt(offset), offset), shift);
+            offset++;
+        }
+        return adjustSign(l);
+    }
+
+    /**
+     * Reads {@link #longLength()} characters starting from offset.
+     */
+    public long decodeLong(char[] chars, int offset) {
+        long l = 0;
+        for (int shift : longShifts) {
+            l |= toLongBits(toNumber(chars[offset], offset), shift);
+            offset++;
+        }
+        return adjustSign(l);
+    }
+
+    /**
+     * Reads {@link #longLength()} characters from the current position of the buffer.
+     */
+    public long decodeLong(CharBuffer buffer) {
+        if (buffer.remaining() < longShifts.length) {
+            throw new BufferUnderflowException();
+        }
+        long l = 0;
+        for (int shift : longShifts) {
+            l |= toLongBits(toNumber(buffer.get(), buffer.position() - 1), shift);
+        }
+        return adjustSign(l);
+    }
+
+    /**
+     * Reads {@link #longLength()} US-ASCII bytes from the current position of the buffer.
+     */
+    public long decodeLong(ByteBuffer buffer) {
+        if (buffer.remaining() < longShifts.length) {
+            throw new BufferUnderflowException();
+        }
+        long l = 0;
+        for (int shift : longShifts) {
+            l |= toLongBits(toNumber(buffer.get() & 0xFF, buffer.position() - 1), shift);
+        }
+        return adjustSign(l);
     }
 
     public int decodeInt(String str) {
@@ -234,12 +366,33 @@ public abstract class BinaryEncoder {
 
     abstract String encode(Bytes bytes);
 
+    /**
+     * @return index of the first bit of charIndex:th character of an encoded value of byteLen bytes
+     */
+    abstract int bitIndex(int charIndex, int charLen, int byteLen);
+
+    long adjustSign(long l) {
+        return l;
+    }
+
     abstract <T extends Bytes> T decode(String str, T bytes);
 
     void throwIllegalCharacterException(String str, int index) {
         throw new IllegalArgumentException(format("Illegal character %s at %s", str.charAt(index), index));
     }
 
+    private int toNumber(int ch, int index) {
+        int number = ch < charToNumber.length ? charToNumber[ch] : -1;
+        if (number < 0) {
+            throw new IllegalArgumentException(format("Illegal character %s at %s", (char) ch, index));
+        }
+        return number;
+    }
+
+    private static long toLongBits(int number, int shift) {
+        return shift >= 0 ? ((long) number) << shift : number >>> -shift;
+    }
+
     int charLen(int byteLen) {
         // ceil
         return 1 + ((byteLen * 8 - 1) / encodingBitLen);
@@ -256,6 +409,11 @@ public abstract class BinaryEncoder {
             }
         }
 
+        @Override
+        int bitIndex(int charIndex, int charLen, int byteLen) {
+            return (byteLen * 8) - encodingBitLen * (charLen - charIndex);
+        }
+
         @Override
         String encode(Bytes bytes) {
             int charLen = charLen(bytes.length());
@@ -301,8 +459,8 @@ public abstract class BinaryEncoder {
         }
 
         @Override
-        public String encodeLong(long l) {
-            return super.encodeLong(l - Long.MIN_VALUE);
+        long adjustSign(long l) {
+            return l ^ Long.MIN_VALUE;
         }
 
         @Override
@@ -310,11 +468,6 @@ public abstract class BinaryEncoder {
             return super.encodeInt(i - Integer.MIN_VALUE);
         }
 
-        @Override
-        public long decodeLong(String str) {
-            return super.decodeLong(str) + Long.MIN_VALUE;
-        }
-
         @Override
         public int decodeInt(String str) {
             return super.decodeInt(str) + Integer.MIN_VALUE;
@@ -327,6 +480,11 @@ public abstract class BinaryEncoder {
             super(numberToChar, charToNumber);
         }
 
+        @Override
+        int bitIndex(int charIndex, int charLen, int byteLen) {
+            return charIndex * encodingBitLen;
+        }
+
         @Override
         String encode(Bytes bytes) {
             int charLen = charLen(bytes.length());
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2016 Samppa Saarela
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javersion.util;
+
+import java.util.Map;
+import java.util.Objects;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Entry of a long keyed map. Key is available unboxed with {@link #getLongKey()}.
+ */
+@Immutable
+public final class LongEntry<V> implements Map.Entry<Long, V> {
+
+    private final long key;
+
+    private final V value;
+
+    public LongEntry(long key, V value) {
+        this.key = key;
+        this.value = value;
+    }
+
+    public long getLongKey() {
+        return key;
+    }
+
+    @Override
+    public Long getKey() {
+        return key;
+    }
+
+    @Override
+    public V getValue() {
+        return value;
+    }
+
+    @Override
+    public V setValue(V value) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Same as equals of java.util.Map.Entry.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof Map.Entry)) {
+            return false;
+        }
+        Map.Entry<?, ?> other = (Map.Entry<?, ?>) obj;
+        return Objects.equals(getKey(), other.getKey()) && Objects.equals(value, other.getValue());
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(key) ^ Objects.hashCode(value);
+    }
+
+    public String toString() {
+        return key + ": " + value;
+    }
+}
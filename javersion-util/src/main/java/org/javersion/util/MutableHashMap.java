@@ -146,6 +146,27 @@ public class MutableHashMap<K, V> extends AbstractMap<K, V> implements MutableMa
         map.mergeAll(entries, merger);
     }
 
+    /**
+     * Adds entries of other reusing subtrees shared with it. Entries of other replace those of equal keys.
+     */
+    public void union(PersistentHashMap<K, V> other) {
+        map.union(other);
+    }
+
+    /**
+     * Retains entries whose keys are also in other.
+     */
+    public void intersection(PersistentHashMap<K, V> other) {
+        map.intersection(other);
+    }
+
+    /**
+     * Removes entries whose keys are in other.
+     */
+    public void difference(PersistentHashMap<K, V> other) {
+        map.difference(other);
+    }
+
     @Override
     public PersistentHashMap<K, V> toPersistentMap() {
         return map.toPersistentMap();
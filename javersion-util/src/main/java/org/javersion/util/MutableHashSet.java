@@ -53,6 +53,39 @@ public class MutableHashSet<E> extends AbstractSet<E> implements MutableSet<E> {
         return size != set.size;
     }
 
+    /**
+     * Adds elements of other reusing subtrees shared with it.
+     *
+     * @return true if this set changed
+     */
+    public boolean union(PersistentHashSet<E> other) {
+        int size = set.size;
+        set.union(other);
+        return size != set.size;
+    }
+
+    /**
+     * Retains elements that are also in other.
+     *
+     * @return true if this set changed
+     */
+    public boolean intersection(PersistentHashSet<E> other) {
+        int size = set.size;
+        set.intersection(other);
+        return size != set.size;
+    }
+
+    /**
+     * Removes elements that are in other.
+     *
+     * @return true if this set changed
+     */
+    public boolean difference(PersistentHashSet<E> other) {
+        int size = set.size;
+        set.difference(other);
+        return size != set.size;
+    }
+
     @Override
     public boolean contains(Object o) {
         return set.contains(o);
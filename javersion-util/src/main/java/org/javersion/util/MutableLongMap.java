@@ -0,0 +1,199 @@
+/*
+ * Copyright 2016 Samppa Saarela
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javersion.util;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.PrimitiveIterator;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+import org.javersion.util.AbstractLongMap.Node;
+
+import com.google.common.base.Joiner;
+
+/**
+ * Mutable counterpart of {@link PersistentLongMap}.
+ */
+@NotThreadSafe
+public class MutableLongMap<V> implements Iterable<LongEntry<V>> {
+
+    private MMap<V> map;
+
+    @SuppressWarnings("unchecked")
+    public MutableLongMap() {
+        this.map = new MMap<V>(AbstractLongMap.EMPTY_NODE, 0);
+    }
+
+    MutableLongMap(Node<V> root, int size) {
+        this.map = new MMap<V>(root, size);
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    public boolean containsKey(long key) {
+        return map.containsKey(key);
+    }
+
+    public V get(long key) {
+        return map.get(key);
+    }
+
+    /**
+     * @return previous value of the key or null
+     */
+    public V put(long key, V value) {
+        // Lookup is cheaper than allocating entries for a Merger
+        V previousValue = map.get(key);
+        map.assoc(key, value);
+        return previousValue;
+    }
+
+    /**
+     * @return removed value or null
+     */
+    public V remove(long key) {
+        V previousValue = map.get(key);
+        map.dissoc(key);
+        return previousValue;
+    }
+
+    public void putAll(AbstractLongMap<? extends V, ?> m) {
+        map.assocAll(m);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void clear() {
+        if (map.size() > 0) {
+            map = new MMap<V>(AbstractLongMap.EMPTY_NODE, 0);
+        }
+    }
+
+    @Override
+    public Iterator<LongEntry<V>> iterator() {
+        return map.iterator();
+    }
+
+    public PrimitiveIterator.OfLong keyIterator() {
+        return map.keyIterator();
+    }
+
+    public Iterator<V> valueIterator() {
+        return map.valueIterator();
+    }
+
+    public void merge(long key, V value, Merger<Map.Entry<Long, V>> merger) {
+        map.merge(key, value, merger);
+    }
+
+    public void mergeAll(AbstractLongMap<? extends V, ?> m, Merger<Map.Entry<Long, V>> merger) {
+        map.mergeAll(m, merger);
+    }
+
+    public void dissoc(long key, Merger<Map.Entry<Long, V>> merger) {
+        map.dissoc(key, merger);
+    }
+
+    public PersistentLongMap<V> toPersistentMap() {
+        return map.toPersistentMap();
+    }
+
+    Node<V> root() {
+        // For tests
+        return map.root();
+    }
+
+    @Override
+    public String toString() {
+        return Joiner.on(", ").appendTo(new StringBuilder("{"), iterator()).append('}').toString();
+    }
+
+
+    private static class MMap<V> extends AbstractLongMap<V, MMap<V>> {
+
+        private final Thread owner = Thread.currentThread();
+
+        private UpdateContext<Map.Entry<Long, V>> updateContext;
+
+        private Node<V> root;
+
+        private int size;
+
+        private MMap(Node<V> root, int size) {
+            this.updateContext = new UpdateContext<Map.Entry<Long, V>>(32);
+            this.root = root;
+            this.size = size;
+        }
+
+        @Override
+        protected Node<V> root() {
+            verifyThread();
+            return root;
+        }
+
+        @Override
+        protected MMap<V> self() {
+            return this;
+        }
+
+        public PersistentLongMap<V> toPersistentMap() {
+            verifyThread();
+            updateContext.commit();
+            return PersistentLongMap.create(root, size);
+        }
+
+        private void verifyThread() {
+            if (owner != Thread.currentThread()) {
+                throw new IllegalStateException("MutableMap should only be accessed form the thread it was created in.");
+            }
+        }
+
+        @Override
+        public int size() {
+            verifyThread();
+            return size;
+        }
+
+        @Override
+        protected MMap<V> doReturn(Node<V> newRoot, int newSize) {
+            this.root = newRoot;
+            this.size = newSize;
+            return this;
+        }
+
+        @Override
+        protected UpdateContext<Map.Entry<Long, V>> updateContext(int expectedUpdates, Merger<Map.Entry<Long, V>> merger) {
+            verifyThread();
+            if (updateContext.isCommitted()) {
+                updateContext = new UpdateContext<>(expectedUpdates, merger);
+            } else {
+                updateContext.merger(merger);
+            }
+            return updateContext;
+        }
+
+        @Override
+        protected void commit(UpdateContext<?> updateContext) {
+            // Nothing to do here
+        }
+    }
+}
@@ -124,6 +124,16 @@ public class MutableTreeMap<K, V> extends AbstractMap<K, V> implements MutableSo
         map.assocAll(m);
     }
 
+    /**
+     * Puts entries given in strictly ascending key order. Builds the tree in O(n) if this map is empty.
+     *
+     * @param checkOrder verify that entries are in strictly ascending order
+     * @throws IllegalArgumentException if checkOrder is true and entries are not in strictly ascending order
+     */
+    public void putAllSorted(Iterable<Map.Entry<K, V>> sortedEntries, boolean checkOrder) {
+        map.assocAllSorted(sortedEntries, checkOrder);
+    }
+
     @Override
     public void clear() {
         map = new MMap<K, V>(map.comparator);
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2016 Samppa Saarela
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javersion.util;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static org.javersion.util.PersistentVector.BITS;
+import static org.javersion.util.PersistentVector.EMPTY_LEAF;
+import static org.javersion.util.PersistentVector.WIDTH;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+import org.javersion.util.PersistentVector.Node;
+import org.javersion.util.PersistentVector.VectorIterator;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.Iterators;
+
+/**
+ * Mutable counterpart of {@link PersistentVector}. Appended elements are collected into a tail buffer that is
+ * added to the tree as a leaf once full. Nodes created or copied by this vector are edited in place until
+ * {@link #toPersistentVector()} is called.
+ */
+@NotThreadSafe
+public class MutableVector<E> implements Iterable<E> {
+
+    private final Thread owner = Thread.currentThread();
+
+    private UpdateContext<E> updateContext;
+
+    private Node root;
+
+    private int shift;
+
+    /**
+     * Number of elements in the tree excluding tail.
+     */
+    private int treeSize;
+
+    private Object[] tail = new Object[WIDTH];
+
+    private int tailSize;
+
+    public MutableVector() {
+        this.updateContext = new UpdateContext<>(WIDTH);
+        this.root = EMPTY_LEAF;
+    }
+
+    MutableVector(PersistentVector<E> vector) {
+        this.updateContext = new UpdateContext<>(WIDTH);
+        int size = vector.size();
+        if (size == 0) {
+            this.root = EMPTY_LEAF;
+        } else {
+            // Continue appending to the last leaf
+            Object[] lastLeaf = PersistentVector.leafFor(vector.root, vector.shift, size - 1);
+            PersistentVector<E> tree = vector.slice(0, size - lastLeaf.length);
+            this.root = tree.root;
+            this.shift = tree.shift;
+            this.treeSize = tree.size();
+            this.tailSize = lastLeaf.length;
+            System.arraycopy(lastLeaf, 0, tail, 0, tailSize);
+        }
+    }
+
+    public int size() {
+        verifyThread();
+        return treeSize + tailSize;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        checkElementIndex(index, size());
+        if (index >= treeSize) {
+            return (E) tail[index - treeSize];
+        }
+        return (E) PersistentVector.get(root, shift, index);
+    }
+
+    /**
+     * @return previous element at index
+     */
+    public E set(int index, E element) {
+        E previous = get(index);
+        if (index >= treeSize) {
+            tail[index - treeSize] = element;
+        } else {
+            root = PersistentVector.set(updateContext(), root, shift, index, element);
+        }
+        return previous;
+    }
+
+    public void add(E element) {
+        verifyThread();
+        if (tailSize == WIDTH) {
+            pushTail(tail);
+            tail = new Object[WIDTH];
+            tailSize = 0;
+        }
+        tail[tailSize++] = element;
+    }
+
+    public void addAll(Iterable<? extends E> elements) {
+        for (E element : elements) {
+            add(element);
+        }
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        verifyThread();
+        @SuppressWarnings("unchecked")
+        Iterator<E> tailIterator = (Iterator<E>) Iterators.forArray(Arrays.copyOf(tail, tailSize));
+        return Iterators.concat(new VectorIterator<>(root, shift, treeSize), tailIterator);
+    }
+
+    public PersistentVector<E> toPersistentVector() {
+        verifyThread();
+        updateContext.commit();
+        if (tailSize == 0) {
+            if (treeSize == 0) {
+                return PersistentVector.empty();
+            }
+            return new PersistentVector<>(root, shift, treeSize);
+        }
+        Node leaf = new Node(null, Arrays.copyOf(tail, tailSize), null);
+        if (treeSize == 0) {
+            return new PersistentVector<>(leaf, 0, tailSize);
+        }
+        return PersistentVector.append(null, root, shift, treeSize, leaf, tailSize, BITS);
+    }
+
+    @Override
+    public String toString() {
+        return Joiner.on(", ").useForNull("null").appendTo(new StringBuilder("["), iterator()).append(']').toString();
+    }
+
+    private void pushTail(Object[] elements) {
+        Node leaf = new Node(null, elements, null);
+        if (treeSize == 0) {
+            root = leaf;
+            shift = 0;
+            treeSize = elements.length;
+        } else {
+            PersistentVector<E> tree = PersistentVector.append(updateContext(), root, shift, treeSize, leaf, elements.length, BITS);
+            root = tree.root;
+            shift = tree.shift;
+            treeSize = tree.size();
+        }
+    }
+
+    private UpdateContext<E> updateContext() {
+        if (updateContext.isCommitted()) {
+            updateContext = new UpdateContext<>(WIDTH);
+        }
+        return updateContext;
+    }
+
+    private void verifyThread() {
+        if (owner != Thread.currentThread()) {
+            throw new IllegalStateException("MutableVector should only be accessed form the thread it was created in.");
+        }
+    }
+}
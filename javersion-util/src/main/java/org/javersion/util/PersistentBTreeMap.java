@@ -0,0 +1,180 @@
+/*
+ * Copyright 2016 Samppa Saarela
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javersion.util;
+
+import static java.util.Spliterators.emptySpliterator;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * PersistentSortedMap using B+-tree layout. An alternative to {@link PersistentTreeMap} with faster lookups,
+ * range scans and updates of large maps.
+ */
+@Immutable
+public class PersistentBTreeMap<K, V> extends AbstractBTreeMap<K, V, PersistentBTreeMap<K, V>> implements PersistentSortedMap<K, V> {
+
+    @SuppressWarnings("rawtypes")
+    public static final PersistentBTreeMap EMPTY = new PersistentBTreeMap();
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentBTreeMap<K, V> empty() {
+        return EMPTY;
+    }
+
+    public static <K, V> PersistentBTreeMap<K, V> empty(Comparator<? super K> comparator) {
+        return new PersistentBTreeMap<K, V>(comparator, null, 0);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentBTreeMap<K, V> copyOf(Map<? extends K, ? extends V> map) {
+        return ((PersistentBTreeMap<K, V>) EMPTY).assocAll(map);
+    }
+
+    /**
+     * Builds a map of already sorted entries in O(n) using the comparator of given map.
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentBTreeMap<K, V> copyOfSorted(SortedMap<K, ? extends V> map) {
+        PersistentBTreeMap<K, V> empty = map.comparator() != null ? empty(map.comparator()) : EMPTY;
+        return empty.assocAllSorted((Iterable) map.entrySet(), false);
+    }
+
+    /**
+     * Builds a map of entries in strictly ascending natural order of keys in O(n).
+     *
+     * @throws IllegalArgumentException if entries are not in strictly ascending order
+     */
+    @SuppressWarnings("unchecked")
+    public static <K extends Comparable<? super K>, V> PersistentBTreeMap<K, V> copyOfSorted(Iterable<Map.Entry<K, V>> sortedEntries) {
+        return ((PersistentBTreeMap<K, V>) EMPTY).assocAllSorted(sortedEntries, true);
+    }
+
+    /**
+     * Builds a map of entries in strictly ascending order of keys in O(n).
+     *
+     * @throws IllegalArgumentException if entries are not in strictly ascending order
+     */
+    public static <K, V> PersistentBTreeMap<K, V> copyOfSorted(Comparator<? super K> comparator, Iterable<Map.Entry<K, V>> sortedEntries) {
+        return PersistentBTreeMap.<K, V> empty(comparator).assocAllSorted(sortedEntries, true);
+    }
+
+    public static <K, V> PersistentBTreeMap<K, V> of() {
+        return empty();
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentBTreeMap<K, V> of(K k1, V v1) {
+        return (PersistentBTreeMap<K, V>) EMPTY.assoc(k1, v1);
+    }
+
+    public static <K, V> PersistentBTreeMap<K, V> of(K k1, V v1, K k2, V v2) {
+        MutableBTreeMap<K, V> map = new MutableBTreeMap<K, V>();
+        map.put(k1, v1);
+        map.put(k2, v2);
+        return map.toPersistentMap();
+    }
+
+    public static <K, V> PersistentBTreeMap<K, V> of(K k1, V v1, K k2, V v2, K k3, V v3) {
+        MutableBTreeMap<K, V> map = new MutableBTreeMap<K, V>();
+        map.put(k1, v1);
+        map.put(k2, v2);
+        map.put(k3, v3);
+        return map.toPersistentMap();
+    }
+
+
+    private final Node<K, V> root;
+
+    private final int size;
+
+    private PersistentBTreeMap() {
+        root = null;
+        size = 0;
+    }
+
+    PersistentBTreeMap(Comparator<? super K> comparator, Node<K, V> root, int size) {
+        super(comparator);
+        this.root = root;
+        this.size = size;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    protected Node<K, V> root() {
+        return root;
+    }
+
+    @Override
+    public MutableBTreeMap<K, V> toMutableMap() {
+        return new MutableBTreeMap<>(comparator, root, size);
+    }
+
+    @Override
+    public Map<K, V> asMap() {
+        return new ImmutableMap<>(this);
+    }
+
+    @Override
+    protected PersistentBTreeMap<K, V> doReturn(Comparator<? super K> comparator, Node<K, V> newRoot, int newSize) {
+        if (newRoot == root) {
+            return this;
+        }
+        return new PersistentBTreeMap<K, V>(comparator, newRoot, newSize);
+    }
+
+    @Override
+    public Spliterator<Map.Entry<K, V>> spliterator() {
+        if (root != null) {
+            return new EntrySpliterator<K, V>(root, size, comparator, true);
+        } else {
+            return emptySpliterator();
+        }
+    }
+
+    @Override
+    public Spliterator<K> keySpliterator() {
+        if (root != null) {
+            return new KeySpliterator<K, V>(root, size, comparator, true);
+        } else {
+            return emptySpliterator();
+        }
+    }
+
+    @Override
+    public Spliterator<V> valueSpliterator() {
+        if (root != null) {
+            return new ValueSpliterator<K, V>(root, size, true);
+        } else {
+            return emptySpliterator();
+        }
+    }
+
+    public String toString() {
+        return stream().map(Objects::toString).collect(Collectors.joining(", ", "{", "}"));
+    }
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2016 Samppa Saarela
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javersion.util;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * PersistentMap using compressed hash trie layout. An alternative to {@link PersistentHashMap} with smaller
+ * memory footprint and faster iteration.
+ */
+@Immutable
+public class PersistentCompactHashMap<K, V> extends AbstractCompactHashMap<K, V, PersistentCompactHashMap<K, V>> implements PersistentMap<K, V> {
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private static final PersistentCompactHashMap EMPTY_MAP = new PersistentCompactHashMap(EMPTY_NODE, 0);
+
+    private final Node<K, V> root;
+
+    private final int size;
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentCompactHashMap<K, V> empty() {
+        return (PersistentCompactHashMap<K, V>) EMPTY_MAP;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentCompactHashMap<K, V> copyOf(Map<? extends K, ? extends V> map) {
+        return ((PersistentCompactHashMap<K, V>) EMPTY_MAP).assocAll(map);
+    }
+
+    public static <K, V> PersistentCompactHashMap<K, V> of() {
+        return empty();
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentCompactHashMap<K, V> of(K k1, V v1) {
+        return (PersistentCompactHashMap<K, V>) EMPTY_MAP.assoc(k1, v1);
+    }
+
+    public static <K, V> PersistentCompactHashMap<K, V> of(K k1, V v1, K k2, V v2) {
+        MutableCompactHashMap<K, V> map = new MutableCompactHashMap<K, V>();
+        map.put(k1, v1);
+        map.put(k2, v2);
+        return map.toPersistentMap();
+    }
+
+    public static <K, V> PersistentCompactHashMap<K, V> of(K k1, V v1, K k2, V v2, K k3, V v3) {
+        MutableCompactHashMap<K, V> map = new MutableCompactHashMap<K, V>();
+        map.put(k1, v1);
+        map.put(k2, v2);
+        map.put(k3, v3);
+        return map.toPersistentMap();
+    }
+
+
+    @SuppressWarnings("unchecked")
+    static <K, V> PersistentCompactHashMap<K, V> create(Node<K, V> newRoot, int newSize) {
+        return newSize == 0 ? (PersistentCompactHashMap<K, V>) EMPTY_MAP : new PersistentCompactHashMap<K, V>(newRoot, newSize);
+    }
+
+    private PersistentCompactHashMap(Node<K, V> root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @Override
+    public MutableCompactHashMap<K, V> toMutableMap() {
+        return new MutableCompactHashMap<K, V>(root, size);
+    }
+
+    @Override
+    public Map<K, V> asMap() {
+        return new ImmutableMap<>(this);
+    }
+
+    @Override
+    protected Node<K, V> root() {
+        return root;
+    }
+
+    @Override
+    public Spliterator<Map.Entry<K, V>> spliterator() {
+        return new EntrySpliterator<>(root, size, true);
+    }
+
+    @Override
+    public Spliterator<K> keySpliterator() {
+        return new KeySpliterator<>(root, size, true);
+    }
+
+    @Override
+    public Spliterator<V> valueSpliterator() {
+        return new ValueSpliterator<>(root, size, true);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    protected PersistentCompactHashMap<K, V> doReturn(Node<K, V> newRoot, int newSize) {
+        if (newRoot == root) {
+            return this;
+        } else {
+            return create(newRoot, newSize);
+        }
+    }
+
+    public String toString() {
+        return stream().map(Objects::toString).collect(Collectors.joining(", ", "{", "}"));
+    }
+
+}
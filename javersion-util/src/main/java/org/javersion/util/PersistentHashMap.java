@@ -18,6 +18,11 @@ package org.javersion.util;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import javax.annotation.concurrent.Immutable;
@@ -121,6 +126,69 @@ public class PersistentHashMap<K, V> extends AbstractHashMap<K, V, PersistentHas
         }
     }
 
+    /**
+     * Maps values of this map preserving keys. Large maps are transformed in parallel using common
+     * ForkJoinPool.
+     */
+    public <U> PersistentHashMap<K, U> mapValues(Function<? super V, ? extends U> fn) {
+        if (isEmpty()) {
+            return empty();
+        }
+        UpdateContext<Map.Entry<K, U>> updateContext = new UpdateContext<>(32);
+        Node<K, EntryNode<K, U>> newRoot = ForkJoinPool.commonPool().invoke(new MapTask<K, EntryNode<K, V>, EntryNode<K, U>>(
+                updateContext, root, size, entry -> new EntryNode<>(entry.key, fn.apply(entry.value))));
+        updateContext.commit();
+        return create(newRoot, size);
+    }
+
+    /**
+     * Retains entries matching predicate. Subtries that are retained as such are shared with this map.
+     * Large maps are filtered in parallel using common ForkJoinPool.
+     */
+    public PersistentHashMap<K, V> filter(Predicate<? super Map.Entry<K, V>> predicate) {
+        if (isEmpty()) {
+            return this;
+        }
+        UpdateContext<Map.Entry<K, V>> updateContext = new UpdateContext<>(32);
+        FilterTask<K, EntryNode<K, V>> task = new FilterTask<>(updateContext, root, size, predicate);
+        Node<K, EntryNode<K, V>> newRoot = ForkJoinPool.commonPool().invoke(task);
+        updateContext.commit();
+        return doReturn(newRoot, task.count);
+    }
+
+    /**
+     * Reduces entries of this map in parallel using common ForkJoinPool for large maps. As with
+     * {@link java.util.stream.Stream#reduce(Object, BiFunction, BinaryOperator)}, identity should be an identity
+     * for combiner and combiner should be associative. Entries are not reduced in any particular order.
+     */
+    public <R> R reduce(R identity, BiFunction<R, ? super Map.Entry<K, V>, R> accumulator, BinaryOperator<R> combiner) {
+        if (isEmpty()) {
+            return identity;
+        }
+        return ForkJoinPool.commonPool().invoke(new ReduceTask<K, EntryNode<K, V>, R>(root, size, identity, accumulator, combiner));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        return obj instanceof PersistentHashMap && doEquals((PersistentHashMap<K, V>) obj);
+    }
+
+    /**
+     * Same as hashCode of a java.util.Map with the same entries.
+     */
+    @Override
+    public int hashCode() {
+        int hashCode = 0;
+        for (Map.Entry<K, V> entry : this) {
+            hashCode += Objects.hashCode(entry.getKey()) ^ Objects.hashCode(entry.getValue());
+        }
+        return hashCode;
+    }
+
     public String toString() {
         return stream().map(Objects::toString).collect(Collectors.joining(", ", "{", "}"));
     }
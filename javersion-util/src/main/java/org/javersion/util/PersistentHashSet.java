@@ -72,6 +72,24 @@ public class PersistentHashSet<E> extends AbstractTrieSet<E, PersistentHashSet<E
         return root;
     }
 
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        return obj instanceof PersistentHashSet && doEquals((PersistentHashSet<E>) obj);
+    }
+
+    @Override
+    public int hashCode() {
+        int hashCode = 0;
+        for (E element : this) {
+            hashCode += Objects.hashCode(element);
+        }
+        return hashCode;
+    }
+
     @Override
     public String toString() {
         return stream().map(Objects::toString).collect(Collectors.joining(", ", "[", "]"));
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2016 Samppa Saarela
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javersion.util;
+
+import static java.util.Spliterator.DISTINCT;
+import static java.util.Spliterator.IMMUTABLE;
+
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Persistent map of primitive long keys. Unlike PersistentHashMap&lt;Long, V&gt;, keys are not boxed
+ * on lookup or update.
+ */
+@Immutable
+public class PersistentLongMap<V> extends AbstractLongMap<V, PersistentLongMap<V>> {
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private static final PersistentLongMap EMPTY_MAP = new PersistentLongMap(EMPTY_NODE, 0);
+
+    private final Node<V> root;
+
+    private final int size;
+
+    @SuppressWarnings("unchecked")
+    public static <V> PersistentLongMap<V> empty() {
+        return (PersistentLongMap<V>) EMPTY_MAP;
+    }
+
+    public static <V> PersistentLongMap<V> of() {
+        return empty();
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <V> PersistentLongMap<V> of(long k1, V v1) {
+        return (PersistentLongMap<V>) EMPTY_MAP.assoc(k1, v1);
+    }
+
+    public static <V> PersistentLongMap<V> of(long k1, V v1, long k2, V v2) {
+        MutableLongMap<V> map = new MutableLongMap<V>();
+        map.put(k1, v1);
+        map.put(k2, v2);
+        return map.toPersistentMap();
+    }
+
+    public static <V> PersistentLongMap<V> of(long k1, V v1, long k2, V v2, long k3, V v3) {
+        MutableLongMap<V> map = new MutableLongMap<V>();
+        map.put(k1, v1);
+        map.put(k2, v2);
+        map.put(k3, v3);
+        return map.toPersistentMap();
+    }
+
+
+    @SuppressWarnings("unchecked")
+    static <V> PersistentLongMap<V> create(Node<V> newRoot, int newSize) {
+        return newSize == 0 ? (PersistentLongMap<V>) EMPTY_MAP : new PersistentLongMap<V>(newRoot, newSize);
+    }
+
+    private PersistentLongMap(Node<V> root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    public MutableLongMap<V> toMutableMap() {
+        return new MutableLongMap<V>(root, size);
+    }
+
+    @Override
+    protected Node<V> root() {
+        return root;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    protected PersistentLongMap<V> doReturn(Node<V> newRoot, int newSize) {
+        if (newRoot == root) {
+            return this;
+        } else {
+            return create(newRoot, newSize);
+        }
+    }
+
+    public Spliterator<LongEntry<V>> spliterator() {
+        return Spliterators.spliterator(iterator(), size, DISTINCT | IMMUTABLE);
+    }
+
+    public Spliterator.OfLong keySpliterator() {
+        return Spliterators.spliterator(keyIterator(), size, DISTINCT | IMMUTABLE);
+    }
+
+    public Stream<LongEntry<V>> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof PersistentLongMap)) {
+            return false;
+        }
+        PersistentLongMap<V> other = (PersistentLongMap<V>) obj;
+        if (size != other.size) {
+            return false;
+        }
+        for (KeyIterator<V> iter = new KeyIterator<>(root); iter.hasNext(); ) {
+            long key = iter.nextLong();
+            V value = iter.currentValue();
+            if (!Objects.equals(value, other.get(key)) || value == null && !other.containsKey(key)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Same as hashCode of a java.util.Map with the same (boxed) entries.
+     */
+    @Override
+    public int hashCode() {
+        int hashCode = 0;
+        for (KeyIterator<V> iter = new KeyIterator<>(root); iter.hasNext(); ) {
+            hashCode += Long.hashCode(iter.nextLong()) ^ Objects.hashCode(iter.currentValue());
+        }
+        return hashCode;
+    }
+
+    public String toString() {
+        return stream().map(Objects::toString).collect(Collectors.joining(", ", "{", "}"));
+    }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2016 Samppa Saarela
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javersion.util;
+
+import static java.util.Spliterator.DISTINCT;
+import static java.util.Spliterator.IMMUTABLE;
+
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Persistent set of primitive longs backed by {@link PersistentLongMap}.
+ */
+@Immutable
+public final class PersistentLongSet {
+
+    private static final PersistentLongSet EMPTY_SET = new PersistentLongSet(PersistentLongMap.empty());
+
+    public static PersistentLongSet empty() {
+        return EMPTY_SET;
+    }
+
+    public static PersistentLongSet of(long... elements) {
+        return EMPTY_SET.conjAll(elements);
+    }
+
+    private final PersistentLongMap<Boolean> map;
+
+    private PersistentLongSet(PersistentLongMap<Boolean> map) {
+        this.map = map;
+    }
+
+    public PersistentLongSet conj(long element) {
+        return doReturn(map.assoc(element, Boolean.TRUE));
+    }
+
+    public PersistentLongSet conjAll(long... elements) {
+        MutableLongMap<Boolean> mutableMap = map.toMutableMap();
+        for (long element : elements) {
+            mutableMap.merge(element, Boolean.TRUE, null);
+        }
+        return doReturn(mutableMap.toPersistentMap());
+    }
+
+    public PersistentLongSet conjAll(PersistentLongSet other) {
+        if (isEmpty()) {
+            return other;
+        }
+        return doReturn(map.assocAll(other.map));
+    }
+
+    public PersistentLongSet disj(long element) {
+        return doReturn(map.dissoc(element));
+    }
+
+    public boolean contains(long element) {
+        return map.containsKey(element);
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    public PrimitiveIterator.OfLong iterator() {
+        return map.keyIterator();
+    }
+
+    public Spliterator.OfLong spliterator() {
+        return Spliterators.spliterator(iterator(), size(), DISTINCT | IMMUTABLE);
+    }
+
+    public LongStream stream() {
+        return StreamSupport.longStream(spliterator(), false);
+    }
+
+    private PersistentLongSet doReturn(PersistentLongMap<Boolean> newMap) {
+        if (newMap == map) {
+            return this;
+        }
+        return newMap.isEmpty() ? EMPTY_SET : new PersistentLongSet(newMap);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj == this || obj instanceof PersistentLongSet && map.equals(((PersistentLongSet) obj).map);
+    }
+
+    /**
+     * Same as hashCode of a java.util.Set with the same (boxed) elements.
+     */
+    @Override
+    public int hashCode() {
+        int hashCode = 0;
+        for (PrimitiveIterator.OfLong iter = iterator(); iter.hasNext(); ) {
+            hashCode += Long.hashCode(iter.nextLong());
+        }
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return stream().mapToObj(Long::toString).collect(Collectors.joining(", ", "[", "]"));
+    }
+}
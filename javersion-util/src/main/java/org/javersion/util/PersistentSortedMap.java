@@ -33,6 +33,14 @@ public interface PersistentSortedMap<K, V> extends PersistentMap<K, V> {
     @Override
     PersistentSortedMap<K, V> assocAll(Iterable<Map.Entry<K, V>> entries);
 
+    /**
+     * Adds entries given in strictly ascending key order. Building a new map this way is O(n).
+     *
+     * @param checkOrder verify that entries are in strictly ascending order
+     * @throws IllegalArgumentException if checkOrder is true and entries are not in strictly ascending order
+     */
+    PersistentSortedMap<K, V> assocAllSorted(Iterable<Map.Entry<K, V>> sortedEntries, boolean checkOrder);
+
     @Override
     PersistentSortedMap<K, V> merge(K key, V value, Merger<Map.Entry<K, V>> merger);
 
@@ -18,10 +18,17 @@ package org.javersion.util;
 import static java.util.Spliterators.emptySpliterator;
 
 import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
+import java.util.SortedMap;
 import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import javax.annotation.concurrent.Immutable;
@@ -46,6 +53,34 @@ public class PersistentTreeMap<K, V> extends AbstractTreeMap<K, V, PersistentTre
         return ((PersistentTreeMap<K, V>) EMPTY).assocAll(map);
     }
 
+    /**
+     * Builds a map of already sorted entries in O(n) using the comparator of given map.
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentTreeMap<K, V> copyOfSorted(SortedMap<K, ? extends V> map) {
+        PersistentTreeMap<K, V> empty = map.comparator() != null ? empty(map.comparator()) : EMPTY;
+        return empty.assocAllSorted((Iterable) map.entrySet(), false);
+    }
+
+    /**
+     * Builds a map of entries in strictly ascending natural order of keys in O(n).
+     *
+     * @throws IllegalArgumentException if entries are not in strictly ascending order
+     */
+    @SuppressWarnings("unchecked")
+    public static <K extends Comparable<? super K>, V> PersistentTreeMap<K, V> copyOfSorted(Iterable<Map.Entry<K, V>> sortedEntries) {
+        return ((PersistentTreeMap<K, V>) EMPTY).assocAllSorted(sortedEntries, true);
+    }
+
+    /**
+     * Builds a map of entries in strictly ascending order of keys in O(n).
+     *
+     * @throws IllegalArgumentException if entries are not in strictly ascending order
+     */
+    public static <K, V> PersistentTreeMap<K, V> copyOfSorted(Comparator<? super K> comparator, Iterable<Map.Entry<K, V>> sortedEntries) {
+        return PersistentTreeMap.<K, V> empty(comparator).assocAllSorted(sortedEntries, true);
+    }
+
     public static <K, V> PersistentTreeMap<K, V> of() {
         return empty();
     }
@@ -151,6 +186,46 @@ public class PersistentTreeMap<K, V> extends AbstractTreeMap<K, V, PersistentTre
         return floorNode(root, key);
     }
 
+    /**
+     * Maps values of this map preserving keys and the shape of the tree. Large maps are transformed
+     * in parallel using common ForkJoinPool.
+     */
+    public <U> PersistentTreeMap<K, U> mapValues(Function<? super V, ? extends U> fn) {
+        if (root == null) {
+            return new PersistentTreeMap<>(comparator, null, 0);
+        }
+        UpdateContext<Entry<K, U>> context = new UpdateContext<>(1);
+        Node<K, U> newRoot = ForkJoinPool.commonPool().invoke(new MapValuesTask<>(context, root, size, fn));
+        context.commit();
+        return new PersistentTreeMap<>(comparator, newRoot, size);
+    }
+
+    /**
+     * Retains entries matching predicate. Large maps are filtered in parallel using common ForkJoinPool.
+     */
+    public PersistentTreeMap<K, V> filter(Predicate<? super Entry<K, V>> predicate) {
+        if (root == null) {
+            return this;
+        }
+        List<Node<K, V>> nodes = ForkJoinPool.commonPool().invoke(new FilterTask<>(root, size, predicate));
+        if (nodes.size() == size) {
+            return this;
+        }
+        return new PersistentTreeMap<K, V>(comparator).doAddAllSorted(updateContext(), null, nodes, false);
+    }
+
+    /**
+     * Reduces entries of this map in ascending key order. Large maps are reduced in parallel using common
+     * ForkJoinPool. As with {@link java.util.stream.Stream#reduce(Object, BiFunction, BinaryOperator)},
+     * identity should be an identity for combiner and combiner should be associative.
+     */
+    public <R> R reduce(R identity, BiFunction<R, ? super Entry<K, V>, R> accumulator, BinaryOperator<R> combiner) {
+        if (root == null) {
+            return identity;
+        }
+        return ForkJoinPool.commonPool().invoke(new ReduceTask<>(root, size, identity, accumulator, combiner));
+    }
+
     @Override
     public Spliterator<Entry<K, V>> spliterator() {
         if (root != null) {
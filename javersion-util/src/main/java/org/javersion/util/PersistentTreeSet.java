@@ -57,6 +57,16 @@ public class PersistentTreeSet<E> extends AbstractRedBlackTree<E, Node<E>, Persi
     }
 
 
+    /**
+     * Builds a set of already sorted elements in O(n) using the comparator of given set.
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentTreeSet<E> copyOfSorted(SortedSet<E> elements) {
+        PersistentTreeSet<E> empty = elements.comparator() != null ? empty(elements.comparator()) : EMPTY;
+        return empty.conjAllSorted(elements, false);
+    }
+
+
     private final Node<E> root;
 
     private final int size;
@@ -109,6 +119,17 @@ public class PersistentTreeSet<E> extends AbstractRedBlackTree<E, Node<E>, Persi
         return doAddAll(context, root, transform(coll, new EntryToNode<>(context)));
     }
 
+    /**
+     * Adds elements given in strictly ascending order. Builds the tree in O(n) if this set is empty.
+     *
+     * @param checkOrder verify that elements are in strictly ascending order
+     * @throws IllegalArgumentException if checkOrder is true and elements are not in strictly ascending order
+     */
+    public PersistentTreeSet<E> conjAllSorted(Collection<? extends E> sortedElements, boolean checkOrder) {
+        final UpdateContext<Node<E>> context = new UpdateContext<>(sortedElements.size());
+        return doAddAllSorted(context, root, transform(sortedElements, new EntryToNode<>(context)), checkOrder);
+    }
+
     @Override
     public PersistentTreeSet<E> disj(Object keyObj) {
         return doRemove(new UpdateContext<>(1), root, keyObj);
@@ -0,0 +1,621 @@
+/*
+ * Copyright 2016 Samppa Saarela
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javersion.util;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+import static java.util.Spliterator.IMMUTABLE;
+import static java.util.Spliterator.ORDERED;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.annotation.concurrent.Immutable;
+
+import com.google.common.base.Joiner;
+
+/**
+ * Persistent indexed sequence implemented as a relaxed radix balanced tree (RRB-tree) of 32-way nodes.
+ * <p>
+ * Index, set, append (conj), slice and concat are O(log<sub>32</sub> n). Trees built by appending are
+ * regular radix trees; slice and concat may produce relaxed nodes that keep cumulative sizes of their
+ * children for index lookups. Use {@link MutableVector} for building large vectors.
+ */
+@Immutable
+public final class PersistentVector<E> implements Iterable<E> {
+
+    static final int BITS = 5;
+
+    static final int WIDTH = 1 << BITS;
+
+    /**
+     * Max number of extra nodes allowed on a level of concatenated nodes before they are redistributed.
+     */
+    private static final int EXTRA = 2;
+
+    static final Node EMPTY_LEAF = new Node(null, new Object[0], null);
+
+    @SuppressWarnings("rawtypes")
+    private static final PersistentVector EMPTY_VECTOR = new PersistentVector(EMPTY_LEAF, 0, 0);
+
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentVector<E> empty() {
+        return EMPTY_VECTOR;
+    }
+
+    @SafeVarargs
+    public static <E> PersistentVector<E> of(E... elements) {
+        MutableVector<E> vector = new MutableVector<>();
+        for (E element : elements) {
+            vector.add(element);
+        }
+        return vector.toPersistentVector();
+    }
+
+    public static <E> PersistentVector<E> copyOf(Iterable<? extends E> elements) {
+        MutableVector<E> vector = new MutableVector<>();
+        vector.addAll(elements);
+        return vector.toPersistentVector();
+    }
+
+    final Node root;
+
+    /**
+     * Height of the tree: leaves are on level 0 and children of a node on level shift are on level shift - BITS.
+     */
+    final int shift;
+
+    private final int size;
+
+    PersistentVector(Node root, int shift, int size) {
+        this.root = root;
+        this.shift = shift;
+        this.size = size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        checkElementIndex(index, size);
+        return (E) get(root, shift, index);
+    }
+
+    public PersistentVector<E> set(int index, E element) {
+        checkElementIndex(index, size);
+        return new PersistentVector<>(set(null, root, shift, index, element), shift, size);
+    }
+
+    public PersistentVector<E> conj(E element) {
+        if (size == 0) {
+            return new PersistentVector<>(new Node(null, new Object[] { element }, null), 0, 1);
+        }
+        return append(null, root, shift, size, element, 1, 0);
+    }
+
+    public PersistentVector<E> conjAll(Iterable<? extends E> elements) {
+        MutableVector<E> vector = toMutableVector();
+        vector.addAll(elements);
+        return vector.toPersistentVector();
+    }
+
+    /**
+     * @return elements from fromIndex (inclusive) to toIndex (exclusive)
+     */
+    public PersistentVector<E> slice(int fromIndex, int toIndex) {
+        checkPositionIndexes(fromIndex, toIndex, size);
+        if (fromIndex == 0 && toIndex == size) {
+            return this;
+        }
+        if (fromIndex == toIndex) {
+            return empty();
+        }
+        Node newRoot = dropFirst(takeFirst(root, shift, toIndex), shift, fromIndex);
+        int newShift = shift;
+        while (newShift > 0 && newRoot.array.length == 1) {
+            newRoot = (Node) newRoot.array[0];
+            newShift -= BITS;
+        }
+        return new PersistentVector<>(newRoot, newShift, toIndex - fromIndex);
+    }
+
+    @SuppressWarnings("unchecked")
+    public PersistentVector<E> concat(PersistentVector<? extends E> other) {
+        if (other.isEmpty()) {
+            return this;
+        }
+        if (isEmpty()) {
+            return (PersistentVector<E>) other;
+        }
+        Node[] nodes = concat(root, shift, other.root, other.shift);
+        int newShift = Math.max(shift, other.shift);
+        if (nodes.length == 1) {
+            return new PersistentVector<>(nodes[0], newShift, size + other.size);
+        }
+        newShift += BITS;
+        return new PersistentVector<>(toNode(null, nodes, newShift), newShift, size + other.size);
+    }
+
+    public MutableVector<E> toMutableVector() {
+        return new MutableVector<>(this);
+    }
+
+    /**
+     * @return unmodifiable List view of this vector
+     */
+    public List<E> asList() {
+        return new ListView<>(this);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new VectorIterator<>(root, shift, size);
+    }
+
+    @Override
+    public Spliterator<E> spliterator() {
+        return Spliterators.spliterator(iterator(), size, ORDERED | IMMUTABLE);
+    }
+
+    public Stream<E> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Same as equals of a java.util.List: vectors are equal if they contain equal elements in the same order.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof PersistentVector)) {
+            return false;
+        }
+        PersistentVector<?> other = (PersistentVector<?>) obj;
+        if (size != other.size) {
+            return false;
+        }
+        for (Iterator<?> iter = iterator(), otherIter = other.iterator(); iter.hasNext(); ) {
+            if (!Objects.equals(iter.next(), otherIter.next())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Same as hashCode of a java.util.List with the same elements.
+     */
+    @Override
+    public int hashCode() {
+        int hashCode = 1;
+        for (E element : this) {
+            hashCode = 31 * hashCode + Objects.hashCode(element);
+        }
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return Joiner.on(", ").useForNull("null").appendTo(new StringBuilder("["), iterator()).append(']').toString();
+    }
+
+
+    static final class Node {
+
+        final UpdateContext<?> updateContext;
+
+        /**
+         * Elements of a leaf or child nodes.
+         */
+        Object[] array;
+
+        /**
+         * Cumulative sizes of children of a relaxed node. Null for leaves and regular nodes, i.e. nodes whose
+         * all but last child are full.
+         */
+        int[] sizes;
+
+        Node(UpdateContext<?> updateContext, Object[] array, int[] sizes) {
+            this.updateContext = updateContext;
+            this.array = array;
+            this.sizes = sizes;
+        }
+
+        Node edit(UpdateContext<?> currentContext) {
+            if (currentContext != null && updateContext != null && currentContext.isSameAs(updateContext)) {
+                return this;
+            }
+            return new Node(currentContext, array.clone(), sizes == null ? null : sizes.clone());
+        }
+
+        Node child(int index) {
+            return (Node) array[index];
+        }
+
+        Node lastChild() {
+            return (Node) array[array.length - 1];
+        }
+    }
+
+    static int size(Node node, int shift) {
+        int size = 0;
+        while (shift > 0) {
+            int last = node.array.length - 1;
+            if (node.sizes != null) {
+                return size + node.sizes[last];
+            }
+            size += last << shift;
+            node = node.child(last);
+            shift -= BITS;
+        }
+        return size + node.array.length;
+    }
+
+    private static int childIndex(Node node, int shift, int index) {
+        int i = index >>> shift;
+        int[] sizes = node.sizes;
+        if (sizes != null) {
+            // Children of relaxed nodes are never larger than those of regular nodes: i is the lower bound
+            while (sizes[i] <= index) {
+                i++;
+            }
+        }
+        return i;
+    }
+
+    private static int childOffset(Node node, int shift, int childIndex) {
+        if (childIndex == 0) {
+            return 0;
+        }
+        return node.sizes != null ? node.sizes[childIndex - 1] : childIndex << shift;
+    }
+
+    private static int cumulativeSize(Node node, int shift, int childIndex) {
+        if (node.sizes != null) {
+            return node.sizes[childIndex];
+        }
+        if (childIndex == node.array.length - 1) {
+            return (childIndex << shift) + size(node.child(childIndex), shift - BITS);
+        }
+        return (childIndex + 1) << shift;
+    }
+
+    static Object get(Node node, int shift, int index) {
+        while (shift > 0) {
+            int i = childIndex(node, shift, index);
+            index -= childOffset(node, shift, i);
+            node = node.child(i);
+            shift -= BITS;
+        }
+        return node.array[index];
+    }
+
+    /**
+     * @return leaf containing element at index
+     */
+    static Object[] leafFor(Node node, int shift, int index) {
+        while (shift > 0) {
+            int i = childIndex(node, shift, index);
+            index -= childOffset(node, shift, i);
+            node = node.child(i);
+            shift -= BITS;
+        }
+        return node.array;
+    }
+
+    static Node set(UpdateContext<?> updateContext, Node node, int shift, int index, Object element) {
+        Node editable = node.edit(updateContext);
+        if (shift == 0) {
+            editable.array[index] = element;
+        } else {
+            int i = childIndex(node, shift, index);
+            editable.array[i] = set(updateContext, node.child(i), shift - BITS, index - childOffset(node, shift, i), element);
+        }
+        return editable;
+    }
+
+    /**
+     * Appends item (an element or a leaf) as the last item of the rightmost node on level itemShift.
+     */
+    static <E> PersistentVector<E> append(UpdateContext<?> updateContext, Node root, int shift, int size, Object item, int itemSize, int itemShift) {
+        if (shift < itemShift) {
+            // Root is a leaf and item is a leaf
+            Node newRoot = toNode(updateContext, new Object[] { root, item }, itemShift);
+            return new PersistentVector<>(newRoot, itemShift, size + itemSize);
+        }
+        if (hasRoom(root, shift, itemShift)) {
+            return new PersistentVector<>(append(updateContext, root, shift, item, itemSize, itemShift), shift, size + itemSize);
+        }
+        Node newRoot = toNode(updateContext, new Object[] { root, newPath(updateContext, item, shift, itemShift) }, shift + BITS);
+        return new PersistentVector<>(newRoot, shift + BITS, size + itemSize);
+    }
+
+    private static boolean hasRoom(Node node, int shift, int itemShift) {
+        while (shift > itemShift) {
+            if (node.array.length < WIDTH) {
+                return true;
+            }
+            node = node.lastChild();
+            shift -= BITS;
+        }
+        return node.array.length < WIDTH;
+    }
+
+    private static Node append(UpdateContext<?> updateContext, Node node, int shift, Object item, int itemSize, int itemShift) {
+        if (shift == itemShift) {
+            return withChild(updateContext, node, shift, item, itemSize);
+        }
+        int last = node.array.length - 1;
+        Node lastChild = node.child(last);
+        if (hasRoom(lastChild, shift - BITS, itemShift)) {
+            Node editable = node.edit(updateContext);
+            editable.array[last] = append(updateContext, lastChild, shift - BITS, item, itemSize, itemShift);
+            if (editable.sizes != null) {
+                editable.sizes[last] += itemSize;
+            }
+            return editable;
+        }
+        return withChild(updateContext, node, shift, newPath(updateContext, item, shift - BITS, itemShift), itemSize);
+    }
+
+    private static Node withChild(UpdateContext<?> updateContext, Node node, int shift, Object child, int childSize) {
+        int length = node.array.length;
+        Object[] array = Arrays.copyOf(node.array, length + 1);
+        array[length] = child;
+        int[] sizes = node.sizes;
+        if (sizes != null) {
+            sizes = Arrays.copyOf(sizes, length + 1);
+            sizes[length] = sizes[length - 1] + childSize;
+        } else if (shift > 0 && size(node.child(length - 1), shift - BITS) != 1 << shift) {
+            sizes = cumulativeSizes(array, shift);
+        }
+        Node editable = node.edit(updateContext);
+        editable.array = array;
+        editable.sizes = sizes;
+        return editable;
+    }
+
+    private static Node newPath(UpdateContext<?> updateContext, Object item, int shift, int itemShift) {
+        Node node = new Node(updateContext, new Object[] { item }, null);
+        for (int level = itemShift; level < shift; level += BITS) {
+            node = new Node(updateContext, new Object[] { node }, null);
+        }
+        return node;
+    }
+
+    /**
+     * @return node on level shift containing given children (or elements if shift is 0)
+     */
+    private static Node toNode(UpdateContext<?> updateContext, Object[] array, int shift) {
+        return new Node(updateContext, array, shift == 0 ? null : cumulativeSizes(array, shift));
+    }
+
+    /**
+     * @return cumulative sizes of children or null if the children form a regular node
+     */
+    private static int[] cumulativeSizes(Object[] children, int shift) {
+        int[] sizes = new int[children.length];
+        int size = 0;
+        boolean regular = true;
+        for (int i = 0; i < children.length; i++) {
+            size += size((Node) children[i], shift - BITS);
+            sizes[i] = size;
+            regular &= i == children.length - 1 || size == (i + 1) << shift;
+        }
+        return regular ? null : sizes;
+    }
+
+    /**
+     * @param count number of elements to keep, 0 &lt; count &lt;= size of node
+     */
+    private static Node takeFirst(Node node, int shift, int count) {
+        if (shift == 0) {
+            return count == node.array.length ? node : new Node(null, Arrays.copyOf(node.array, count), null);
+        }
+        int i = childIndex(node, shift, count - 1);
+        Node child = node.child(i);
+        Node newChild = takeFirst(child, shift - BITS, count - childOffset(node, shift, i));
+        if (newChild == child && i == node.array.length - 1) {
+            return node;
+        }
+        Object[] array = Arrays.copyOf(node.array, i + 1);
+        array[i] = newChild;
+        int[] sizes = null;
+        if (node.sizes != null) {
+            sizes = Arrays.copyOf(node.sizes, i + 1);
+            sizes[i] = count;
+        }
+        return new Node(null, array, sizes);
+    }
+
+    /**
+     * @param count number of elements to drop, 0 &lt;= count &lt; size of node
+     */
+    private static Node dropFirst(Node node, int shift, int count) {
+        if (count == 0) {
+            return node;
+        }
+        if (shift == 0) {
+            return new Node(null, Arrays.copyOfRange(node.array, count, node.array.length), null);
+        }
+        int i = childIndex(node, shift, count);
+        Object[] array = Arrays.copyOfRange(node.array, i, node.array.length);
+        array[0] = dropFirst(node.child(i), shift - BITS, count - childOffset(node, shift, i));
+        int[] sizes = new int[array.length];
+        for (int j = 0; j < array.length; j++) {
+            sizes[j] = cumulativeSize(node, shift, i + j) - count;
+        }
+        return new Node(null, array, sizes);
+    }
+
+    /**
+     * @return one or two nodes on level max(leftShift, rightShift) containing elements of left and right
+     */
+    private static Node[] concat(Node left, int leftShift, Node right, int rightShift) {
+        if (leftShift > rightShift) {
+            Node[] middle = concat(left.lastChild(), leftShift - BITS, right, rightShift);
+            return rebalance(left, middle, null, leftShift);
+        } else if (leftShift < rightShift) {
+            Node[] middle = concat(left, leftShift, right.child(0), rightShift - BITS);
+            return rebalance(null, middle, right, rightShift);
+        } else if (leftShift == 0) {
+            int leftSize = left.array.length;
+            int rightSize = right.array.length;
+            if (leftSize + rightSize > WIDTH) {
+                return new Node[] { left, right };
+            }
+            Object[] array = Arrays.copyOf(left.array, leftSize + rightSize);
+            System.arraycopy(right.array, 0, array, leftSize, rightSize);
+            return new Node[] { new Node(null, array, null) };
+        } else {
+            Node[] middle = concat(left.lastChild(), leftShift - BITS, right.child(0), rightShift - BITS);
+            return rebalance(left, middle, right, leftShift);
+        }
+    }
+
+    /**
+     * Combines children of left (excluding last), middle and children of right (excluding first) into one or
+     * two nodes. If there are more than EXTRA children more than needed to hold all their items, the items
+     * are redistributed into full children.
+     */
+    private static Node[] rebalance(Node left, Node[] middle, Node right, int shift) {
+        int leftCount = left != null ? left.array.length - 1 : 0;
+        int rightCount = right != null ? right.array.length - 1 : 0;
+        Object[] children = new Object[leftCount + middle.length + rightCount];
+        if (leftCount > 0) {
+            System.arraycopy(left.array, 0, children, 0, leftCount);
+        }
+        System.arraycopy(middle, 0, children, leftCount, middle.length);
+        if (rightCount > 0) {
+            System.arraycopy(right.array, 1, children, leftCount + middle.length, rightCount);
+        }
+
+        int itemCount = 0;
+        for (Object child : children) {
+            itemCount += ((Node) child).array.length;
+        }
+        int minChildren = (itemCount + WIDTH - 1) >>> BITS;
+        if (children.length > minChildren + EXTRA) {
+            children = redistribute(children, itemCount, minChildren, shift - BITS);
+        }
+
+        if (children.length <= WIDTH) {
+            return new Node[] { toNode(null, children, shift) };
+        }
+        return new Node[] {
+                toNode(null, Arrays.copyOf(children, WIDTH), shift),
+                toNode(null, Arrays.copyOfRange(children, WIDTH, children.length), shift)
+        };
+    }
+
+    private static Object[] redistribute(Object[] children, int itemCount, int childCount, int childShift) {
+        Object[] items = new Object[itemCount];
+        int offset = 0;
+        for (Object child : children) {
+            Object[] array = ((Node) child).array;
+            System.arraycopy(array, 0, items, offset, array.length);
+            offset += array.length;
+        }
+        Object[] newChildren = new Object[childCount];
+        for (int i = 0; i < childCount; i++) {
+            int from = i << BITS;
+            newChildren[i] = toNode(null, Arrays.copyOfRange(items, from, Math.min(from + WIDTH, itemCount)), childShift);
+        }
+        return newChildren;
+    }
+
+
+    static final class VectorIterator<E> implements Iterator<E> {
+
+        private final Node root;
+
+        private final int shift;
+
+        private final int size;
+
+        private Object[] leaf = EMPTY_LEAF.array;
+
+        private int leafIndex;
+
+        private int index;
+
+        VectorIterator(Node root, int shift, int size) {
+            this.root = root;
+            this.shift = shift;
+            this.size = size;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < size;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if (index >= size) {
+                throw new NoSuchElementException();
+            }
+            if (leafIndex == leaf.length) {
+                leaf = leafFor(root, shift, index);
+                leafIndex = 0;
+            }
+            index++;
+            return (E) leaf[leafIndex++];
+        }
+    }
+
+    private static final class ListView<E> extends AbstractList<E> implements RandomAccess {
+
+        private final PersistentVector<E> vector;
+
+        ListView(PersistentVector<E> vector) {
+            this.vector = vector;
+        }
+
+        @Override
+        public E get(int index) {
+            return vector.get(index);
+        }
+
+        @Override
+        public int size() {
+            return vector.size();
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return vector.iterator();
+        }
+    }
+}
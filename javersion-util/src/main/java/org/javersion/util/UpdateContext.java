@@ -81,6 +81,14 @@ public final class UpdateContext<T> implements Merger<T> {
         context.merger = merger;
     }
 
+    /**
+     * @return true if entries given to insert, merge or delete are passed to a Merger. Otherwise
+     * they are not used and may be null.
+     */
+    public boolean hasMerger() {
+        return context.merger != null;
+    }
+
     public int expectedUpdates() {
         return context.expectedUpdates;
     }
@@ -1,5 +1,6 @@
 package org.javersion.util;
 
+import static com.google.common.base.Charsets.US_ASCII;
 import static com.google.common.base.Charsets.UTF_8;
 import static java.lang.Long.parseUnsignedLong;
 import static java.lang.String.format;
@@ -14,6 +15,7 @@ import static org.javersion.util.BinaryEncoder.NUMBER_BASE64_URL;
 
 import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.util.Base64;
 
 import org.junit.Ignore;
@@ -306,6 +308,39 @@ public class BinaryEncoderTest {
         assertOrder(SIGNED_NUMBER8, 1, Long.MAX_VALUE);
     }
 
+    @Test
+    public void encode_long_into_buffers() {
+        for (BinaryEncoder encoder : new BinaryEncoder[] { NUMBER8, SIGNED_NUMBER8, BASE8, BASE32, BASE64, NUMBER_BASE64_URL }) {
+            for (long l : new long[] { 0, 1, -1, Long.MIN_VALUE, Long.MAX_VALUE, 0x0123456789ABCDEFl }) {
+                String expected = encoder.encodeLong(l);
+                assertThat(expected.length()).isEqualTo(encoder.longLength());
+                assertThat(encoder.decodeLong(expected)).isEqualTo(l);
+
+                char[] chars = new char[encoder.longLength() + 1];
+                assertThat(encoder.encodeLong(l, chars, 1)).isEqualTo(chars.length);
+                assertThat(new String(chars, 1, encoder.longLength())).isEqualTo(expected);
+                assertThat(encoder.decodeLong(chars, 1)).isEqualTo(l);
+
+                CharBuffer charBuffer = CharBuffer.allocate(encoder.longLength());
+                encoder.encodeLong(l, charBuffer);
+                charBuffer.flip();
+                assertThat(charBuffer.toString()).isEqualTo(expected);
+                assertThat(encoder.decodeLong(charBuffer)).isEqualTo(l);
+
+                ByteBuffer byteBuffer = ByteBuffer.allocate(encoder.longLength());
+                encoder.encodeLong(l, byteBuffer);
+                byteBuffer.flip();
+                assertThat(new String(byteBuffer.array(), US_ASCII)).isEqualTo(expected);
+                assertThat(encoder.decodeLong(byteBuffer)).isEqualTo(l);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decode_long_detects_illegal_chars() {
+        BASE32_CROCKFORD_NUMBER.decodeLong("000000000000U".toCharArray(), 0);
+    }
+
     private static int parseInt(String bits) {
         bits = bits.replaceAll("[^\\-01]", "");
         return Integer.parseUnsignedInt(bits, 2);
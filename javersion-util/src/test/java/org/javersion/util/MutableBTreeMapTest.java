@@ -0,0 +1,29 @@
+package org.javersion.util;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class MutableBTreeMapTest extends AbstractMutableMapTest {
+
+    @Test
+    public void put_equal_value_returns_previous() {
+        MutableBTreeMap<Integer, Integer> map = new MutableBTreeMap<>();
+        map.put(1, 1);
+        assertThat(map.put(1, 1), equalTo(1));
+        assertThat(map.put(1, 2), equalTo(1));
+        assertThat(map.remove(1), equalTo(2));
+    }
+
+    @Override
+    protected MutableMap<Integer, Integer> emptyMap() {
+        return new MutableBTreeMap<>();
+    }
+
+    @Override
+    void assertMapProperties(MutableMap<Integer, Integer> map) {
+        PersistentBTreeMapTest.assertNodeProperties(((MutableBTreeMap<Integer, Integer>) map).root());
+    }
+
+}
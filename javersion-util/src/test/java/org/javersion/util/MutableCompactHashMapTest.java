@@ -0,0 +1,46 @@
+package org.javersion.util;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import org.javersion.util.PersistentHashMapTest.HashKey;
+import org.junit.Test;
+
+public class MutableCompactHashMapTest extends AbstractMutableMapTest {
+
+    @Test
+    public void collisions() {
+        HashKey k1 = new HashKey(1);
+        HashKey k2 = new HashKey(1);
+        MutableCompactHashMap<HashKey, HashKey> map = new MutableCompactHashMap<>();
+        map.put(k1, k1);
+        map.put(k2, k2);
+        assertThat(map.size(), equalTo(2));
+        assertThat(map.remove(k1), equalTo(k1));
+        assertThat(map.get(k2), equalTo(k2));
+        assertThat(map.size(), equalTo(1));
+    }
+
+    @Test
+    public void persistent_snapshot_is_not_modified() {
+        MutableCompactHashMap<Integer, Integer> map = new MutableCompactHashMap<>();
+        map.put(1, 1);
+        PersistentCompactHashMap<Integer, Integer> snapshot = map.toPersistentMap();
+        map.put(1, 2);
+        map.put(2, 2);
+        assertThat(snapshot.size(), equalTo(1));
+        assertThat(snapshot.get(1), equalTo(1));
+        assertThat(map.toPersistentMap().size(), equalTo(2));
+    }
+
+    @Override
+    protected MutableMap<Integer, Integer> emptyMap() {
+        return new MutableCompactHashMap<>();
+    }
+
+    @Override
+    void assertMapProperties(MutableMap<Integer, Integer> map) {
+        PersistentCompactHashMapTest.assertCanonical(((MutableCompactHashMap<Integer, Integer>) map).toPersistentMap().root());
+    }
+
+}
@@ -1,7 +1,12 @@
 package org.javersion.util;
 
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
 import org.junit.Test;
 
+import com.google.common.collect.ImmutableMap;
+
 public class MutableHashMapTest {
 
     @Test
@@ -11,5 +16,14 @@ public class MutableHashMapTest {
         map.remove(1);
         map.put(1, 1);
     }
-    
+
+    @Test
+    public void remove_last_child_of_a_node() {
+        MutableHashMap<Integer, Integer> map = new MutableHashMap<>();
+        map.put(1, 1);
+        map.put(5, 5);
+        map.remove(5);
+        assertThat(map.entrySet(), equalTo(ImmutableMap.of(1, 1).entrySet()));
+    }
+
 }
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2016 Samppa Saarela
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javersion.util;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class MutableLongMapTest {
+
+    @Test
+    public void put_and_remove_return_previous() {
+        MutableLongMap<String> map = new MutableLongMap<>();
+        assertThat(map.put(1L, "1"), nullValue());
+        assertThat(map.put(1L, "2"), equalTo("1"));
+        assertThat(map.remove(1L), equalTo("2"));
+        assertThat(map.remove(1L), nullValue());
+        assertThat(map.isEmpty(), equalTo(true));
+    }
+
+    @Test
+    public void random_updates() {
+        Random random = new Random(AbstractCollectionTest.RANDOM_SEED);
+        Map<Long, Integer> expected = new HashMap<>();
+        MutableLongMap<Integer> map = new MutableLongMap<>();
+        for (int i = 0; i < 10000; i++) {
+            long key = random.nextInt(2000);
+            if (random.nextInt(3) == 0) {
+                assertThat(map.remove(key), equalTo(expected.remove(key)));
+            } else {
+                assertThat(map.put(key, i), equalTo(expected.put(key, i)));
+            }
+        }
+        assertThat(map.size(), equalTo(expected.size()));
+        assertThat(PersistentLongMapTest.toMap(map), equalTo(expected));
+        PersistentLongMapTest.assertCanonical(map.root());
+    }
+
+    @Test
+    public void persistent_snapshot_is_not_modified() {
+        MutableLongMap<Integer> map = new MutableLongMap<>();
+        map.put(1L, 1);
+        PersistentLongMap<Integer> snapshot = map.toPersistentMap();
+        map.put(1L, 2);
+        map.put(2L, 2);
+        assertThat(snapshot.size(), equalTo(1));
+        assertThat(snapshot.get(1L), equalTo(1));
+        assertThat(map.toPersistentMap().size(), equalTo(2));
+
+        MutableLongMap<Integer> copy = snapshot.toMutableMap();
+        copy.remove(1L);
+        assertThat(snapshot.get(1L), equalTo(1));
+    }
+}
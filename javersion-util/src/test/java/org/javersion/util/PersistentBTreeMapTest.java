@@ -0,0 +1,339 @@
+/*
+ * Copyright 2016 Samppa Saarela
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javersion.util;
+
+import static com.google.common.collect.Iterables.transform;
+import static com.google.common.collect.Lists.newArrayList;
+import static java.util.Arrays.asList;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.javersion.util.AbstractBTreeMap.Branch;
+import org.javersion.util.AbstractBTreeMap.Node;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class PersistentBTreeMapTest extends AbstractPersistentMapTest<PersistentBTreeMap<Integer, Integer>> {
+
+    @Test
+    public void iterate_random() {
+        PersistentBTreeMap<Integer, Integer> map = emptyMap();
+        for (Integer kv : randoms(1234)) {
+            map = map.assoc(kv, kv);
+        }
+        assertNodeProperties(map.root());
+        Integer prev = null;
+        int count = 0;
+        for (Map.Entry<Integer, Integer> entry : map) {
+            if (prev != null) {
+                assertThat(prev, lessThan(entry.getKey()));
+            }
+            prev = entry.getKey();
+            count++;
+        }
+        assertThat(count, equalTo(1234));
+    }
+
+    @Test
+    public void iterate_descending() {
+        PersistentBTreeMap<Integer, Integer> map = emptyMap();
+        for (int kv = 1; kv < 100; kv++) {
+            map = map.assoc(kv, kv);
+        }
+        Iterator<Map.Entry<Integer, Integer>> iter = map.iterator(false);
+        for (int kv = 99; kv > 0; kv--) {
+            assertThat(iter.next().getKey(), equalTo(kv));
+        }
+        assertThat(iter.hasNext(), equalTo(false));
+    }
+
+    @Test
+    public void iterate_ascending_range() {
+        PersistentBTreeMap<Integer, Integer> map = mapForRangeTest();
+        assertThat(keys(map.range(3, 9)), contains(3, 5, 7));
+        assertThat(keys(map.range(3, true, 9, true)), contains(3, 5, 7, 9));
+        assertThat(keys(map.range(3, false, 9, false)), contains(5, 7));
+        assertThat(keys(map.range(9, 10)), contains(9));
+        assertThat(keys(map.range(-5, 2)), contains(1));
+        assertThat(keys(map.range(6, 7)), emptyIterable());
+        assertThat(keys(map.range(-10, 1)), emptyIterable());
+        assertThat(keys(map.range(9, false, 20, false)), emptyIterable());
+        assertThat(keys(map.range(7, true, null, false, true)), contains(7, 9));
+        assertThat(keys(map.range(null, true, 5, false, true)), contains(1, 3));
+    }
+
+    @Test
+    public void iterate_descending_range() {
+        PersistentBTreeMap<Integer, Integer> map = mapForRangeTest();
+        assertThat(keys(map.range(3, true, 9, false, false)), contains(7, 5, 3));
+        assertThat(keys(map.range(3, true, 9, true, false)), contains(9, 7, 5, 3));
+        assertThat(keys(map.range(3, false, 9, false, false)), contains(7, 5));
+        assertThat(keys(map.range(7, true, null, false, false)), contains(9, 7));
+        assertThat(keys(map.range(null, true, 5, true, false)), contains(5, 3, 1));
+    }
+
+    @Test
+    public void range_over_leaves() {
+        PersistentBTreeMap<Integer, Integer> map = emptyMap();
+        for (int kv = 0; kv < 2000; kv += 2) {
+            map = map.assoc(kv, kv);
+        }
+        List<Integer> expected = new ArrayList<>();
+        for (int kv = 502; kv < 1500; kv += 2) {
+            expected.add(kv);
+        }
+        assertThat(newArrayList(keys(map.range(501, 1500))), equalTo(expected));
+        assertThat(newArrayList(keys(map.range(500, false, 1499, true, false))), equalTo(Lists.reverse(expected)));
+    }
+
+    private PersistentBTreeMap<Integer, Integer> mapForRangeTest() {
+        PersistentBTreeMap<Integer, Integer> map = emptyMap();
+        for (int kv = 1; kv < 10; kv += 2) {
+            map = map.assoc(kv, kv);
+        }
+        return map;
+    }
+
+    private static Iterable<Integer> keys(Iterable<Map.Entry<Integer, Integer>> entries) {
+        return transform(entries, MapUtils.<Integer>mapKeyFunction());
+    }
+
+    @Test
+    public void floor_lower_ceiling_higher() {
+        PersistentBTreeMap<Integer, Integer> map = mapForRangeTest();
+        assertThat(map.floorEntry(0), nullValue());
+        assertThat(map.floorEntry(4).getKey(), equalTo(3));
+        assertThat(map.floorEntry(5).getKey(), equalTo(5));
+        assertThat(map.floorEntry(11).getKey(), equalTo(9));
+
+        assertThat(map.lowerEntry(1), nullValue());
+        assertThat(map.lowerEntry(5).getKey(), equalTo(3));
+        assertThat(map.lowerEntry(11).getKey(), equalTo(9));
+
+        assertThat(map.ceilingEntry(0).getKey(), equalTo(1));
+        assertThat(map.ceilingEntry(5).getKey(), equalTo(5));
+        assertThat(map.ceilingEntry(6).getKey(), equalTo(7));
+        assertThat(map.ceilingEntry(10), nullValue());
+
+        assertThat(map.higherEntry(0).getKey(), equalTo(1));
+        assertThat(map.higherEntry(5).getKey(), equalTo(7));
+        assertThat(map.higherEntry(9), nullValue());
+    }
+
+    @Test
+    public void first_last() {
+        PersistentBTreeMap<Integer, Integer> map = mapForRangeTest();
+        assertThat(map.getFirstEntry().getKey(), equalTo(1));
+        assertThat(map.getLastEntry().getKey(), equalTo(9));
+        assertThat(emptyMap().getFirstEntry(), nullValue());
+        assertThat(emptyMap().getLastEntry(), nullValue());
+    }
+
+    @Test
+    public void custom_comparator() {
+        PersistentBTreeMap<Integer, Integer> map = PersistentBTreeMap.empty(Comparator.reverseOrder());
+        for (Integer kv : ascending(100)) {
+            map = map.assoc(kv, kv);
+        }
+        assertThat(map.getFirstEntry().getKey(), equalTo(99));
+        assertThat(keys(map.range(10, 5)), contains(10, 9, 8, 7, 6));
+    }
+
+    @Test
+    public void build_from_sorted() {
+        for (int size = 0; size < 1200; size += 1 + size / 10) {
+            List<Map.Entry<Integer, Integer>> entries = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                entries.add(new SimpleEntry<>(i * 2, i));
+            }
+            PersistentBTreeMap<Integer, Integer> map = PersistentBTreeMap.copyOfSorted(entries);
+            assertNodeProperties(map.root());
+            assertThat(map.size(), equalTo(size));
+            assertThat(newArrayList(map), equalTo(entries));
+
+            // Insert between and remove existing
+            PersistentBTreeMap<Integer, Integer> updated = map;
+            for (int i = 0; i < size; i++) {
+                updated = updated.assoc(i * 2 + 1, i).dissoc(i * 2);
+            }
+            assertNodeProperties(updated.root());
+            assertThat(updated.size(), equalTo(size));
+            assertThat(newArrayList(map), equalTo(entries));
+        }
+    }
+
+    @Test
+    public void build_from_sorted_map() {
+        SortedMap<Integer, Integer> sorted = new TreeMap<>(Comparator.reverseOrder());
+        for (Integer kv : randoms(1234)) {
+            sorted.put(kv, kv);
+        }
+        PersistentBTreeMap<Integer, Integer> map = PersistentBTreeMap.copyOfSorted(sorted);
+        assertThat(map.asMap(), equalTo(sorted));
+        assertThat(keys(map), contains(sorted.keySet().toArray()));
+    }
+
+    @Test
+    public void add_sorted_to_non_empty_map() {
+        PersistentBTreeMap<Integer, Integer> map = PersistentBTreeMap.of(2, 2)
+                .assocAllSorted(asList(new SimpleEntry<>(1, 1), new SimpleEntry<>(3, 3)), true);
+        assertThat(keys(map), contains(1, 2, 3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void build_from_unsorted() {
+        PersistentBTreeMap.copyOfSorted(asList(new SimpleEntry<>(2, 2), new SimpleEntry<>(1, 1)));
+    }
+
+    @Test
+    public void rank_and_get_by_index() {
+        PersistentBTreeMap<Integer, Integer> map = emptyMap();
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        for (Integer kv : randoms(1234)) {
+            map = map.assoc(kv, kv);
+            expected.put(kv, kv);
+        }
+        for (Integer kv : randoms(300)) {
+            map = map.dissoc(kv);
+            expected.remove(kv);
+        }
+        assertNodeProperties(map.root());
+        int index = 0;
+        for (Integer key : expected.keySet()) {
+            assertThat(map.rank(key), equalTo(index));
+            assertThat(map.rank(key + 1), equalTo(expected.headMap(key + 1).size()));
+            assertThat(map.getByIndex(index).getKey(), equalTo(key));
+            index++;
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void get_by_index_out_of_bounds() {
+        mapForRangeTest().getByIndex(5);
+    }
+
+    @Test
+    public void range_size() {
+        PersistentBTreeMap<Integer, Integer> map = emptyMap();
+        for (int kv = 0; kv < 2000; kv += 2) {
+            map = map.assoc(kv, kv);
+        }
+        assertThat(map.rangeSize(501, true, 1500, false), equalTo(499));
+        assertThat(map.rangeSize(500, true, 1500, true), equalTo(501));
+        assertThat(map.rangeSize(500, false, 1500, false), equalTo(499));
+        assertThat(map.rangeSize(null, true, 10, false), equalTo(5));
+        assertThat(map.rangeSize(1990, true, null, true), equalTo(5));
+        assertThat(map.rangeSize(null, true, null, true), equalTo(1000));
+        assertThat(map.rangeSize(10, true, 5, true), equalTo(0));
+        assertThat(map.rangeSize(10, false, 10, true), equalTo(0));
+    }
+
+    @Test
+    public void persistent_versions_are_not_modified() {
+        PersistentBTreeMap<Integer, Integer> map = emptyMap();
+        List<PersistentBTreeMap<Integer, Integer>> versions = new ArrayList<>();
+        for (Integer kv : randoms(500)) {
+            versions.add(map);
+            map = map.assoc(kv, kv);
+        }
+        MutableBTreeMap<Integer, Integer> mutableMap = map.toMutableMap();
+        for (Integer kv : randoms(500)) {
+            mutableMap.remove(kv);
+        }
+        assertThat(mutableMap.isEmpty(), equalTo(true));
+        for (int i = 0; i < versions.size(); i++) {
+            assertThat(versions.get(i).size(), equalTo(i));
+            assertNodeProperties(versions.get(i).root());
+        }
+        assertThat(map.size(), equalTo(500));
+    }
+
+    @Override
+    protected PersistentBTreeMap<Integer, Integer> emptyMap() {
+        return PersistentBTreeMap.empty();
+    }
+
+    @Override
+    protected void assertMapProperties(PersistentMap<Integer, Integer> map) {
+        assertNodeProperties(((PersistentBTreeMap<Integer, Integer>) map).root());
+    }
+
+    @Override
+    protected void assertEmptyMap(PersistentMap<Integer, Integer> map) {
+        assertThat(map.size(), equalTo(0));
+        assertThat(((PersistentBTreeMap<Integer, Integer>) map).root(), nullValue());
+    }
+
+    static void assertNodeProperties(Node<Integer, Integer> root) {
+        if (root != null) {
+            int depth = 0;
+            for (Node<Integer, Integer> node = root; node instanceof Branch; node = ((Branch<Integer, Integer>) node).childAt(0)) {
+                depth++;
+            }
+            assertThat(assertNodeProperties(root, true, depth, null, null), equalTo(root.count()));
+        }
+    }
+
+    /**
+     * All leaves are on same depth, nodes other than root are at least half full and keys are within
+     * the bounds given by parents. Branches' entry counts match the sum of their children's.
+     *
+     * @return number of entries in this subtree
+     */
+    private static int assertNodeProperties(Node<Integer, Integer> node, boolean root, int depth, Integer lowerBound, Integer upperBound) {
+        assertThat(node.size, lessThanOrEqualTo(AbstractBTreeMap.MAX_SIZE));
+        if (!root) {
+            assertThat(node.size, greaterThanOrEqualTo(AbstractBTreeMap.MIN_SIZE));
+        }
+        if (node instanceof Branch) {
+            Branch<Integer, Integer> branch = (Branch<Integer, Integer>) node;
+            assertThat(branch.size, greaterThan(1));
+            int count = 0;
+            for (int i = 0; i < branch.size; i++) {
+                Integer lower = i == 0 ? lowerBound : branch.keyAt(i);
+                Integer upper = i + 1 < branch.size ? branch.keyAt(i + 1) : upperBound;
+                count += assertNodeProperties(branch.childAt(i), false, depth - 1, lower, upper);
+            }
+            assertThat(branch.count, equalTo(count));
+            return count;
+        } else {
+            assertThat(depth, equalTo(0));
+            for (int i = 0; i < node.size; i++) {
+                Integer key = node.keyAt(i);
+                if (i > 0) {
+                    assertThat(node.keyAt(i - 1), lessThan(key));
+                }
+                if (lowerBound != null) {
+                    assertThat(key, greaterThanOrEqualTo(lowerBound));
+                }
+                if (upperBound != null) {
+                    assertThat(key, lessThan(upperBound));
+                }
+            }
+            return node.size;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2016 Samppa Saarela
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javersion.util;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+
+import org.javersion.util.AbstractCompactHashMap.BitmapNode;
+import org.javersion.util.AbstractCompactHashMap.Node;
+import org.javersion.util.PersistentHashMapTest.HashKey;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+
+public class PersistentCompactHashMapTest extends AbstractPersistentMapTest<PersistentCompactHashMap<Integer, Integer>> {
+
+    @Test
+    public void collisions() {
+        HashKey k1 = new HashKey(1);
+        HashKey k2 = new HashKey(1);
+        HashKey k3 = new HashKey(1);
+
+        PersistentCompactHashMap<HashKey, HashKey> map = PersistentCompactHashMap.empty();
+        map = map.assoc(k1, k1);
+        map = map.assoc(k2, k1);
+        map = map.assoc(k2, k2);
+        map = map.assoc(k3, k3);
+
+        assertThat(map.size(), equalTo(3));
+        assertThat(map.get(k1), equalTo(k1));
+        assertThat(map.get(k2), equalTo(k2));
+        assertThat(map.get(k3), equalTo(k3));
+        assertThat(map.get(new HashKey(1)), nullValue());
+
+        Map<HashKey, HashKey> hashMap = ImmutableMap.of(k1, k1, k2, k2, k3, k3);
+        assertThat(map.asMap(), equalTo(hashMap));
+        assertThat(map.assocAll(hashMap).asMap(), equalTo(hashMap));
+
+        map = map.dissoc(k1);
+        assertThat(map.containsKey(k1), equalTo(false));
+        assertThat(map.containsKey(k2), equalTo(true));
+        assertThat(map.containsKey(k3), equalTo(true));
+
+        map = map.dissoc(k2);
+        assertThat(map.dissoc(k2), sameInstance(map));
+        assertThat(map.get(k2), nullValue());
+
+        map = map.dissoc(k3);
+        assertThat(map.size(), equalTo(0));
+        assertThat(map.iterator().hasNext(), equalTo(false));
+    }
+
+    @Test
+    public void collisions_incremental() {
+        PersistentCompactHashMap<HashKey, HashKey> map = PersistentCompactHashMap.empty();
+        List<HashKey> keys = Lists.newArrayList();
+        for (int i=0; i < 4097; i++) {
+            HashKey key = new HashKey(i);
+            keys.add(key);
+            map = map.assoc(key, key);
+
+            key = new HashKey(i);
+            keys.add(key);
+            map = map.assoc(key, key);
+        }
+        assertThat(map.size(), equalTo(keys.size()));
+        for (HashKey key : keys) {
+            assertThat(map.get(key), equalTo(key));
+        }
+
+        int size = map.size();
+        for (HashKey key : keys) {
+            map = map.dissoc(key);
+            map = map.dissoc(key);
+            assertThat(map.size(), equalTo(--size));
+            assertCanonical(map.root());
+        }
+    }
+
+    @Test
+    public void iterate_deepest_possible_tree() {
+        int k1 = 0b00_11111_11111_11111_11111_11111_11111,
+            k2 = 0b01_11111_11111_11111_11111_11111_11111,
+            k3 = 0b10_11111_11111_11111_11111_11111_11111,
+            k4 = 0b11_11111_11111_11111_11111_11111_11111;
+        PersistentCompactHashMap<Integer, Integer> map = PersistentCompactHashMap.<Integer, Integer>empty()
+                .assoc(k1, 1)
+                .assoc(k2, 2)
+                .assoc(k3, 3)
+                .assoc(k4, 4);
+        Set<Integer> results = new HashSet<>();
+        for (Map.Entry<Integer, Integer> entry : map) {
+            results.add(entry.getKey());
+            results.add(entry.getValue());
+        }
+        assertThat(results, equalTo(ImmutableSet.of(k1, k2, k3, k4, 1, 2, 3, 4)));
+    }
+
+    @Test
+    public void same_contents_as_hash_trie() {
+        PersistentHashMap<Integer, Integer> expected = PersistentHashMap.empty();
+        PersistentCompactHashMap<Integer, Integer> map = PersistentCompactHashMap.empty();
+        for (Integer i : randoms(1000)) {
+            if (i % 3 == 0) {
+                expected = expected.dissoc(i / 2);
+                map = map.dissoc(i / 2);
+            } else {
+                expected = expected.assoc(i, i);
+                map = map.assoc(i, i);
+            }
+        }
+        assertThat(map.asMap(), equalTo(expected.asMap()));
+        assertCanonical(map.root());
+    }
+
+    @Test
+    public void spliterator_splits_by_sub_nodes() {
+        PersistentCompactHashMap<Integer, Integer> map = PersistentCompactHashMap.empty();
+        Set<Integer> expected = new HashSet<>();
+        for (Integer i : randoms(5000)) {
+            map = map.assoc(i, i);
+            expected.add(i);
+        }
+        Set<Integer> results = new HashSet<>();
+        List<Spliterator<Integer>> parts = Lists.newArrayList(map.keySpliterator());
+        for (int i = 0; i < parts.size(); i++) {
+            Spliterator<Integer> split = parts.get(i).trySplit();
+            if (split != null) {
+                parts.add(split);
+                i--;
+            }
+        }
+        assertThat(parts.size() > map.size() / 2, equalTo(true));
+
+        // Mix tryAdvance and forEachRemaining
+        for (Spliterator<Integer> part : parts) {
+            part.tryAdvance(key -> assertThat(results.add(key), equalTo(true)));
+            part.forEachRemaining(key -> assertThat(results.add(key), equalTo(true)));
+        }
+        assertThat(results, equalTo(expected));
+        assertThat(map.parallelStream().mapToLong(Map.Entry::getValue).sum(),
+                equalTo(expected.stream().mapToLong(Integer::longValue).sum()));
+    }
+
+    @Test
+    public void split_during_traversal() {
+        PersistentCompactHashMap<Integer, Integer> map = PersistentCompactHashMap.empty();
+        for (Integer i : randoms(1000)) {
+            map = map.assoc(i, i);
+        }
+        Set<Integer> results = new HashSet<>();
+        Spliterator<Integer> spliterator = map.valueSpliterator();
+        while (true) {
+            if (!spliterator.tryAdvance(results::add)) {
+                break;
+            }
+            Spliterator<Integer> split = spliterator.trySplit();
+            if (split != null) {
+                split.forEachRemaining(results::add);
+            }
+        }
+        assertThat(results, equalTo(map.asMap().keySet()));
+    }
+
+    @Override
+    protected PersistentCompactHashMap<Integer, Integer> emptyMap() {
+        return PersistentCompactHashMap.empty();
+    }
+
+    @SuppressWarnings("rawtypes")
+    @Override
+    protected void assertMapProperties(PersistentMap<Integer, Integer> map) {
+        assertThat(map, instanceOf(PersistentCompactHashMap.class));
+        Node root = ((PersistentCompactHashMap<Integer, Integer>) map).root();
+        if (root instanceof BitmapNode && ((BitmapNode) root).updateContext != null) {
+            assertThat(((BitmapNode) root).updateContext.isCommitted(), equalTo(true));
+        }
+        assertCanonical(root);
+    }
+
+    @Override
+    protected void assertEmptyMap(PersistentMap<Integer, Integer> map) {
+        assertThat(map.size(), equalTo(0));
+        assertThat(((PersistentCompactHashMap<Integer, Integer>) map).root(), notNullValue());
+    }
+
+    /**
+     * Sub nodes should never contain only a single entry as removals inline such nodes into their parent.
+     */
+    @SuppressWarnings("rawtypes")
+    static void assertCanonical(Node node) {
+        for (int i=0; i < node.nodeArity(); i++) {
+            Node child = node.nodeAt(i);
+            assertThat(child.isSingleton(), equalTo(false));
+            assertThat(child.payloadArity() + child.nodeArity() > 0, equalTo(true));
+            assertCanonical(child);
+        }
+    }
+}
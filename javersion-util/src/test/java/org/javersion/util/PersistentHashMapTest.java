@@ -316,6 +316,92 @@ public class PersistentHashMapTest extends AbstractPersistentMapTest<PersistentH
         assertThat(map.assocAll(ints).asMap(), equalTo(expected));
     }
 
+    @Test
+    public void union_intersection_and_difference() {
+        PersistentHashMap<Integer, Integer> left = PersistentHashMap.of(1, 1, 2, 2, 3, 3);
+        PersistentHashMap<Integer, Integer> right = PersistentHashMap.of(2, 20, 3, 3, 4, 4);
+
+        assertThat(left.union(right).asMap(), equalTo(ImmutableMap.of(1, 1, 2, 20, 3, 3, 4, 4)));
+        assertThat(left.union(right).size(), equalTo(4));
+        assertThat(left.intersection(right).asMap(), equalTo(ImmutableMap.of(2, 2, 3, 3)));
+        assertThat(left.intersection(right).size(), equalTo(2));
+        assertThat(left.difference(right).asMap(), equalTo(ImmutableMap.of(1, 1)));
+        assertThat(left.difference(right).size(), equalTo(1));
+
+        MutableHashMap<Integer, Integer> mutable = left.toMutableMap();
+        mutable.union(right);
+        assertThat(mutable, equalTo(ImmutableMap.of(1, 1, 2, 20, 3, 3, 4, 4)));
+        mutable.difference(right);
+        assertThat(mutable, equalTo(ImmutableMap.of(1, 1)));
+    }
+
+    @Test
+    public void union_of_largely_overlapping_maps() {
+        PersistentHashMap<Integer, Integer> base = PersistentHashMap.empty();
+        for (int i = 0; i < 2000; i++) {
+            base = base.assoc(i, i);
+        }
+        PersistentHashMap<Integer, Integer> left = base.assoc(-1, -1).dissoc(5);
+        PersistentHashMap<Integer, Integer> right = base.assoc(-2, -2).assoc(7, 70);
+        Map<Integer, Integer> expected = Maps.newHashMap(left.asMap());
+        expected.putAll(right.asMap());
+
+        PersistentHashMap<Integer, Integer> union = left.union(right);
+        assertThat(union.asMap(), equalTo(expected));
+        assertThat(union.size(), equalTo(expected.size()));
+        assertThat(union, equalTo(right.union(left).assoc(7, 70)));
+        assertThat(base.union(left).dissoc(-1), equalTo(base));
+    }
+
+    @Test
+    public void equals_and_hash_code() {
+        PersistentHashMap<Integer, Integer> map = PersistentHashMap.of(1, 1, 2, 2, 33, 33);
+        PersistentHashMap<Integer, Integer> copy = PersistentHashMap.copyOf(ImmutableMap.of(33, 33, 2, 2, 1, 1));
+        assertThat(map, equalTo(copy));
+        assertThat(map.hashCode(), equalTo(copy.hashCode()));
+        assertThat(map.hashCode(), equalTo(ImmutableMap.of(1, 1, 2, 2, 33, 33).hashCode()));
+        assertThat(map.equals(copy.assoc(2, 3)), equalTo(false));
+        assertThat(map.equals(copy.dissoc(2)), equalTo(false));
+    }
+
+    @Test
+    public void map_filter_and_reduce_large_map() {
+        PersistentHashMap<Integer, Integer> map = PersistentHashMap.empty();
+        Map<Integer, Integer> expectedMapped = Maps.newHashMap();
+        Map<Integer, Integer> expectedFiltered = Maps.newHashMap();
+        long expectedSum = 0;
+        for (int i = 0; i < 10000; i++) {
+            map = map.assoc(i, i);
+            expectedMapped.put(i, -i);
+            if (i % 3 == 0) {
+                expectedFiltered.put(i, i);
+            }
+            expectedSum += i;
+        }
+        PersistentHashMap<Integer, Integer> mapped = map.mapValues(v -> -v);
+        assertThat(mapped.asMap(), equalTo(expectedMapped));
+        assertThat(mapped.size(), equalTo(10000));
+        assertMapProperties(mapped);
+
+        PersistentHashMap<Integer, Integer> filtered = map.filter(e -> e.getKey() % 3 == 0);
+        assertThat(filtered.asMap(), equalTo(expectedFiltered));
+        assertThat(filtered.size(), equalTo(expectedFiltered.size()));
+        assertMapProperties(filtered);
+
+        assertThat(map.filter(e -> true), sameInstance(map));
+        assertThat(map.filter(e -> false).size(), equalTo(0));
+        assertThat(map.reduce(0L, (sum, e) -> sum + e.getValue(), Long::sum), equalTo(expectedSum));
+    }
+
+    @Test
+    public void map_filter_and_reduce_small_map() {
+        PersistentHashMap<Integer, Integer> map = PersistentHashMap.of(1, 1, 2, 2, 33, 33);
+        assertThat(map.mapValues(v -> "v" + v).asMap(), equalTo(ImmutableMap.of(1, "v1", 2, "v2", 33, "v33")));
+        assertThat(map.filter(e -> e.getKey() > 1).asMap(), equalTo(ImmutableMap.of(2, 2, 33, 33)));
+        assertThat(map.reduce(0, (sum, e) -> sum + e.getKey(), Integer::sum), equalTo(36));
+        assertThat(PersistentHashMap.<Integer, Integer> empty().reduce(0, (sum, e) -> sum + e.getKey(), Integer::sum), equalTo(0));
+    }
+
     @Override
     protected PersistentHashMap<Integer, Integer> emptyMap() {
         return PersistentHashMap.empty();
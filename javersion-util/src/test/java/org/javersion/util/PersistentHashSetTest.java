@@ -191,6 +191,85 @@ public class PersistentHashSetTest {
         assertThat(set.toString()).isEqualTo("[1, 2]");
     }
 
+    @Test
+    public void union_intersection_and_difference() {
+        Set<Integer> ints = integers();
+        PersistentHashSet<Integer> left = SET;
+        PersistentHashSet<Integer> right = SET;
+        Random random = new Random(3);
+        Set<Integer> leftInts = new HashSet<>(ints), rightInts = new HashSet<>(ints);
+        for (int i = 0; i < 50; i++) {
+            Integer remove = Iterables.get(ints, random.nextInt(ints.size()));
+            left = left.disj(remove);
+            leftInts.remove(remove);
+            Integer add = random.nextInt();
+            right = right.conj(add);
+            rightInts.add(add);
+        }
+
+        assertThat(left.union(right).asSet()).isEqualTo(Sets.union(leftInts, rightInts));
+        assertThat(left.union(right).size()).isEqualTo(Sets.union(leftInts, rightInts).size());
+        assertThat(left.intersection(right).asSet()).isEqualTo(Sets.intersection(leftInts, rightInts));
+        assertThat(left.intersection(right).size()).isEqualTo(Sets.intersection(leftInts, rightInts).size());
+        assertThat(left.difference(right).asSet()).isEqualTo(Sets.difference(leftInts, rightInts));
+        assertThat(left.difference(right).size()).isEqualTo(Sets.difference(leftInts, rightInts).size());
+
+        assertThat(left.asSet()).isEqualTo(leftInts);
+        assertThat(right.asSet()).isEqualTo(rightInts);
+    }
+
+    @Test
+    public void shared_structure_is_reused() {
+        assertThat(SET.union(SET)).isSameAs(SET);
+        assertThat(SET.intersection(SET)).isSameAs(SET);
+        assertThat(SET.difference(SET).size()).isEqualTo(0);
+        assertThat(SET.union(new PersistentHashSet<>())).isSameAs(SET);
+        assertThat(SET.difference(new PersistentHashSet<>())).isSameAs(SET);
+
+        PersistentHashSet<Integer> subset = SET.disj(SET.iterator().next());
+        assertThat(SET.union(subset)).isSameAs(SET);
+        assertThat(subset.intersection(SET)).isSameAs(subset);
+    }
+
+    @Test
+    public void set_algebra_with_collisions() {
+        HashKey k1 = new HashKey(1), k2 = new HashKey(1), k3 = new HashKey(1), k4 = new HashKey(33);
+        PersistentHashSet<HashKey> left = new PersistentHashSet<HashKey>().conj(k1).conj(k2).conj(k4);
+        PersistentHashSet<HashKey> right = new PersistentHashSet<HashKey>().conj(k2).conj(k3);
+
+        assertThat(left.union(right).asSet()).isEqualTo(Sets.newHashSet(k1, k2, k3, k4));
+        assertThat(left.intersection(right).asSet()).isEqualTo(Sets.newHashSet(k2));
+        assertThat(left.difference(right).asSet()).isEqualTo(Sets.newHashSet(k1, k4));
+        assertThat(right.difference(left).asSet()).isEqualTo(Sets.newHashSet(k3));
+    }
+
+    @Test
+    public void mutable_set_algebra() {
+        MutableHashSet<Integer> set = new MutableHashSet<>();
+        set.add(1);
+        assertThat(set.union(SET)).isTrue();
+        assertThat(set.union(SET)).isFalse();
+        assertThat(set.contains(1)).isTrue();
+        assertThat(set.size()).isEqualTo(SET.size() + 1);
+
+        assertThat(set.intersection(SET)).isTrue();
+        assertThat(set.toPersistentSet()).isEqualTo(SET);
+
+        assertThat(set.difference(SET)).isTrue();
+        assertThat(set.isEmpty()).isTrue();
+    }
+
+    @Test
+    public void equals_and_hash_code() {
+        PersistentHashSet<Integer> copy = new PersistentHashSet<Integer>().conjAll(Lists.reverse(new ArrayList<>(integers())));
+        assertThat(copy).isEqualTo(SET);
+        assertThat(copy.hashCode()).isEqualTo(SET.hashCode());
+        assertThat(copy.hashCode()).isEqualTo(integers().hashCode());
+        assertThat(copy.disj(SET.iterator().next())).isNotEqualTo(SET);
+        assertThat(new PersistentHashSet<Integer>().conj(1)).isEqualTo(new PersistentHashSet<Integer>().conj(2).conj(1).disj(2));
+        assertThat(new PersistentHashSet<>()).isEqualTo(new PersistentHashSet<>());
+    }
+
     private int sumOf(Stream<HashKey> stream) {
         return stream.map(Object::hashCode)
                 .reduce(Integer::sum).get();
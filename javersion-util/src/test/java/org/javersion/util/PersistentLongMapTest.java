@@ -0,0 +1,140 @@
+/*
+ * Copyright 2016 Samppa Saarela
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javersion.util;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.javersion.util.AbstractLongMap.Node;
+import org.junit.Test;
+
+public class PersistentLongMapTest {
+
+    @Test
+    public void assoc_get_and_dissoc() {
+        PersistentLongMap<String> map = PersistentLongMap.of(1L, "1", -1L, "-1", Long.MIN_VALUE, "min");
+        map = map.assoc(Long.MAX_VALUE, "max");
+        assertThat(map.size(), equalTo(4));
+        assertThat(map.get(1L), equalTo("1"));
+        assertThat(map.get(-1L), equalTo("-1"));
+        assertThat(map.get(Long.MIN_VALUE), equalTo("min"));
+        assertThat(map.get(Long.MAX_VALUE), equalTo("max"));
+        assertThat(map.get(2L), nullValue());
+        assertThat(map.assoc(1L, "1"), sameInstance(map));
+        assertThat(map.dissoc(2L), sameInstance(map));
+
+        map = map.dissoc(1L).dissoc(-1L).dissoc(Long.MIN_VALUE);
+        assertThat(map.size(), equalTo(1));
+        assertThat(map.containsKey(1L), equalTo(false));
+        assertThat(map.containsKey(Long.MAX_VALUE), equalTo(true));
+        assertThat(map.dissoc(Long.MAX_VALUE), sameInstance(PersistentLongMap.empty()));
+    }
+
+    @Test
+    public void random_updates() {
+        Random random = new Random(AbstractCollectionTest.RANDOM_SEED);
+        Map<Long, Integer> expected = new HashMap<>();
+        PersistentLongMap<Integer> map = PersistentLongMap.empty();
+        for (int i = 0; i < 10000; i++) {
+            long key = random.nextBoolean() ? random.nextLong() : random.nextInt(1000);
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                map = map.dissoc(key);
+            } else {
+                expected.put(key, i);
+                map = map.assoc(key, i);
+            }
+            assertThat(map.size(), equalTo(expected.size()));
+        }
+        assertCanonical(map.root());
+        assertThat(toMap(map), equalTo(expected));
+        assertThat(map.hashCode(), equalTo(expected.hashCode()));
+        for (Map.Entry<Long, Integer> entry : expected.entrySet()) {
+            assertThat(map.get(entry.getKey()), equalTo(entry.getValue()));
+        }
+    }
+
+    @Test
+    public void keys_differing_only_in_high_bits() {
+        PersistentLongMap<Long> map = PersistentLongMap.empty();
+        for (long i = 1; i <= 64; i++) {
+            long key = i << 58;
+            map = map.assoc(key, key);
+        }
+        assertThat(map.size(), equalTo(64));
+        for (long i = 1; i <= 64; i++) {
+            long key = i << 58;
+            assertThat(map.get(key), equalTo(key));
+        }
+        for (long i = 1; i <= 64; i++) {
+            map = map.dissoc(i << 58);
+            assertCanonical(map.root());
+        }
+        assertThat(map.isEmpty(), equalTo(true));
+    }
+
+    @Test
+    public void merger() {
+        PersistentLongMap<String> map = PersistentLongMap.of(1L, "1");
+        Merger<Map.Entry<Long, String>> keepOld = new Merger<Map.Entry<Long, String>>() {
+            @Override
+            public boolean merge(Map.Entry<Long, String> oldEntry, Map.Entry<Long, String> newEntry) {
+                assertThat(oldEntry, equalTo(new LongEntry<>(1L, "1")));
+                assertThat(newEntry, equalTo(new LongEntry<>(1L, "2")));
+                return false;
+            }
+        };
+        assertThat(map.merge(1L, "2", keepOld), sameInstance(map));
+        assertThat(map.merge(2L, "2", keepOld).get(2L), equalTo("2"));
+    }
+
+    @Test
+    public void assoc_all_and_equals() {
+        PersistentLongMap<Integer> map = PersistentLongMap.of(1L, 1, 2L, 2, 3L, 3);
+        PersistentLongMap<Integer> copy = PersistentLongMap.<Integer> empty().assocAll(map);
+        assertThat(copy, equalTo(map));
+        assertThat(copy.hashCode(), equalTo(map.hashCode()));
+        assertThat(copy.assoc(3L, 4).equals(map), equalTo(false));
+        assertThat(copy.dissoc(3L).equals(map), equalTo(false));
+        assertThat(PersistentLongMap.of(1L, 1).toString(), equalTo("{1: 1}"));
+    }
+
+    static <V> Map<Long, V> toMap(Iterable<LongEntry<V>> map) {
+        Map<Long, V> result = new HashMap<>();
+        for (LongEntry<V> entry : map) {
+            assertThat(result.put(entry.getLongKey(), entry.getValue()), nullValue());
+        }
+        return result;
+    }
+
+    /**
+     * Sub nodes should never contain only a single entry as removals inline such nodes into their parent.
+     */
+    static void assertCanonical(Node<?> node) {
+        for (int i=0; i < node.nodeArity(); i++) {
+            Node<?> child = node.nodeAt(i);
+            assertThat(child.isSingleton(), equalTo(false));
+            assertThat(child.payloadArity() + child.nodeArity() > 0, equalTo(true));
+            assertCanonical(child);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2016 Samppa Saarela
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javersion.util;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import com.google.common.collect.Sets;
+
+public class PersistentLongSetTest {
+
+    @Test
+    public void conj_and_disj() {
+        PersistentLongSet set = PersistentLongSet.of(1, 2, 3);
+        assertThat(set.size(), equalTo(3));
+        assertThat(set.contains(2), equalTo(true));
+        assertThat(set.conj(2), sameInstance(set));
+
+        set = set.conj(Long.MIN_VALUE).disj(2);
+        assertThat(set.contains(2), equalTo(false));
+        assertThat(set.contains(Long.MIN_VALUE), equalTo(true));
+        assertThat(set.disj(2), sameInstance(set));
+        assertThat(set.disj(1).disj(3).disj(Long.MIN_VALUE), sameInstance(PersistentLongSet.empty()));
+    }
+
+    @Test
+    public void iterate_and_equals() {
+        PersistentLongSet set = PersistentLongSet.empty();
+        Set<Long> expected = Sets.newHashSet();
+        for (long l = -500; l < 500; l += 3) {
+            set = set.conj(l * 1000003);
+            expected.add(l * 1000003);
+        }
+        assertThat(set.stream().boxed().collect(Collectors.toSet()), equalTo(expected));
+        assertThat(set.hashCode(), equalTo(expected.hashCode()));
+        assertThat(PersistentLongSet.empty().conjAll(set), equalTo(set));
+        assertThat(set.conjAll(PersistentLongSet.of(1)).size(), equalTo(set.size() + 1));
+    }
+}
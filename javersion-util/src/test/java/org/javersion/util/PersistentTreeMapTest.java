@@ -16,14 +16,21 @@
 package org.javersion.util;
 
 import static com.google.common.collect.Iterables.transform;
+import static com.google.common.collect.Lists.newArrayList;
+import static java.util.Arrays.asList;
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 import org.javersion.util.AbstractRedBlackTree.Color;
 import org.javersion.util.AbstractTreeMap.Node;
@@ -165,6 +172,98 @@ public class PersistentTreeMapTest extends AbstractPersistentMapTest<PersistentT
         );
     }
 
+    @Test
+    public void build_from_sorted() {
+        for (int size = 0; size < 100; size++) {
+            List<Map.Entry<Integer, Integer>> entries = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                entries.add(new SimpleEntry<>(i * 2, i));
+            }
+            PersistentTreeMap<Integer, Integer> map = PersistentTreeMap.copyOfSorted(entries);
+            assertNodeProperties(map.root());
+            assertThat(map.size(), equalTo(size));
+            assertThat(newArrayList(map), equalTo(entries));
+
+            // Insert between and remove existing
+            PersistentTreeMap<Integer, Integer> updated = map;
+            for (int i = 0; i < size; i++) {
+                updated = updated.assoc(i * 2 + 1, i).dissoc(i * 2);
+                assertNodeProperties(updated.root());
+            }
+            assertThat(updated.size(), equalTo(size));
+            assertThat(newArrayList(map), equalTo(entries));
+        }
+    }
+
+    @Test
+    public void build_from_sorted_map() {
+        SortedMap<Integer, Integer> sorted = new TreeMap<>(Comparator.reverseOrder());
+        for (Integer kv : randoms(1234)) {
+            sorted.put(kv, kv);
+        }
+        PersistentTreeMap<Integer, Integer> map = PersistentTreeMap.copyOfSorted(sorted);
+        assertThat(map.asMap(), equalTo(sorted));
+        assertThat(keys(map), contains(sorted.keySet().toArray()));
+    }
+
+    @Test
+    public void add_sorted_to_non_empty_map() {
+        PersistentTreeMap<Integer, Integer> map = PersistentTreeMap.of(2, 2)
+                .assocAllSorted(asList(new SimpleEntry<>(1, 1), new SimpleEntry<>(3, 3)), true);
+        assertNodeProperties(map.root());
+        assertThat(keys(map), contains(1, 2, 3));
+    }
+
+    @Test
+    public void build_from_sorted_mutable() {
+        MutableTreeMap<Integer, Integer> map = new MutableTreeMap<>();
+        map.putAllSorted(asList(new SimpleEntry<>(1, 1), new SimpleEntry<>(2, 2), new SimpleEntry<>(3, 3)), true);
+        map.put(4, 4);
+        assertNodeProperties(map.root());
+        assertThat(keys(map.toPersistentMap()), contains(1, 2, 3, 4));
+    }
+
+    @Test
+    public void map_filter_and_reduce() {
+        PersistentTreeMap<Integer, Integer> map = PersistentTreeMap.empty();
+        SortedMap<Integer, Integer> expectedMapped = new TreeMap<>();
+        SortedMap<Integer, Integer> expectedFiltered = new TreeMap<>();
+        StringBuilder expectedKeys = new StringBuilder();
+        for (Integer kv : randoms(10000)) {
+            map = map.assoc(kv, kv);
+            expectedMapped.put(kv, -kv);
+            if (kv % 2 == 0) {
+                expectedFiltered.put(kv, kv);
+            }
+        }
+        for (Integer key : expectedMapped.keySet()) {
+            expectedKeys.append(key).append(',');
+        }
+        PersistentTreeMap<Integer, Integer> mapped = map.mapValues(v -> -v);
+        assertNodeProperties(mapped.root());
+        assertThat(mapped.asMap(), equalTo(expectedMapped));
+
+        PersistentTreeMap<Integer, Integer> filtered = map.filter(e -> e.getKey() % 2 == 0);
+        assertNodeProperties(filtered.root());
+        assertThat(filtered.asMap(), equalTo(expectedFiltered));
+        assertThat(keys(filtered), contains(expectedFiltered.keySet().toArray()));
+
+        assertThat(map.filter(e -> true), sameInstance(map));
+        assertThat(map.filter(e -> false).size(), equalTo(0));
+        // Reduced in order
+        assertThat(map.reduce("", (keys, e) -> keys + e.getKey() + ",", String::concat), equalTo(expectedKeys.toString()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void build_from_unsorted() {
+        PersistentTreeMap.copyOfSorted(asList(new SimpleEntry<>(2, 2), new SimpleEntry<>(1, 1)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void build_from_sorted_with_duplicates() {
+        PersistentTreeMap.copyOfSorted(asList(new SimpleEntry<>(1, 1), new SimpleEntry<>(1, 2)));
+    }
+
     @Test
     public void floor() {
         PersistentTreeMap<Integer, Integer> map = mapForRangeTest();
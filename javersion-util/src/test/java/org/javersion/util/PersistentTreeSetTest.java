@@ -146,6 +146,16 @@ public class PersistentTreeSetTest {
         assertThat(NUM_SET.parallelStream().reduce(Integer::sum).get()).isEqualTo(NUM_SET_SUM);
     }
 
+    @Test
+    public void build_from_sorted() {
+        SortedSet<Integer> sorted = new TreeSet<>(randoms(1234));
+        PersistentTreeSet<Integer> set = PersistentTreeSet.copyOfSorted(sorted);
+        PersistentTreeMapTest.assertBlack(set.root());
+        assertThat(set.size()).isEqualTo(sorted.size());
+        assertThat(set).containsExactlyElementsOf(sorted);
+        assertThat(set.conjAllSorted(Arrays.asList(1, 2, 3), true)).contains(1, 2, 3);
+    }
+
     private void assertSets(List<PersistentTreeSet<Integer>> sets, Set<Integer> ints) {
         PersistentTreeSet<Integer> set;
         assertThat(sets.get(0).size(), equalTo(0));
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2016 Samppa Saarela
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javersion.util;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class PersistentVectorTest {
+
+    private static final Random RANDOM = new Random(2007);
+
+    @Test
+    public void conj_get_and_set() {
+        PersistentVector<Integer> vector = PersistentVector.empty();
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 40000; i++) {
+            vector = vector.conj(i);
+            expected.add(i);
+        }
+        assertVector(vector, expected);
+
+        PersistentVector<Integer> updated = vector;
+        for (int i = 0; i < 1000; i++) {
+            int index = RANDOM.nextInt(expected.size());
+            updated = updated.set(index, -i);
+            expected.set(index, -i);
+        }
+        assertVector(updated, expected);
+        assertThat(vector.get(123), equalTo(123));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void get_out_of_bounds() {
+        PersistentVector.of(1, 2, 3).get(3);
+    }
+
+    @Test
+    public void slice() {
+        List<Integer> expected = range(0, 5000);
+        PersistentVector<Integer> vector = PersistentVector.copyOf(expected);
+        assertThat(vector.slice(0, vector.size()), sameInstance(vector));
+        assertThat(vector.slice(10, 10), sameInstance(PersistentVector.empty()));
+
+        for (int i = 0; i < 200; i++) {
+            int from = RANDOM.nextInt(vector.size());
+            int to = from + RANDOM.nextInt(vector.size() - from + 1);
+            PersistentVector<Integer> slice = vector.slice(from, to);
+            assertVector(slice, expected.subList(from, to));
+            assertVector(slice.conj(-1).slice(0, slice.size()), expected.subList(from, to));
+        }
+    }
+
+    @Test
+    public void concat() {
+        PersistentVector<Integer> vector = PersistentVector.empty();
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            List<Integer> elements = range(expected.size(), expected.size() + RANDOM.nextInt(100));
+            PersistentVector<Integer> other = PersistentVector.copyOf(elements);
+            if (RANDOM.nextBoolean()) {
+                vector = vector.concat(other);
+                expected.addAll(elements);
+            } else {
+                vector = other.concat(vector);
+                expected.addAll(0, elements);
+            }
+        }
+        assertVector(vector, expected);
+
+        int from = expected.size() / 3;
+        int to = 2 * expected.size() / 3;
+        List<Integer> sliced = new ArrayList<>(expected.subList(0, from));
+        sliced.addAll(expected.subList(to, expected.size()));
+        assertVector(vector.slice(0, from).concat(vector.slice(to, vector.size())), sliced);
+    }
+
+    @Test
+    public void mutable_vector_does_not_change_persistent_vector() {
+        PersistentVector<Integer> vector = PersistentVector.copyOf(range(0, 1000));
+        MutableVector<Integer> mutableVector = vector.toMutableVector();
+        assertThat(mutableVector.set(500, -1), equalTo(500));
+        assertThat(mutableVector.set(999, -1), equalTo(999));
+        mutableVector.addAll(range(1000, 2000));
+
+        List<Integer> expected = range(0, 2000);
+        expected.set(500, -1);
+        expected.set(999, -1);
+        PersistentVector<Integer> updated = mutableVector.toPersistentVector();
+        assertVector(updated, expected);
+        assertVector(vector, range(0, 1000));
+
+        mutableVector.set(0, -1);
+        mutableVector.add(2000);
+        assertVector(updated, expected);
+    }
+
+    @Test
+    public void equals_and_to_string() {
+        PersistentVector<Integer> vector = PersistentVector.of(1, 2, 3);
+        assertThat(vector, equalTo(PersistentVector.of(1).concat(PersistentVector.of(2, 3))));
+        assertThat(vector.hashCode(), equalTo(vector.asList().hashCode()));
+        assertThat(vector.toString(), equalTo("[1, 2, 3]"));
+        assertThat(PersistentVector.empty().toString(), equalTo("[]"));
+    }
+
+    private static List<Integer> range(int from, int to) {
+        List<Integer> list = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            list.add(i);
+        }
+        return list;
+    }
+
+    private static void assertVector(PersistentVector<Integer> vector, List<Integer> expected) {
+        assertThat(vector.size(), equalTo(expected.size()));
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(vector.get(i), equalTo(expected.get(i)));
+        }
+        assertThat(vector.stream().collect(Collectors.toList()), equalTo(expected));
+        assertThat(vector.asList(), equalTo(expected));
+    }
+}